@@ -0,0 +1,102 @@
+package org.kabieror.elwasys.raspiclient.application;
+
+import org.kabieror.elwasys.common.DataManager;
+import org.kabieror.elwasys.common.EntityType;
+import org.kabieror.elwasys.common.IEntityChangeListener;
+import org.kabieror.elwasys.common.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hält die Zuordnung von Kartennummern zu Benutzern im Speicher, sodass beim Vorhalten einer Karte keine Suche in
+ * der Datenbank nötig ist.
+ * <p>
+ * Jeder Treffer wird mit dem aus der Datenbank aktualisierten Benutzer abgeglichen. Gehört die Karte nicht mehr zum
+ * Benutzer, so wird der Eintrag verworfen und die Karte erneut in der Datenbank gesucht. Die Einträge geänderter
+ * Benutzer werden verworfen, sobald die Datenbank die Änderung meldet.
+ *
+ * @author Oliver Kabierschke
+ */
+public class CardUserIndex implements IEntityChangeListener {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final DataManager dataManager;
+
+    /**
+     * Die Ids der Benutzer, zugeordnet zu ihren Kartennummern.
+     */
+    private volatile Map<String, Integer> userIds = new ConcurrentHashMap<>();
+
+    public CardUserIndex(DataManager dataManager) {
+        this.dataManager = dataManager;
+        dataManager.listenToEntityChanges(this);
+    }
+
+    /**
+     * Lädt die Kartennummern aller Benutzer neu aus der Datenbank.
+     *
+     * @throws SQLException Wenn die Abfrage nicht ausgeführt werden kann
+     */
+    public void reload() throws SQLException {
+        this.userIds = new ConcurrentHashMap<>(this.dataManager.getUserIdsByCardId());
+        this.logger.debug("Loaded " + this.userIds.size() + " card ids.");
+    }
+
+    /**
+     * Sucht den zur Kartennummer passenden Benutzer.
+     *
+     * @param cardId Die Kartennummer
+     * @return Den Benutzer oder null, wenn die Karte keinem Benutzer zugeordnet ist
+     * @throws SQLException Wenn die Abfrage nicht ausgeführt werden kann
+     */
+    public User getUser(String cardId) throws SQLException {
+        final Integer userId = this.userIds.get(cardId);
+        if (userId != null) {
+            final User user = this.dataManager.getUserById(userId);
+            if (user != null && !user.isDeleted() && Arrays.asList(user.getCardIds()).contains(cardId)) {
+                return user;
+            }
+            // Die Karte wurde seit dem Laden geändert
+            this.logger.debug("Card " + cardId + " no longer belongs to user #" + userId + ".");
+            this.userIds.remove(cardId, userId);
+        }
+
+        final User user = this.dataManager.getUserByCardId(cardId);
+        if (user != null) {
+            this.userIds.put(cardId, user.getId());
+        }
+        return user;
+    }
+
+    /**
+     * Verwirft alle Kartennummern eines Benutzers, etwa nachdem dieser geändert wurde.
+     *
+     * @param userId Die Id des Benutzers
+     */
+    public void invalidateUser(int userId) {
+        this.userIds.values().removeIf(id -> id == userId);
+    }
+
+    @Override
+    public void onEntityChanged(EntityType type, int id) {
+        if (type == EntityType.USER) {
+            this.invalidateUser(id);
+        }
+    }
+
+    @Override
+    public void onChangesLost() {
+        try {
+            this.reload();
+        } catch (final SQLException e) {
+            this.logger.warn("Could not reload the card ids after missing database changes.", e);
+            this.userIds = new ConcurrentHashMap<>();
+        }
+    }
+}
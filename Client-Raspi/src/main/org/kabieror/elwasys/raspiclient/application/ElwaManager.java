@@ -16,6 +16,7 @@ import org.kabieror.elwasys.raspiclient.devices.deconz.DeconzRegistrationService
 import org.kabieror.elwasys.raspiclient.executions.ExecutionManager;
 import org.kabieror.elwasys.raspiclient.executions.FhemException;
 import org.kabieror.elwasys.raspiclient.io.CardReader;
+import org.kabieror.elwasys.raspiclient.notifications.NotificationDispatcher;
 import org.kabieror.elwasys.raspiclient.ui.AbstractMainFormController;
 import org.slf4j.LoggerFactory;
 
@@ -54,6 +55,11 @@ public class ElwaManager {
      */
     private DataManager dataManager;
 
+    /**
+     * Die Zuordnung von Kartennummern zu Benutzern.
+     */
+    private CardUserIndex cardUserIndex;
+
     /**
      * Der Manager für die Konfiguration
      */
@@ -64,6 +70,11 @@ public class ElwaManager {
      */
     private ExecutionManager executionManager;
 
+    /**
+     * Der Versand von Benachrichtigungen an Benutzer
+     */
+    private NotificationDispatcher notificationDispatcher;
+
     /**
      * Der Manager für das freigeben und abschalten des Stroms von verwalteten
      * Geräten
@@ -139,6 +150,8 @@ public class ElwaManager {
             this.logger.info("Starting up managers");
             SingleInstanceManager.instance.start(this.configurationManager.getSingleInstancePort());
             this.dataManager = new DataManager(this.configurationManager);
+            this.cardUserIndex = new CardUserIndex(this.dataManager);
+            this.cardUserIndex.reload();
             this.locationManager = new LocationManager(this.configurationManager);
 
             // Lade Ort
@@ -150,7 +163,8 @@ public class ElwaManager {
                 deconzEventListener = new DeconzEventListener(this.configurationManager, apiAdapter);
                 deconzEventListener.start();
                 deviceRegistrationService = new DeconzRegistrationService(apiAdapter, deconzEventListener);
-                this.devicePowerManager = new DeconzDevicePowerManager(apiAdapter, deconzEventListener);
+                this.devicePowerManager = new DeconzDevicePowerManager(this.configurationManager, apiAdapter,
+                        deconzEventListener);
             } else if (StringUtils.isNotBlank(this.configurationManager.getFhemConnectionString())) {
                 this.logger.info("Using fhem as gateway.");
                 this.devicePowerManager = new FhemDevicePowerManager(this.configurationManager);
@@ -159,6 +173,8 @@ public class ElwaManager {
                         "You must either provide a value for deconz.server or fhem.server");
                 System.exit(1);
             }
+            this.notificationDispatcher = new NotificationDispatcher(this.dataManager, this.thisLocation,
+                    this.configurationManager, this.utilities);
             this.executionManager = new ExecutionManager(this.devicePowerManager);
             this.mainFormController.initiate();
 
@@ -170,6 +186,10 @@ public class ElwaManager {
                     this.executionManager.startExecution(e);
                 }
             }
+
+            // Datenbankverbindungen erst nach allen anderen Managern schließen
+            final DataManager closingDataManager = this.dataManager;
+            this.listenToCloseEvent(restart -> closingDataManager.close());
         } catch (Exception e) {
             this.logger.error("Failed to start up managers.", e);
             if (deconzEventListener != null) {
@@ -224,6 +244,15 @@ public class ElwaManager {
         return this.dataManager;
     }
 
+    /**
+     * Gibt die Zuordnung von Kartennummern zu Benutzern zurück.
+     *
+     * @return Die Zuordnung von Kartennummern zu Benutzern.
+     */
+    public CardUserIndex getCardUserIndex() {
+        return this.cardUserIndex;
+    }
+
     /**
      * Gibt den Ausführungsmanager zurück.
      *
@@ -233,6 +262,15 @@ public class ElwaManager {
         return this.executionManager;
     }
 
+    /**
+     * Gibt den Versand von Benachrichtigungen zurück.
+     *
+     * @return Den Versand von Benachrichtigungen.
+     */
+    public NotificationDispatcher getNotificationDispatcher() {
+        return this.notificationDispatcher;
+    }
+
     public IDeviceRegistrationService getDeviceRegistrationService() {
         return this.deviceRegistrationService;
     }
@@ -1,5 +1,6 @@
 package org.kabieror.elwasys.raspiclient.application;
 
+import org.kabieror.elwasys.common.LogFileReader;
 import org.kabieror.elwasys.common.Utilities;
 import org.kabieror.elwasys.common.maintenance.*;
 import org.kabieror.elwasys.common.maintenance.data.BacklightStatus;
@@ -7,9 +8,8 @@ import org.kabieror.elwasys.common.maintenance.data.InterfaceStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.Vector;
 
@@ -74,9 +74,11 @@ public class MaintenanceServerManager extends Thread implements ICloseListener,
      */
     @Override
     public GetLogResponse handleGetLog(GetLogRequest request) {
-        final File logfile = new File(Utilities.getCurrentLogFile());
+        final LogFileReader reader = new LogFileReader(Paths.get(Utilities.getCurrentLogFile()));
         try {
-            return new GetLogResponse(request, Files.readAllLines(logfile.toPath()));
+            final LogFileReader.Chunk chunk =
+                    reader.read(request.getBefore(), request.getMaxLines(), request.getSince(), request.getMinLevel());
+            return new GetLogResponse(request, chunk.getLines(), chunk.getStartOffset(), chunk.hasMore());
         } catch (final IOException e) {
             this.logger.error("Could not read the log file.", e);
             final List<String> res = new Vector<String>();
@@ -91,6 +91,94 @@ public class WashguardConfiguration extends ConfigurationManager {
         return Integer.parseInt(this.props.getProperty("fhem.port"));
     }
 
+    /**
+     * Gibt die Anzahl der Telnet-Sitzungen zurück, über welche gleichzeitig Befehle an den FHEM-Server gesendet
+     * werden.
+     *
+     * @return Die Anzahl der Telnet-Sitzungen für Befehle.
+     */
+    public int getFhemConnections() {
+        return Math.max(1, this.getIntProperty("fhem.connections", 2));
+    }
+
+    /**
+     * Gibt die Zeit zurück, nach der ein aus den Ereignissen des Gateways bekannter Schaltzustand eines Geräts
+     * erneut beim Gateway abgefragt wird.
+     *
+     * @return Die Zeit, für die ein bekannter Schaltzustand verwendet wird.
+     */
+    public Duration getPowerStateMaxAge() {
+        return Duration.ofSeconds(Math.max(0, this.getIntProperty("power.stateMaxAge", 300)));
+    }
+
+    /**
+     * Gibt die Anzahl Leistungsmesswerte zurück, die je Gerät im Speicher gehalten werden.
+     *
+     * @return Die Anzahl Messwerte je Gerät.
+     */
+    public int getPowerHistorySize() {
+        return Math.max(1, this.getIntProperty("power.historySize", 2048));
+    }
+
+    /**
+     * Gibt zurück, ob Ausführungen anhand des aus früheren Ausführungen gelernten Leistungsverlaufs beendet werden.
+     * Andernfalls gilt allein die Wartezeit des Geräts.
+     */
+    public boolean isAdaptiveAutoEndEnabled() {
+        return Boolean.parseBoolean(this.props.getProperty("power.adaptiveAutoEnd", "true"));
+    }
+
+    /**
+     * Gibt zurück, ob die Leistungsmesswerte aller Geräte in der Datenbank gespeichert werden.
+     */
+    public boolean isPowerTelemetryEnabled() {
+        return Boolean.parseBoolean(this.props.getProperty("power.telemetry.enabled", "true"));
+    }
+
+    /**
+     * Gibt die Anzahl Leistungsmesswerte zurück, die zwischen zwei Schreibvorgängen gesammelt werden können.
+     */
+    public int getPowerTelemetryBufferSize() {
+        return Math.max(1, this.getIntProperty("power.telemetry.bufferSize", 4096));
+    }
+
+    /**
+     * Gibt den Abstand zurück, in dem die gesammelten Leistungsmesswerte in die Datenbank geschrieben werden.
+     */
+    public Duration getPowerTelemetryFlushInterval() {
+        return Duration.ofSeconds(Math.max(1, this.getIntProperty("power.telemetry.flushInterval", 30)));
+    }
+
+    /**
+     * Gibt zurück, ob Störungen der Geräte anhand der Leistungsmesswerte erkannt werden.
+     */
+    public boolean isFaultDetectionEnabled() {
+        return Boolean.parseBoolean(this.props.getProperty("fault.detection", "true"));
+    }
+
+    /**
+     * Gibt die Zeit nach dem Einschalten zurück, nach der ein Gerät ohne Leistungsaufnahme mindestens als gestört
+     * gilt.
+     */
+    public Duration getFaultNoPowerTimeout() {
+        return Duration.ofMinutes(Math.max(1, this.getIntProperty("fault.noPowerTimeout", 10)));
+    }
+
+    /**
+     * Gibt die Zeit nach der Höchstdauer eines Programms zurück, nach der volle Leistung als Störung gilt.
+     */
+    public Duration getFaultOverrunGrace() {
+        return Duration.ofMinutes(Math.max(0, this.getIntProperty("fault.overrunGrace", 15)));
+    }
+
+    /**
+     * Gibt zurück, ob Ausführungen bei einer Störung abgebrochen werden. Nimmt das Gerät keine Leistung auf, wird der
+     * Preis dabei erstattet.
+     */
+    public boolean isFaultAutoAbortEnabled() {
+        return Boolean.parseBoolean(this.props.getProperty("fault.autoAbort", "false"));
+    }
+
     /**
      * Gibt den Name des Standorts des Waschwächters zurück (z.B. Waschküche1)
      *
@@ -211,6 +299,35 @@ public class WashguardConfiguration extends ConfigurationManager {
         return time;
     }
 
+    /**
+     * Die Anzahl der Threads, die gleichzeitig Benachrichtigungen versenden.
+     */
+    public int getNotificationWorkers() {
+        return Math.max(1, this.getIntProperty("notifications.workers", 2));
+    }
+
+    /**
+     * Die Anzahl der Benachrichtigungen, die höchstens auf ihren Versand warten. Weitere Benachrichtigungen bleiben
+     * im Postausgang der Datenbank, bis wieder Platz ist.
+     */
+    public int getNotificationQueueCapacity() {
+        return Math.max(1, this.getIntProperty("notifications.queueCapacity", 100));
+    }
+
+    /**
+     * Die Anzahl der Zustellversuche, nach der eine Benachrichtigung aufgegeben wird.
+     */
+    public int getNotificationMaxAttempts() {
+        return Math.max(1, this.getIntProperty("notifications.maxAttempts", 8));
+    }
+
+    /**
+     * Der Abstand, in dem der Postausgang nach fälligen Benachrichtigungen durchsucht wird.
+     */
+    public Duration getNotificationPollInterval() {
+        return Duration.ofSeconds(Math.max(1, this.getIntProperty("notifications.pollInterval", 15)));
+    }
+
     /**
      * Die URL des Online-Portals
      */
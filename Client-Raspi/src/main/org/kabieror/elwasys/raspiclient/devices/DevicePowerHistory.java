@@ -0,0 +1,225 @@
+package org.kabieror.elwasys.raspiclient.devices;
+
+/**
+ * Hält die letzten Leistungsmesswerte eines Geräts in einem Ringpuffer fester Größe. Zeitpunkte und Leistungen liegen
+ * in primitiven Feldern, sodass das Speichern eines Messwerts keine Objekte erzeugt. Ist der Puffer voll, wird der
+ * älteste Messwert überschrieben.
+ * <p>
+ * Zeitpunkte sind Millisekunden seit der Epoche, Leistungen Watt. Die Messwerte müssen in zeitlicher Reihenfolge
+ * gespeichert werden. Zeitfenster schließen beide Grenzen ein. Auswertungen über ein Fenster ohne Messwerte ergeben
+ * {@link Float#NaN}.
+ *
+ * @author Oliver Kabierschke
+ */
+public class DevicePowerHistory {
+
+    private final long[] times;
+    private final float[] watts;
+
+    /**
+     * Die Stelle, an die der nächste Messwert geschrieben wird
+     */
+    private int next;
+
+    private int size;
+
+    /**
+     * @param capacity Die Anzahl Messwerte, die höchstens gehalten werden
+     */
+    public DevicePowerHistory(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity must be positive.");
+        }
+        this.times = new long[capacity];
+        this.watts = new float[capacity];
+    }
+
+    /**
+     * Speichert einen Messwert.
+     *
+     * @param time  Der Zeitpunkt der Messung
+     * @param power Die gemessene Leistung
+     */
+    public synchronized void add(long time, float power) {
+        this.times[this.next] = time;
+        this.watts[this.next] = power;
+        if (++this.next == this.times.length) {
+            this.next = 0;
+        }
+        if (this.size < this.times.length) {
+            this.size++;
+        }
+    }
+
+    /**
+     * Verwirft alle Messwerte.
+     */
+    public synchronized void clear() {
+        this.next = 0;
+        this.size = 0;
+    }
+
+    public int getCapacity() {
+        return this.times.length;
+    }
+
+    public synchronized int size() {
+        return this.size;
+    }
+
+    /**
+     * Gibt den Zeitpunkt des jüngsten Messwerts zurück, oder 0, falls es keinen gibt.
+     */
+    public synchronized long getLatestTime() {
+        return this.size == 0 ? 0 : this.times[this.index(this.size - 1)];
+    }
+
+    /**
+     * Gibt den jüngsten Messwert zurück, oder {@link Float#NaN}, falls es keinen gibt.
+     */
+    public synchronized float getLatestPower() {
+        return this.size == 0 ? Float.NaN : this.watts[this.index(this.size - 1)];
+    }
+
+    /**
+     * Zählt die Messwerte im gegebenen Zeitfenster.
+     */
+    public synchronized int count(long from, long to) {
+        int count = 0;
+        for (int i = this.first(from); i < this.size && this.times[this.index(i)] <= to; i++) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Gibt die geringste Leistung im gegebenen Zeitfenster zurück.
+     */
+    public synchronized float min(long from, long to) {
+        float min = Float.NaN;
+        for (int i = this.first(from); i < this.size; i++) {
+            final int index = this.index(i);
+            if (this.times[index] > to) {
+                break;
+            }
+            if (!(this.watts[index] >= min)) {
+                min = this.watts[index];
+            }
+        }
+        return min;
+    }
+
+    /**
+     * Gibt die höchste Leistung im gegebenen Zeitfenster zurück.
+     */
+    public synchronized float max(long from, long to) {
+        float max = Float.NaN;
+        for (int i = this.first(from); i < this.size; i++) {
+            final int index = this.index(i);
+            if (this.times[index] > to) {
+                break;
+            }
+            if (!(this.watts[index] <= max)) {
+                max = this.watts[index];
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Gibt den Mittelwert der Messwerte im gegebenen Zeitfenster zurück.
+     */
+    public synchronized float mean(long from, long to) {
+        double sum = 0;
+        int count = 0;
+        for (int i = this.first(from); i < this.size; i++) {
+            final int index = this.index(i);
+            if (this.times[index] > to) {
+                break;
+            }
+            sum += this.watts[index];
+            count++;
+        }
+        return count == 0 ? Float.NaN : (float) (sum / count);
+    }
+
+    /**
+     * Gibt die Steigung der Ausgleichsgeraden durch die Messwerte im gegebenen Zeitfenster zurück. Sie ist positiv,
+     * wenn die Leistung steigt.
+     *
+     * @return Die Änderung der Leistung in Watt je Sekunde, oder {@link Float#NaN}, falls das Fenster weniger als zwei
+     * Zeitpunkte enthält
+     */
+    public synchronized float slope(long from, long to) {
+        double sumT = 0;
+        double sumP = 0;
+        double sumTT = 0;
+        double sumTP = 0;
+        int count = 0;
+        for (int i = this.first(from); i < this.size; i++) {
+            final int index = this.index(i);
+            if (this.times[index] > to) {
+                break;
+            }
+            // Sekunden ab Fensterbeginn, damit die Quadrate nicht an Genauigkeit verlieren
+            final double t = (this.times[index] - from) / 1000.0;
+            final double p = this.watts[index];
+            sumT += t;
+            sumP += p;
+            sumTT += t * t;
+            sumTP += t * p;
+            count++;
+        }
+        final double denominator = count * sumTT - sumT * sumT;
+        if (count < 2 || denominator <= 0) {
+            return Float.NaN;
+        }
+        return (float) ((count * sumTP - sumT * sumP) / denominator);
+    }
+
+    /**
+     * Kopiert die Messwerte im gegebenen Zeitfenster in die gegebenen Felder, die ältesten zuerst. Passen nicht alle
+     * Messwerte hinein, werden die ältesten kopiert.
+     *
+     * @param times Nimmt die Zeitpunkte auf
+     * @param watts Nimmt die Leistungen auf
+     * @return Die Anzahl kopierter Messwerte
+     */
+    public synchronized int copy(long from, long to, long[] times, float[] watts) {
+        final int length = Math.min(times.length, watts.length);
+        int count = 0;
+        for (int i = this.first(from); i < this.size && count < length; i++) {
+            final int index = this.index(i);
+            if (this.times[index] > to) {
+                break;
+            }
+            times[count] = this.times[index];
+            watts[count] = this.watts[index];
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Gibt die Position des ältesten Messwerts zurück, der nicht vor dem gegebenen Zeitpunkt liegt. Die Suche beginnt
+     * beim jüngsten Messwert, da meist die jüngsten Messwerte abgefragt werden.
+     */
+    private int first(long from) {
+        int i = this.size;
+        while (i > 0 && this.times[this.index(i - 1)] >= from) {
+            i--;
+        }
+        return i;
+    }
+
+    /**
+     * Rechnet eine Position, gezählt vom ältesten Messwert, in eine Stelle der Felder um.
+     */
+    private int index(int position) {
+        int index = this.next - this.size + position;
+        if (index < 0) {
+            index += this.times.length;
+        }
+        return index;
+    }
+}
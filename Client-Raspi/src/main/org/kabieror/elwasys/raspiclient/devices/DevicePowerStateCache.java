@@ -0,0 +1,103 @@
+package org.kabieror.elwasys.raspiclient.devices;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hält den zuletzt beobachteten Schaltzustand jedes Geräts im Speicher. Die Einträge werden aus den Ereignissen des
+ * Gateways fortgeschrieben, sodass Abfragen des Zustands nur dann an das Gateway gehen, wenn lange kein Zustand mehr
+ * beobachtet wurde.
+ *
+ * @author Oliver Kabierschke
+ */
+public class DevicePowerStateCache {
+
+    /**
+     * Die Zeit, nach der ein beobachteter Zustand nicht mehr verwendet wird.
+     */
+    private final long maxAgeNanos;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public DevicePowerStateCache(Duration maxAge) {
+        this.maxAgeNanos = maxAge.toNanos();
+    }
+
+    /**
+     * Hält einen beobachteten Zustand fest.
+     *
+     * @param key   Der Name des Geräts beim Gateway
+     * @param state Der beobachtete Zustand
+     */
+    public void update(String key, DevicePowerState state) {
+        if (key == null) {
+            return;
+        }
+        if (state == DevicePowerState.UNKNOWN) {
+            this.entries.remove(key);
+        } else {
+            this.entries.put(key, new Entry(state, System.nanoTime()));
+        }
+    }
+
+    /**
+     * Gibt den zuletzt beobachteten Zustand zurück, falls dieser noch nicht zu alt ist.
+     *
+     * @param key Der Name des Geräts beim Gateway
+     * @return Den Zustand oder null, wenn er erneut abgefragt werden muss
+     */
+    public DevicePowerState get(String key) {
+        final Entry entry = key == null ? null : this.entries.get(key);
+        if (entry == null || System.nanoTime() - entry.time > this.maxAgeNanos) {
+            this.misses.incrementAndGet();
+            return null;
+        }
+        this.hits.incrementAndGet();
+        return entry.state;
+    }
+
+    /**
+     * Verwirft den Zustand eines Geräts, etwa während er geändert wird.
+     */
+    public void invalidate(String key) {
+        if (key != null) {
+            this.entries.remove(key);
+        }
+    }
+
+    /**
+     * Verwirft alle Zustände. Wird aufgerufen, wenn Ereignisse verpasst worden sein können.
+     */
+    public void clear() {
+        this.entries.clear();
+    }
+
+    /**
+     * Die Anzahl der Abfragen, die aus dem Speicher beantwortet wurden.
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * Die Anzahl der Abfragen, die an das Gateway weitergegeben werden mussten.
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    private static class Entry {
+        private final DevicePowerState state;
+        private final long time;
+
+        Entry(DevicePowerState state, long time) {
+            this.state = state;
+            this.time = time;
+        }
+    }
+}
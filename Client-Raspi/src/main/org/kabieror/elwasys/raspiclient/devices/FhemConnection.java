@@ -0,0 +1,205 @@
+package org.kabieror.elwasys.raspiclient.devices;
+
+import org.kabieror.elwasys.raspiclient.executions.FhemException;
+import org.kabieror.elwasys.raspiclient.io.TelnetClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Eine Telnet-Sitzung mit dem FHEM-Server, die ihre Erreichbarkeit selbst prüft.
+ *
+ * @author Oliver Kabierschke
+ */
+class FhemConnection {
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    /**
+     * Process a full connection check at most once per 20 seconds.
+     */
+    private final Duration fullConnectionCheckDelay = Duration.ofSeconds(20);
+
+    private final String server;
+    private final int port;
+    private final String name;
+
+    private TelnetClient telnet;
+    /**
+     * Die Anzahl an Zeilen, welche beim Kommando "version" zu erwarten sind.
+     * Wird bei der Verbindungsprüfung verwendet.
+     */
+    private int versionLinesToExpect = 0;
+    /**
+     * The date of the last full connection check.
+     */
+    private LocalDateTime lastFullConnectionCheck;
+    /**
+     * The minimum time to wait for an answer from the fhem server.
+     */
+    private Duration minimumTimeout = Duration.ZERO;
+
+    FhemConnection(String server, int port, String name) {
+        this.server = server;
+        this.port = port;
+        this.name = name;
+    }
+
+    /**
+     * Startet eine neue Telnet-Sitzung mit dem Fhem-Server.
+     */
+    void open() throws FhemException {
+        if (this.telnet != null && this.telnet.isAlive()) {
+            this.telnet.shutdown();
+        }
+        this.logger.info("Starting new " + this.name + " connection to fhem server on " + this.server + ":" +
+                this.port);
+        this.telnet = new TelnetClient(this.server, this.port);
+        try {
+            this.telnet.openConnection(5000);
+        } catch (IOException e) {
+            throw new FhemException("Konnte nicht mit dem FHEM-Server verbinden.", e);
+        }
+        try {
+            Thread.sleep(1000);
+        } catch (final InterruptedException e) {
+            e.printStackTrace();
+        }
+        // Check connection
+        try {
+            this.telnet.sendCommand("version");
+            final LocalDateTime startWait = LocalDateTime.now();
+            String response = this.telnet.waitForResponse(5, TimeUnit.SECONDS);
+            String lastResponse = response;
+            int sumWaitDuration = 0;
+            int countResponses = 0;
+            while (lastResponse != null) {
+                final Duration duration = Duration.between(startWait, LocalDateTime.now());
+                sumWaitDuration += duration.getNano();
+                if (this.minimumTimeout.minus(duration).isNegative()) {
+                    // Update minimum wait duration, if the measured duration is
+                    // greather.
+                    this.minimumTimeout = duration;
+                }
+                countResponses++;
+
+                // Wait for next response
+                final int avgWaitDuration = sumWaitDuration / countResponses;
+                lastResponse = this.telnet.waitForResponse(avgWaitDuration * 10, TimeUnit.NANOSECONDS);
+                if (lastResponse != null && !lastResponse.isEmpty()) {
+                    response += "\n" + lastResponse;
+                }
+            }
+            if (response == null || !response.contains("fhem.pl")) {
+                // No response received.
+                this.logger.error("The fhem server did not send a matching response. Expected 'fhem.pl' but got:\n" +
+                        response);
+                throw new FhemException("Der FHEM-Server hat unerwartet geantwortet.");
+            }
+            this.logger.trace("Expecting " + countResponses + " lines from the version command.");
+            this.versionLinesToExpect = countResponses;
+            this.lastFullConnectionCheck = LocalDateTime.now();
+        } catch (IOException | InterruptedException e) {
+            throw new FhemException("Konnte nicht mit dem FHEM-Server kommunizieren.", e);
+        }
+    }
+
+    /**
+     * Öffnet die Sitzung neu, falls sie nicht mehr besteht.
+     */
+    void ensureOpen() throws FhemException {
+        if (!this.check(false)) {
+            this.open();
+        }
+    }
+
+    /**
+     * Checks the connection to the Fhem-Server.
+     *
+     * @param forceFullCheck Ob die Verbindung auch dann vollständig geprüft werden soll, wenn die letzte Prüfung
+     *                       noch nicht lange zurück liegt.
+     * @return True, if the connection is alive.
+     */
+    boolean check(boolean forceFullCheck) {
+        Boolean res = null;
+        final LocalDateTime checkStart = LocalDateTime.now();
+        try {
+            if (this.telnet == null || !this.telnet.isAlive()) {
+                return false;
+            }
+            if (!forceFullCheck && this.lastFullConnectionCheck != null &&
+                    Duration.between(this.lastFullConnectionCheck, LocalDateTime.now())
+                            .minus(this.fullConnectionCheckDelay).isNegative()) {
+                this.logger.trace("Fast connection check returns true.");
+                return true;
+            }
+            this.logger.trace("Full connection check started.");
+            this.telnet.emptyResponseBuffer();
+            this.telnet.sendCommand("version");
+            this.logger.trace("Waiting for anwser");
+            String answer = this.telnet.waitForResponse(5, TimeUnit.SECONDS);
+
+            // Retrieve remaining response lines
+            for (int i = 1; i < this.versionLinesToExpect; i++) {
+                String newAnswer = this.telnet.waitForResponse(5, TimeUnit.SECONDS);
+                answer += "\n" + newAnswer;
+                if (newAnswer == null) {
+                    // A response is missing.
+                    this.logger
+                            .warn("The server did not send a matching response. Expected " + this.versionLinesToExpect +
+                                    " lines but got " + i + ".");
+                    res = false;
+                    break;
+                }
+            }
+            if (res == null) {
+                res = answer != null && answer.contains("fhem.pl");
+            }
+        } catch (final IOException | InterruptedException e) {
+            this.logger.warn("Error while checking the connection.", e);
+            res = false;
+        }
+        this.logger.trace("Connection check returns " + res + " after " +
+                Duration.between(checkStart, LocalDateTime.now()).toMillis() + "ms");
+        this.lastFullConnectionCheck = LocalDateTime.now();
+        return res;
+    }
+
+    /**
+     * Sendet einen Befehl und wartet auf die erste Zeile der Antwort.
+     *
+     * @return Die Antwort oder null, wenn innerhalb der Wartezeit keine Antwort empfangen wurde.
+     */
+    String query(String command, int timeout, TimeUnit unit) throws IOException, InterruptedException {
+        this.telnet.emptyResponseBuffer();
+        this.telnet.sendCommand(command);
+        return this.telnet.waitForResponse(timeout, unit);
+    }
+
+    void sendCommand(String command) throws IOException {
+        this.telnet.sendCommand(command);
+    }
+
+    String waitForResponse(int timeout, TimeUnit unit) throws IOException, InterruptedException {
+        return this.telnet.waitForResponse(timeout, unit);
+    }
+
+    /**
+     * Die beim Öffnen gemessene Antwortzeit des Servers.
+     */
+    Duration getMinimumTimeout() {
+        return this.minimumTimeout;
+    }
+
+    boolean isAlive() {
+        return this.telnet != null && this.telnet.isAlive();
+    }
+
+    void shutdown() {
+        if (this.isAlive()) {
+            this.telnet.shutdown();
+        }
+    }
+}
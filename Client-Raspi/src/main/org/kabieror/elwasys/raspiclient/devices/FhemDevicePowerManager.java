@@ -7,92 +7,108 @@ import org.kabieror.elwasys.raspiclient.application.ICloseListener;
 import org.kabieror.elwasys.raspiclient.application.Main;
 import org.kabieror.elwasys.raspiclient.configuration.WashguardConfiguration;
 import org.kabieror.elwasys.raspiclient.executions.FhemException;
-import org.kabieror.elwasys.raspiclient.io.TelnetClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.time.Duration;
-import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * Dieser Manager schaltet den Strom von Geräten frei und unterbricht ihn.
+ * <p>
+ * Befehle werden über einen kleinen Pool an Telnet-Sitzungen gesendet, sodass Anfragen für verschiedene Geräte
+ * gleichzeitig bearbeitet werden können. Nur Befehle für dasselbe Gerät werden nacheinander ausgeführt. Ein neuer
+ * Schaltzustand wird über die Events-Verbindung bestätigt und nur bei ausbleibendem Ereignis direkt abgefragt.
  *
  * @author Oliver Kabierschke
  */
 @SuppressWarnings("FieldCanBeLocal")
 public class FhemDevicePowerManager implements IDevicePowerManager, ICloseListener {
 
-    /**
-     * Sperre für die gleichzeitige Ausführung von Telnet-Anfragen.
-     */
-    private final static Object TELNET_LOCK = new Object();
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
     /**
      * The pattern which indicates power events.
      */
     private final Pattern eventsPowerPattern = Pattern.compile("\\s([^\\s]+)\\spower:\\s(\\d+(\\.\\d+)?)");
     /**
-     * Die Konfiguration des Programms
+     * The pattern which indicates switch state events.
      */
-    private final WashguardConfiguration config;
+    private final Pattern eventsStatePattern = Pattern.compile("\\s([^\\s]+)\\s(on|off|set_on|set_off)$");
     /**
-     * Process a full connection check at most once per 20 seconds.
+     * Die Konfiguration des Programms
      */
-    private final Duration fullConnectionCheckDelay = Duration.ofSeconds(20);
+    private final WashguardConfiguration config;
     /**
      * The default time to wait for an answer from the fhem server in
      * milliseconds.
      */
     private final int defaultTimeout = 5000;
     /**
-     * The delay between two status checks after the change of the device power
-     * state.
+     * The time to wait for the confirmation of a new power state before
+     * notifying the caller about an unsuccessful action.
      */
-    private final int checkStatusDelay = 100;
+    private final Duration confirmTimeout = Duration.ofSeconds(5);
     /**
-     * The amount of status checks to perform before notifying the caller about
-     * an unsuccessful action.
+     * The time to wait for a state event before querying the state of the
+     * device directly.
      */
-    private final int checkStatusRetryCount = 50;
+    private final Duration confirmQueryInterval = Duration.ofSeconds(1);
     /**
-     * Der Telnet-Client, über welchen mit dem FHEM-Server kommuniziert werden
-     * kann.
+     * Die freien Telnet-Sitzungen, über welche mit dem FHEM-Server kommuniziert
+     * werden kann.
      */
-    private TelnetClient telnetFhem;
+    private final BlockingQueue<FhemConnection> idleConnections;
     /**
-     * Der Telnet-Client, über welchen events vom FHEM-Server empfangen werden.
+     * Alle Telnet-Sitzungen für Befehle.
      */
-    private TelnetClient telnetFhemEvents;
+    private final List<FhemConnection> connections = new ArrayList<>();
     /**
-     * Thread, welcher auf Events vom FHEM-Server wartet.
+     * Sperren, welche Befehle an dasselbe Gerät nacheinander ausführen.
      */
-    private Thread eventsReceiverThread;
+    private final Map<String, Object> deviceLocks = new ConcurrentHashMap<>();
     /**
-     * Die Anzahl an Zeilen, welche beim Kommando "version" zu erwarten sind.
-     * Wird bei der Verbindungsprüfung verwendet.
+     * Die empfangenen Zustände der Geräte, deren Stromversorgung gerade
+     * geschaltet wird, nach dem Namen ihres Schalters.
      */
-    private int versionLinesToExpect = 0;
+    private final Map<String, BlockingQueue<DevicePowerState>> stateEvents = new ConcurrentHashMap<>();
     /**
-     * The date of the last full connection check.
+     * Die aus den Ereignissen bekannten Zustände der Geräte nach dem Namen ihres Schalters.
      */
-    private LocalDateTime lastFullConnectionCheck;
+    private final DevicePowerStateCache stateCache;
     /**
-     * The minimum time to wait for an answer from the fhem server.
+     * Die Telnet-Sitzung, über welche events vom FHEM-Server empfangen werden.
+     */
+    private FhemConnection telnetFhemEvents;
+    /**
+     * Thread, welcher auf Events vom FHEM-Server wartet.
      */
-    private Duration minimumTimeout = Duration.ZERO;
+    private Thread eventsReceiverThread;
 
     private List<IDevicePowerMeasurementHandler> powerMeasurementHandlers = new LinkedList<>();
 
     public FhemDevicePowerManager(WashguardConfiguration config) throws InterruptedException, FhemException {
         this.config = config;
+        this.idleConnections = new ArrayBlockingQueue<>(config.getFhemConnections());
+        this.stateCache = new DevicePowerStateCache(config.getPowerStateMaxAge());
         if (!Main.dry) {
-            this.openFhemConnection();
+            for (int i = 0; i < config.getFhemConnections(); i++) {
+                final FhemConnection connection = new FhemConnection(this.config.getFhemConnectionString(),
+                        this.config.getFhemPort(), "command");
+                this.connections.add(connection);
+                connection.open();
+                this.idleConnections.add(connection);
+            }
             this.openFhemEventsConnection(true);
             ElwaManager.instance.listenToCloseEvent(this);
         } else {
@@ -116,53 +132,65 @@ public class FhemDevicePowerManager implements IDevicePowerManager, ICloseListen
     @Override
     public void setDevicePowerState(Device device, DevicePowerState newState)
             throws IOException, InterruptedException, FhemException {
-        synchronized (TELNET_LOCK) {
-            if (newState != DevicePowerState.ON && newState != DevicePowerState.OFF) {
-                throw new IllegalArgumentException("Der neue Zustand eines Geräts muss entweder ON oder OFF sein.");
-            }
-            if (Main.dry) {
-                return;
-            }
-            if (!this.checkConnection()) {
-                this.openFhemConnection();
-            }
+        if (newState != DevicePowerState.ON && newState != DevicePowerState.OFF) {
+            throw new IllegalArgumentException("Der neue Zustand eines Geräts muss entweder ON oder OFF sein.");
+        }
+        if (Main.dry) {
+            return;
+        }
 
-            // Setze Zustand
-            this.telnetFhem.emptyResponseBuffer();
-            String setCommand = "set " + device.getFhemSwitchName() + " " + newState.name().toLowerCase();
-            this.telnetFhem.sendCommand(setCommand);
+        final String switchName = device.getFhemSwitchName();
+        synchronized (this.deviceLocks.computeIfAbsent(switchName, k -> new Object())) {
+            // Ereignisse zu diesem Gerät ab jetzt sammeln, damit keine Bestätigung verpasst wird
+            final BlockingQueue<DevicePowerState> events = new LinkedBlockingQueue<>();
+            this.stateEvents.put(switchName, events);
+            this.stateCache.invalidate(switchName);
+            try {
+                // Setze Zustand
+                final String setCommand = "set " + switchName + " " + newState.name().toLowerCase();
+
+                // Check response from server. If it is empty, the command has been
+                // executed.
+                final String res = this.execute(c -> c.query(setCommand,
+                        c.getMinimumTimeout().multipliedBy(2).getNano(), TimeUnit.NANOSECONDS));
+                if (res != null && !res.isEmpty()) {
+                    throw new IOException("Konnte die Stromversorgung des Geräts " + device.getName() +
+                            " nicht setzen. Antwort des FHEM-Servers: '" + res + "'");
+                }
 
-            // Check response from server. If it is empty, the command has been
-            // executed.
-            final String res = this.telnetFhem
-                    .waitForResponse(this.minimumTimeout.multipliedBy(2).getNano(), TimeUnit.NANOSECONDS);
-            if (res != null && !res.isEmpty()) {
-                throw new IOException("Konnte die Stromversorgung des Geräts " + device.getName() +
-                        " nicht setzen. Antwort des FHEM-Servers: '" + res + "'");
-            } else {
                 // Ensure that the action has been successful
                 DevicePowerState actualState = DevicePowerState.UNKNOWN;
-                for (int i = 0; i < this.checkStatusRetryCount; i++) {
-                    // Repeat checking the state for a fixed count of repetitions
-                    // before throwing an exception
+                final long deadline = System.nanoTime() + this.confirmTimeout.toNanos();
+                while (actualState != newState) {
+                    final long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    final DevicePowerState event;
                     try {
-                        Thread.sleep(this.checkStatusDelay);
+                        event = events.poll(Math.min(remaining, this.confirmQueryInterval.toNanos()),
+                                TimeUnit.NANOSECONDS);
                     } catch (final InterruptedException e1) {
                         this.logger.warn("Interrupted while checking the power state.", e1);
                         throw new IOException("Unterbrechung während dem prüfen des neuen Zustands.", e1);
                     }
-
-                    // Check the state
-                    actualState = this.getState(device);
-                    if (actualState == newState) {
-                        break;
+                    if (event != null) {
+                        actualState = event;
+                        continue;
                     }
-                    if (actualState == DevicePowerState.ON || actualState == DevicePowerState.OFF) {
+
+                    // Kein Ereignis empfangen, prüfe den Zustand direkt
+                    actualState = this.queryState(device);
+                    if (actualState != newState &&
+                            (actualState == DevicePowerState.ON || actualState == DevicePowerState.OFF)) {
                         // Server hat den Befehl nicht empfangen. Wiederhole ihn.
-                        this.telnetFhem.sendCommand(setCommand);
+                        this.execute(c -> {
+                            c.sendCommand(setCommand);
+                            return null;
+                        });
                     }
-                    // If the state is not the intended one, continue checking.
                 }
+                this.stateCache.update(switchName, actualState);
                 if (actualState != newState) {
                     // If the state is not the intended one, throw an exception.
                     String stateString;
@@ -182,12 +210,15 @@ public class FhemDevicePowerManager implements IDevicePowerManager, ICloseListen
                             "Konnte die Stromversorgung des Geräts " + device.getName() + " nicht setzen." +
                                     stateString);
                 }
+            } finally {
+                this.stateEvents.remove(switchName, events);
             }
         }
     }
 
     /**
-     * Looks up the power state of a device.
+     * Looks up the power state of a device. The state is taken from the state
+     * events, as long as the last one is not too old.
      *
      * @param device Der Gerät, dessen Status geholt werden soll.
      * @return The power state of the device.
@@ -198,25 +229,38 @@ public class FhemDevicePowerManager implements IDevicePowerManager, ICloseListen
             return DevicePowerState.UNKNOWN;
         }
 
-        synchronized (TELNET_LOCK) {
-            if (!this.checkConnection()) {
-                this.openFhemConnection();
-            }
-            this.telnetFhem.emptyResponseBuffer();
-            this.telnetFhem.sendCommand("get " + device.getFhemSwitchName() + " param state");
-            final String stateString = this.telnetFhem.waitForResponse(this.defaultTimeout, TimeUnit.MILLISECONDS);
-            switch (stateString) {
-                case "on":
-                    return DevicePowerState.ON;
-                case "off":
-                    return DevicePowerState.OFF;
-                case "set_on":
-                    return DevicePowerState.SET_ON;
-                case "set_off":
-                    return DevicePowerState.SET_OFF;
-                default:
-                    return DevicePowerState.UNKNOWN;
-            }
+        final DevicePowerState cached = this.stateCache.get(device.getFhemSwitchName());
+        if (cached != null) {
+            return cached;
+        }
+        return this.queryState(device);
+    }
+
+    /**
+     * Fragt den Zustand eines Geräts beim FHEM-Server ab.
+     */
+    private DevicePowerState queryState(Device device) throws InterruptedException, FhemException, IOException {
+        final String stateString = this.getRawState(device);
+        if (stateString == null) {
+            return DevicePowerState.UNKNOWN;
+        }
+        final DevicePowerState state = parseState(stateString);
+        this.stateCache.update(device.getFhemSwitchName(), state);
+        return state;
+    }
+
+    private static DevicePowerState parseState(String stateString) {
+        switch (stateString) {
+            case "on":
+                return DevicePowerState.ON;
+            case "off":
+                return DevicePowerState.OFF;
+            case "set_on":
+                return DevicePowerState.SET_ON;
+            case "set_off":
+                return DevicePowerState.SET_OFF;
+            default:
+                return DevicePowerState.UNKNOWN;
         }
     }
 
@@ -226,71 +270,42 @@ public class FhemDevicePowerManager implements IDevicePowerManager, ICloseListen
     @Override
     public void onClose(boolean restart) {
         this.logger.debug("Shutting down DevicePowerManager");
-        if (this.telnetFhem != null && this.telnetFhem.isAlive()) {
-            this.telnetFhem.shutdown();
+        for (final FhemConnection connection : this.connections) {
+            connection.shutdown();
         }
         this.eventsReceiverThread.interrupt();
-        if (this.telnetFhemEvents != null && this.telnetFhemEvents.isAlive()) {
+        if (this.telnetFhemEvents != null) {
             this.telnetFhemEvents.shutdown();
         }
     }
 
     /**
-     * Startet eine neue Telnet-Sitzung mit dem Fhem-Server.
+     * Gibt die im Speicher gehaltenen Zustände der Geräte zurück.
      */
-    private void openFhemConnection() throws InterruptedException, FhemException {
-        if (this.telnetFhem != null && this.telnetFhem.isAlive()) {
-            this.telnetFhem.shutdown();
-        }
-        this.logger.info("Starting new connection to fhem server on " + this.config.getFhemConnectionString() + ":" +
-                this.config.getFhemPort());
-        this.telnetFhem = new TelnetClient(this.config.getFhemConnectionString(), this.config.getFhemPort());
-        try {
-            this.telnetFhem.openConnection(5000);
-        } catch (IOException e) {
-            throw new FhemException("Konnte nicht mit dem FHEM-Server verbinden.", e);
-        }
-        try {
-            Thread.sleep(1000);
-        } catch (final InterruptedException e) {
-            e.printStackTrace();
+    public DevicePowerStateCache getStateCache() {
+        return this.stateCache;
+    }
+
+    /**
+     * Eine Anfrage, die auf einer Telnet-Sitzung zum FHEM-Server ausgeführt wird.
+     */
+    private interface IFhemRequest<T> {
+        T execute(FhemConnection connection) throws IOException, InterruptedException;
+    }
+
+    /**
+     * Führt eine Anfrage auf einer freien Telnet-Sitzung aus. Die Sitzung ist nur für die Dauer der Anfrage belegt.
+     */
+    private <T> T execute(IFhemRequest<T> request) throws IOException, InterruptedException, FhemException {
+        final FhemConnection connection = this.idleConnections.poll(this.defaultTimeout, TimeUnit.MILLISECONDS);
+        if (connection == null) {
+            throw new IOException("Keine freie Verbindung zum FHEM-Server verfügbar.");
         }
-        // Check connection
         try {
-            this.telnetFhem.sendCommand("version");
-            final LocalDateTime startWait = LocalDateTime.now();
-            String response = this.telnetFhem.waitForResponse(5, TimeUnit.SECONDS);
-            String lastResponse = response;
-            int sumWaitDuration = 0;
-            int countResponses = 0;
-            while (lastResponse != null) {
-                final Duration duration = Duration.between(startWait, LocalDateTime.now());
-                sumWaitDuration += duration.getNano();
-                if (this.minimumTimeout.minus(duration).isNegative()) {
-                    // Update minimum wait duration, if the measured duration is
-                    // greather.
-                    this.minimumTimeout = duration;
-                }
-                countResponses++;
-
-                // Wait for next response
-                final int avgWaitDuration = sumWaitDuration / countResponses;
-                lastResponse = this.telnetFhem.waitForResponse(avgWaitDuration * 10, TimeUnit.NANOSECONDS);
-                if (lastResponse != null && !lastResponse.isEmpty()) {
-                    response += "\n" + lastResponse;
-                }
-            }
-            if (response == null || !response.contains("fhem.pl")) {
-                // No response received.
-                this.logger.error("The fhem server did not send a matching response. Expected 'fhem.pl' but got:\n" +
-                        response);
-                throw new FhemException("Der FHEM-Server hat unerwartet geantwortet.");
-            }
-            this.logger.trace("Expecting " + countResponses + " lines from the version command.");
-            this.versionLinesToExpect = countResponses;
-            this.lastFullConnectionCheck = LocalDateTime.now();
-        } catch (IOException e) {
-            throw new FhemException("Konnte nicht mit dem FHEM-Server kommunizieren.", e);
+            connection.ensureOpen();
+            return request.execute(connection);
+        } finally {
+            this.idleConnections.add(connection);
         }
     }
 
@@ -301,7 +316,7 @@ public class FhemDevicePowerManager implements IDevicePowerManager, ICloseListen
      * @throws FhemException
      */
     private void openFhemEventsConnection(boolean newReceiverThread) throws FhemException {
-        if (this.telnetFhemEvents != null && this.telnetFhemEvents.isAlive()) {
+        if (this.telnetFhemEvents != null) {
             this.telnetFhemEvents.shutdown();
         }
         if (newReceiverThread && this.eventsReceiverThread != null && this.eventsReceiverThread.isAlive()) {
@@ -309,17 +324,12 @@ public class FhemDevicePowerManager implements IDevicePowerManager, ICloseListen
         }
 
         try {
-            this.logger
-                    .info("Starting new events connection to fhem server on " + this.config.getFhemConnectionString() +
-                            ":" + this.config.getFhemPort());
-            this.telnetFhemEvents = new TelnetClient(this.config.getFhemConnectionString(), this.config.getFhemPort());
-            this.telnetFhemEvents.openConnection(5000);
-
-            if (!this.checkConnection(this.telnetFhemEvents, true)) {
-                throw new IOException("The opened events connection to the fhem server is not valid.");
-            }
-
+            this.telnetFhemEvents = new FhemConnection(this.config.getFhemConnectionString(),
+                    this.config.getFhemPort(), "events");
+            this.telnetFhemEvents.open();
             this.telnetFhemEvents.sendCommand("inform on");
+            // Während die Verbindung unterbrochen war, können Ereignisse verpasst worden sein
+            this.stateCache.clear();
         } catch (IOException e) {
             throw new FhemException("Konnte keine Events-Verbindung zum FHEM-Server aufbauen.", e);
         }
@@ -361,6 +371,7 @@ public class FhemDevicePowerManager implements IDevicePowerManager, ICloseListen
                     }
                 }
             });
+            this.eventsReceiverThread.setName("FhemEventsReceiver");
             this.eventsReceiverThread.start();
         }
     }
@@ -372,7 +383,6 @@ public class FhemDevicePowerManager implements IDevicePowerManager, ICloseListen
      */
     private void onEventReceived(String event) {
         final Matcher powerMatcher = this.eventsPowerPattern.matcher(event);
-
         if (powerMatcher.find()) {
             for (final Execution execution : ElwaManager.instance.getExecutionManager().getRunningExecutions()) {
                 if (powerMatcher.group(1).equals(execution.getDevice().getFhemPowerName())) {
@@ -384,70 +394,23 @@ public class FhemDevicePowerManager implements IDevicePowerManager, ICloseListen
                     return;
                 }
             }
-        } else {
-            this.logger.info("Could not parse power measurement event: " + event);
+            return;
         }
-    }
-
-    /**
-     * Checks the connection to the Fhem-Server. If it is not alive, an
-     * IOException is being thrown.
-     *
-     * @return True, if the connection is alive.
-     */
-    private boolean checkConnection(TelnetClient telnet, boolean forceFullCheck) {
-        Boolean res = null;
-        final LocalDateTime checkStart = LocalDateTime.now();
-        try {
-            if (telnet == null || !telnet.isAlive()) {
-                return false;
-            }
-            if (!forceFullCheck && this.lastFullConnectionCheck != null &&
-                    Duration.between(this.lastFullConnectionCheck, LocalDateTime.now())
-                            .minus(this.fullConnectionCheckDelay).isNegative()) {
-                this.logger.trace("Fast connection check returns true.");
-                return true;
-            }
-            this.logger.trace("Full connection check started.");
-            telnet.emptyResponseBuffer();
-            telnet.sendCommand("version");
-            this.logger.trace("Waiting for anwser");
-            String answer = telnet.waitForResponse(5, TimeUnit.SECONDS);
 
-            // Retrieve remaining response lines
-            for (int i = 1; i < this.versionLinesToExpect; i++) {
-                String newAnswer = telnet.waitForResponse(5, TimeUnit.SECONDS);
-                answer += "\n" + newAnswer;
-                if (newAnswer == null) {
-                    // A response is missing.
-                    this.logger
-                            .warn("The server did not send a matching response. Expected " + this.versionLinesToExpect +
-                                    " lines but got " + i + ".");
-                    res = false;
-                    break;
-                }
-            }
-            if (res == null) {
-                res = answer != null && answer.contains("fhem.pl");
+        final Matcher stateMatcher = this.eventsStatePattern.matcher(event);
+        if (stateMatcher.find()) {
+            this.logger.trace("State event received: " + event);
+            final DevicePowerState state = parseState(stateMatcher.group(2));
+            final BlockingQueue<DevicePowerState> events = this.stateEvents.get(stateMatcher.group(1));
+            if (events != null) {
+                events.add(state);
+            } else {
+                this.stateCache.update(stateMatcher.group(1), state);
             }
-        } catch (final IOException | InterruptedException e) {
-            this.logger.warn("Error while checking the connection.", e);
-            res = false;
+            return;
         }
-        this.logger.trace("Connection check returns " + res + " after " +
-                Duration.between(checkStart, LocalDateTime.now()).toMillis() + "ms");
-        this.lastFullConnectionCheck = LocalDateTime.now();
-        return res;
-    }
 
-    /**
-     * Checks the connection to the Fhem-Server. If it is not alive, an
-     * IOException is being thrown.
-     *
-     * @return True, if the connection is alive.
-     */
-    private boolean checkConnection() {
-        return Main.dry || this.checkConnection(this.telnetFhem, false);
+        this.logger.info("Could not parse event: " + event);
     }
 
     /**
@@ -461,12 +424,8 @@ public class FhemDevicePowerManager implements IDevicePowerManager, ICloseListen
             return "unknown";
         }
 
-        if (!this.checkConnection()) {
-            this.openFhemConnection();
-        }
-        this.telnetFhem.emptyResponseBuffer();
-        this.telnetFhem.sendCommand("get " + device.getFhemSwitchName() + " param state");
-        return this.telnetFhem.waitForResponse(this.defaultTimeout, TimeUnit.MILLISECONDS);
+        return this.execute(c -> c.query("get " + device.getFhemSwitchName() + " param state", this.defaultTimeout,
+                TimeUnit.MILLISECONDS));
     }
 
 }
@@ -0,0 +1,141 @@
+package org.kabieror.elwasys.raspiclient.devices;
+
+import org.kabieror.elwasys.common.DataManager;
+import org.kabieror.elwasys.raspiclient.application.ElwaManager;
+import org.kabieror.elwasys.raspiclient.application.ICloseListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Sammelt die Leistungsmesswerte aller Geräte und schreibt sie gebündelt in die Datenbank.
+ * <p>
+ * Die Messwerte liegen in zwei primitiven Puffern: Während der eine befüllt wird, schreibt ein eigener Thread niedriger
+ * Priorität den anderen mit einer einzigen Anweisung. Das Speichern eines Messwerts erzeugt keine Objekte und wartet
+ * nie auf die Datenbank. Läuft der Puffer bis zum nächsten Schreiben über, werden neue Messwerte verworfen.
+ *
+ * @author Oliver Kabierschke
+ */
+public class PowerTelemetrySink implements ICloseListener {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final DataManager dataManager;
+
+    /**
+     * Gibt an, ob das Schreiben zurückgestellt werden soll, etwa während Ausführungen abgerechnet werden
+     */
+    private final BooleanSupplier deferWhile;
+
+    private final ScheduledExecutorService writer;
+
+    private int[] deviceIds;
+    private long[] times;
+    private float[] watts;
+    private int count;
+
+    /**
+     * Der Puffer, den der schreibende Thread gerade schreibt
+     */
+    private int[] writtenDeviceIds;
+    private long[] writtenTimes;
+    private float[] writtenWatts;
+
+    private long dropped;
+
+    /**
+     * @param capacity      Die Anzahl Messwerte, die zwischen zwei Schreibvorgängen gesammelt werden können
+     * @param flushInterval Der Abstand zwischen zwei Schreibvorgängen
+     * @param deferWhile    Solange wahr, wird das Schreiben auf den nächsten Durchgang verschoben
+     */
+    public PowerTelemetrySink(DataManager dataManager, int capacity, Duration flushInterval,
+                              BooleanSupplier deferWhile) {
+        this.dataManager = dataManager;
+        this.deferWhile = deferWhile;
+        this.deviceIds = new int[capacity];
+        this.times = new long[capacity];
+        this.watts = new float[capacity];
+        this.writtenDeviceIds = new int[capacity];
+        this.writtenTimes = new long[capacity];
+        this.writtenWatts = new float[capacity];
+
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread t = new Thread(r, "PowerTelemetry");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        final long interval = flushInterval.getSeconds();
+        this.writer.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.SECONDS);
+
+        ElwaManager.instance.listenToCloseEvent(this);
+    }
+
+    /**
+     * Nimmt einen Messwert zum Schreiben auf.
+     *
+     * @param deviceId Die Id des Geräts
+     * @param time     Der Zeitpunkt der Messung in Millisekunden seit der Epoche
+     * @param power    Die gemessene Leistung in Watt
+     */
+    public synchronized void add(int deviceId, long time, float power) {
+        if (this.count == this.deviceIds.length) {
+            this.dropped++;
+            return;
+        }
+        this.deviceIds[this.count] = deviceId;
+        this.times[this.count] = time;
+        this.watts[this.count] = power;
+        this.count++;
+    }
+
+    /**
+     * Schreibt die gesammelten Messwerte. Wird nur vom schreibenden Thread aufgerufen.
+     */
+    private void flush() {
+        if (this.deferWhile.getAsBoolean()) {
+            this.logger.trace("Deferring power telemetry until the pending settlements are written.");
+            return;
+        }
+
+        final int written;
+        final long lost;
+        synchronized (this) {
+            final int[] deviceIds = this.writtenDeviceIds;
+            final long[] times = this.writtenTimes;
+            final float[] watts = this.writtenWatts;
+            this.writtenDeviceIds = this.deviceIds;
+            this.writtenTimes = this.times;
+            this.writtenWatts = this.watts;
+            this.deviceIds = deviceIds;
+            this.times = times;
+            this.watts = watts;
+            written = this.count;
+            lost = this.dropped;
+            this.count = 0;
+            this.dropped = 0;
+        }
+
+        if (lost > 0) {
+            this.logger.warn("The power telemetry buffer overflowed, " + lost + " sample(s) have been dropped.");
+        }
+        try {
+            this.dataManager.addPowerSamples(this.writtenDeviceIds, this.writtenTimes, this.writtenWatts, written);
+        } catch (final SQLException | RuntimeException e) {
+            this.logger.warn("Could not store " + written + " power sample(s).", e);
+        }
+    }
+
+    @Override
+    public void onClose(boolean restart) {
+        // Die restlichen Messwerte noch schreiben, geplante Durchgänge entfallen
+        this.writer.execute(this::flush);
+        this.writer.shutdown();
+    }
+}
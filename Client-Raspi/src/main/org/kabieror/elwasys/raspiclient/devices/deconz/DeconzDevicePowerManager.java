@@ -2,7 +2,9 @@ package org.kabieror.elwasys.raspiclient.devices.deconz;
 
 import org.kabieror.elwasys.common.Device;
 import org.kabieror.elwasys.raspiclient.application.ElwaManager;
+import org.kabieror.elwasys.raspiclient.configuration.WashguardConfiguration;
 import org.kabieror.elwasys.raspiclient.devices.DevicePowerState;
+import org.kabieror.elwasys.raspiclient.devices.DevicePowerStateCache;
 import org.kabieror.elwasys.raspiclient.devices.IDevicePowerManager;
 import org.kabieror.elwasys.raspiclient.devices.IDevicePowerMeasurementHandler;
 import org.kabieror.elwasys.raspiclient.devices.deconz.model.DeconzEvent;
@@ -19,12 +21,22 @@ public class DeconzDevicePowerManager implements IDevicePowerManager {
     private final DeconzEventListener eventListener;
     private final DeconzService deconzService;
     private final List<IDevicePowerMeasurementHandler> powerMeasurementListeners = new ArrayList<>();
+    /**
+     * Die aus den Ereignissen bekannten Zustände der Geräte nach ihrer deCONZ-ID.
+     */
+    private final DevicePowerStateCache stateCache;
 
-    public DeconzDevicePowerManager(DeconzApiAdapter apiAdapter, DeconzEventListener eventListener) throws IOException, InterruptedException {
+    public DeconzDevicePowerManager(WashguardConfiguration configuration, DeconzApiAdapter apiAdapter,
+                                    DeconzEventListener eventListener) throws IOException, InterruptedException {
         this.eventListener = eventListener;
+        this.stateCache = new DevicePowerStateCache(configuration.getPowerStateMaxAge());
         ElwaManager.instance.listenToCloseEvent(restart -> onClosing());
 
         eventListener.listenToPowerMeasurementReceived(this::onPowerMeasurementReceived);
+        eventListener.listenToDeviceStateEvent((uuid, on) ->
+                this.stateCache.update(uuid, on ? DevicePowerState.ON : DevicePowerState.OFF));
+        // Während die Verbindung unterbrochen ist, können Ereignisse verpasst werden
+        eventListener.listenToConnectionClosed(this.stateCache::clear);
 
         deconzService = new DeconzService(apiAdapter, eventListener);
     }
@@ -48,8 +60,10 @@ public class DeconzDevicePowerManager implements IDevicePowerManager {
     @Override
     public void setDevicePowerState(Device device, DevicePowerState newState)
             throws IOException, InterruptedException, FhemException {
-        deconzService.setDeviceState(device.getDeconzUuid(),
-                newState == DevicePowerState.SET_ON || newState == DevicePowerState.ON);
+        final boolean on = newState == DevicePowerState.SET_ON || newState == DevicePowerState.ON;
+        this.stateCache.invalidate(device.getDeconzUuid());
+        deconzService.setDeviceState(device.getDeconzUuid(), on);
+        this.stateCache.update(device.getDeconzUuid(), on ? DevicePowerState.ON : DevicePowerState.OFF);
     }
 
     @Override
@@ -58,8 +72,21 @@ public class DeconzDevicePowerManager implements IDevicePowerManager {
             logger.warn("No deCONZ device registered for device %s".formatted(device.getId()));
             return DevicePowerState.UNKNOWN;
         }
+        final DevicePowerState cached = this.stateCache.get(device.getDeconzUuid());
+        if (cached != null) {
+            return cached;
+        }
         var isOn = deconzService.getDeviceState(device.getDeconzUuid()).on();
-        return isOn ? DevicePowerState.ON : DevicePowerState.OFF;
+        final DevicePowerState state = isOn ? DevicePowerState.ON : DevicePowerState.OFF;
+        this.stateCache.update(device.getDeconzUuid(), state);
+        return state;
+    }
+
+    /**
+     * Gibt die im Speicher gehaltenen Zustände der Geräte zurück.
+     */
+    public DevicePowerStateCache getStateCache() {
+        return this.stateCache;
     }
 
     @Override
@@ -32,6 +32,7 @@ public class DeconzEventListener extends TextWebSocketHandler {
     private final List<IDeconzPowerMeasurementEventListener> powerMeasurementEventListeners = new ArrayList<>();
     private final List<IDeconzDeviceStateEventListener> deviceStateEventListeners = new ArrayList<>();
     private final List<IDeconzDeviceRegisteredListener> deviceRegisteredListeners = new ArrayList<>();
+    private final List<IDeconzConnectionClosedListener> connectionClosedListeners = new ArrayList<>();
     private Integer reconnectDelaySeconds = INITIAL_RECONNECT_DELAY_SECONDS;
     private final AtomicBoolean isReconnectRunning = new AtomicBoolean(false);
     private final ScheduledExecutorService reconnectScheduler = Executors.newSingleThreadScheduledExecutor();
@@ -89,6 +90,7 @@ public class DeconzEventListener extends TextWebSocketHandler {
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
         this.logger.warn("Connection to deCONZ closed");
+        this.connectionClosedListeners.forEach(IDeconzConnectionClosedListener::onConnectionClosed);
         super.afterConnectionClosed(session, status);
     }
 
@@ -153,5 +155,9 @@ public class DeconzEventListener extends TextWebSocketHandler {
     public void listenToDeviceRegisteredEvent(IDeconzDeviceRegisteredListener listener) {
         deviceRegisteredListeners.add(listener);
     }
+
+    public void listenToConnectionClosed(IDeconzConnectionClosedListener listener) {
+        connectionClosedListeners.add(listener);
+    }
 }
 
@@ -0,0 +1,5 @@
+package org.kabieror.elwasys.raspiclient.devices.deconz;
+
+public interface IDeconzConnectionClosedListener {
+    void onConnectionClosed();
+}
@@ -0,0 +1,196 @@
+package org.kabieror.elwasys.raspiclient.executions;
+
+import org.kabieror.elwasys.common.AutoEndProfile;
+import org.kabieror.elwasys.common.DataManager;
+import org.kabieror.elwasys.common.Execution;
+import org.kabieror.elwasys.raspiclient.devices.DevicePowerHistory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Erkennt das Ende einer Ausführung anhand des gelernten Leistungsverlaufs ihres Programms auf ihrem Gerät.
+ * <p>
+ * Aus jeder vollständig gelaufenen Ausführung wird gelernt, wie lange das Programm Leistung aufnimmt und wie lange es
+ * dabei höchstens pausiert. Sobald genügend Ausführungen gelernt sind, wird eine Ausführung beendet, wenn die
+ * Leistung länger als die längste gelernte Pause unter dem Schwellwert des Geräts liegt, frühestens aber gegen Ende
+ * der üblichen Laufzeit. Die am Gerät eingestellte Wartezeit wird dabei nie überschritten. Ohne gelernten Verlauf
+ * gilt die feste Regel aus Schwellwert, Wartezeit und frühestem Ende des Programms.
+ *
+ * @author Oliver Kabierschke
+ */
+class AutoEndDetector {
+
+    /**
+     * Die Anzahl gelernter Ausführungen, ab der der gelernte Verlauf verwendet wird
+     */
+    private static final int MIN_RUNS = 3;
+
+    /**
+     * Der Anteil der üblichen Laufzeit, vor dessen Ablauf eine Ausführung nicht beendet wird
+     */
+    private static final double ACTIVE_FRACTION = 0.75;
+
+    /**
+     * Der Aufschlag auf die längste gelernte Pause
+     */
+    private static final double PAUSE_FACTOR = 1.25;
+    private static final Duration PAUSE_MARGIN = Duration.ofSeconds(15);
+
+    /**
+     * Die kürzeste Wartezeit, damit einzelne niedrige Messwerte eine Ausführung nicht beenden
+     */
+    private static final Duration MIN_WAIT = Duration.ofSeconds(10);
+
+    /**
+     * Das Gewicht einer neuen Ausführung für die übliche Laufzeit
+     */
+    private static final double ACTIVE_WEIGHT = 0.3;
+
+    /**
+     * Der Anteil, um den die längste Pause je Ausführung auf eine kürzere beobachtete Pause sinkt
+     */
+    private static final double PAUSE_DECAY = 0.1;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final DataManager dataManager;
+
+    private final boolean enabled;
+
+    /**
+     * Die geladenen Verläufe nach Gerät und Programm
+     */
+    private final Map<String, AutoEndProfile> profiles = new ConcurrentHashMap<>();
+
+    AutoEndDetector(DataManager dataManager, boolean enabled) {
+        this.dataManager = dataManager;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Lädt den Verlauf für eine startende Ausführung, damit während der Messungen nicht auf die Datenbank gewartet
+     * werden muss.
+     */
+    void prepare(Execution e) {
+        try {
+            final AutoEndProfile profile = this.dataManager.getAutoEndProfile(e.getDevice(), e.getProgram());
+            if (profile != null) {
+                this.profiles.put(key(e), profile);
+            }
+        } catch (final SQLException ex) {
+            this.logger.warn("[" + e.getDevice().getName() + "] Could not load the auto-end profile.", ex);
+        }
+    }
+
+    /**
+     * Gibt die Zeit ab jetzt zurück, nach der die Ausführung beendet werden darf, falls die Leistung bis dahin unter
+     * dem Schwellwert des Geräts bleibt.
+     */
+    Duration getAutoEndDelay(Execution e) {
+        final AutoEndProfile profile = this.enabled ? this.profiles.get(key(e)) : null;
+        if (profile == null || profile.getRuns() < MIN_RUNS) {
+            return e.getEarliestAutoEnd();
+        }
+
+        final Duration learnedGuard =
+                Duration.ofMillis((long) (profile.getActiveDuration().toMillis() * ACTIVE_FRACTION));
+        final Duration guard = max(e.getProgram().getEarliestAutoEnd(), learnedGuard);
+        Duration wait = Duration.ofMillis((long) (profile.getLongestPause().toMillis() * PAUSE_FACTOR))
+                .plus(PAUSE_MARGIN);
+        wait = min(max(wait, MIN_WAIT), e.getDevice().getAutoEndWaitTime());
+
+        final Duration earliest = guard.minus(e.getElapsedTime());
+        return earliest.isNegative() ? wait : earliest.plus(wait);
+    }
+
+    /**
+     * Lernt den Leistungsverlauf einer vollständig gelaufenen Ausführung.
+     *
+     * @param e       Die beendete Ausführung
+     * @param history Die Leistungsmesswerte des Geräts
+     */
+    void learn(Execution e, DevicePowerHistory history) throws SQLException {
+        if (e.getStartDate() == null || e.getEndDate() == null) {
+            return;
+        }
+        final long start = toMillis(e.getStartDate());
+        final long[] times = new long[history.getCapacity()];
+        final float[] watts = new float[history.getCapacity()];
+        final int count = history.copy(start, toMillis(e.getEndDate()), times, watts);
+
+        final float threshold = e.getDevice().getAutoEndPowerThreashold();
+        long firstHigh = -1;
+        long lastHigh = -1;
+        long lowSince = -1;
+        long longestPause = 0;
+        for (int i = 0; i < count; i++) {
+            if (watts[i] >= threshold) {
+                // Die Zeit vor der ersten Leistungsaufnahme und nach der letzten zählt nicht als Pause
+                if (lowSince >= 0 && firstHigh >= 0) {
+                    longestPause = Math.max(longestPause, times[i] - lowSince);
+                }
+                if (firstHigh < 0) {
+                    firstHigh = times[i];
+                }
+                lastHigh = times[i];
+                lowSince = -1;
+            } else if (lowSince < 0) {
+                lowSince = times[i];
+            }
+        }
+        if (lastHigh < 0) {
+            this.logger.debug("[" + e.getDevice().getName() + "] No power consumption recorded, nothing to learn.");
+            return;
+        }
+
+        final Duration active = Duration.ofMillis(lastHigh - start);
+        final Duration pause = Duration.ofMillis(longestPause);
+        final AutoEndProfile previous = this.profiles.get(key(e));
+        final AutoEndProfile profile;
+        if (previous == null) {
+            profile = new AutoEndProfile(e.getDevice().getId(), e.getProgram().getId(), 1, active, pause);
+        } else {
+            final long activeMillis = previous.getActiveDuration().toMillis() +
+                    (long) ((active.toMillis() - previous.getActiveDuration().toMillis()) * ACTIVE_WEIGHT);
+            final long pauseMillis = Math.max(pause.toMillis(), previous.getLongestPause().toMillis() -
+                    (long) ((previous.getLongestPause().toMillis() - pause.toMillis()) * PAUSE_DECAY));
+            profile = new AutoEndProfile(e.getDevice().getId(), e.getProgram().getId(), previous.getRuns() + 1,
+                    Duration.ofMillis(activeMillis), Duration.ofMillis(pauseMillis));
+        }
+        this.save(profile);
+        this.profiles.put(key(e), profile);
+        this.logger.debug("[" + e.getDevice().getName() + "] Learned auto-end profile of " + e.getProgram().getName() +
+                ": active " + profile.getActiveDuration().getSeconds() + "s, longest pause " +
+                profile.getLongestPause().getSeconds() + "s after " + profile.getRuns() + " run(s).");
+    }
+
+    /**
+     * Speichert einen gelernten Verlauf in der Datenbank.
+     */
+    void save(AutoEndProfile profile) throws SQLException {
+        this.dataManager.saveAutoEndProfile(profile);
+    }
+
+    private static String key(Execution e) {
+        return e.getDevice().getId() + ":" + e.getProgram().getId();
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static Duration max(Duration a, Duration b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+}
@@ -0,0 +1,23 @@
+package org.kabieror.elwasys.raspiclient.executions;
+
+import org.kabieror.elwasys.common.DeviceFaultType;
+
+/**
+ * Eine während einer Ausführung erkannte Störung des Geräts. Die Ausführung läuft dabei weiter, sofern sie nicht
+ * automatisch abgebrochen wird.
+ *
+ * @author Oliver Kabierschke
+ */
+public class ExecutionFaultException extends Exception {
+
+    private final DeviceFaultType type;
+
+    public ExecutionFaultException(DeviceFaultType type, String message) {
+        super(message);
+        this.type = type;
+    }
+
+    public DeviceFaultType getType() {
+        return this.type;
+    }
+}
@@ -8,27 +8,15 @@ import java.time.format.DateTimeFormatter;
 import java.time.format.FormatStyle;
 import java.util.concurrent.ScheduledFuture;
 
-import org.apache.commons.mail.EmailException;
-import org.json.JSONArray;
-import org.json.JSONObject;
 import org.kabieror.elwasys.common.Execution;
 import org.kabieror.elwasys.raspiclient.application.ElwaManager;
 import org.kabieror.elwasys.raspiclient.devices.DevicePowerState;
 import org.kabieror.elwasys.raspiclient.devices.IDevicePowerManager;
+import org.kabieror.elwasys.raspiclient.notifications.NotificationChannel;
+import org.kabieror.elwasys.raspiclient.notifications.NotificationDispatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.mashape.unirest.http.HttpResponse;
-import com.mashape.unirest.http.JsonNode;
-import com.mashape.unirest.http.Unirest;
-import com.mashape.unirest.http.exceptions.UnirestException;
-
-import net.pushover.client.MessagePriority;
-import net.pushover.client.PushoverException;
-import net.pushover.client.PushoverMessage;
-import net.pushover.client.PushoverRestClient;
-import net.pushover.client.Status;
-
 /**
  * Diese Klasse führt die bei der Beendigung einer Programmausführung notwendigen Operationen aus
  *
@@ -80,9 +68,33 @@ class ExecutionFinisher implements Runnable {
         }
     }
 
-    void abort() {
-        this.aborted = true;
-        this.run();
+    /**
+     * Bricht die Ausführung ab.
+     *
+     * @param waiveReason Der Grund, aus dem der Preis erlassen wird, oder null, wenn die Ausführung bezahlt wird
+     * @return Ob die Ausführung durch diesen Aufruf beendet und abgerechnet wurde. Falsch, wenn sie bereits beendet
+     * war oder nicht abgerechnet werden konnte.
+     */
+    boolean abort(String waiveReason) {
+        synchronized (this.lock) {
+            if (this.executed) {
+                return false;
+            }
+            final boolean waive = waiveReason != null && !this.e.isPriceWaived();
+            this.aborted = true;
+            if (waive) {
+                this.e.waivePrice(waiveReason);
+            }
+            this.run();
+            if (!this.executed) {
+                // Ein späteres reguläres Beenden soll weder als Abbruch gelten noch kostenlos abgerechnet werden
+                this.aborted = false;
+                if (waive) {
+                    this.e.revokePriceWaiver();
+                }
+            }
+            return this.executed;
+        }
     }
 
     /**
@@ -117,26 +129,18 @@ class ExecutionFinisher implements Runnable {
             throw e1;
         }
 
-        // Informiere Ausführung über dessen Ende
+        // Beende und bezahle die Ausführung in einer Transaktion
         try {
-            this.e.stop();
+            this.executionManager.settlementQueue.settle(this.e);
         } catch (final SQLException e1) {
-            this.logger.error("[" + this.e.getDevice().getName() + "] Could not stop the execution.", e1);
+            this.logger.error("[" + this.e.getDevice().getName() + "] Could not settle the execution of user " +
+                    this.e.getUser().getName() + ".", e1);
             throw e1;
         }
 
         // Informiere Gerät über Ende der Ausführung
         this.e.getDevice().onExecutionEnded();
 
-        // Veranlasse Benutzer zum Zahlen
-        try {
-            this.e.getUser().payExecution(this.e);
-        } catch (final SQLException e1) {
-            this.logger.error("[" + this.e.getDevice().getName() + "] User " + this.e.getUser().getName() +
-                    " could not pay the execution.", e1);
-            throw e1;
-        }
-
         // Ausführung aus der Liste entfernen
         if (this.executionManager.executionFinishers.containsKey(this.e)) {
             this.executionManager.executionFinishers.remove(this.e);
@@ -146,6 +150,16 @@ class ExecutionFinisher implements Runnable {
             this.executionManager.plannedStops.remove(this.e);
         }
 
+        // Lerne den Leistungsverlauf vollständig gelaufener Ausführungen
+        if (!this.aborted) {
+            try {
+                this.executionManager.autoEndDetector
+                        .learn(this.e, this.executionManager.getPowerHistory(this.e.getDevice()));
+            } catch (final SQLException | RuntimeException e1) {
+                this.logger.warn("[" + this.e.getDevice().getName() + "] Could not learn the power profile.", e1);
+            }
+        }
+
         // Informiere alle Listener über das Ende der Programmausfürung
         for (final IExecutionFinishedListener l : this.executionManager.finishListeners) {
             l.onExecutionFinished(this.e);
@@ -177,63 +191,26 @@ class ExecutionFinisher implements Runnable {
         notificationMessageLong = new String(notificationMessageLong.getBytes(), Charset.defaultCharset());
         notificationMessageShort = new String(notificationMessageShort.getBytes(), Charset.defaultCharset());
 
-        // Sende Benachrichtigungs-Email
+        // Benachrichtigungen im Hintergrund versenden, ohne auf die Zustellung zu warten
+        final NotificationDispatcher dispatcher = ElwaManager.instance.getNotificationDispatcher();
         if (this.e.getUser().getEmailNotification()) {
-            try {
-                ElwaManager.instance.getUtilities()
-                        .sendEmail(notificationTitle, notificationMessageLong, this.e.getUser());
-                this.logger.debug("Sent notification to " + this.e.getUser().getEmail());
-            } catch (final EmailException e1) {
-                this.logger.error("Could not send the notification mail.", e1);
-            }
+            dispatcher.send(NotificationChannel.EMAIL, this.e.getUser().getEmail(), notificationTitle,
+                    notificationMessageLong);
         } else {
             this.logger.debug("User is not to be notified.");
         }
 
-        // Sende Pushover-Benachrichtigung
         if (this.e.getUser().getPushoverUserKey() != null && !this.e.getUser().getPushoverUserKey().isEmpty()) {
-            try {
-                final PushoverRestClient client = new PushoverRestClient();
-                final Status result = client.pushMessage(PushoverMessage
-                        .builderWithApiToken(ElwaManager.instance.getConfigurationManager().getPushoverApiToken())
-                        .setUserId(this.e.getUser().getPushoverUserKey()).setMessage(notificationMessageShort)
-                        .setPriority(MessagePriority.HIGH).setTitle(notificationTitle)
-                        .setUrl("http://waschportal.hilaren.de").setTitleForURL("Waschportal").build());
-                this.logger.debug("Sent push notification. Status: " + result.getStatus());
-            } catch (final PushoverException e1) {
-                this.logger.error("Could not send push notification.", e1);
-            }
+            dispatcher.send(NotificationChannel.PUSHOVER, this.e.getUser().getPushoverUserKey(), notificationTitle,
+                    notificationMessageShort);
         }
 
-        // Sende elwaApp-Pushbenachrichtigung
         if (this.e.getUser().isPushEnabled()
                 && this.e.getUser().getPushIonicId() != null
                 && !this.e.getUser().getPushIonicId().isEmpty()) {
-            try {
-                HttpResponse<JsonNode> jsonResponse = Unirest.post("https://api.ionic.io/push/notifications")
-                        .header("PROFILE_TAG", "dev")
-                        .header("Authorization", "Bearer " + ElwaManager.instance.getConfigurationManager().getIonicApiToken())
-                        .header("Content-Type", "application/json")
-                        .body(new JSONObject()
-                                .put("user_ids", new JSONArray().put(this.e.getUser().getPushIonicId()))
-                                .put("profile", "dev")
-                                .put("notification", new JSONObject()
-                                        .put("title", notificationTitle)
-                                        .put("message", notificationMessageShort))
-                        )
-                        .asJson();
-                if (jsonResponse.getStatus() > 299) {
-                    this.logger.error("Could not send ionic notification. Status: " + jsonResponse.getStatus() + " "
-                            + jsonResponse.getStatusText() + "\n" + jsonResponse.getBody().toString());
-                } else {
-                    this.logger.debug("Sent ionic notification. "
-                            + jsonResponse.getStatus() + " " + jsonResponse.getStatusText());
-                }
-            } catch (UnirestException e) {
-                this.logger.error("Could not send ionic notification.", e);
-            }
+            dispatcher.send(NotificationChannel.IONIC, this.e.getUser().getPushIonicId(), notificationTitle,
+                    notificationMessageShort);
         }
-
     }
 
     void setScheduledFuture(ScheduledFuture<?> future) {
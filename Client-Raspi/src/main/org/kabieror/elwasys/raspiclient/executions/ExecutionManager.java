@@ -1,22 +1,26 @@
 package org.kabieror.elwasys.raspiclient.executions;
 
 import org.kabieror.elwasys.common.Device;
+import org.kabieror.elwasys.common.DeviceFaultType;
 import org.kabieror.elwasys.common.Execution;
+import org.kabieror.elwasys.common.ExecutionSettler;
 import org.kabieror.elwasys.common.NoDataFoundException;
 import org.kabieror.elwasys.raspiclient.application.ElwaManager;
 import org.kabieror.elwasys.raspiclient.application.ICloseListener;
+import org.kabieror.elwasys.raspiclient.devices.DevicePowerHistory;
 import org.kabieror.elwasys.raspiclient.devices.DevicePowerState;
 import org.kabieror.elwasys.raspiclient.devices.IDevicePowerManager;
+import org.kabieror.elwasys.raspiclient.devices.PowerTelemetrySink;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.security.InvalidParameterException;
 import java.sql.SQLException;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -47,13 +51,43 @@ public class ExecutionManager implements ICloseListener {
      * Alle geplanten Operationen, die zum Ende einer Programmausführung
      * ausgeführt werden
      */
-    final Map<Execution, ExecutionFinisher> executionFinishers = new HashMap<>();
+    final Map<Execution, ExecutionFinisher> executionFinishers = new ConcurrentHashMap<>();
 
     /**
      * Alle geplanten Beendigungen von Ausführungen aufgrund von geringer
      * Leistung.
      */
-    final Map<Execution, ScheduledFuture<?>> plannedStops = new HashMap<>();
+    final Map<Execution, ScheduledFuture<?>> plannedStops = new ConcurrentHashMap<>();
+
+    /**
+     * Rechnet beendete Ausführungen ab, gleichzeitig endende in einer gemeinsamen Transaktion
+     */
+    final SettlementQueue settlementQueue;
+
+    /**
+     * Die jüngsten Leistungsmesswerte je Gerät. Der Zwischenspeicher der Entitäten liefert je Gerät dieselbe Instanz,
+     * sodass das Gerät selbst als Schlüssel dient und die Id nicht je Messwert geboxt wird.
+     */
+    private final Map<Device, DevicePowerHistory> powerHistories = new ConcurrentHashMap<>();
+
+    private final int powerHistorySize;
+
+    /**
+     * Erkennt das Ende von Ausführungen anhand des gelernten Leistungsverlaufs
+     */
+    final AutoEndDetector autoEndDetector;
+
+    /**
+     * Schreibt die Leistungsmesswerte in die Datenbank, oder null, falls sie nicht gespeichert werden
+     */
+    private final PowerTelemetrySink telemetrySink;
+
+    /**
+     * Erkennt Störungen der Geräte anhand der Leistungsmesswerte, oder null, falls sie nicht erkannt werden
+     */
+    private final FaultDetector faultDetector;
+
+    private final boolean abortOnFault;
 
     private IDevicePowerManager devicePowerManager;
 
@@ -67,6 +101,26 @@ public class ExecutionManager implements ICloseListener {
         this.finishListeners = new Vector<>();
         this.errorListeners = new Vector<>();
         this.executorService = Executors.newScheduledThreadPool(4);
+        this.settlementQueue = new SettlementQueue(new ExecutionSettler(ElwaManager.instance.getDataRetriever()));
+        this.powerHistorySize = ElwaManager.instance.getConfigurationManager().getPowerHistorySize();
+        this.autoEndDetector = new AutoEndDetector(ElwaManager.instance.getDataRetriever(),
+                ElwaManager.instance.getConfigurationManager().isAdaptiveAutoEndEnabled());
+        if (ElwaManager.instance.getConfigurationManager().isPowerTelemetryEnabled()) {
+            this.telemetrySink = new PowerTelemetrySink(ElwaManager.instance.getDataRetriever(),
+                    ElwaManager.instance.getConfigurationManager().getPowerTelemetryBufferSize(),
+                    ElwaManager.instance.getConfigurationManager().getPowerTelemetryFlushInterval(),
+                    this.settlementQueue::isBusy);
+        } else {
+            this.telemetrySink = null;
+        }
+        if (ElwaManager.instance.getConfigurationManager().isFaultDetectionEnabled()) {
+            this.faultDetector =
+                    new FaultDetector(ElwaManager.instance.getConfigurationManager().getFaultNoPowerTimeout(),
+                            ElwaManager.instance.getConfigurationManager().getFaultOverrunGrace());
+        } else {
+            this.faultDetector = null;
+        }
+        this.abortOnFault = ElwaManager.instance.getConfigurationManager().isFaultAutoAbortEnabled();
 
         ElwaManager.instance.listenToCloseEvent(this);
         devicePowerManager.addPowerMeasurementListener(this::onPowerMeasurementAvailable);
@@ -106,6 +160,16 @@ public class ExecutionManager implements ICloseListener {
                 this.logger.warn("No devices found");
             }
         }, 20, 20, TimeUnit.SECONDS);
+
+        if (this.faultDetector != null) {
+            // Geräte auch zwischen zwei Messwerten prüfen
+            this.executorService.scheduleAtFixedRate(() -> {
+                final long now = System.currentTimeMillis();
+                for (final Execution e : this.getRunningExecutions()) {
+                    this.onFault(e, this.faultDetector.check(e, now), Double.NaN);
+                }
+            }, 30, 30, TimeUnit.SECONDS);
+        }
     }
 
     /**
@@ -151,7 +215,8 @@ public class ExecutionManager implements ICloseListener {
 
             // Plane automatischen Stop, falls keine elektrische Leistung vom Gerät
             // abgenommen wird.
-            this.onPowerMeasurementAvailable(e, 0);
+            this.autoEndDetector.prepare(e);
+            this.checkAutoEnd(e, 0);
         }
 
         // Benachrichtige Listener
@@ -164,13 +229,14 @@ public class ExecutionManager implements ICloseListener {
      * Bricht eine Programmausführung ab
      *
      * @param e Die abzubrechende Programmausführung
+     * @return Ob die Ausführung durch diesen Aufruf beendet und abgerechnet wurde
      */
-    public void abortExecution(Execution e) {
+    public boolean abortExecution(Execution e) {
         final ExecutionFinisher finisher = this.executionFinishers.get(e);
         if (finisher == null) {
             throw new InvalidParameterException("The execution to abort is not running");
         }
-        finisher.abort();
+        return finisher.abort(null);
     }
 
     private void autoEndExecution(Execution e) {
@@ -225,6 +291,21 @@ public class ExecutionManager implements ICloseListener {
         return null;
     }
 
+    /**
+     * Gibt die jüngsten Leistungsmesswerte eines Geräts zurück.
+     *
+     * @param device Das Gerät, dessen Messwerte gesucht sind.
+     * @return Die Messwerte des Geräts, leer, falls noch keine empfangen wurden.
+     */
+    public DevicePowerHistory getPowerHistory(Device device) {
+        // Erst nachschlagen, damit für bekannte Geräte kein Lambda erzeugt wird
+        final DevicePowerHistory history = this.powerHistories.get(device);
+        if (history != null) {
+            return history;
+        }
+        return this.powerHistories.computeIfAbsent(device, d -> new DevicePowerHistory(this.powerHistorySize));
+    }
+
     /**
      * Wird aufgerufen, sobald ein neuer Messwert für die aktuelle Leistung
      * eines Geräts verfügbar ist.
@@ -233,11 +314,80 @@ public class ExecutionManager implements ICloseListener {
      * @param power     Die aktuelle Leistung des Geräts in Watt.
      */
     public void onPowerMeasurementAvailable(Execution execution, double power) {
-        this.logger.debug("[" + execution.getDevice().getName() + "] Power: " + power + "W");
+        if (this.logger.isDebugEnabled()) {
+            this.logger.debug("[" + execution.getDevice().getName() + "] Power: " + power + "W");
+        }
+        final long now = System.currentTimeMillis();
+        execution.addPowerMeasurement(now, power);
+        this.getPowerHistory(execution.getDevice()).add(now, (float) power);
+        if (this.telemetrySink != null) {
+            this.telemetrySink.add(execution.getDevice().getId(), now, (float) power);
+        }
+        if (this.faultDetector != null) {
+            this.onFault(execution, this.faultDetector.onSample(execution, now, power), power);
+        }
+        this.checkAutoEnd(execution, power);
+    }
+
+    /**
+     * Meldet eine erkannte Störung im Hintergrund, damit die Auswertung der Messwerte nicht auf die Datenbank wartet.
+     */
+    private void onFault(Execution execution, DeviceFaultType type, double power) {
+        if (type != null) {
+            this.executorService.execute(() -> this.handleFault(execution, type, power));
+        }
+    }
+
+    /**
+     * Speichert eine Störung, benachrichtigt die Listener und bricht die Ausführung auf Wunsch ab. Nimmt das Gerät
+     * keine Leistung auf, wird der Preis dabei erlassen.
+     */
+    private void handleFault(Execution execution, DeviceFaultType type, double power) {
+        final String message;
+        if (type == DeviceFaultType.NO_POWER) {
+            message = "Das Gerät hat nach " + execution.getElapsedTime().toMinutes() +
+                    " Minuten noch keine Leistung aufgenommen.";
+        } else {
+            message = "Das Gerät nimmt " +
+                    execution.getElapsedTime().minus(execution.getProgram().getMaxDuration()).toMinutes() +
+                    " Minuten nach der Höchstdauer von " + execution.getProgram().getName() + " noch " +
+                    Math.round(power) + " W auf.";
+        }
+        this.logger.warn("[" + execution.getDevice().getName() + "] Fault " + type + " detected during execution " +
+                execution.getId() + ".");
+
+        try {
+            ElwaManager.instance.getDataRetriever().addDeviceFault(execution, type, message);
+        } catch (final SQLException e) {
+            this.logger.error("[" + execution.getDevice().getName() + "] Could not store the fault.", e);
+        }
+        final ExecutionFaultException fault = new ExecutionFaultException(type, message);
+        for (final IExecutionErrorListener l : this.errorListeners) {
+            l.onExecutionFailed(execution, fault);
+        }
+
+        final ExecutionFinisher finisher = this.executionFinishers.get(execution);
+        if (!this.abortOnFault || finisher == null) {
+            return;
+        }
+        this.logger.info("[" + execution.getDevice().getName() + "] Aborting execution " + execution.getId() +
+                " because of the fault.");
+        // Der erlassene Preis wird mit dem Abbruch in derselben Transaktion abgerechnet
+        if (!finisher.abort(type == DeviceFaultType.NO_POWER ? message : null)) {
+            this.logger.warn("[" + execution.getDevice().getName() + "] Execution " + execution.getId() +
+                    " has not been aborted because of the fault.");
+        }
+    }
+
+    /**
+     * Plant die automatische Beendigung einer Ausführung, solange die Leistung unter dem Schwellwert des Geräts
+     * liegt, und bricht sie ab, sobald sie wieder darüber liegt.
+     */
+    private void checkAutoEnd(Execution execution, double power) {
         if (execution.getProgram().isAutoEnd()) {
             if (power < execution.getDevice().getAutoEndPowerThreashold()) {
                 if (!this.plannedStops.containsKey(execution) || this.plannedStops.get(execution).isDone()) {
-                    final long delay = execution.getEarliestAutoEnd().getSeconds();
+                    final long delay = this.autoEndDetector.getAutoEndDelay(execution).getSeconds();
                     this.logger
                             .debug("[" + execution.getDevice().getName() + "] Planned auto-end of program in " + delay +
                                     "s");
@@ -328,6 +478,7 @@ public class ExecutionManager implements ICloseListener {
     public void onClose(boolean restart) {
         this.logger.debug("Shutting down execution manager");
         this.executorService.shutdownNow();
+        this.settlementQueue.close();
     }
 
 }
@@ -0,0 +1,189 @@
+package org.kabieror.elwasys.raspiclient.executions;
+
+import org.kabieror.elwasys.common.Device;
+import org.kabieror.elwasys.common.DeviceFaultType;
+import org.kabieror.elwasys.common.Execution;
+
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Erkennt Störungen von Geräten anhand der eingehenden Leistungsmesswerte. Je Gerät wird nur ein fester Zustand
+ * gehalten, sodass jeder Messwert in konstanter Zeit ausgewertet wird.
+ * <p>
+ * Erkannt wird ein Gerät, das nach dem Einschalten keine Leistung aufnimmt, und ein Gerät, das lange nach der
+ * Höchstdauer des Programms noch volle Leistung aufnimmt. Was als verspäteter Start und als volle Leistung gilt, wird
+ * je Gerät aus den bisherigen Ausführungen gelernt. Jede Störung wird je Ausführung höchstens einmal gemeldet.
+ * <p>
+ * Als stromlos gilt ein Gerät nur, solange es Messwerte sendet. Geräte ohne Leistungsmesser und Geräte, deren
+ * Messwerte ausbleiben, werden nicht gemeldet.
+ *
+ * @author Oliver Kabierschke
+ */
+class FaultDetector {
+
+    /**
+     * Das Vielfache der üblichen Zeit bis zur ersten Leistungsaufnahme, nach dem ein Gerät als stromlos gilt
+     */
+    private static final double START_DELAY_FACTOR = 3;
+
+    /**
+     * Das Gewicht einer neuen Ausführung für die übliche Zeit bis zur ersten Leistungsaufnahme
+     */
+    private static final double START_DELAY_WEIGHT = 0.3;
+
+    /**
+     * Das Gewicht eines neuen Messwerts für die übliche Leistung eines laufenden Geräts
+     */
+    private static final double ACTIVE_POWER_WEIGHT = 0.05;
+
+    /**
+     * Der Anteil der üblichen Leistung, ab dem ein Gerät volle Leistung aufnimmt
+     */
+    private static final double FULL_POWER_FRACTION = 0.5;
+
+    private final Duration noPowerTimeout;
+
+    private final Duration overrunGrace;
+
+    /**
+     * Der Zustand je Gerät. Der Zwischenspeicher der Entitäten liefert je Gerät dieselbe Instanz.
+     */
+    private final Map<Device, DeviceState> states = new ConcurrentHashMap<>();
+
+    /**
+     * @param noPowerTimeout Die Zeit nach dem Einschalten, nach der ein Gerät ohne Leistungsaufnahme mindestens als
+     *                       gestört gilt
+     * @param overrunGrace   Die Zeit nach der Höchstdauer des Programms, nach der volle Leistung als Störung gilt
+     */
+    FaultDetector(Duration noPowerTimeout, Duration overrunGrace) {
+        this.noPowerTimeout = noPowerTimeout;
+        this.overrunGrace = overrunGrace;
+    }
+
+    /**
+     * Wertet einen Messwert aus.
+     *
+     * @param time  Der Zeitpunkt der Messung in Millisekunden seit der Epoche
+     * @param power Die gemessene Leistung in Watt
+     * @return Die erkannte Störung, oder null
+     */
+    DeviceFaultType onSample(Execution e, long time, double power) {
+        final DeviceState state = this.getState(e);
+        if (state == null) {
+            return null;
+        }
+        synchronized (state) {
+            state.lastSample = time;
+            if (power >= e.getDevice().getAutoEndPowerThreashold()) {
+                if (state.firstPower < 0) {
+                    state.firstPower = time;
+                    state.startDelay = learn(state.startDelay, time - state.start, START_DELAY_WEIGHT);
+                }
+                // Nach der Höchstdauer gemessene Leistung soll die übliche Leistung nicht verfälschen
+                if (time <= state.end) {
+                    state.activePower = learn(state.activePower, power, ACTIVE_POWER_WEIGHT);
+                }
+            }
+            return this.evaluate(e, state, time, power);
+        }
+    }
+
+    /**
+     * Prüft eine Ausführung, ohne dass ein neuer Messwert vorliegt. So wird ein stromloses Gerät auch zwischen zwei
+     * Messwerten erkannt.
+     *
+     * @param time Der aktuelle Zeitpunkt in Millisekunden seit der Epoche
+     * @return Die erkannte Störung, oder null
+     */
+    DeviceFaultType check(Execution e, long time) {
+        final DeviceState state = this.getState(e);
+        if (state == null) {
+            return null;
+        }
+        synchronized (state) {
+            return this.evaluate(e, state, time, Double.NaN);
+        }
+    }
+
+    private DeviceFaultType evaluate(Execution e, DeviceState state, long time, double power) {
+        // Nur ein Messwert seit dem Einschalten belegt, dass das Gerät tatsächlich keine Leistung aufnimmt
+        final boolean measured =
+                state.lastSample >= state.start && time - state.lastSample <= this.noPowerTimeout.toMillis();
+        if (measured && state.firstPower < 0 && !state.noPowerRaised && time >= state.noPowerDeadline) {
+            state.noPowerRaised = true;
+            return DeviceFaultType.NO_POWER;
+        }
+        if (!state.overrunRaised && time >= state.end + this.overrunGrace.toMillis()) {
+            final double threshold = e.getDevice().getAutoEndPowerThreashold();
+            final double fullPower = Double.isNaN(state.activePower) ? threshold :
+                    Math.max(threshold, state.activePower * FULL_POWER_FRACTION);
+            if (power >= fullPower) {
+                state.overrunRaised = true;
+                return DeviceFaultType.OVERRUN;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gibt den Zustand des Geräts einer Ausführung zurück und setzt ihn zurück, sobald eine neue Ausführung
+     * beginnt. Die gelernten Werte des Geräts bleiben dabei erhalten.
+     *
+     * @return Der Zustand, oder null, falls die Ausführung nicht gestartet ist
+     */
+    private DeviceState getState(Execution e) {
+        if (e.getStartDate() == null) {
+            return null;
+        }
+        final DeviceState state = this.states.computeIfAbsent(e.getDevice(), d -> new DeviceState());
+        synchronized (state) {
+            if (state.executionId != e.getId()) {
+                state.executionId = e.getId();
+                state.start = e.getStartDate().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                state.end = state.start + e.getProgram().getMaxDuration().toMillis();
+                final long learnedTimeout =
+                        Double.isNaN(state.startDelay) ? 0 : (long) (state.startDelay * START_DELAY_FACTOR);
+                state.noPowerDeadline = state.start + Math.max(this.noPowerTimeout.toMillis(), learnedTimeout);
+                state.firstPower = -1;
+                state.lastSample = Long.MIN_VALUE;
+                state.noPowerRaised = false;
+                state.overrunRaised = false;
+            }
+        }
+        return state;
+    }
+
+    private static double learn(double mean, double value, double weight) {
+        return Double.isNaN(mean) ? value : mean + (value - mean) * weight;
+    }
+
+    private static class DeviceState {
+        private int executionId = -1;
+        private long start;
+        /**
+         * Das Ende der Höchstdauer des Programms
+         */
+        private long end;
+        private long noPowerDeadline;
+        private long firstPower;
+        /**
+         * Der Zeitpunkt des letzten Messwerts
+         */
+        private long lastSample;
+        private boolean noPowerRaised;
+        private boolean overrunRaised;
+
+        /**
+         * Die übliche Zeit vom Einschalten bis zur ersten Leistungsaufnahme in Millisekunden
+         */
+        private double startDelay = Double.NaN;
+
+        /**
+         * Die übliche Leistung des laufenden Geräts in Watt
+         */
+        private double activePower = Double.NaN;
+    }
+}
@@ -10,7 +10,8 @@ import org.kabieror.elwasys.common.Execution;
  */
 public interface IExecutionErrorListener {
     /**
-     * Wird aufgerufen, sobald eine Ausführung fehlgeschlagen ist.
+     * Wird aufgerufen, sobald eine Ausführung fehlgeschlagen ist. Wird während einer Ausführung eine Störung des
+     * Geräts erkannt, ist die Ausnahme eine {@link ExecutionFaultException}; die Ausführung läuft dann weiter.
      * 
      * @param execution
      *            Die beendete Ausführung
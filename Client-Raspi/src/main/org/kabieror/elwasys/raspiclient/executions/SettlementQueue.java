@@ -0,0 +1,139 @@
+package org.kabieror.elwasys.raspiclient.executions;
+
+import org.kabieror.elwasys.common.Execution;
+import org.kabieror.elwasys.common.ExecutionSettler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Bündelt die Abrechnung von Ausführungen, die gleichzeitig enden. Ein einzelner Thread rechnet alle bis dahin
+ * eingereihten Ausführungen in einer Transaktion ab; während eine Abrechnung läuft, sammeln sich die nächsten an.
+ * Eine einzelne Ausführung wird so ohne Verzögerung abgerechnet.
+ *
+ * @author Oliver Kabierschke
+ */
+class SettlementQueue {
+
+    /**
+     * Die höchste Anzahl Ausführungen, die in einer Transaktion abgerechnet werden
+     */
+    private static final int MAX_BATCH_SIZE = 32;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final ExecutionSettler settler;
+
+    private final BlockingQueue<PendingSettlement> queue = new LinkedBlockingQueue<>();
+
+    private final Thread worker;
+
+    private volatile boolean settling;
+
+    SettlementQueue(ExecutionSettler settler) {
+        this.settler = settler;
+        this.worker = new Thread(this::work, "ExecutionSettlement");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Rechnet eine Ausführung ab und wartet, bis die Abrechnung geschrieben ist.
+     *
+     * @param execution Die abzurechnende Ausführung
+     * @throws SQLException Wenn die Abrechnung nicht geschrieben werden konnte
+     */
+    void settle(Execution execution) throws SQLException, InterruptedException {
+        final PendingSettlement pending = new PendingSettlement(execution);
+        this.queue.put(pending);
+        try {
+            pending.result.get();
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Could not settle execution " + execution.getId() + ".", e.getCause());
+        }
+    }
+
+    /**
+     * Gibt zurück, ob gerade Ausführungen abgerechnet werden oder auf ihre Abrechnung warten.
+     */
+    boolean isBusy() {
+        return this.settling || !this.queue.isEmpty();
+    }
+
+    /**
+     * Beendet den Thread der Abrechnung. Noch wartende Abrechnungen schlagen fehl.
+     */
+    void close() {
+        this.worker.interrupt();
+    }
+
+    private void work() {
+        final List<PendingSettlement> batch = new ArrayList<>();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                batch.add(this.queue.take());
+                this.queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                this.settling = true;
+                try {
+                    this.settle(batch);
+                } finally {
+                    this.settling = false;
+                }
+                batch.clear();
+            }
+        } catch (final InterruptedException e) {
+            this.logger.debug("Settlement queue closed.");
+        }
+        batch.addAll(this.queue);
+        for (final PendingSettlement p : batch) {
+            p.result.completeExceptionally(new SQLException("The settlement queue has been closed."));
+        }
+    }
+
+    private void settle(List<PendingSettlement> batch) {
+        final List<Execution> executions = new ArrayList<>(batch.size());
+        for (final PendingSettlement p : batch) {
+            executions.add(p.execution);
+        }
+        try {
+            this.settler.settle(executions);
+            batch.forEach(p -> p.result.complete(null));
+            return;
+        } catch (final SQLException | RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.get(0).result.completeExceptionally(e);
+                return;
+            }
+            this.logger.warn("Could not settle " + batch.size() + " executions together. Settling them one by one.",
+                    e);
+        }
+        // Eine fehlerhafte Ausführung soll die Abrechnung der übrigen nicht verhindern
+        for (final PendingSettlement p : batch) {
+            try {
+                this.settler.settle(p.execution);
+                p.result.complete(null);
+            } catch (final SQLException | RuntimeException e) {
+                p.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static class PendingSettlement {
+        private final Execution execution;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        private PendingSettlement(Execution execution) {
+            this.execution = execution;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.kabieror.elwasys.raspiclient.notifications;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+
+/**
+ * Eine zu versendende Benachrichtigung aus dem Postausgang.
+ *
+ * @author Oliver Kabierschke
+ */
+class Notification {
+    /**
+     * Die ID eines Eintrags, der nicht im Postausgang gespeichert werden konnte.
+     */
+    static final int NOT_PERSISTED = -1;
+
+    private final int id;
+    private final NotificationChannel channel;
+    private final String recipient;
+    private final String title;
+    private final String message;
+    private final LocalDateTime created;
+    private int attempts;
+
+    Notification(int id, NotificationChannel channel, String recipient, String title, String message,
+                 LocalDateTime created, int attempts) {
+        this.id = id;
+        this.channel = channel;
+        this.recipient = recipient;
+        this.title = title;
+        this.message = message;
+        this.created = created;
+        this.attempts = attempts;
+    }
+
+    Notification(ResultSet res) throws SQLException {
+        this(res.getInt("id"), NotificationChannel.valueOf(res.getString("channel")), res.getString("recipient"),
+                res.getString("title"), res.getString("message"), res.getTimestamp("created").toLocalDateTime(),
+                res.getInt("attempts"));
+    }
+
+    int getId() {
+        return this.id;
+    }
+
+    boolean isPersisted() {
+        return this.id != NOT_PERSISTED;
+    }
+
+    NotificationChannel getChannel() {
+        return this.channel;
+    }
+
+    String getRecipient() {
+        return this.recipient;
+    }
+
+    String getTitle() {
+        return this.title;
+    }
+
+    String getMessage() {
+        return this.message;
+    }
+
+    LocalDateTime getCreated() {
+        return this.created;
+    }
+
+    int getAttempts() {
+        return this.attempts;
+    }
+
+    /**
+     * Zählt einen weiteren Zustellversuch.
+     *
+     * @return Die Anzahl der bisherigen Zustellversuche
+     */
+    int incrementAttempts() {
+        return ++this.attempts;
+    }
+
+    @Override
+    public String toString() {
+        return this.channel + " notification " + this.id;
+    }
+}
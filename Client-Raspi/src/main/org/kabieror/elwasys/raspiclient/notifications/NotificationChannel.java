@@ -0,0 +1,23 @@
+package org.kabieror.elwasys.raspiclient.notifications;
+
+/**
+ * Die Wege, auf denen ein Benutzer benachrichtigt werden kann.
+ *
+ * @author Oliver Kabierschke
+ */
+public enum NotificationChannel {
+    /**
+     * Email über den konfigurierten SMTP-Server. Der Empfänger ist die Email-Adresse.
+     */
+    EMAIL,
+
+    /**
+     * Push-Benachrichtigung über Pushover. Der Empfänger ist der Pushover-Benutzerschlüssel.
+     */
+    PUSHOVER,
+
+    /**
+     * Push-Benachrichtigung an die elwaApp. Der Empfänger ist die Ionic-ID des Benutzers.
+     */
+    IONIC
+}
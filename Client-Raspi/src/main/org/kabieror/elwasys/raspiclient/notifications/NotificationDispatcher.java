@@ -0,0 +1,315 @@
+package org.kabieror.elwasys.raspiclient.notifications;
+
+import com.mashape.unirest.http.HttpResponse;
+import com.mashape.unirest.http.JsonNode;
+import com.mashape.unirest.http.Unirest;
+import net.pushover.client.MessagePriority;
+import net.pushover.client.PushoverMessage;
+import net.pushover.client.PushoverRestClient;
+import net.pushover.client.Status;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.kabieror.elwasys.common.DataManager;
+import org.kabieror.elwasys.common.Location;
+import org.kabieror.elwasys.common.Utilities;
+import org.kabieror.elwasys.raspiclient.application.ElwaManager;
+import org.kabieror.elwasys.raspiclient.application.ICloseListener;
+import org.kabieror.elwasys.raspiclient.configuration.WashguardConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versendet Benachrichtigungen an Benutzer im Hintergrund.
+ * <p>
+ * Jede Benachrichtigung wird zuerst im Postausgang der Datenbank abgelegt und anschließend in eine begrenzte
+ * Warteschlange gestellt, die von mehreren Versendern abgearbeitet wird. Fehlgeschlagene Zustellungen werden mit
+ * wachsendem Abstand wiederholt. Benachrichtigungen, die wegen einer vollen Warteschlange oder eines Neustarts nicht
+ * versendet wurden, holt ein regelmäßiger Abgleich mit dem Postausgang nach.
+ *
+ * @author Oliver Kabierschke
+ */
+public class NotificationDispatcher implements ICloseListener {
+
+    /**
+     * Der Abstand vor dem ersten erneuten Zustellversuch. Er verdoppelt sich mit jedem weiteren Versuch.
+     */
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(30);
+    private static final Duration MAX_RETRY_DELAY = Duration.ofHours(1);
+
+    /**
+     * Die Zeit, für die zugestellte Benachrichtigungen im Postausgang verbleiben.
+     */
+    private static final Duration SENT_RETENTION = Duration.ofDays(7);
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final NotificationOutbox outbox;
+    private final WashguardConfiguration config;
+    private final Utilities utilities;
+    private final int maxAttempts;
+
+    /**
+     * Die Versender mit ihrer begrenzten Warteschlange
+     */
+    private final ThreadPoolExecutor workers;
+
+    /**
+     * Führt den Abgleich mit dem Postausgang und Wiederholungen nicht gespeicherter Benachrichtigungen aus
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Die IDs der Benachrichtigungen aus dem Postausgang, die derzeit wartend oder im Versand sind
+     */
+    private final Set<Integer> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong failedAttempts = new AtomicLong();
+    private final AtomicLong abandoned = new AtomicLong();
+    private final AtomicLong totalLatencyMillis = new AtomicLong();
+    private final AtomicLong maxLatencyMillis = new AtomicLong();
+
+    public NotificationDispatcher(DataManager dataManager, Location location, WashguardConfiguration config,
+                                  Utilities utilities) {
+        this.outbox = new NotificationOutbox(dataManager, location);
+        this.config = config;
+        this.utilities = utilities;
+        this.maxAttempts = config.getNotificationMaxAttempts();
+
+        final int workerCount = config.getNotificationWorkers();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(config.getNotificationQueueCapacity()), threadFactory("NotificationWorker"));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory("NotificationOutbox"));
+
+        final long pollInterval = config.getNotificationPollInterval().getSeconds();
+        this.scheduler.scheduleWithFixedDelay(this::pollOutbox, 0, pollInterval, TimeUnit.SECONDS);
+        this.scheduler.scheduleWithFixedDelay(this::purgeOutbox, 1, 24, TimeUnit.HOURS);
+
+        ElwaManager.instance.listenToCloseEvent(this);
+    }
+
+    private static ThreadFactory threadFactory(String name) {
+        final AtomicInteger count = new AtomicInteger();
+        return r -> {
+            final Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * Versendet eine Benachrichtigung. Die Methode wartet nicht auf die Zustellung.
+     *
+     * @param channel   Der Weg, auf dem die Benachrichtigung versendet werden soll
+     * @param recipient Der Empfänger, abhängig vom gewählten Weg
+     * @param title     Der Titel der Benachrichtigung
+     * @param message   Der Text der Benachrichtigung
+     */
+    public void send(NotificationChannel channel, String recipient, String title, String message) {
+        Notification notification;
+        try {
+            notification = this.outbox.add(channel, recipient, title, message);
+        } catch (final SQLException e) {
+            this.logger.error("Could not store the " + channel + " notification in the outbox. It will be lost " +
+                    "if the client restarts before it is delivered.", e);
+            notification = new Notification(Notification.NOT_PERSISTED, channel, recipient, title, message,
+                    LocalDateTime.now(), 0);
+        }
+        this.submit(notification);
+    }
+
+    /**
+     * Gibt die aktuellen Kennzahlen des Benachrichtigungsversands zurück.
+     */
+    public NotificationStatistics getStatistics() {
+        final long deliveredCount = this.delivered.get();
+        return new NotificationStatistics(this.workers.getQueue().size(),
+                this.workers.getQueue().size() + this.workers.getQueue().remainingCapacity(), this.inFlight.size(),
+                deliveredCount, this.failedAttempts.get(), this.abandoned.get(),
+                Duration.ofMillis(deliveredCount == 0 ? 0 : this.totalLatencyMillis.get() / deliveredCount),
+                Duration.ofMillis(this.maxLatencyMillis.get()));
+    }
+
+    private void submit(Notification notification) {
+        if (notification.isPersisted() && !this.inFlight.add(notification.getId())) {
+            // Wird bereits versendet
+            return;
+        }
+        try {
+            this.workers.execute(() -> this.deliver(notification));
+        } catch (final RejectedExecutionException e) {
+            if (notification.isPersisted()) {
+                this.inFlight.remove(notification.getId());
+                this.logger.warn("Notification queue is full. " + notification + " stays in the outbox.");
+            } else {
+                this.logger.error("Notification queue is full. Dropping " + notification + ".");
+            }
+        }
+    }
+
+    private void deliver(Notification notification) {
+        try {
+            try {
+                this.transmit(notification);
+            } catch (final Exception e) {
+                this.onDeliveryFailed(notification, e);
+                return;
+            }
+
+            final long latency = Duration.between(notification.getCreated(), LocalDateTime.now()).toMillis();
+            this.delivered.incrementAndGet();
+            this.totalLatencyMillis.addAndGet(latency);
+            this.maxLatencyMillis.accumulateAndGet(latency, Math::max);
+            this.logger.debug("Delivered " + notification + " after " + latency + "ms");
+
+            if (notification.isPersisted()) {
+                try {
+                    this.outbox.markSent(notification);
+                } catch (final SQLException e) {
+                    this.logger.error("Could not mark " + notification + " as sent. It may be delivered again.", e);
+                }
+            }
+        } finally {
+            this.inFlight.remove(notification.getId());
+        }
+    }
+
+    private void onDeliveryFailed(Notification notification, Exception cause) {
+        this.failedAttempts.incrementAndGet();
+        final int attempts = notification.incrementAttempts();
+        final Duration delay = getRetryDelay(attempts);
+
+        if (attempts >= this.maxAttempts) {
+            this.abandoned.incrementAndGet();
+            this.logger.error("Could not deliver " + notification + ". Giving up after " + attempts + " attempts.",
+                    cause);
+        } else {
+            this.logger.warn("Could not deliver " + notification + " (attempt " + attempts + "). Retrying in " +
+                    delay.getSeconds() + "s.", cause);
+        }
+
+        if (notification.isPersisted()) {
+            // Der Abgleich mit dem Postausgang holt die Benachrichtigung wieder ab, sobald sie fällig ist
+            try {
+                this.outbox.markFailed(notification, LocalDateTime.now().plus(delay), cause.toString());
+            } catch (final SQLException e) {
+                this.logger.error("Could not record the failed delivery of " + notification + ".", e);
+            }
+        } else if (attempts < this.maxAttempts) {
+            try {
+                this.scheduler.schedule(() -> this.submit(notification), delay.getSeconds(), TimeUnit.SECONDS);
+            } catch (final RejectedExecutionException e) {
+                this.logger.error("Dropping " + notification + " as the client is shutting down.");
+            }
+        }
+    }
+
+    /**
+     * Berechnet den Abstand bis zum nächsten Zustellversuch.
+     *
+     * @param attempts Die Anzahl der bisherigen Zustellversuche
+     */
+    static Duration getRetryDelay(int attempts) {
+        final Duration delay = RETRY_DELAY.multipliedBy(1L << Math.min(Math.max(attempts - 1, 0), 16));
+        return delay.compareTo(MAX_RETRY_DELAY) > 0 ? MAX_RETRY_DELAY : delay;
+    }
+
+    private void transmit(Notification notification) throws Exception {
+        switch (notification.getChannel()) {
+            case EMAIL:
+                this.utilities.sendEmail(notification.getTitle(), notification.getMessage(),
+                        notification.getRecipient());
+                break;
+            case PUSHOVER:
+                final PushoverRestClient client = new PushoverRestClient();
+                final Status result = client.pushMessage(PushoverMessage
+                        .builderWithApiToken(this.config.getPushoverApiToken())
+                        .setUserId(notification.getRecipient()).setMessage(notification.getMessage())
+                        .setPriority(MessagePriority.HIGH).setTitle(notification.getTitle())
+                        .setUrl("http://waschportal.hilaren.de").setTitleForURL("Waschportal").build());
+                if (result.getStatus() != 1) {
+                    throw new IOException("Pushover rejected the message. Status: " + result.getStatus());
+                }
+                break;
+            case IONIC:
+                final HttpResponse<JsonNode> jsonResponse = Unirest.post("https://api.ionic.io/push/notifications")
+                        .header("PROFILE_TAG", "dev")
+                        .header("Authorization", "Bearer " + this.config.getIonicApiToken())
+                        .header("Content-Type", "application/json")
+                        .body(new JSONObject()
+                                .put("user_ids", new JSONArray().put(notification.getRecipient()))
+                                .put("profile", "dev")
+                                .put("notification", new JSONObject()
+                                        .put("title", notification.getTitle())
+                                        .put("message", notification.getMessage()))
+                        )
+                        .asJson();
+                if (jsonResponse.getStatus() > 299) {
+                    throw new IOException("Could not send ionic notification. Status: " + jsonResponse.getStatus() +
+                            " " + jsonResponse.getStatusText() + "\n" + jsonResponse.getBody().toString());
+                }
+                break;
+        }
+    }
+
+    /**
+     * Stellt fällige Benachrichtigungen aus dem Postausgang in die Warteschlange.
+     */
+    private void pollOutbox() {
+        try {
+            final int free = this.workers.getQueue().remainingCapacity();
+            if (free > 0) {
+                for (final Notification notification : this.outbox.getPending(this.maxAttempts, free)) {
+                    this.submit(notification);
+                }
+            }
+        } catch (final SQLException | RuntimeException e) {
+            this.logger.warn("Could not read the notification outbox.", e);
+        }
+        this.logger.trace("Notifications: " + this.getStatistics());
+    }
+
+    /**
+     * Entfernt alte, bereits zugestellte Benachrichtigungen aus dem Postausgang.
+     */
+    private void purgeOutbox() {
+        try {
+            final int count = this.outbox.deleteSent(LocalDateTime.now().minus(SENT_RETENTION));
+            this.logger.debug("Removed " + count + " delivered notifications from the outbox.");
+        } catch (final SQLException | RuntimeException e) {
+            this.logger.warn("Could not clean up the notification outbox.", e);
+        }
+    }
+
+    @Override
+    public void onClose(boolean restart) {
+        this.logger.debug("Shutting down notification dispatcher");
+        this.scheduler.shutdownNow();
+        this.workers.shutdown();
+        try {
+            if (!this.workers.awaitTermination(2, TimeUnit.SECONDS)) {
+                // Nicht zugestellte Benachrichtigungen bleiben im Postausgang
+                this.workers.shutdownNow();
+            }
+        } catch (final InterruptedException e) {
+            this.workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
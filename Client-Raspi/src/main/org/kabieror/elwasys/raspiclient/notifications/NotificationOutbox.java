@@ -0,0 +1,119 @@
+package org.kabieror.elwasys.raspiclient.notifications;
+
+import org.kabieror.elwasys.common.DataManager;
+import org.kabieror.elwasys.common.Location;
+import org.kabieror.elwasys.common.Query;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Der Postausgang eines Standorts in der Datenbank. Benachrichtigungen bleiben hier gespeichert, bis sie zugestellt
+ * wurden, sodass sie auch einen Neustart des Clients überstehen.
+ *
+ * @author Oliver Kabierschke
+ */
+class NotificationOutbox {
+    private final DataManager dataManager;
+    private final Location location;
+
+    NotificationOutbox(DataManager dataManager, Location location) {
+        this.dataManager = dataManager;
+        this.location = location;
+    }
+
+    /**
+     * Legt eine neue Benachrichtigung im Postausgang ab.
+     */
+    Notification add(NotificationChannel channel, String recipient, String title, String message)
+            throws SQLException {
+        final LocalDateTime created = LocalDateTime.now();
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.NOTIFICATION_INSERT.prepare(connection)) {
+            s.setInt(1, this.location.getId());
+            s.setString(2, channel.name());
+            s.setString(3, recipient);
+            s.setString(4, title);
+            s.setString(5, message);
+            s.setTimestamp(6, Timestamp.valueOf(created));
+            s.executeUpdate();
+            final ResultSet res = s.getGeneratedKeys();
+            if (res.next()) {
+                return new Notification(res.getInt(1), channel, recipient, title, message, created, 0);
+            } else {
+                throw new SQLException("No ID received by database.");
+            }
+        }
+    }
+
+    /**
+     * Holt die Benachrichtigungen, deren nächster Zustellversuch fällig ist.
+     *
+     * @param maxAttempts Die Anzahl an Versuchen, nach der eine Benachrichtigung aufgegeben wird
+     * @param limit       Die höchste Anzahl an Benachrichtigungen
+     */
+    List<Notification> getPending(int maxAttempts, int limit) throws SQLException {
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.NOTIFICATIONS_PENDING.prepare(connection)) {
+            s.setInt(1, this.location.getId());
+            s.setInt(2, maxAttempts);
+            s.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
+            s.setInt(4, limit);
+            final ResultSet res = s.executeQuery();
+            final List<Notification> result = new ArrayList<>();
+            while (res.next()) {
+                result.add(new Notification(res));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Markiert eine Benachrichtigung als zugestellt.
+     */
+    void markSent(Notification notification) throws SQLException {
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.NOTIFICATION_SENT.prepare(connection)) {
+            s.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
+            s.setInt(2, notification.getId());
+            s.executeUpdate();
+        }
+    }
+
+    /**
+     * Hält einen fehlgeschlagenen Zustellversuch fest.
+     *
+     * @param nextAttempt Der Zeitpunkt, ab dem die Zustellung erneut versucht werden soll
+     * @param error       Die Ursache des Fehlschlags
+     */
+    void markFailed(Notification notification, LocalDateTime nextAttempt, String error) throws SQLException {
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.NOTIFICATION_FAILED.prepare(connection)) {
+            s.setInt(1, notification.getAttempts());
+            s.setTimestamp(2, Timestamp.valueOf(nextAttempt));
+            s.setString(3, error);
+            s.setInt(4, notification.getId());
+            s.executeUpdate();
+        }
+    }
+
+    /**
+     * Entfernt zugestellte Benachrichtigungen, die vor dem gegebenen Zeitpunkt versendet wurden.
+     *
+     * @return Die Anzahl der entfernten Benachrichtigungen
+     */
+    int deleteSent(LocalDateTime before) throws SQLException {
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.NOTIFICATIONS_DELETE_SENT.prepare(connection)) {
+            s.setInt(1, this.location.getId());
+            s.setTimestamp(2, Timestamp.valueOf(before));
+            return s.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.kabieror.elwasys.raspiclient.notifications;
+
+import java.time.Duration;
+
+/**
+ * Eine Momentaufnahme der Kennzahlen des Benachrichtigungsversands.
+ *
+ * @author Oliver Kabierschke
+ */
+public class NotificationStatistics {
+
+    private final int queueDepth;
+    private final int queueCapacity;
+    private final int inFlight;
+    private final long delivered;
+    private final long failedAttempts;
+    private final long abandoned;
+    private final Duration averageLatency;
+    private final Duration maxLatency;
+
+    NotificationStatistics(int queueDepth, int queueCapacity, int inFlight, long delivered, long failedAttempts,
+                           long abandoned, Duration averageLatency, Duration maxLatency) {
+        this.queueDepth = queueDepth;
+        this.queueCapacity = queueCapacity;
+        this.inFlight = inFlight;
+        this.delivered = delivered;
+        this.failedAttempts = failedAttempts;
+        this.abandoned = abandoned;
+        this.averageLatency = averageLatency;
+        this.maxLatency = maxLatency;
+    }
+
+    /**
+     * Die Anzahl der Benachrichtigungen, die in der Warteschlange auf einen freien Versender warten.
+     */
+    public int getQueueDepth() {
+        return this.queueDepth;
+    }
+
+    /**
+     * Die Anzahl der Benachrichtigungen, welche die Warteschlange höchstens aufnimmt.
+     */
+    public int getQueueCapacity() {
+        return this.queueCapacity;
+    }
+
+    /**
+     * Die Anzahl der Benachrichtigungen aus dem Postausgang, die derzeit wartend oder im Versand sind.
+     */
+    public int getInFlight() {
+        return this.inFlight;
+    }
+
+    /**
+     * Die Anzahl der seit dem Start zugestellten Benachrichtigungen.
+     */
+    public long getDelivered() {
+        return this.delivered;
+    }
+
+    /**
+     * Die Anzahl der seit dem Start fehlgeschlagenen Zustellversuche.
+     */
+    public long getFailedAttempts() {
+        return this.failedAttempts;
+    }
+
+    /**
+     * Die Anzahl der Benachrichtigungen, die nach zu vielen Fehlversuchen aufgegeben wurden.
+     */
+    public long getAbandoned() {
+        return this.abandoned;
+    }
+
+    /**
+     * Die durchschnittliche Zeit von der Erstellung bis zur Zustellung einer Benachrichtigung.
+     */
+    public Duration getAverageLatency() {
+        return this.averageLatency;
+    }
+
+    /**
+     * Die längste Zeit von der Erstellung bis zur Zustellung einer Benachrichtigung.
+     */
+    public Duration getMaxLatency() {
+        return this.maxLatency;
+    }
+
+    @Override
+    public String toString() {
+        return "queue=" + this.queueDepth + "/" + this.queueCapacity + ", inFlight=" + this.inFlight +
+                ", delivered=" + this.delivered + ", failedAttempts=" + this.failedAttempts + ", abandoned=" +
+                this.abandoned + ", avgLatency=" + this.averageLatency.toMillis() + "ms, maxLatency=" +
+                this.maxLatency.toMillis() + "ms";
+    }
+}
@@ -344,7 +344,7 @@ public class MainFormController extends AbstractMainFormController implements IM
             final Runnable searchUserRunnable = () -> {
                 final User newUser;
                 try {
-                    newUser = ElwaManager.instance.getDataRetriever().getUserByCardId(e.getCardId());
+                    newUser = ElwaManager.instance.getCardUserIndex().getUser(e.getCardId());
                 } catch (final SQLException e1) {
                     this.logger.error("SQLException while looking up user.", e1);
                     Platform.runLater(() -> {
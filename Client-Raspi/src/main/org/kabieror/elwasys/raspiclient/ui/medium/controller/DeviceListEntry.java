@@ -16,6 +16,7 @@ import org.kabieror.elwasys.common.*;
 import org.kabieror.elwasys.raspiclient.application.ActionContainer;
 import org.kabieror.elwasys.raspiclient.application.ElwaManager;
 import org.kabieror.elwasys.raspiclient.devices.IDeviceRegistrationService;
+import org.kabieror.elwasys.raspiclient.executions.ExecutionFaultException;
 import org.kabieror.elwasys.raspiclient.executions.IExecutionErrorListener;
 import org.kabieror.elwasys.raspiclient.executions.IExecutionFinishedListener;
 import org.kabieror.elwasys.raspiclient.executions.IExecutionStartedListener;
@@ -318,6 +319,10 @@ public class DeviceListEntry implements Initializable, IViewController, IExecuti
 
     @Override
     public void onExecutionFailed(Execution execution, Exception exception) {
+        if (exception instanceof ExecutionFaultException) {
+            // Störungen werden im Portal angezeigt, die Ausführung muss nicht erneut beendet werden
+            return;
+        }
         if (execution == this.runningExecution) {
             Platform.runLater(() -> {
                 this.displayError(exception.getLocalizedMessage(), exception, () -> {
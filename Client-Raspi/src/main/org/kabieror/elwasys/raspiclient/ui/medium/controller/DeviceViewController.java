@@ -23,12 +23,20 @@ import java.io.IOException;
 import java.net.URL;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Controller für die Geräteauswahl-Seite.
  */
-public class DeviceViewController implements Initializable, IViewController, BacklightManager.LightOnEventListener {
+public class DeviceViewController
+        implements Initializable, IViewController, BacklightManager.LightOnEventListener, IEntityChangeListener {
+
+    /**
+     * Die Zeit, in der weitere Änderungen in der Datenbank gesammelt werden, bevor die Geräte aktualisiert werden.
+     */
+    private static final long CHANGE_SYNC_DELAY_MILLIS = 200;
 
     private Logger logger = LoggerFactory.getLogger(this.getClass());
 
@@ -45,6 +53,8 @@ public class DeviceViewController implements Initializable, IViewController, Bac
 
     private InactivityFuture refreshFuture;
 
+    private final AtomicBoolean changeSyncPending = new AtomicBoolean(false);
+
     /**
      * Initialisiert die Komponenten nachdem die Oberfläche dieser Komponente geladen ist
      */
@@ -79,6 +89,7 @@ public class DeviceViewController implements Initializable, IViewController, Bac
         }
 
         this.mainFormController.getBacklightManager().listenToLightOnEvent(this);
+        ElwaManager.instance.getDataRetriever().listenToEntityChanges(this);
 
         // Bei Inaktivität alle 5 Minuten aktuellen Zustand aktualisieren
         this.refreshFuture = this.mainFormController.getInactivityScheduler()
@@ -94,6 +105,26 @@ public class DeviceViewController implements Initializable, IViewController, Bac
         this.syncDevices();
     }
 
+    /**
+     * Aktualisiere Geräte, sobald sie im elwaPortal geändert wurden
+     */
+    @Override
+    public void onEntityChanged(EntityType type, int id) {
+        if (type != EntityType.DEVICE && type != EntityType.LOCATION && type != EntityType.PROGRAM) {
+            return;
+        }
+        if (this.changeSyncPending.compareAndSet(false, true)) {
+            try {
+                this.mainFormController.getUpdateService().schedule(() -> {
+                    this.changeSyncPending.set(false);
+                    this.syncDevices();
+                }, CHANGE_SYNC_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (final RejectedExecutionException e) {
+                this.changeSyncPending.set(false);
+            }
+        }
+    }
+
     /**
      * Synchronisiert die dargestellten Geräte mit der Datenbank
      */
@@ -187,6 +218,7 @@ public class DeviceViewController implements Initializable, IViewController, Bac
             devicesContainer.getChildren().remove(cci.getComponent());
         }
         this.mainFormController.getBacklightManager().stopListeningToLightOnEvent(this);
+        ElwaManager.instance.getDataRetriever().stopListenToEntityChanges(this);
         if (this.refreshFuture != null && !this.refreshFuture.isDone()) {
             this.refreshFuture.cancel();
         }
@@ -12,6 +12,7 @@ import javafx.scene.layout.Pane;
 import org.kabieror.elwasys.common.*;
 import org.kabieror.elwasys.raspiclient.application.ActionContainer;
 import org.kabieror.elwasys.raspiclient.application.ElwaManager;
+import org.kabieror.elwasys.raspiclient.executions.ExecutionFaultException;
 import org.kabieror.elwasys.raspiclient.executions.FhemException;
 import org.kabieror.elwasys.raspiclient.io.CardDetectedEvent;
 import org.kabieror.elwasys.raspiclient.ui.AbstractMainFormController;
@@ -27,9 +28,11 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Dieser Controller steuert die Geräteauswahl.
@@ -37,7 +40,12 @@ import java.util.concurrent.TimeUnit;
  * @author Oliver Kabierschke
  */
 @SuppressWarnings("serial")
-public class MainFormController extends AbstractMainFormController {
+public class MainFormController extends AbstractMainFormController implements IEntityChangeListener {
+
+    /**
+     * Wartezeit, in der mehrere Änderungsbenachrichtigungen zu einer Aktualisierung zusammengefasst werden
+     */
+    private static final long CHANGE_SYNC_DELAY_MILLIS = 200;
 
     /**
      * Aktuell laufende Aufgaben zur Aktualisierung von Einträgen der
@@ -184,6 +192,10 @@ public class MainFormController extends AbstractMainFormController {
      * Die Aktion, die fehlgeschlagen ist und wiederholt werden kann
      */
     private Runnable retryAction;
+    /**
+     * Gibt an, ob bereits eine Aktualisierung aufgrund geänderter Daten geplant ist
+     */
+    private final AtomicBoolean changeSyncPending = new AtomicBoolean(false);
 
     /**
      * Konstruktor
@@ -249,25 +261,78 @@ public class MainFormController extends AbstractMainFormController {
         Platform.runLater(this::initializeComponents);
 
         // Update der Geräte planen
-        final Runnable updateDevices = () -> {
-            if (ElwaManager.instance.getExecutionManager().getRunningExecutions().size() > 0) {
-                // Kein Update, wenn eine Ausführung läuft.
+        this.backlightManager.listenToLightOnEvent(this::updateDevices);
+        this.updateService.scheduleAtFixedRate(this::updateDevices, 90, 60, TimeUnit.SECONDS);
+
+        // Geänderte Geräte sofort übernehmen
+        ElwaManager.instance.getDataRetriever().listenToEntityChanges(this);
+    }
+
+    /**
+     * Aktualisiert die angezeigten Geräte aus der Datenbank
+     *
+     * @return Ob die Geräte aktualisiert wurden
+     */
+    private boolean updateDevices() {
+        if (ElwaManager.instance.getExecutionManager().getRunningExecutions().size() > 0) {
+            // Kein Update, wenn eine Ausführung läuft.
+            return false;
+        }
+        // Update objects
+        for (final Device d : this.devices) {
+            if (d == null) {
+                continue;
+            }
+            try {
+                d.update();
+            } catch (final Exception e) {
+                this.logger.error("Error while updating device.", e);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void onEntityChanged(EntityType type, int id) {
+        if (type != EntityType.DEVICE && type != EntityType.LOCATION && type != EntityType.PROGRAM) {
+            return;
+        }
+        if (this.changeSyncPending.compareAndSet(false, true)) {
+            try {
+                this.updateService.schedule(() -> {
+                    this.changeSyncPending.set(false);
+                    this.syncDevices();
+                }, CHANGE_SYNC_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (final RejectedExecutionException e) {
+                this.changeSyncPending.set(false);
+            }
+        }
+    }
+
+    @Override
+    public void onChangesLost() {
+        this.onEntityChanged(EntityType.DEVICE, 0);
+    }
+
+    /**
+     * Übernimmt geänderte Geräte und zeigt sie an, sofern gerade die Geräteauswahl angezeigt wird
+     */
+    private void syncDevices() {
+        if (!this.updateDevices()) {
+            return;
+        }
+        Platform.runLater(() -> {
+            if (this.getMainFormState() != MainFormState.SELECT_DEVICE) {
                 return;
             }
-            // Update objects
-            for (final Device d : this.devices) {
-                if (d == null) {
-                    continue;
-                }
-                try {
-                    d.update();
-                } catch (final Exception e) {
-                    this.logger.error("Error while updating device.", e);
+            try {
+                for (int i = 0; i < 4; i++) {
+                    this.updateDevicePane(i);
                 }
+            } catch (final SQLException e) {
+                this.logger.error("Unable to update the device panes.", e);
             }
-        };
-        this.backlightManager.listenToLightOnEvent(updateDevices::run);
-        this.updateService.scheduleAtFixedRate(updateDevices, 90, 60, TimeUnit.SECONDS);
+        });
     }
 
     /**
@@ -739,6 +804,10 @@ public class MainFormController extends AbstractMainFormController {
 
     @Override
     public void onExecutionFailed(Execution execution, Exception exception) {
+        if (exception instanceof ExecutionFaultException) {
+            // Störungen werden im Portal angezeigt, die Ausführung muss nicht erneut beendet werden
+            return;
+        }
         Platform.runLater(() -> {
             final ActionContainer ac = new ActionContainer();
             ac.setAction(() -> {
@@ -780,6 +849,7 @@ public class MainFormController extends AbstractMainFormController {
      */
     @Override
     public void onClose(boolean restart) {
+        ElwaManager.instance.getDataRetriever().stopListenToEntityChanges(this);
         this.updateService.shutdownNow();
         this.waitPaneService.shutdownNow();
         if (restart) {
@@ -803,8 +873,7 @@ public class MainFormController extends AbstractMainFormController {
             actionContainer.setAction(() -> {
                 final Runnable searchUserRunnable = () -> {
                     try {
-                        this.registeredUser = ElwaManager.instance.getDataRetriever()
-                                .getUserByCardId(e.getCardId());
+                        this.registeredUser = ElwaManager.instance.getCardUserIndex().getUser(e.getCardId());
                     } catch (final SQLException e1) {
                         this.logger.error("SQLException while looking up user.", e1);
                         this.registeredUser = null;
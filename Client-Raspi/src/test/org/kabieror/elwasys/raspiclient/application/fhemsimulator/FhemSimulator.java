@@ -35,10 +35,19 @@ public class FhemSimulator {
     private Map<String, SimulatedDevice> devices = new HashMap<>();
 
     public FhemSimulator() {
-        devices.put("wm1sw", new SwitchDevice());
-        devices.put("wm2sw", new SwitchDevice());
-        devices.put("wm3sw", new SwitchDevice());
-        devices.put("wm4sw", new SwitchDevice());
+        devices.put("wm1sw", new SwitchDevice("wm1sw"));
+        devices.put("wm2sw", new SwitchDevice("wm2sw"));
+        devices.put("wm3sw", new SwitchDevice("wm3sw"));
+        devices.put("wm4sw", new SwitchDevice("wm4sw"));
+    }
+
+    /**
+     * Sendet ein Ereignis an alle Verbindungen, die Ereignisse empfangen.
+     */
+    static void publishEvent(String event) {
+        if (instance != null) {
+            instance.eventsQueue.add(event);
+        }
     }
 
     public static void main(String[] args) {
@@ -13,24 +13,32 @@ public class SwitchDevice extends SimulatedDevice {
 
     boolean isSwitchable = true;
 
-    public SwitchDevice() {
+    private final String name;
+
+    public SwitchDevice(String name) {
+        this.name = name;
         this.params.put("state", "off");
     }
 
     public void switchOn() {
         if (isSwitchable) {
-            this.params.put("state", "set_on");
+            this.setState("set_on");
             FhemSimulator.scheduler
-                    .schedule(() -> this.params.put("state", "on"), communicationDelay, TimeUnit.MILLISECONDS);
+                    .schedule(() -> this.setState("on"), communicationDelay, TimeUnit.MILLISECONDS);
         }
     }
 
     public void switchOff() {
         if (isSwitchable) {
-            this.params.put("state", "set_off");
+            this.setState("set_off");
             FhemSimulator.scheduler
-                    .schedule(() -> this.params.put("state", "off"), communicationDelay, TimeUnit.MILLISECONDS);
+                    .schedule(() -> this.setState("off"), communicationDelay, TimeUnit.MILLISECONDS);
         }
     }
 
+    private void setState(String state) {
+        this.params.put("state", state);
+        FhemSimulator.publishEvent("CUL_HM " + this.name + " " + state);
+    }
+
 }
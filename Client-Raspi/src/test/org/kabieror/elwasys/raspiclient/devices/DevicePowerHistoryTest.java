@@ -0,0 +1,99 @@
+package org.kabieror.elwasys.raspiclient.devices;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+/**
+ * Prüft den Ringpuffer der Leistungsmesswerte.
+ *
+ * @author Oliver Kabierschke
+ */
+public class DevicePowerHistoryTest {
+
+    private final DevicePowerHistory history = new DevicePowerHistory(4);
+
+    /**
+     * Speichert Messwerte im Abstand einer Sekunde, der Messwert zur Sekunde i hat i Watt.
+     */
+    private void add(int from, int to) {
+        for (int i = from; i <= to; i++) {
+            this.history.add(i * 1000L, i);
+        }
+    }
+
+    @Test
+    public void isEmptyInitially() {
+        Assert.assertEquals(0, this.history.size());
+        Assert.assertEquals(0, this.history.getLatestTime());
+        Assert.assertTrue(Float.isNaN(this.history.getLatestPower()));
+        Assert.assertEquals(0, this.history.count(Long.MIN_VALUE, Long.MAX_VALUE));
+        Assert.assertTrue(Float.isNaN(this.history.mean(Long.MIN_VALUE, Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void overwritesOldestWhenFull() {
+        this.add(1, 6);
+        Assert.assertEquals(4, this.history.size());
+        Assert.assertEquals(6000, this.history.getLatestTime());
+        Assert.assertEquals(6, this.history.getLatestPower(), 0);
+        Assert.assertEquals(3, this.history.min(Long.MIN_VALUE, Long.MAX_VALUE), 0);
+        Assert.assertEquals(6, this.history.max(Long.MIN_VALUE, Long.MAX_VALUE), 0);
+
+        final long[] times = new long[8];
+        final float[] watts = new float[8];
+        Assert.assertEquals(4, this.history.copy(Long.MIN_VALUE, Long.MAX_VALUE, times, watts));
+        Assert.assertArrayEquals(new long[]{3000, 4000, 5000, 6000}, Arrays.copyOf(times, 4));
+        Assert.assertArrayEquals(new float[]{3, 4, 5, 6}, Arrays.copyOf(watts, 4), 0);
+    }
+
+    @Test
+    public void includesBothWindowBounds() {
+        this.add(1, 6);
+        Assert.assertEquals(2, this.history.count(4000, 5000));
+        Assert.assertEquals(4.5, this.history.mean(4000, 5000), 1e-6);
+        Assert.assertEquals(1, this.history.count(6000, 6000));
+        Assert.assertEquals(3, this.history.count(3500, 7000));
+    }
+
+    @Test
+    public void yieldsNaNForWindowsWithoutMeasurements() {
+        this.add(1, 6);
+        // Überschriebene Messwerte zählen nicht mehr
+        Assert.assertEquals(0, this.history.count(1000, 2000));
+        Assert.assertTrue(Float.isNaN(this.history.min(1000, 2000)));
+        Assert.assertTrue(Float.isNaN(this.history.max(4100, 4900)));
+        Assert.assertTrue(Float.isNaN(this.history.mean(7000, 8000)));
+    }
+
+    @Test
+    public void copiesOldestWhenArraysAreTooShort() {
+        this.add(1, 6);
+        final long[] times = new long[2];
+        final float[] watts = new float[2];
+        Assert.assertEquals(2, this.history.copy(Long.MIN_VALUE, Long.MAX_VALUE, times, watts));
+        Assert.assertArrayEquals(new long[]{3000, 4000}, times);
+    }
+
+    @Test
+    public void computesSlopeInWattsPerSecond() {
+        this.add(1, 6);
+        Assert.assertEquals(1, this.history.slope(3000, 6000), 1e-6);
+        Assert.assertTrue(Float.isNaN(this.history.slope(6000, 6000)));
+
+        this.history.add(7000, 0);
+        this.history.add(8000, -6);
+        Assert.assertEquals(-6, this.history.slope(7000, 8000), 1e-6);
+    }
+
+    @Test
+    public void startsOverAfterClear() {
+        this.add(1, 6);
+        this.history.clear();
+        Assert.assertEquals(0, this.history.size());
+        this.add(10, 11);
+        Assert.assertEquals(2, this.history.count(Long.MIN_VALUE, Long.MAX_VALUE));
+        Assert.assertEquals(10, this.history.min(Long.MIN_VALUE, Long.MAX_VALUE), 0);
+    }
+}
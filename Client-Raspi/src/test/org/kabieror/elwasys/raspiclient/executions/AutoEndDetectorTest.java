@@ -0,0 +1,90 @@
+package org.kabieror.elwasys.raspiclient.executions;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.kabieror.elwasys.common.AutoEndProfile;
+import org.kabieror.elwasys.common.Device;
+import org.kabieror.elwasys.common.Program;
+import org.kabieror.elwasys.raspiclient.devices.DevicePowerHistory;
+
+import java.time.Duration;
+
+/**
+ * Prüft das Lernen des Leistungsverlaufs für die automatische Beendigung.
+ *
+ * @author Oliver Kabierschke
+ */
+public class AutoEndDetectorTest {
+
+    private static final long START = 1700000000000L;
+    private static final long SECOND = 1000;
+
+    private Device device;
+    private Program program;
+    private final DevicePowerHistory history = new DevicePowerHistory(256);
+
+    private AutoEndProfile saved;
+    private final AutoEndDetector detector = new AutoEndDetector(null, true) {
+        @Override
+        void save(AutoEndProfile profile) {
+            AutoEndDetectorTest.this.saved = profile;
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        this.device = TestExecutions.device(1, 10);
+        this.program = TestExecutions.program(2, Duration.ofMinutes(60));
+    }
+
+    /**
+     * Lernt eine zehnminütige Ausführung, die alle 10 Sekunden gemessen wird. Sie nimmt nach 30 Sekunden Leistung
+     * auf, pausiert ab der gegebenen Sekunde für die gegebene Dauer und nimmt bis zur gegebenen Sekunde Leistung auf.
+     */
+    private void learn(int id, long pauseFrom, long pause, long activeUntil) throws Exception {
+        this.history.clear();
+        for (long t = 0; t <= 600; t += 10) {
+            final boolean active = t >= 30 && t <= activeUntil && (t < pauseFrom || t >= pauseFrom + pause);
+            this.history.add(START + t * SECOND, active ? 2000 : 2);
+        }
+        this.detector.learn(TestExecutions.execution(id, this.device, this.program, START, START + 600 * SECOND),
+                this.history);
+    }
+
+    @Test
+    public void learnsActiveDurationAndLongestPause() throws Exception {
+        this.learn(1, 180, 60, 480);
+        Assert.assertEquals(1, this.saved.getRuns());
+        Assert.assertEquals(Duration.ofSeconds(480), this.saved.getActiveDuration());
+        Assert.assertEquals(Duration.ofSeconds(60), this.saved.getLongestPause());
+    }
+
+    @Test
+    public void averagesActiveDurationAndLowersPauseSlowly() throws Exception {
+        this.learn(1, 180, 60, 480);
+        this.learn(2, 180, 20, 380);
+        Assert.assertEquals(2, this.saved.getRuns());
+        // 480 s + 0,3 * (380 s - 480 s)
+        Assert.assertEquals(Duration.ofSeconds(450), this.saved.getActiveDuration());
+        // 60 s - 0,1 * (60 s - 20 s)
+        Assert.assertEquals(Duration.ofSeconds(56), this.saved.getLongestPause());
+
+        // Eine längere Pause gilt sofort
+        this.learn(3, 180, 90, 480);
+        Assert.assertEquals(Duration.ofSeconds(90), this.saved.getLongestPause());
+    }
+
+    @Test
+    public void ignoresLowPowerBeforeStartAndAfterEnd() throws Exception {
+        this.learn(1, 600, 0, 300);
+        Assert.assertEquals(Duration.ofSeconds(300), this.saved.getActiveDuration());
+        Assert.assertEquals(Duration.ZERO, this.saved.getLongestPause());
+    }
+
+    @Test
+    public void learnsNothingWithoutPowerConsumption() throws Exception {
+        this.learn(1, 0, 0, 0);
+        Assert.assertNull(this.saved);
+    }
+}
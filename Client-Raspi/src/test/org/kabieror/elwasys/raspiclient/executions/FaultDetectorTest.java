@@ -0,0 +1,145 @@
+package org.kabieror.elwasys.raspiclient.executions;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.kabieror.elwasys.common.Device;
+import org.kabieror.elwasys.common.DeviceFaultType;
+import org.kabieror.elwasys.common.Execution;
+import org.kabieror.elwasys.common.Program;
+
+import java.time.Duration;
+
+/**
+ * Prüft die Erkennung stromloser und überlaufender Geräte.
+ *
+ * @author Oliver Kabierschke
+ */
+public class FaultDetectorTest {
+
+    private static final long START = 1700000000000L;
+    private static final long MINUTE = 60000;
+
+    private final FaultDetector detector = new FaultDetector(Duration.ofMinutes(2), Duration.ofMinutes(15));
+
+    private Device device;
+    private Program program;
+
+    @Before
+    public void setUp() throws Exception {
+        this.device = TestExecutions.device(1, 10);
+        this.program = TestExecutions.program(2, Duration.ofMinutes(60));
+    }
+
+    private Execution execution(int id, long start) throws Exception {
+        return TestExecutions.execution(id, this.device, this.program, start, null);
+    }
+
+    /**
+     * Lässt eine Ausführung vollständig laufen: ohne Leistung bis zur gegebenen Minute, danach mit der gegebenen
+     * Leistung bis zur Höchstdauer.
+     */
+    private void run(Execution e, long start, int firstPowerMinute, double power) {
+        for (int minute = 0; minute <= 60; minute++) {
+            final DeviceFaultType fault =
+                    this.detector.onSample(e, start + minute * MINUTE, minute < firstPowerMinute ? 0 : power);
+            Assert.assertNull(fault);
+        }
+    }
+
+    @Test
+    public void reportsNoPowerOnceAfterTimeout() throws Exception {
+        final Execution e = this.execution(1, START);
+        Assert.assertNull(this.detector.onSample(e, START + MINUTE, 0));
+        Assert.assertNull(this.detector.check(e, START + 2 * MINUTE - 1));
+        Assert.assertEquals(DeviceFaultType.NO_POWER, this.detector.check(e, START + 2 * MINUTE));
+        Assert.assertNull(this.detector.onSample(e, START + 3 * MINUTE, 0));
+        Assert.assertNull(this.detector.check(e, START + 4 * MINUTE));
+    }
+
+    @Test
+    public void waitsForLearnedStartDelay() throws Exception {
+        // Das Gerät nimmt üblicherweise erst nach einer Minute Leistung auf, nach dreimal so langer Zeit gilt es als
+        // stromlos
+        this.run(this.execution(1, START), START, 1, 2000);
+        this.run(this.execution(2, START + 100 * MINUTE), START + 100 * MINUTE, 1, 2000);
+
+        final long start = START + 200 * MINUTE;
+        final Execution e = this.execution(3, start);
+        Assert.assertNull(this.detector.onSample(e, start, 0));
+        Assert.assertNull(this.detector.onSample(e, start + 2 * MINUTE, 0));
+        Assert.assertNull(this.detector.check(e, start + 3 * MINUTE - 1));
+        Assert.assertEquals(DeviceFaultType.NO_POWER, this.detector.check(e, start + 3 * MINUTE));
+        Assert.assertNull(this.detector.check(e, start + 4 * MINUTE));
+    }
+
+    @Test
+    public void keepsTimeoutWhenDeviceStartsQuickly() throws Exception {
+        this.run(this.execution(1, START), START, 0, 2000);
+
+        final long start = START + 100 * MINUTE;
+        final Execution e = this.execution(2, start);
+        Assert.assertNull(this.detector.onSample(e, start, 0));
+        Assert.assertNull(this.detector.check(e, start + MINUTE));
+        Assert.assertEquals(DeviceFaultType.NO_POWER, this.detector.check(e, start + 2 * MINUTE));
+    }
+
+    @Test
+    public void reportsOverrunOnceAtLearnedFullPower() throws Exception {
+        this.run(this.execution(1, START), START, 0, 2000);
+
+        final long start = START + 100 * MINUTE;
+        final Execution e = this.execution(2, start);
+        this.run(e, start, 0, 2000);
+        final long end = start + 60 * MINUTE;
+
+        // Innerhalb der Karenzzeit wird nichts gemeldet
+        Assert.assertNull(this.detector.onSample(e, end + 14 * MINUTE, 2000));
+        // Über dem Schwellwert, aber unter der Hälfte der üblichen Leistung, etwa beim Schleudern mit wenig Last
+        Assert.assertNull(this.detector.onSample(e, end + 15 * MINUTE, 900));
+        // Ohne Messwert kann keine volle Leistung erkannt werden
+        Assert.assertNull(this.detector.check(e, end + 15 * MINUTE));
+        Assert.assertEquals(DeviceFaultType.OVERRUN, this.detector.onSample(e, end + 16 * MINUTE, 1100));
+        Assert.assertNull(this.detector.onSample(e, end + 17 * MINUTE, 2000));
+    }
+
+    @Test
+    public void neverTreatsPowerBelowThresholdAsFull() throws Exception {
+        final Execution e = this.execution(1, START);
+        final long end = START + 60 * MINUTE;
+        // Die Hälfte der üblichen Leistung liegt hier unter dem Schwellwert des Geräts
+        Assert.assertNull(this.detector.onSample(e, START, 12));
+        Assert.assertNull(this.detector.onSample(e, end + 15 * MINUTE, 9));
+        Assert.assertEquals(DeviceFaultType.OVERRUN, this.detector.onSample(e, end + 16 * MINUTE, 10));
+    }
+
+    @Test
+    public void ignoresDevicesWithoutMeasurements() throws Exception {
+        // Ein Gerät ohne Leistungsmesser sendet nie einen Messwert
+        final Execution e = this.execution(1, START);
+        Assert.assertNull(this.detector.check(e, START + 2 * MINUTE));
+        Assert.assertNull(this.detector.check(e, START + 30 * MINUTE));
+    }
+
+    @Test
+    public void ignoresDevicesWhoseMeasurementsStop() throws Exception {
+        final Execution e = this.execution(1, START);
+        Assert.assertNull(this.detector.onSample(e, START, 0));
+        Assert.assertNull(this.detector.check(e, START + 2 * MINUTE + 1));
+        // Sobald wieder Messwerte eintreffen, wird das Gerät gemeldet
+        Assert.assertEquals(DeviceFaultType.NO_POWER, this.detector.onSample(e, START + 3 * MINUTE, 0));
+    }
+
+    @Test
+    public void resetsForNewExecution() throws Exception {
+        final Execution first = this.execution(1, START);
+        Assert.assertNull(this.detector.onSample(first, START, 0));
+        Assert.assertEquals(DeviceFaultType.NO_POWER, this.detector.check(first, START + 2 * MINUTE));
+
+        final long start = START + 100 * MINUTE;
+        final Execution second = this.execution(2, start);
+        Assert.assertNull(this.detector.onSample(second, start, 0));
+        Assert.assertNull(this.detector.check(second, start + MINUTE));
+        Assert.assertEquals(DeviceFaultType.NO_POWER, this.detector.check(second, start + 2 * MINUTE));
+    }
+}
@@ -0,0 +1,87 @@
+package org.kabieror.elwasys.raspiclient.executions;
+
+import org.kabieror.elwasys.common.Device;
+import org.kabieror.elwasys.common.Execution;
+import org.kabieror.elwasys.common.Program;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Erzeugt Geräte, Programme und Ausführungen für Tests, ohne auf die Datenbank zuzugreifen.
+ *
+ * @author Oliver Kabierschke
+ */
+final class TestExecutions {
+
+    private TestExecutions() {
+    }
+
+    static Device device(int id, float autoEndPowerThreashold) throws Exception {
+        return new Device(null, id) {
+            @Override
+            public void update() {
+            }
+
+            @Override
+            public String getName() {
+                return "Gerät " + id;
+            }
+
+            @Override
+            public float getAutoEndPowerThreashold() {
+                return autoEndPowerThreashold;
+            }
+        };
+    }
+
+    static Program program(int id, Duration maxDuration) throws Exception {
+        return new Program(null, id) {
+            @Override
+            public void update() {
+            }
+
+            @Override
+            public String getName() {
+                return "Programm " + id;
+            }
+
+            @Override
+            public Duration getMaxDuration() {
+                return maxDuration;
+            }
+        };
+    }
+
+    /**
+     * @param start Der Start der Ausführung in Millisekunden seit der Epoche
+     * @param end   Das Ende der Ausführung in Millisekunden seit der Epoche, oder null, solange sie läuft
+     */
+    static Execution execution(int id, Device device, Program program, long start, Long end) throws Exception {
+        final ResultSet res = (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, (proxy, method, args) -> id);
+        return new Execution(null, res, device, program, null) {
+            @Override
+            public void update(ResultSet res) {
+            }
+
+            @Override
+            public LocalDateTime getStartDate() {
+                return toDate(start);
+            }
+
+            @Override
+            public LocalDateTime getEndDate() {
+                return end == null ? null : toDate(end);
+            }
+        };
+    }
+
+    private static LocalDateTime toDate(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+}
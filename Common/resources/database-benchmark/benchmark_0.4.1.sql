@@ -0,0 +1,197 @@
+/*
+ * Vergleicht die Laufzeit der häufigsten Abfragen vor und nach upgrade_0.4.1.sql.
+ *
+ * ACHTUNG: Nur auf einer Wegwerf-Datenbank ausführen, die mit database-init.sql angelegt wurde. Das Skript löscht die
+ * Indizes, füllt die Tabellen mit mehreren Jahren an Testdaten und legt die Indizes anschließend neu an.
+ *
+ *   psql -d elwasys_bench -f benchmark_0.4.1.sql
+ *
+ * Der Umfang der Testdaten kann über die folgenden Variablen angepasst werden.
+ */
+\set users 3000
+\set devices 8
+\set years 5
+\set executions_per_day 250
+\set iterations 200
+
+\set ON_ERROR_STOP on
+\timing off
+
+/* Ausgangszustand ohne Indizes */
+DROP INDEX IF EXISTS executions_running_device_idx;
+DROP INDEX IF EXISTS executions_running_user_idx;
+DROP INDEX IF EXISTS executions_device_start_idx;
+DROP INDEX IF EXISTS executions_device_last_idx;
+DROP INDEX IF EXISTS credit_accounting_user_date_idx;
+DROP INDEX IF EXISTS credit_accounting_inpayment_idx;
+DROP INDEX IF EXISTS credit_accounting_execution_idx;
+DROP INDEX IF EXISTS users_email_idx;
+DROP INDEX IF EXISTS users_password_reset_key_idx;
+DROP INDEX IF EXISTS users_auth_key_idx;
+DROP INDEX IF EXISTS users_card_ids_idx;
+
+/* TESTDATEN */
+\echo 'Seeding test data...'
+BEGIN;
+
+INSERT INTO locations (name) VALUES ('Benchmark');
+
+INSERT INTO devices (name, position, location_id)
+SELECT 'Waschmaschine ' || d, d, (SELECT id FROM locations WHERE name = 'Benchmark')
+FROM generate_series(1, :devices) d;
+
+INSERT INTO programs (name, type, max_duration, flagfall, rate, time_unit)
+VALUES ('Koch 90', 'FIXED', 9000, 1.50, NULL, NULL),
+       ('Bunt 40', 'FIXED', 7200, 1.20, NULL, NULL),
+       ('Schnell 30', 'DYNAMIC', 3600, 0.20, 0.02, 'MINUTES'),
+       ('Trockner', 'DYNAMIC', 7200, 0.00, 0.50, 'HOURS');
+
+/* Der Trigger für Auth-Keys wird beim Befüllen nicht benötigt */
+ALTER TABLE users DISABLE TRIGGER user_authkey_trigger;
+INSERT INTO users (name, username, email, card_ids, deleted, password_reset_key)
+SELECT 'Benutzer ' || u,
+       'bench' || u,
+       'user' || u || '@example.org',
+       lpad(to_hex(u), 8, '0') || CASE WHEN u % 3 = 0 THEN chr(10) || lpad(to_hex(u + 1000000), 8, '0') ELSE '' END,
+       u % 40 = 0,
+       CASE WHEN u % 100 = 0 THEN md5(u::TEXT) END
+FROM generate_series(1, :users) u;
+ALTER TABLE users ENABLE TRIGGER user_authkey_trigger;
+
+CREATE TEMP TABLE bench_ids AS
+SELECT array_agg(id ORDER BY id) AS users,
+       (SELECT array_agg(id ORDER BY id) FROM devices WHERE name LIKE 'Waschmaschine %') AS devices,
+       (SELECT array_agg(id ORDER BY id) FROM programs) AS programs
+FROM users WHERE username LIKE 'bench%';
+
+/* Abgeschlossene Ausführungen über mehrere Jahre */
+INSERT INTO executions (device_id, program_id, user_id, start, stop, finished)
+SELECT b.devices[1 + (n % array_length(b.devices, 1))],
+       b.programs[1 + (n % array_length(b.programs, 1))],
+       b.users[1 + floor(random() * array_length(b.users, 1))::INT],
+       t,
+       t + INTERVAL '90 minutes',
+       TRUE
+FROM bench_ids b,
+     generate_series(1, :years * 365 * :executions_per_day) n,
+     LATERAL (SELECT now() - (INTERVAL '1 year' * :years) * (1 - n::FLOAT / (:years * 365 * :executions_per_day)) AS t) s;
+
+/* Derzeit laufende Ausführungen */
+INSERT INTO executions (device_id, program_id, user_id, start, finished)
+SELECT b.devices[d], b.programs[1], b.users[d * 7], now() - INTERVAL '10 minutes', FALSE
+FROM bench_ids b, generate_series(1, :devices) d;
+
+/* Eine Buchung je Ausführung und regelmäßige Einzahlungen */
+INSERT INTO credit_accounting (user_id, execution_id, amount, description, date)
+SELECT user_id, id, -1.50, 'Benchmark', stop FROM executions WHERE finished = TRUE;
+
+INSERT INTO credit_accounting (user_id, amount, description, date)
+SELECT b.users[1 + (n % array_length(b.users, 1))], 20.00, 'Inpayment',
+       now() - (INTERVAL '1 year' * :years) * random()
+FROM bench_ids b, generate_series(1, :years * 365 * :executions_per_day / 10) n;
+
+COMMIT;
+
+ANALYZE executions;
+ANALYZE credit_accounting;
+ANALYZE users;
+
+/* MESSUNG */
+CREATE TEMP TABLE bench_queries (
+  ord   INT,
+  label TEXT,
+  sql   TEXT,
+  param TEXT
+);
+INSERT INTO bench_queries VALUES
+  (1, 'running execution by device',
+   'SELECT * FROM executions WHERE device_id=$1 AND finished=FALSE AND start IS NOT NULL', 'device'),
+  (2, 'executions by device',
+   'SELECT * FROM executions WHERE device_id=$1 AND start IS NOT NULL ORDER BY start DESC', 'device'),
+  (3, 'last user on device',
+   'SELECT users.* FROM executions LEFT JOIN users ON executions.user_id=users.id WHERE device_id=$1 ' ||
+   'AND user_id>=0 AND start IS NOT NULL ORDER BY executions.id DESC LIMIT 1', 'device'),
+  (4, 'running programs of user',
+   'SELECT program_id FROM executions WHERE finished=FALSE AND user_id=$1', 'user'),
+  (5, 'credit of user',
+   'SELECT SUM(amount) AS credit FROM credit_accounting WHERE user_id=$1', 'user'),
+  (6, 'accounting entries of user',
+   'SELECT * FROM credit_accounting WHERE user_id=$1 ORDER BY date DESC', 'user'),
+  (7, 'last inpayment of user',
+   'SELECT * FROM credit_accounting WHERE user_id=$1 AND amount>0 ORDER BY date DESC LIMIT 1', 'user'),
+  (8, 'user by email',
+   'SELECT * FROM users WHERE deleted=FALSE AND email=(''user'' || $1 || ''@example.org'') LIMIT 1', 'number'),
+  (9, 'user by card id (regex, before 0.4.1)',
+   'SELECT * FROM users WHERE deleted=FALSE AND card_ids ~ (''(?n)^'' || lpad(to_hex($1::INT), 8, ''0'') || ''$'') LIMIT 1',
+   'number'),
+  (10, 'user by card id (array)',
+   'SELECT * FROM users WHERE deleted=FALSE AND string_to_array(card_ids, chr(10)) @> ARRAY[lpad(to_hex($1::INT), 8, ''0'')] LIMIT 1',
+   'number');
+
+CREATE TEMP TABLE bench_results (
+  phase  TEXT,
+  ord    INT,
+  avg_ms NUMERIC,
+  max_ms NUMERIC
+);
+
+CREATE OR REPLACE FUNCTION pg_temp.bench(p_phase TEXT, p_iterations INT) RETURNS VOID AS
+$$
+DECLARE
+  q       RECORD;
+  r       RECORD;
+  ids     RECORD;
+  p       TEXT;
+  i       INT;
+  t0      TIMESTAMPTZ;
+  elapsed NUMERIC;
+  total   NUMERIC;
+  worst   NUMERIC;
+BEGIN
+  SELECT * INTO ids FROM bench_ids;
+  FOR q IN SELECT * FROM bench_queries ORDER BY ord LOOP
+    total := 0;
+    worst := 0;
+    FOR i IN 1..p_iterations LOOP
+      p := CASE q.param
+             WHEN 'device' THEN ids.devices[1 + (i % array_length(ids.devices, 1))]::TEXT
+             WHEN 'user' THEN ids.users[1 + floor(random() * array_length(ids.users, 1))::INT]::TEXT
+             ELSE (1 + floor(random() * array_length(ids.users, 1))::INT)::TEXT
+           END;
+      t0 := clock_timestamp();
+      FOR r IN EXECUTE q.sql USING p::INT LOOP
+        NULL;
+      END LOOP;
+      elapsed := extract(EPOCH FROM clock_timestamp() - t0) * 1000;
+      total := total + elapsed;
+      worst := greatest(worst, elapsed);
+    END LOOP;
+    INSERT INTO bench_results VALUES (p_phase, q.ord, total / p_iterations, worst);
+  END LOOP;
+END;
+$$ LANGUAGE plpgsql;
+
+\echo 'Measuring without indexes...'
+SELECT pg_temp.bench('before', :iterations);
+
+\echo 'Applying upgrade_0.4.1.sql...'
+\ir ../database-upgrade/upgrade_0.4.1.sql
+
+\echo 'Measuring with indexes...'
+SELECT pg_temp.bench('after', :iterations);
+
+/* ERGEBNIS */
+SELECT (SELECT count(*) FROM executions)        AS executions,
+       (SELECT count(*) FROM credit_accounting) AS credit_accounting,
+       (SELECT count(*) FROM users)             AS users;
+
+SELECT q.label                                         AS query,
+       round(b.avg_ms, 3)                              AS before_avg_ms,
+       round(a.avg_ms, 3)                              AS after_avg_ms,
+       round(b.max_ms, 3)                              AS before_max_ms,
+       round(a.max_ms, 3)                              AS after_max_ms,
+       round(b.avg_ms / nullif(a.avg_ms, 0), 1)        AS speedup
+FROM bench_queries q
+       JOIN bench_results b ON b.ord = q.ord AND b.phase = 'before'
+       JOIN bench_results a ON a.ord = q.ord AND a.phase = 'after'
+ORDER BY q.ord;
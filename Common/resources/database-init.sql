@@ -2,6 +2,8 @@ CREATE DATABASE elwasys;
 
 \connect elwasys
 
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
 /* FUNKTIONEN */
 CREATE OR REPLACE FUNCTION random_string(length integer) returns text as 
 $$
@@ -28,7 +30,7 @@ CREATE TABLE config
   key   VARCHAR(50) NOT NULL UNIQUE,
   value TEXT
 );
-INSERT INTO config (key, value) VALUES ('db.version', '0.4.0');
+INSERT INTO config (key, value) VALUES ('db.version', '0.4.12');
 INSERT INTO config (key, value) VALUES ('authkey.prefix', random_string(2));
 /* Dauer einer Reservierung in Sekunden */
 INSERT INTO config (key, value) VALUES ('reservation.duration', 900);
@@ -51,7 +53,7 @@ CREATE TABLE users
   email                  VARCHAR(50),
   card_ids               TEXT                           NOT NULL DEFAULT '',
   blocked                BOOLEAN                                 DEFAULT FALSE,
-  password               VARCHAR(50),
+  password               VARCHAR(200),
   is_admin               BOOLEAN                        NOT NULL DEFAULT FALSE,
   email_notification     BOOLEAN                        NOT NULL DEFAULT TRUE,
   push_notification      BOOLEAN                        NOT NULL DEFAULT TRUE,
@@ -195,7 +197,9 @@ CREATE TABLE executions
   user_id    INTEGER REFERENCES users ON DELETE SET DEFAULT    NOT NULL DEFAULT -1,
   start      TIMESTAMP,
   stop       TIMESTAMP,
-  finished   BOOLEAN                                           NOT NULL DEFAULT FALSE
+  finished   BOOLEAN                                           NOT NULL DEFAULT FALSE,
+  /* Die aufgenommene Energie in kWh, NULL, falls keine Leistung gemessen wurde */
+  energy     DOUBLE PRECISION
 );
 
 /* CREDIT ACCOUNTING */
@@ -209,6 +213,14 @@ CREATE TABLE credit_accounting
   description  TEXT
 );
 
+/* Laufender Kontostand je Benutzer, wird mit jeder Buchung fortgeschrieben */
+CREATE TABLE credit_balances
+(
+  user_id INTEGER PRIMARY KEY REFERENCES users,
+  balance NUMERIC   NOT NULL DEFAULT 0,
+  updated TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
 /* Authkey-Verzeichnis */
 CREATE TABLE foreign_authkeys
 (
@@ -228,6 +240,189 @@ CREATE TABLE reservations
   CONSTRAINT  res_unique_constraint UNIQUE(user_id, device_id)
 );
 
+/* Ausgehende Benachrichtigungen der Clients, bis sie zugestellt wurden */
+CREATE TYPE NOTIFICATION_CHANNEL AS ENUM ('EMAIL', 'PUSHOVER', 'IONIC');
+CREATE TABLE notification_outbox
+(
+  id           SERIAL PRIMARY KEY,
+  location_id  INTEGER REFERENCES locations ON DELETE CASCADE NOT NULL,
+  channel      NOTIFICATION_CHANNEL NOT NULL,
+  recipient    TEXT                 NOT NULL,
+  title        TEXT                 NOT NULL,
+  message      TEXT                 NOT NULL,
+  created      TIMESTAMP            NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  attempts     INTEGER              NOT NULL DEFAULT 0,
+  next_attempt TIMESTAMP            NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  last_error   TEXT,
+  sent         TIMESTAMP
+);
+
+/* Nutzung je Tag, Gerät, Programm, Standort und Benutzergruppe. Wird fortgeschrieben, wenn eine Ausführung endet;
+   gezählt wird sie am Tag ihres Beginns. Ohne Fremdschlüssel, damit die Statistik gelöschte Einträge überdauert. */
+CREATE TABLE usage_daily
+(
+  day          DATE             NOT NULL,
+  device_id    INTEGER          NOT NULL,
+  program_id   INTEGER          NOT NULL,
+  location_id  INTEGER          NOT NULL,
+  group_id     INTEGER          NOT NULL,
+  runs         INTEGER          NOT NULL DEFAULT 0,
+  seconds      BIGINT           NOT NULL DEFAULT 0,
+  revenue      NUMERIC          NOT NULL DEFAULT 0,
+  discount     NUMERIC          NOT NULL DEFAULT 0,
+  /* Die Anzahl Läufe mit gemessener Energie und deren Energie in kWh */
+  metered_runs INTEGER          NOT NULL DEFAULT 0,
+  energy       DOUBLE PRECISION NOT NULL DEFAULT 0,
+  PRIMARY KEY (day, device_id, program_id, location_id, group_id)
+);
+
+/* Aus früheren Ausführungen gelernter Verlauf je Gerät und Programm, mit dem das Ende einer Ausführung erkannt wird */
+CREATE TABLE auto_end_profiles
+(
+  device_id             INTEGER REFERENCES devices ON DELETE CASCADE  NOT NULL,
+  program_id            INTEGER REFERENCES programs ON DELETE CASCADE NOT NULL,
+  /* Die Anzahl gelernter Ausführungen */
+  runs                  INTEGER   NOT NULL DEFAULT 0,
+  /* Die übliche Zeit vom Start bis zur letzten Leistungsaufnahme in Sekunden */
+  active_seconds        INTEGER   NOT NULL,
+  /* Die längste Pause ohne Leistungsaufnahme während einer Ausführung in Sekunden */
+  longest_pause_seconds INTEGER   NOT NULL,
+  updated               TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (device_id, program_id)
+);
+
+/* Während einer Ausführung erkannte Störungen der Geräte, bis sie im Portal als erledigt markiert werden */
+CREATE TYPE DEVICE_FAULT_TYPE AS ENUM ('NO_POWER', 'OVERRUN');
+CREATE TABLE device_faults
+(
+  id           SERIAL PRIMARY KEY,
+  device_id    INTEGER REFERENCES devices ON DELETE CASCADE     NOT NULL,
+  execution_id INTEGER REFERENCES executions ON DELETE SET NULL,
+  type         DEVICE_FAULT_TYPE                               NOT NULL,
+  message      TEXT                                            NOT NULL,
+  detected     TIMESTAMP                                       NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  resolved     TIMESTAMP
+);
+
+/* Leistungsmesswerte der Geräte. Ältere Messwerte werden zu Minuten und später zu Stunden verdichtet. Ohne
+   Fremdschlüssel, damit die Messwerte gelöschte Geräte überdauern. */
+CREATE TABLE power_samples
+(
+  device_id INTEGER   NOT NULL,
+  time      TIMESTAMP NOT NULL,
+  watts     REAL      NOT NULL
+);
+CREATE TABLE power_minutes
+(
+  device_id INTEGER          NOT NULL,
+  minute    TIMESTAMP        NOT NULL,
+  samples   INTEGER          NOT NULL,
+  min_watts REAL             NOT NULL,
+  max_watts REAL             NOT NULL,
+  /* Die Summe der Messwerte, damit sich Zeiträume ohne Rundungsfehler zusammenfassen lassen */
+  sum_watts DOUBLE PRECISION NOT NULL,
+  PRIMARY KEY (device_id, minute)
+);
+CREATE TABLE power_hours
+(
+  device_id INTEGER          NOT NULL,
+  hour      TIMESTAMP        NOT NULL,
+  samples   INTEGER          NOT NULL,
+  min_watts REAL             NOT NULL,
+  max_watts REAL             NOT NULL,
+  sum_watts DOUBLE PRECISION NOT NULL,
+  PRIMARY KEY (device_id, hour)
+);
+
+/* INDIZES */
+CREATE INDEX executions_running_device_idx ON executions (device_id) WHERE finished = FALSE AND start IS NOT NULL;
+CREATE INDEX executions_running_user_idx ON executions (user_id) WHERE finished = FALSE;
+CREATE INDEX executions_device_start_idx ON executions (device_id, start DESC);
+CREATE INDEX executions_device_last_idx ON executions (device_id, id DESC) WHERE start IS NOT NULL AND user_id >= 0;
+CREATE INDEX credit_accounting_user_date_idx ON credit_accounting (user_id, date DESC);
+CREATE INDEX credit_accounting_inpayment_idx ON credit_accounting (user_id, date DESC) WHERE amount > 0;
+CREATE UNIQUE INDEX credit_accounting_execution_idx ON credit_accounting (execution_id) WHERE execution_id IS NOT NULL;
+CREATE UNIQUE INDEX users_username_lower_idx ON users (lower(username)) WHERE deleted = FALSE;
+CREATE UNIQUE INDEX users_email_lower_idx ON users (lower(email)) WHERE deleted = FALSE AND email <> '';
+CREATE INDEX users_search_trgm_idx ON users
+  USING GIN (lower(name || chr(10) || username || chr(10) || card_ids) gin_trgm_ops) WHERE deleted = FALSE;
+CREATE INDEX users_name_lower_idx ON users (lower(name)) WHERE deleted = FALSE;
+CREATE INDEX users_password_reset_key_idx ON users (password_reset_key) WHERE password_reset_key IS NOT NULL;
+CREATE INDEX users_auth_key_idx ON users (auth_key) WHERE auth_key IS NOT NULL;
+CREATE INDEX users_card_ids_idx ON users USING GIN (string_to_array(card_ids, chr(10))) WHERE deleted = FALSE;
+CREATE INDEX power_samples_device_time_idx ON power_samples (device_id, time);
+/* Messwerte werden in zeitlicher Reihenfolge geschrieben, sodass ein BRIN-Index das Verdichten alter Zeiträume
+   günstig unterstützt */
+CREATE INDEX power_samples_time_idx ON power_samples USING BRIN (time);
+CREATE INDEX power_minutes_minute_idx ON power_minutes USING BRIN (minute);
+CREATE INDEX device_faults_open_idx ON device_faults (device_id) WHERE resolved IS NULL;
+CREATE INDEX notification_outbox_pending_idx ON notification_outbox (location_id, next_attempt) WHERE sent IS NULL;
+
+/* ÄNDERUNGSBENACHRICHTIGUNGEN */
+/* Jede Änderung wird als '<Tabelle>:<Id>' auf dem Kanal elwasys_changes veröffentlicht, damit die Anwendungen ihre
+   zwischengespeicherten Daten verwerfen können. Die Argumente geben die gemeldete Tabelle und die Spalte mit deren Id
+   an. */
+CREATE OR REPLACE FUNCTION notify_entity_change() returns trigger as
+$$
+declare
+  changed jsonb;
+begin
+  IF TG_OP = 'DELETE' THEN
+    changed := to_jsonb(old);
+  ELSE
+    changed := to_jsonb(new);
+  END IF;
+  PERFORM pg_notify('elwasys_changes', TG_ARGV[0] || ':' || (changed ->> TG_ARGV[1]));
+  return null;
+end;
+$$ language plpgsql;
+
+CREATE TRIGGER locations_notify_trigger
+  AFTER INSERT OR UPDATE OR DELETE ON locations
+  FOR EACH ROW EXECUTE PROCEDURE notify_entity_change('locations', 'id');
+CREATE TRIGGER locations_valid_user_groups_notify_trigger
+  AFTER INSERT OR UPDATE OR DELETE ON locations_valid_user_groups
+  FOR EACH ROW EXECUTE PROCEDURE notify_entity_change('locations', 'location_id');
+CREATE TRIGGER devices_notify_trigger
+  AFTER INSERT OR UPDATE OR DELETE ON devices
+  FOR EACH ROW EXECUTE PROCEDURE notify_entity_change('devices', 'id');
+CREATE TRIGGER devices_valid_user_groups_notify_trigger
+  AFTER INSERT OR UPDATE OR DELETE ON devices_valid_user_groups
+  FOR EACH ROW EXECUTE PROCEDURE notify_entity_change('devices', 'device_id');
+CREATE TRIGGER device_program_rel_notify_trigger
+  AFTER INSERT OR UPDATE OR DELETE ON device_program_rel
+  FOR EACH ROW EXECUTE PROCEDURE notify_entity_change('devices', 'device_id');
+CREATE TRIGGER programs_notify_trigger
+  AFTER INSERT OR UPDATE OR DELETE ON programs
+  FOR EACH ROW EXECUTE PROCEDURE notify_entity_change('programs', 'id');
+CREATE TRIGGER programs_valid_user_groups_notify_trigger
+  AFTER INSERT OR UPDATE OR DELETE ON programs_valid_user_groups
+  FOR EACH ROW EXECUTE PROCEDURE notify_entity_change('programs', 'program_id');
+CREATE TRIGGER user_groups_notify_trigger
+  AFTER INSERT OR UPDATE OR DELETE ON user_groups
+  FOR EACH ROW EXECUTE PROCEDURE notify_entity_change('user_groups', 'id');
+CREATE TRIGGER locations_valid_user_groups_group_notify_trigger
+  AFTER INSERT OR UPDATE OR DELETE ON locations_valid_user_groups
+  FOR EACH ROW EXECUTE PROCEDURE notify_entity_change('user_groups', 'group_id');
+CREATE TRIGGER devices_valid_user_groups_group_notify_trigger
+  AFTER INSERT OR UPDATE OR DELETE ON devices_valid_user_groups
+  FOR EACH ROW EXECUTE PROCEDURE notify_entity_change('user_groups', 'group_id');
+CREATE TRIGGER programs_valid_user_groups_group_notify_trigger
+  AFTER INSERT OR UPDATE OR DELETE ON programs_valid_user_groups
+  FOR EACH ROW EXECUTE PROCEDURE notify_entity_change('user_groups', 'group_id');
+CREATE TRIGGER users_notify_trigger
+  AFTER INSERT OR UPDATE OR DELETE ON users
+  FOR EACH ROW EXECUTE PROCEDURE notify_entity_change('users', 'id');
+CREATE TRIGGER credit_balances_notify_trigger
+  AFTER INSERT OR UPDATE OR DELETE ON credit_balances
+  FOR EACH ROW EXECUTE PROCEDURE notify_entity_change('users', 'user_id');
+CREATE TRIGGER executions_notify_trigger
+  AFTER INSERT OR UPDATE OR DELETE ON executions
+  FOR EACH ROW EXECUTE PROCEDURE notify_entity_change('executions', 'id');
+CREATE TRIGGER device_faults_notify_trigger
+  AFTER INSERT OR UPDATE OR DELETE ON device_faults
+  FOR EACH ROW EXECUTE PROCEDURE notify_entity_change('device_faults', 'device_id');
+
 /* USERS & PERMISSIONS */
 CREATE GROUP elwaclients;
 CREATE USER elwaclient1 WITH PASSWORD 'elwaclient1'
@@ -246,6 +441,16 @@ GRANT UPDATE ON devices TO GROUP elwaclients;
 GRANT INSERT ON credit_accounting TO GROUP elwaclients;
 GRANT UPDATE ON SEQUENCE credit_accounting_id_seq TO GROUP elwaclients;
 
+GRANT INSERT, UPDATE ON credit_balances TO GROUP elwaclients;
+
+GRANT INSERT, UPDATE, DELETE ON notification_outbox TO GROUP elwaclients;
+GRANT INSERT, UPDATE ON usage_daily TO GROUP elwaclients;
+GRANT INSERT, UPDATE ON auto_end_profiles TO GROUP elwaclients;
+GRANT INSERT ON power_samples TO GROUP elwaclients;
+GRANT UPDATE ON SEQUENCE notification_outbox_id_seq TO GROUP elwaclients;
+GRANT INSERT ON device_faults TO GROUP elwaclients;
+GRANT UPDATE ON SEQUENCE device_faults_id_seq TO GROUP elwaclients;
+
 CREATE USER elwaportal;
 
 GRANT SELECT, INSERT, UPDATE, DELETE ON ALL TABLES IN SCHEMA public TO elwaportal;
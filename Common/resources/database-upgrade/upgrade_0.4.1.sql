@@ -0,0 +1,26 @@
+/* Indizes für die häufigsten Abfragen */
+
+/* Laufende Ausführungen eines Geräts und eines Benutzers */
+CREATE INDEX executions_running_device_idx ON executions (device_id) WHERE finished = FALSE AND start IS NOT NULL;
+CREATE INDEX executions_running_user_idx ON executions (user_id) WHERE finished = FALSE;
+
+/* Verlauf eines Geräts und letzter Benutzer eines Geräts */
+CREATE INDEX executions_device_start_idx ON executions (device_id, start DESC);
+CREATE INDEX executions_device_last_idx ON executions (device_id, id DESC) WHERE start IS NOT NULL AND user_id >= 0;
+
+/* Buchungen eines Benutzers */
+CREATE INDEX credit_accounting_user_date_idx ON credit_accounting (user_id, date DESC);
+CREATE INDEX credit_accounting_inpayment_idx ON credit_accounting (user_id, date DESC) WHERE amount > 0;
+CREATE INDEX credit_accounting_execution_idx ON credit_accounting (execution_id) WHERE execution_id IS NOT NULL;
+
+/* Suche von Benutzern */
+CREATE INDEX users_email_idx ON users (email) WHERE deleted = FALSE;
+CREATE INDEX users_password_reset_key_idx ON users (password_reset_key) WHERE password_reset_key IS NOT NULL;
+CREATE INDEX users_auth_key_idx ON users (auth_key) WHERE auth_key IS NOT NULL;
+CREATE INDEX users_card_ids_idx ON users USING GIN (string_to_array(card_ids, chr(10))) WHERE deleted = FALSE;
+
+ANALYZE executions;
+ANALYZE credit_accounting;
+ANALYZE users;
+
+UPDATE config SET value='0.4.1' WHERE key='db.version';
@@ -0,0 +1,42 @@
+/* Leistungsmesswerte der Geräte. Ältere Messwerte werden zu Minuten und später zu Stunden verdichtet. Ohne
+   Fremdschlüssel, damit die Messwerte gelöschte Geräte überdauern. */
+CREATE TABLE power_samples
+(
+  device_id INTEGER   NOT NULL,
+  time      TIMESTAMP NOT NULL,
+  watts     REAL      NOT NULL
+);
+CREATE TABLE power_minutes
+(
+  device_id INTEGER          NOT NULL,
+  minute    TIMESTAMP        NOT NULL,
+  samples   INTEGER          NOT NULL,
+  min_watts REAL             NOT NULL,
+  max_watts REAL             NOT NULL,
+  /* Die Summe der Messwerte, damit sich Zeiträume ohne Rundungsfehler zusammenfassen lassen */
+  sum_watts DOUBLE PRECISION NOT NULL,
+  PRIMARY KEY (device_id, minute)
+);
+CREATE TABLE power_hours
+(
+  device_id INTEGER          NOT NULL,
+  hour      TIMESTAMP        NOT NULL,
+  samples   INTEGER          NOT NULL,
+  min_watts REAL             NOT NULL,
+  max_watts REAL             NOT NULL,
+  sum_watts DOUBLE PRECISION NOT NULL,
+  PRIMARY KEY (device_id, hour)
+);
+
+CREATE INDEX power_samples_device_time_idx ON power_samples (device_id, time);
+/* Messwerte werden in zeitlicher Reihenfolge geschrieben, sodass ein BRIN-Index das Verdichten alter Zeiträume
+   günstig unterstützt */
+CREATE INDEX power_samples_time_idx ON power_samples USING BRIN (time);
+CREATE INDEX power_minutes_minute_idx ON power_minutes USING BRIN (minute);
+
+GRANT SELECT, INSERT ON power_samples TO GROUP elwaclients;
+GRANT SELECT ON power_minutes, power_hours TO GROUP elwaclients;
+GRANT SELECT, INSERT, UPDATE, DELETE ON power_samples, power_minutes, power_hours TO elwaportal;
+GRANT SELECT ON power_samples, power_minutes, power_hours TO elwaapi;
+
+UPDATE config SET value='0.4.10' WHERE key='db.version';
@@ -0,0 +1,8 @@
+/* Die während einer Ausführung aufgenommene Energie in kWh, NULL, falls keine Leistung gemessen wurde */
+ALTER TABLE executions ADD COLUMN energy DOUBLE PRECISION;
+
+/* Energie je Tag in der Nutzungsstatistik. Bisherige Ausführungen wurden nicht gemessen. */
+ALTER TABLE usage_daily ADD COLUMN metered_runs INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE usage_daily ADD COLUMN energy DOUBLE PRECISION NOT NULL DEFAULT 0;
+
+UPDATE config SET value='0.4.11' WHERE key='db.version';
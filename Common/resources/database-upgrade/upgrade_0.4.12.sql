@@ -0,0 +1,25 @@
+/* Während einer Ausführung erkannte Störungen der Geräte, bis sie im Portal als erledigt markiert werden */
+CREATE TYPE DEVICE_FAULT_TYPE AS ENUM ('NO_POWER', 'OVERRUN');
+CREATE TABLE device_faults
+(
+  id           SERIAL PRIMARY KEY,
+  device_id    INTEGER REFERENCES devices ON DELETE CASCADE     NOT NULL,
+  execution_id INTEGER REFERENCES executions ON DELETE SET NULL,
+  type         DEVICE_FAULT_TYPE                               NOT NULL,
+  message      TEXT                                            NOT NULL,
+  detected     TIMESTAMP                                       NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  resolved     TIMESTAMP
+);
+CREATE INDEX device_faults_open_idx ON device_faults (device_id) WHERE resolved IS NULL;
+
+CREATE TRIGGER device_faults_notify_trigger
+  AFTER INSERT OR UPDATE OR DELETE ON device_faults
+  FOR EACH ROW EXECUTE PROCEDURE notify_entity_change('device_faults', 'device_id');
+
+GRANT SELECT, INSERT ON device_faults TO GROUP elwaclients;
+GRANT SELECT, UPDATE ON SEQUENCE device_faults_id_seq TO GROUP elwaclients;
+GRANT SELECT, INSERT, UPDATE, DELETE ON device_faults TO elwaportal;
+GRANT SELECT, UPDATE ON SEQUENCE device_faults_id_seq TO elwaportal;
+GRANT SELECT ON device_faults TO elwaapi;
+
+UPDATE config SET value='0.4.12' WHERE key='db.version';
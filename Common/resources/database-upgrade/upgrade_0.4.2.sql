@@ -0,0 +1,17 @@
+/* Laufender Kontostand je Benutzer, wird mit jeder Buchung fortgeschrieben */
+CREATE TABLE credit_balances
+(
+  user_id INTEGER PRIMARY KEY REFERENCES users,
+  balance NUMERIC   NOT NULL DEFAULT 0,
+  updated TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+/* Kontostände aus den bisherigen Buchungen übernehmen */
+INSERT INTO credit_balances (user_id, balance)
+SELECT user_id, SUM(amount) FROM credit_accounting GROUP BY user_id;
+
+GRANT SELECT, INSERT, UPDATE ON credit_balances TO GROUP elwaclients;
+GRANT SELECT, INSERT, UPDATE, DELETE ON credit_balances TO elwaportal;
+GRANT SELECT ON credit_balances TO elwaapi;
+
+UPDATE config SET value='0.4.2' WHERE key='db.version';
@@ -0,0 +1,63 @@
+/* ÄNDERUNGSBENACHRICHTIGUNGEN */
+/* Jede Änderung wird als '<Tabelle>:<Id>' auf dem Kanal elwasys_changes veröffentlicht, damit die Anwendungen ihre
+   zwischengespeicherten Daten verwerfen können. Die Argumente geben die gemeldete Tabelle und die Spalte mit deren Id
+   an. */
+CREATE OR REPLACE FUNCTION notify_entity_change() returns trigger as
+$$
+declare
+  changed jsonb;
+begin
+  IF TG_OP = 'DELETE' THEN
+    changed := to_jsonb(old);
+  ELSE
+    changed := to_jsonb(new);
+  END IF;
+  PERFORM pg_notify('elwasys_changes', TG_ARGV[0] || ':' || (changed ->> TG_ARGV[1]));
+  return null;
+end;
+$$ language plpgsql;
+
+CREATE TRIGGER locations_notify_trigger
+  AFTER INSERT OR UPDATE OR DELETE ON locations
+  FOR EACH ROW EXECUTE PROCEDURE notify_entity_change('locations', 'id');
+CREATE TRIGGER locations_valid_user_groups_notify_trigger
+  AFTER INSERT OR UPDATE OR DELETE ON locations_valid_user_groups
+  FOR EACH ROW EXECUTE PROCEDURE notify_entity_change('locations', 'location_id');
+CREATE TRIGGER devices_notify_trigger
+  AFTER INSERT OR UPDATE OR DELETE ON devices
+  FOR EACH ROW EXECUTE PROCEDURE notify_entity_change('devices', 'id');
+CREATE TRIGGER devices_valid_user_groups_notify_trigger
+  AFTER INSERT OR UPDATE OR DELETE ON devices_valid_user_groups
+  FOR EACH ROW EXECUTE PROCEDURE notify_entity_change('devices', 'device_id');
+CREATE TRIGGER device_program_rel_notify_trigger
+  AFTER INSERT OR UPDATE OR DELETE ON device_program_rel
+  FOR EACH ROW EXECUTE PROCEDURE notify_entity_change('devices', 'device_id');
+CREATE TRIGGER programs_notify_trigger
+  AFTER INSERT OR UPDATE OR DELETE ON programs
+  FOR EACH ROW EXECUTE PROCEDURE notify_entity_change('programs', 'id');
+CREATE TRIGGER programs_valid_user_groups_notify_trigger
+  AFTER INSERT OR UPDATE OR DELETE ON programs_valid_user_groups
+  FOR EACH ROW EXECUTE PROCEDURE notify_entity_change('programs', 'program_id');
+CREATE TRIGGER user_groups_notify_trigger
+  AFTER INSERT OR UPDATE OR DELETE ON user_groups
+  FOR EACH ROW EXECUTE PROCEDURE notify_entity_change('user_groups', 'id');
+CREATE TRIGGER locations_valid_user_groups_group_notify_trigger
+  AFTER INSERT OR UPDATE OR DELETE ON locations_valid_user_groups
+  FOR EACH ROW EXECUTE PROCEDURE notify_entity_change('user_groups', 'group_id');
+CREATE TRIGGER devices_valid_user_groups_group_notify_trigger
+  AFTER INSERT OR UPDATE OR DELETE ON devices_valid_user_groups
+  FOR EACH ROW EXECUTE PROCEDURE notify_entity_change('user_groups', 'group_id');
+CREATE TRIGGER programs_valid_user_groups_group_notify_trigger
+  AFTER INSERT OR UPDATE OR DELETE ON programs_valid_user_groups
+  FOR EACH ROW EXECUTE PROCEDURE notify_entity_change('user_groups', 'group_id');
+CREATE TRIGGER users_notify_trigger
+  AFTER INSERT OR UPDATE OR DELETE ON users
+  FOR EACH ROW EXECUTE PROCEDURE notify_entity_change('users', 'id');
+CREATE TRIGGER credit_balances_notify_trigger
+  AFTER INSERT OR UPDATE OR DELETE ON credit_balances
+  FOR EACH ROW EXECUTE PROCEDURE notify_entity_change('users', 'user_id');
+CREATE TRIGGER executions_notify_trigger
+  AFTER INSERT OR UPDATE OR DELETE ON executions
+  FOR EACH ROW EXECUTE PROCEDURE notify_entity_change('executions', 'id');
+
+UPDATE config SET value='0.4.3' WHERE key='db.version';
@@ -0,0 +1,25 @@
+/* Ausgehende Benachrichtigungen der Clients, bis sie zugestellt wurden */
+CREATE TYPE NOTIFICATION_CHANNEL AS ENUM ('EMAIL', 'PUSHOVER', 'IONIC');
+CREATE TABLE notification_outbox
+(
+  id           SERIAL PRIMARY KEY,
+  location_id  INTEGER REFERENCES locations ON DELETE CASCADE NOT NULL,
+  channel      NOTIFICATION_CHANNEL NOT NULL,
+  recipient    TEXT                 NOT NULL,
+  title        TEXT                 NOT NULL,
+  message      TEXT                 NOT NULL,
+  created      TIMESTAMP            NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  attempts     INTEGER              NOT NULL DEFAULT 0,
+  next_attempt TIMESTAMP            NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  last_error   TEXT,
+  sent         TIMESTAMP
+);
+
+CREATE INDEX notification_outbox_pending_idx ON notification_outbox (location_id, next_attempt) WHERE sent IS NULL;
+
+GRANT SELECT, INSERT, UPDATE, DELETE ON notification_outbox TO GROUP elwaclients;
+GRANT SELECT, UPDATE ON SEQUENCE notification_outbox_id_seq TO GROUP elwaclients;
+GRANT SELECT, INSERT, UPDATE, DELETE ON notification_outbox TO elwaportal;
+GRANT SELECT, UPDATE ON SEQUENCE notification_outbox_id_seq TO elwaportal;
+
+UPDATE config SET value='0.4.4' WHERE key='db.version';
@@ -0,0 +1,19 @@
+/* Indizes für die Suche von Benutzern */
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+/* Benutzernamen und Email-Adressen sind ohne Beachtung der Groß- und Kleinschreibung eindeutig. Bestehende Dubletten
+   müssen vor dem Upgrade aufgelöst werden, sie lassen sich finden mit:
+     SELECT lower(username), COUNT(*) FROM users WHERE deleted = FALSE GROUP BY 1 HAVING COUNT(*) > 1;
+     SELECT lower(email), COUNT(*) FROM users WHERE deleted = FALSE AND email <> '' GROUP BY 1 HAVING COUNT(*) > 1; */
+CREATE UNIQUE INDEX users_username_lower_idx ON users (lower(username)) WHERE deleted = FALSE;
+DROP INDEX users_email_idx;
+CREATE UNIQUE INDEX users_email_lower_idx ON users (lower(email)) WHERE deleted = FALSE AND email <> '';
+
+/* Teilstring- und Ähnlichkeitssuche über Name, Benutzername und Kartennummern */
+CREATE INDEX users_search_trgm_idx ON users
+  USING GIN (lower(name || chr(10) || username || chr(10) || card_ids) gin_trgm_ops) WHERE deleted = FALSE;
+CREATE INDEX users_name_lower_idx ON users (lower(name)) WHERE deleted = FALSE;
+
+ANALYZE users;
+
+UPDATE config SET value='0.4.5' WHERE key='db.version';
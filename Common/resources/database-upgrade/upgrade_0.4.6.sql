@@ -0,0 +1,5 @@
+/* Passwörter werden als PBKDF2-Hash mit Salt und Parametern gespeichert. Bestehende SHA-1-Hashes bleiben gültig und
+   werden bei der nächsten Anmeldung des Benutzers ersetzt. */
+ALTER TABLE users ALTER COLUMN password TYPE VARCHAR(200);
+
+UPDATE config SET value='0.4.6' WHERE key='db.version';
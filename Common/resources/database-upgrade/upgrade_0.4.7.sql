@@ -0,0 +1,33 @@
+/* Nutzung je Tag, Gerät, Programm, Standort und Benutzergruppe. Wird fortgeschrieben, wenn eine Ausführung endet;
+   gezählt wird sie am Tag ihres Beginns. Ohne Fremdschlüssel, damit die Statistik gelöschte Einträge überdauert. */
+CREATE TABLE usage_daily
+(
+  day         DATE    NOT NULL,
+  device_id   INTEGER NOT NULL,
+  program_id  INTEGER NOT NULL,
+  location_id INTEGER NOT NULL,
+  group_id    INTEGER NOT NULL,
+  runs        INTEGER NOT NULL DEFAULT 0,
+  seconds     BIGINT  NOT NULL DEFAULT 0,
+  revenue     NUMERIC NOT NULL DEFAULT 0,
+  discount    NUMERIC NOT NULL DEFAULT 0,
+  PRIMARY KEY (day, device_id, program_id, location_id, group_id)
+);
+
+/* Bisherige Ausführungen übernehmen. Der Rabatt lässt sich nachträglich nicht bestimmen und bleibt 0. */
+INSERT INTO usage_daily (day, device_id, program_id, location_id, group_id, runs, seconds, revenue, discount)
+SELECT e.start::DATE, e.device_id, e.program_id, COALESCE(d.location_id, -1), COALESCE(u.group_id, -1), COUNT(*),
+       COALESCE(SUM(EXTRACT(EPOCH FROM (e.stop - e.start))), 0)::BIGINT, COALESCE(SUM(-a.amount), 0), 0
+FROM executions e
+  LEFT JOIN devices d ON d.id = e.device_id
+  LEFT JOIN users u ON u.id = e.user_id
+  LEFT JOIN (SELECT execution_id, SUM(amount) AS amount
+             FROM credit_accounting WHERE execution_id IS NOT NULL GROUP BY execution_id) a ON a.execution_id = e.id
+WHERE e.finished = TRUE AND e.start IS NOT NULL AND e.stop IS NOT NULL
+GROUP BY 1, 2, 3, 4, 5;
+
+GRANT SELECT, INSERT, UPDATE ON usage_daily TO GROUP elwaclients;
+GRANT SELECT, INSERT, UPDATE, DELETE ON usage_daily TO elwaportal;
+GRANT SELECT ON usage_daily TO elwaapi;
+
+UPDATE config SET value='0.4.7' WHERE key='db.version';
@@ -0,0 +1,10 @@
+/* Jede Ausführung wird höchstens einmal gebucht. Bisher doppelt gebuchte Ausführungen behalten ihre erste Buchung als
+   Ausführungsbuchung; die übrigen bleiben als gewöhnliche Buchungen erhalten, damit sich die Kontostände nicht ändern. */
+UPDATE credit_accounting a SET execution_id = NULL
+WHERE a.execution_id IS NOT NULL
+  AND EXISTS(SELECT 1 FROM credit_accounting b WHERE b.execution_id = a.execution_id AND b.id < a.id);
+
+DROP INDEX credit_accounting_execution_idx;
+CREATE UNIQUE INDEX credit_accounting_execution_idx ON credit_accounting (execution_id) WHERE execution_id IS NOT NULL;
+
+UPDATE config SET value='0.4.8' WHERE key='db.version';
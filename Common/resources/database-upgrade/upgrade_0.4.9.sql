@@ -0,0 +1,20 @@
+/* Aus früheren Ausführungen gelernter Verlauf je Gerät und Programm, mit dem das Ende einer Ausführung erkannt wird */
+CREATE TABLE auto_end_profiles
+(
+  device_id             INTEGER REFERENCES devices ON DELETE CASCADE  NOT NULL,
+  program_id            INTEGER REFERENCES programs ON DELETE CASCADE NOT NULL,
+  /* Die Anzahl gelernter Ausführungen */
+  runs                  INTEGER   NOT NULL DEFAULT 0,
+  /* Die übliche Zeit vom Start bis zur letzten Leistungsaufnahme in Sekunden */
+  active_seconds        INTEGER   NOT NULL,
+  /* Die längste Pause ohne Leistungsaufnahme während einer Ausführung in Sekunden */
+  longest_pause_seconds INTEGER   NOT NULL,
+  updated               TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (device_id, program_id)
+);
+
+GRANT SELECT, INSERT, UPDATE ON auto_end_profiles TO GROUP elwaclients;
+GRANT SELECT, INSERT, UPDATE, DELETE ON auto_end_profiles TO elwaportal;
+GRANT SELECT ON auto_end_profiles TO elwaapi;
+
+UPDATE config SET value='0.4.9' WHERE key='db.version';
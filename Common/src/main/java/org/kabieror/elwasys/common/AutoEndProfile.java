@@ -0,0 +1,70 @@
+package org.kabieror.elwasys.common;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+
+/**
+ * Der aus früheren Ausführungen gelernte Leistungsverlauf eines Programms auf einem Gerät. Er gibt an, wie lange das
+ * Programm üblicherweise Leistung aufnimmt und wie lange es dabei höchstens pausiert.
+ *
+ * @author Oliver Kabierschke
+ * @see DataManager#getAutoEndProfile(Device, Program)
+ */
+public class AutoEndProfile {
+
+    private final int deviceId;
+
+    private final int programId;
+
+    /**
+     * Die Anzahl gelernter Ausführungen
+     */
+    private final int runs;
+
+    /**
+     * Die übliche Zeit vom Start bis zur letzten Leistungsaufnahme
+     */
+    private final Duration activeDuration;
+
+    /**
+     * Die längste Pause ohne Leistungsaufnahme während einer Ausführung
+     */
+    private final Duration longestPause;
+
+    public AutoEndProfile(int deviceId, int programId, int runs, Duration activeDuration, Duration longestPause) {
+        this.deviceId = deviceId;
+        this.programId = programId;
+        this.runs = runs;
+        this.activeDuration = activeDuration;
+        this.longestPause = longestPause;
+    }
+
+    AutoEndProfile(ResultSet res) throws SQLException {
+        this.deviceId = res.getInt("device_id");
+        this.programId = res.getInt("program_id");
+        this.runs = res.getInt("runs");
+        this.activeDuration = Duration.ofSeconds(res.getInt("active_seconds"));
+        this.longestPause = Duration.ofSeconds(res.getInt("longest_pause_seconds"));
+    }
+
+    public int getDeviceId() {
+        return this.deviceId;
+    }
+
+    public int getProgramId() {
+        return this.programId;
+    }
+
+    public int getRuns() {
+        return this.runs;
+    }
+
+    public Duration getActiveDuration() {
+        return this.activeDuration;
+    }
+
+    public Duration getLongestPause() {
+        return this.longestPause;
+    }
+}
@@ -7,6 +7,7 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.Duration;
 import java.util.Properties;
 
 /**
@@ -111,6 +112,104 @@ public abstract class ConfigurationManager {
         return Boolean.parseBoolean(this.props.getProperty("database.useSsl"));
     }
 
+    /**
+     * Die höchste Anzahl gleichzeitig geöffneter Datenbankverbindungen.
+     *
+     * @return Die Größe des Verbindungspools
+     */
+    public int getDatabasePoolMaxSize() {
+        return this.getIntProperty("database.pool.maxSize", 10);
+    }
+
+    /**
+     * Die Anzahl an Datenbankverbindungen, die auch ohne Bedarf offen gehalten werden.
+     *
+     * @return Die Mindestanzahl freier Verbindungen
+     */
+    public int getDatabasePoolMinIdle() {
+        return this.getIntProperty("database.pool.minIdle", 1);
+    }
+
+    /**
+     * Die Zeit, die höchstens auf eine freie Datenbankverbindung gewartet wird.
+     *
+     * @return Die maximale Wartezeit auf eine Verbindung
+     */
+    public Duration getDatabasePoolConnectionTimeout() {
+        return Duration.ofSeconds(this.getIntProperty("database.pool.connectionTimeout", 10));
+    }
+
+    /**
+     * Der Abstand, in dem freie Datenbankverbindungen im Hintergrund geprüft werden.
+     *
+     * @return Das Prüfintervall
+     */
+    public Duration getDatabasePoolValidationInterval() {
+        return Duration.ofSeconds(Math.max(1, this.getIntProperty("database.pool.validationInterval", 30)));
+    }
+
+    /**
+     * Die Zeit, nach der eine unbenutzte Datenbankverbindung geschlossen wird.
+     *
+     * @return Die maximale Leerlaufzeit einer Verbindung
+     */
+    public Duration getDatabasePoolIdleTimeout() {
+        return Duration.ofSeconds(this.getIntProperty("database.pool.idleTimeout", 600));
+    }
+
+    /**
+     * Die höchste Anzahl an Entitäten eines Typs, die im Speicher gehalten werden.
+     *
+     * @param entity       Der Name des Entitätstyps, etwa "users"
+     * @param defaultValue Der Wert, der ohne Konfiguration verwendet wird
+     * @return Die Größe des Zwischenspeichers
+     */
+    public int getCacheMaxSize(String entity, int defaultValue) {
+        return this.getIntProperty("cache." + entity + ".maxSize", defaultValue);
+    }
+
+    /**
+     * Die Zeit, nach der eine Entität eines Typs vor ihrer nächsten Verwendung aus der Datenbank aktualisiert wird.
+     *
+     * @param entity       Der Name des Entitätstyps, etwa "users"
+     * @param defaultValue Der Wert in Sekunden, der ohne Konfiguration verwendet wird
+     * @return Die Gültigkeitsdauer einer zwischengespeicherten Entität
+     */
+    public Duration getCacheTtl(String entity, int defaultValue) {
+        return Duration.ofSeconds(Math.max(0, this.getIntProperty("cache." + entity + ".ttl", defaultValue)));
+    }
+
+    /**
+     * Die Anzahl Iterationen, mit der Passwörter gehasht werden. Höhere Werte erschweren das Erraten von Passwörtern,
+     * verlängern aber jede Anmeldung.
+     *
+     * @return Die Anzahl Iterationen für PBKDF2
+     */
+    public int getPasswordHashIterations() {
+        return Math.max(10000, this.getIntProperty("password.hash.iterations", 310000));
+    }
+
+    /**
+     * Liest einen ganzzahligen Konfigurationswert.
+     *
+     * @param key          Der Schlüssel des Werts
+     * @param defaultValue Der Wert, der verwendet wird, wenn der Schlüssel fehlt oder ungültig ist
+     * @return Den Konfigurationswert
+     */
+    protected int getIntProperty(String key, int defaultValue) {
+        final String value = this.props.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (final NumberFormatException e) {
+            this.logger.warn("The configuration value '" + key + "' has an invalid format. Using the default value " +
+                    defaultValue + " instead.");
+            return defaultValue;
+        }
+    }
+
     /**
      * Der zu verwendende SMTP-Server
      * 
@@ -0,0 +1,391 @@
+package org.kabieror.elwasys.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ein begrenzter Pool an Datenbankverbindungen.
+ * <p>
+ * Verbindungen werden mit {@link #getConnection()} ausgeliehen und mit {@link Connection#close()} zurückgegeben.
+ * Fordert ein Thread eine weitere Verbindung an, während er bereits eine hält, so erhält er dieselbe physische
+ * Verbindung erneut. Dadurch belegt jeder Thread höchstens eine Verbindung, auch wenn sich Ladevorgänge der
+ * Entitäten gegenseitig aufrufen.
+ * <p>
+ * Freie Verbindungen werden im Hintergrund geprüft, sodass beim Ausleihen keine zusätzliche Abfrage nötig ist.
+ *
+ * @author Oliver Kabierschke
+ */
+public class ConnectionPool {
+
+    /**
+     * Die Zeit, die eine Verbindung bei der Prüfung höchstens antworten darf.
+     */
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final String url;
+    private final Properties properties;
+
+    private final int maxSize;
+    private final int minIdle;
+    private final Duration connectionTimeout;
+    private final Duration validationInterval;
+    private final Duration idleTimeout;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = this.lock.newCondition();
+
+    /**
+     * Freie Verbindungen. Die zuletzt zurückgegebene Verbindung steht vorne.
+     */
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+
+    /**
+     * Die von einem Thread gehaltene Verbindung.
+     */
+    private final ThreadLocal<PooledConnection> leased = new ThreadLocal<>();
+
+    private final ScheduledExecutorService validator;
+
+    private int total = 0;
+    private int active = 0;
+    private int waiting = 0;
+    private boolean closed = false;
+
+    private long acquisitions = 0;
+    private long totalWaitNanos = 0;
+    private long maxWaitNanos = 0;
+    private long timeouts = 0;
+    private long created = 0;
+    private long discarded = 0;
+
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+
+    /**
+     * Erstellt einen neuen Verbindungspool. Verbindungen werden erst bei Bedarf aufgebaut.
+     *
+     * @param url        Die JDBC-URL der Datenbank
+     * @param properties Die Eigenschaften für den Verbindungsaufbau
+     * @param config     Die Konfiguration, aus welcher die Grenzen des Pools gelesen werden
+     */
+    public ConnectionPool(String url, Properties properties, ConfigurationManager config) {
+        this.url = url;
+        this.properties = properties;
+        this.maxSize = Math.max(1, config.getDatabasePoolMaxSize());
+        this.minIdle = Math.min(this.maxSize, Math.max(0, config.getDatabasePoolMinIdle()));
+        this.connectionTimeout = config.getDatabasePoolConnectionTimeout();
+        this.validationInterval = config.getDatabasePoolValidationInterval();
+        this.idleTimeout = config.getDatabasePoolIdleTimeout();
+
+        this.validator = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread t = new Thread(r, "ConnectionPool.Validator");
+            t.setDaemon(true);
+            return t;
+        });
+        this.validator.scheduleWithFixedDelay(this::maintain, this.validationInterval.toMillis(),
+                this.validationInterval.toMillis(), TimeUnit.MILLISECONDS);
+
+        this.logger.info(String.format("Connection pool created with at most %d connections (%d kept idle).",
+                this.maxSize, this.minIdle));
+    }
+
+    /**
+     * Leiht eine Verbindung aus dem Pool. Die Verbindung muss nach Gebrauch mit {@link Connection#close()}
+     * zurückgegeben werden. Dabei werden alle über sie erstellten Anweisungen geschlossen.
+     *
+     * @return Eine Verbindung zur Datenbank
+     * @throws SQLTimeoutException Wenn innerhalb der konfigurierten Wartezeit keine Verbindung frei wird
+     * @throws SQLException        Wenn keine neue Verbindung aufgebaut werden kann
+     */
+    public Connection getConnection() throws SQLException {
+        PooledConnection pc = this.leased.get();
+        if (pc != null) {
+            final Connection again = pc.leaseAgain();
+            if (again != null) {
+                return again;
+            }
+            // Der letzte Leihvorgang wurde in einem anderen Thread beendet, die Verbindung gehört wieder dem Pool
+            this.leased.remove();
+        }
+
+        pc = this.acquire();
+        this.leased.set(pc);
+        return pc.lease();
+    }
+
+    /**
+     * Gibt an, ob der aktuelle Thread bereits eine Verbindung hält.
+     */
+    public boolean isLeasedByCurrentThread() {
+        final PooledConnection pc = this.leased.get();
+        return pc != null && pc.isLeasedByCurrentThread();
+    }
+
+    /**
+     * Gibt eine Momentaufnahme der Kennzahlen des Pools zurück.
+     */
+    public ConnectionPoolStatistics getStatistics() {
+        this.lock.lock();
+        try {
+            return new ConnectionPoolStatistics(this.maxSize, this.total, this.active, this.idle.size(), this.waiting,
+                    this.acquisitions, Duration.ofNanos(this.totalWaitNanos), Duration.ofNanos(this.maxWaitNanos),
+                    this.timeouts, this.created, this.discarded, this.statementCacheHits.get(),
+                    this.statementCacheMisses.get());
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Schließt den Pool und alle freien Verbindungen. Ausgeliehene Verbindungen werden bei ihrer Rückgabe geschlossen.
+     */
+    public void close() {
+        this.validator.shutdownNow();
+        final List<PooledConnection> toClose;
+        this.lock.lock();
+        try {
+            this.closed = true;
+            toClose = new ArrayList<>(this.idle);
+            this.idle.clear();
+            this.total -= toClose.size();
+            this.discarded += toClose.size();
+            this.available.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+        toClose.forEach(PooledConnection::closePhysical);
+        this.logger.info("Connection pool closed.");
+    }
+
+    /**
+     * Holt eine freie Verbindung oder baut eine neue auf, sofern die Obergrenze noch nicht erreicht ist.
+     */
+    private PooledConnection acquire() throws SQLException {
+        final long start = System.nanoTime();
+        final long deadline = start + this.connectionTimeout.toNanos();
+
+        this.lock.lock();
+        try {
+            while (true) {
+                if (this.closed) {
+                    throw new SQLException("The connection pool has been closed.");
+                }
+                final PooledConnection pc = this.idle.pollFirst();
+                if (pc != null) {
+                    this.onAcquired(start);
+                    return pc;
+                }
+                if (this.total < this.maxSize) {
+                    this.total++;
+                    this.onAcquired(start);
+                    break;
+                }
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    this.timeouts++;
+                    throw new SQLTimeoutException(String.format(
+                            "No database connection available after %d ms (%d connections in use).",
+                            this.connectionTimeout.toMillis(), this.active));
+                }
+                this.waiting++;
+                try {
+                    this.available.awaitNanos(remaining);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for a database connection.", e);
+                } finally {
+                    this.waiting--;
+                }
+            }
+        } finally {
+            this.lock.unlock();
+        }
+
+        // Neue Verbindung außerhalb der Sperre aufbauen
+        try {
+            return this.createConnection();
+        } catch (final SQLException e) {
+            this.lock.lock();
+            try {
+                this.total--;
+                this.active--;
+                this.available.signal();
+            } finally {
+                this.lock.unlock();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Aktualisiert die Kennzahlen nach dem erfolgreichen Ausleihen einer Verbindung. Erfordert die Sperre.
+     */
+    private void onAcquired(long start) {
+        final long waited = System.nanoTime() - start;
+        this.active++;
+        this.acquisitions++;
+        this.totalWaitNanos += waited;
+        if (waited > this.maxWaitNanos) {
+            this.maxWaitNanos = waited;
+        }
+    }
+
+    private PooledConnection createConnection() throws SQLException {
+        this.logger.info("Opening new database connection to " + this.url);
+        final Connection physical = DriverManager.getConnection(this.url, this.properties);
+        this.lock.lock();
+        try {
+            this.created++;
+        } finally {
+            this.lock.unlock();
+        }
+        return new PooledConnection(this, physical);
+    }
+
+    void onStatementCacheHit() {
+        this.statementCacheHits.incrementAndGet();
+    }
+
+    void onStatementCacheMiss() {
+        this.statementCacheMisses.incrementAndGet();
+    }
+
+    /**
+     * Wird aufgerufen, sobald der letzte Leihvorgang einer Verbindung beendet wurde.
+     *
+     * @param pc Die zurückgegebene Verbindung
+     */
+    void release(PooledConnection pc) {
+        if (this.leased.get() == pc) {
+            this.leased.remove();
+        }
+
+        final boolean reusable = pc.resetForReuse();
+
+        this.lock.lock();
+        try {
+            this.active--;
+            if (reusable && !this.closed) {
+                this.idle.offerFirst(pc);
+            } else {
+                this.total--;
+                this.discarded++;
+            }
+            this.available.signal();
+        } finally {
+            this.lock.unlock();
+        }
+
+        if (!reusable || this.closed) {
+            this.logger.debug("Discarding database connection.");
+            pc.closePhysical();
+        }
+    }
+
+    /**
+     * Prüft freie Verbindungen, baut überzählige ab und hält die Mindestanzahl freier Verbindungen vor.
+     */
+    private void maintain() {
+        final long now = System.nanoTime();
+        final List<PooledConnection> toCheck = new ArrayList<>();
+        final List<PooledConnection> toRetire = new ArrayList<>();
+
+        this.lock.lock();
+        try {
+            int keep = this.total;
+            for (final Iterator<PooledConnection> it = this.idle.descendingIterator(); it.hasNext(); ) {
+                final PooledConnection pc = it.next();
+                final long idleNanos = now - pc.getLastReleased();
+                if (idleNanos >= this.idleTimeout.toNanos() && keep > this.minIdle) {
+                    it.remove();
+                    toRetire.add(pc);
+                    keep--;
+                } else if (idleNanos >= this.validationInterval.toNanos()) {
+                    it.remove();
+                    toCheck.add(pc);
+                }
+            }
+            this.total -= toRetire.size();
+            this.discarded += toRetire.size();
+        } finally {
+            this.lock.unlock();
+        }
+
+        toRetire.forEach(PooledConnection::closePhysical);
+
+        final List<PooledConnection> valid = new ArrayList<>();
+        int invalid = 0;
+        for (final PooledConnection pc : toCheck) {
+            if (pc.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                valid.add(pc);
+            } else {
+                pc.closePhysical();
+                invalid++;
+            }
+        }
+        if (invalid > 0) {
+            this.logger.warn(invalid + " idle database connection(s) were broken and have been discarded.");
+        }
+
+        int missing;
+        this.lock.lock();
+        try {
+            for (final PooledConnection pc : valid) {
+                pc.touch();
+                this.idle.offerLast(pc);
+            }
+            this.total -= invalid;
+            this.discarded += invalid;
+            missing = this.closed ? 0 : Math.min(this.minIdle - this.idle.size(), this.maxSize - this.total);
+            if (missing > 0) {
+                this.total += missing;
+            }
+            this.available.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+
+        for (int i = 0; i < missing; i++) {
+            PooledConnection pc = null;
+            try {
+                pc = this.createConnection();
+            } catch (final SQLException e) {
+                this.logger.warn("Could not open an idle database connection.", e);
+            }
+            this.lock.lock();
+            try {
+                if (pc != null && !this.closed) {
+                    this.idle.offerLast(pc);
+                    this.available.signal();
+                } else {
+                    this.total--;
+                }
+            } finally {
+                this.lock.unlock();
+            }
+            if (pc != null && this.closed) {
+                pc.closePhysical();
+            }
+        }
+    }
+}
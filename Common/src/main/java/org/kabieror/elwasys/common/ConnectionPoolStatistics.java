@@ -0,0 +1,153 @@
+package org.kabieror.elwasys.common;
+
+import java.time.Duration;
+
+/**
+ * Eine Momentaufnahme der Kennzahlen eines {@link ConnectionPool}.
+ *
+ * @author Oliver Kabierschke
+ */
+public class ConnectionPoolStatistics {
+
+    private final int maxSize;
+    private final int total;
+    private final int active;
+    private final int idle;
+    private final int waiting;
+    private final long acquisitions;
+    private final Duration totalWaitTime;
+    private final Duration maxWaitTime;
+    private final long timeouts;
+    private final long created;
+    private final long discarded;
+    private final long statementCacheHits;
+    private final long statementCacheMisses;
+
+    ConnectionPoolStatistics(int maxSize, int total, int active, int idle, int waiting, long acquisitions,
+                             Duration totalWaitTime, Duration maxWaitTime, long timeouts, long created,
+                             long discarded, long statementCacheHits, long statementCacheMisses) {
+        this.maxSize = maxSize;
+        this.total = total;
+        this.active = active;
+        this.idle = idle;
+        this.waiting = waiting;
+        this.acquisitions = acquisitions;
+        this.totalWaitTime = totalWaitTime;
+        this.maxWaitTime = maxWaitTime;
+        this.timeouts = timeouts;
+        this.created = created;
+        this.discarded = discarded;
+        this.statementCacheHits = statementCacheHits;
+        this.statementCacheMisses = statementCacheMisses;
+    }
+
+    /**
+     * Die höchste Anzahl an Verbindungen, die der Pool aufbauen darf.
+     */
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * Die Anzahl der derzeit aufgebauten Verbindungen.
+     */
+    public int getTotal() {
+        return this.total;
+    }
+
+    /**
+     * Die Anzahl der derzeit ausgeliehenen Verbindungen.
+     */
+    public int getActive() {
+        return this.active;
+    }
+
+    /**
+     * Die Anzahl der derzeit freien Verbindungen.
+     */
+    public int getIdle() {
+        return this.idle;
+    }
+
+    /**
+     * Die Anzahl der Threads, die derzeit auf eine freie Verbindung warten.
+     */
+    public int getWaiting() {
+        return this.waiting;
+    }
+
+    /**
+     * Die Anzahl aller bisherigen Leihvorgänge.
+     */
+    public long getAcquisitions() {
+        return this.acquisitions;
+    }
+
+    /**
+     * Die insgesamt mit dem Warten auf Verbindungen verbrachte Zeit.
+     */
+    public Duration getTotalWaitTime() {
+        return this.totalWaitTime;
+    }
+
+    /**
+     * Die durchschnittliche Wartezeit je Leihvorgang.
+     */
+    public Duration getAverageWaitTime() {
+        if (this.acquisitions == 0) {
+            return Duration.ZERO;
+        }
+        return this.totalWaitTime.dividedBy(this.acquisitions);
+    }
+
+    /**
+     * Die längste bisher aufgetretene Wartezeit.
+     */
+    public Duration getMaxWaitTime() {
+        return this.maxWaitTime;
+    }
+
+    /**
+     * Die Anzahl der Leihvorgänge, die wegen Zeitüberschreitung abgebrochen wurden.
+     */
+    public long getTimeouts() {
+        return this.timeouts;
+    }
+
+    /**
+     * Die Anzahl der bisher aufgebauten Verbindungen.
+     */
+    public long getCreated() {
+        return this.created;
+    }
+
+    /**
+     * Die Anzahl der bisher verworfenen Verbindungen.
+     */
+    public long getDiscarded() {
+        return this.discarded;
+    }
+
+    /**
+     * Die Anzahl der Abfragen, für die eine bereits vorbereitete Anweisung wiederverwendet wurde.
+     */
+    public long getStatementCacheHits() {
+        return this.statementCacheHits;
+    }
+
+    /**
+     * Die Anzahl der Abfragen, für die eine neue Anweisung vorbereitet werden musste.
+     */
+    public long getStatementCacheMisses() {
+        return this.statementCacheMisses;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("total=%d/%d, active=%d, idle=%d, waiting=%d, acquisitions=%d, avgWait=%dms, " +
+                        "maxWait=%dms, timeouts=%d, created=%d, discarded=%d, statementCache=%d/%d", this.total,
+                this.maxSize, this.active, this.idle, this.waiting, this.acquisitions,
+                this.getAverageWaitTime().toMillis(), this.maxWaitTime.toMillis(), this.timeouts, this.created,
+                this.discarded, this.statementCacheHits, this.statementCacheHits + this.statementCacheMisses);
+    }
+}
@@ -0,0 +1,104 @@
+package org.kabieror.elwasys.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Gleicht die fortgeschriebenen Kontostände der Benutzer mit der Summe ihrer Buchungen ab.
+ * <p>
+ * Abweichende Kontostände werden aus den Buchungen neu berechnet. Jeder Benutzer wird dabei in einer eigenen
+ * Transaktion unter Sperre seines Kontostands korrigiert, sodass gleichzeitige Buchungen nicht verloren gehen.
+ *
+ * @author Oliver Kabierschke
+ */
+public class CreditBalanceReconciler {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final DataManager dataManager;
+
+    public CreditBalanceReconciler(DataManager dataManager) {
+        this.dataManager = dataManager;
+    }
+
+    /**
+     * Prüft alle Kontostände und korrigiert abweichende.
+     *
+     * @return Die Anzahl der korrigierten Kontostände
+     * @throws SQLException Wenn ein Fehler bei der Datenbankabfrage auftritt
+     */
+    public int reconcile() throws SQLException {
+        final List<Integer> candidates = new ArrayList<>();
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.BALANCE_MISMATCHES.prepare(connection)) {
+            final ResultSet res = s.executeQuery();
+            while (res.next()) {
+                candidates.add(res.getInt("user_id"));
+            }
+        }
+
+        int repaired = 0;
+        for (final int userId : candidates) {
+            if (this.dataManager.runInTransaction(connection -> this.repair(connection, userId))) {
+                repaired++;
+            }
+        }
+
+        if (repaired > 0) {
+            this.logger.warn("Repaired the credit balance of " + repaired + " user(s).");
+        } else {
+            this.logger.debug("All credit balances match the accounting ledger.");
+        }
+        return repaired;
+    }
+
+    /**
+     * Berechnet den Kontostand eines Benutzers neu, sofern er von seinen Buchungen abweicht.
+     *
+     * @return Wahr, wenn der Kontostand korrigiert wurde
+     */
+    private boolean repair(Connection connection, int userId) throws SQLException {
+        // Zeile anlegen, damit sie gesperrt werden kann
+        try (PreparedStatement s = Query.BALANCE_ENSURE.prepare(connection)) {
+            s.setInt(1, userId);
+            s.execute();
+        }
+
+        final BigDecimal balance;
+        try (PreparedStatement s = Query.BALANCE_LOCK.prepare(connection)) {
+            s.setInt(1, userId);
+            final ResultSet res = s.executeQuery();
+            res.next();
+            balance = res.getBigDecimal("balance");
+        }
+
+        final BigDecimal total;
+        try (PreparedStatement s = Query.ACCOUNTING_SUM_BY_USER.prepare(connection)) {
+            s.setInt(1, userId);
+            final ResultSet res = s.executeQuery();
+            res.next();
+            total = res.getBigDecimal("total");
+        }
+
+        if (balance.compareTo(total) == 0) {
+            return false;
+        }
+
+        this.logger.warn("Credit balance of user #" + userId + " was " + balance + " but the accounting ledger sums up " +
+                "to " + total + ". Correcting the balance.");
+        try (PreparedStatement s = Query.BALANCE_UPDATE.prepare(connection)) {
+            s.setBigDecimal(1, total);
+            s.setInt(2, userId);
+            s.execute();
+        }
+        return true;
+    }
+}
@@ -3,9 +3,13 @@ package org.kabieror.elwasys.common;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.math.BigDecimal;
 import java.sql.*;
 import java.time.Duration;
+import java.time.YearMonth;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
 
 /**
  * Diese Klasse stellt Methoden zum holen von Informationen aus der Datenbank
@@ -23,14 +27,16 @@ public class DataManager {
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
     private final ConfigurationManager config;
-    private final Map<Integer, Location> locations = new HashMap<>();
-    private final Map<Integer, UserGroup> userGroups = new HashMap<>();
-    private final Map<Integer, User> users = new HashMap<>();
-    private final Map<Integer, Program> programs = new HashMap<>();
-    private final Map<Integer, Device> devices = new HashMap<>();
-    private final Map<Integer, Execution> executions = new HashMap<>();
-    private final Properties dbProperties;
-    private Connection db;
+    private final EntityCache<Location> locations;
+    private final EntityCache<UserGroup> userGroups;
+    private final EntityCache<User> users;
+    private final EntityCache<Program> programs;
+    private final EntityCache<Device> devices;
+    private final EntityCache<Execution> executions;
+    private final ConnectionPool pool;
+    private final DatabaseChangeListener changeListener;
+    private final List<IEntityChangeListener> entityChangeListeners = new CopyOnWriteArrayList<>();
+    private volatile IPasswordHasher passwordHasher;
 
 
     /**
@@ -43,7 +49,7 @@ public class DataManager {
 
         this.config = config;
 
-        dbProperties = new Properties();
+        final Properties dbProperties = new Properties();
         dbProperties.setProperty("user", this.config.getDatabaseUser());
         dbProperties.setProperty("password", this.config.getDatabasePassword());
         if (this.config.getDatabaseUseSsl()) {
@@ -58,29 +64,193 @@ public class DataManager {
 
         // Datenbanktreiber laden
         Class.forName("org.postgresql.Driver");
+
+        final String url =
+                "jdbc:postgresql://" + this.config.getDatabaseServer() + "/" + this.config.getDatabaseName();
+        this.pool = new ConnectionPool(url, dbProperties, config);
+
+        this.locations = this.createCache("locations", 100, 30);
+        this.userGroups = this.createCache("userGroups", 100, 30);
+        this.users = this.createCache("users", 2000, 5);
+        this.programs = this.createCache("programs", 200, 30);
+        // Geräte und Ausführungen, die gerade laufen, werden gesperrt und nach ihrer Instanz zugeordnet
+        this.devices = this.createCache("devices", 200, 30, d -> d.getCurrentExecution() != null);
+        this.executions = this.createCache("executions", 1000, 5, Execution::isRunning);
+
+        this.passwordHasher = new Pbkdf2PasswordHasher(this.config.getPasswordHashIterations());
+
+        this.changeListener = new DatabaseChangeListener(this, url, dbProperties);
+        this.changeListener.start();
+    }
+
+    private <T> EntityCache<T> createCache(String name, int defaultMaxSize, int defaultTtl) {
+        return this.createCache(name, defaultMaxSize, defaultTtl, value -> false);
+    }
+
+    private <T> EntityCache<T> createCache(String name, int defaultMaxSize, int defaultTtl,
+                                           Predicate<? super T> pinned) {
+        return new EntityCache<>(name, this.config.getCacheMaxSize(name, defaultMaxSize),
+                this.config.getCacheTtl(name, defaultTtl), pinned);
     }
 
     /**
-     * Prüft die Datenbankverbindung und baut bei Bedarf eine neue auf
+     * Leiht eine Verbindung aus dem Verbindungspool. Die Verbindung muss nach Gebrauch geschlossen werden, wodurch
+     * sie an den Pool zurückgegeben wird. Hält der aktuelle Thread bereits eine Verbindung, so wird diese erneut
+     * herausgegeben.
      *
-     * @throws SQLException Wenn keine neue Datenbankverbindung aufgebaut werden kann
+     * @throws SQLException Wenn keine Datenbankverbindung bereit gestellt werden kann
      */
     public Connection getConnection() throws SQLException {
-        if (this.db != null) {
-            // Prüfe Datenbankverbindung
+        return this.pool.getConnection();
+    }
+
+    /**
+     * Führt die gegebenen Operationen in einer Transaktion aus. Läuft auf der Verbindung des aktuellen Threads
+     * bereits eine Transaktion, so werden die Operationen Teil dieser Transaktion.
+     *
+     * @param transaction Die auszuführenden Operationen
+     * @return Das Ergebnis der Operationen
+     * @throws SQLException Wenn eine Operation fehlschlägt. Alle Änderungen der Transaktion werden verworfen.
+     */
+    public <T> T runInTransaction(ITransaction<T> transaction) throws SQLException {
+        try (Connection connection = this.getConnection()) {
+            if (!connection.getAutoCommit()) {
+                return transaction.execute(connection);
+            }
+
+            connection.setAutoCommit(false);
             try {
-                this.db.prepareCall("SELECT 1").execute();
-            } catch (final SQLException e) {
-                this.logger.warn("Database connection is corrupt.");
+                final T result = transaction.execute(connection);
+                connection.commit();
+                return result;
+            } catch (final SQLException | RuntimeException e) {
+                try {
+                    connection.rollback();
+                } catch (final SQLException e1) {
+                    this.logger.error("Could not roll back the transaction.", e1);
+                }
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
             }
         }
-        if (this.db == null || this.db.isClosed()) {
-            this.logger.info("Trying to open new database connection with server " + this.config.getDatabaseServer());
-            final String url =
-                    "jdbc:postgresql://" + this.config.getDatabaseServer() + "/" + this.config.getDatabaseName();
-            this.db = DriverManager.getConnection(url, this.dbProperties);
+    }
+
+    /**
+     * Gibt das Verfahren zurück, mit dem die Passwörter der Benutzer gespeichert und geprüft werden.
+     */
+    public IPasswordHasher getPasswordHasher() {
+        return this.passwordHasher;
+    }
+
+    /**
+     * Ersetzt das Verfahren, mit dem die Passwörter der Benutzer gespeichert und geprüft werden. Bestehende Hashes
+     * werden bei der nächsten Anmeldung ersetzt, sofern das neue Verfahren sie als veraltet ansieht.
+     */
+    public void setPasswordHasher(IPasswordHasher passwordHasher) {
+        this.passwordHasher = passwordHasher;
+    }
+
+    /**
+     * Gibt die Kennzahlen des Verbindungspools zurück.
+     */
+    public ConnectionPoolStatistics getConnectionPoolStatistics() {
+        return this.pool.getStatistics();
+    }
+
+    /**
+     * Gibt die Kennzahlen der Zwischenspeicher für Entitäten zurück.
+     */
+    public List<EntityCacheStatistics> getCacheStatistics() {
+        return Arrays.asList(this.locations.getStatistics(), this.userGroups.getStatistics(),
+                this.users.getStatistics(), this.programs.getStatistics(), this.devices.getStatistics(),
+                this.executions.getStatistics());
+    }
+
+    /**
+     * Registriert einen Listener, der über Änderungen an Entitäten in der Datenbank benachrichtigt wird. Die
+     * zwischengespeicherten Entitäten sind zu diesem Zeitpunkt bereits als abgelaufen markiert.
+     */
+    public void listenToEntityChanges(IEntityChangeListener listener) {
+        this.entityChangeListeners.add(listener);
+    }
+
+    public void stopListenToEntityChanges(IEntityChangeListener listener) {
+        this.entityChangeListeners.remove(listener);
+    }
+
+    /**
+     * Markiert eine geänderte Entität als abgelaufen, sodass sie beim nächsten Zugriff neu gelesen wird.
+     *
+     * @param type Der Typ der Entität
+     * @param id   Die Id der Entität
+     */
+    void onEntityChanged(EntityType type, int id) {
+        this.logger.trace("Database change: " + type + " #" + id);
+        switch (type) {
+            case LOCATION:
+                final Location location = this.locations.invalidate(id);
+                if (location != null) {
+                    location.invalidate();
+                }
+                break;
+            case DEVICE:
+                final Device device = this.devices.invalidate(id);
+                if (device != null) {
+                    device.invalidate();
+                }
+                break;
+            case PROGRAM:
+                final Program program = this.programs.invalidate(id);
+                if (program != null) {
+                    program.invalidate();
+                }
+                break;
+            case USER_GROUP:
+                final UserGroup group = this.userGroups.invalidate(id);
+                if (group != null) {
+                    group.invalidate();
+                }
+                break;
+            case USER:
+                final User user = this.users.invalidate(id);
+                if (user != null) {
+                    user.invalidate();
+                }
+                break;
+            case EXECUTION:
+                final Execution execution = this.executions.invalidate(id);
+                if (execution != null) {
+                    execution.invalidate();
+                }
+                break;
+        }
+        for (final IEntityChangeListener l : this.entityChangeListeners) {
+            l.onEntityChanged(type, id);
+        }
+    }
+
+    /**
+     * Markiert alle zwischengespeicherten Entitäten als abgelaufen, nachdem Änderungen verpasst wurden.
+     */
+    void onChangesLost() {
+        this.locations.invalidateAll().forEach(Location::invalidate);
+        this.devices.invalidateAll().forEach(Device::invalidate);
+        this.programs.invalidateAll().forEach(Program::invalidate);
+        this.userGroups.invalidateAll().forEach(UserGroup::invalidate);
+        this.users.invalidateAll().forEach(User::invalidate);
+        this.executions.invalidateAll().forEach(Execution::invalidate);
+        for (final IEntityChangeListener l : this.entityChangeListeners) {
+            l.onChangesLost();
         }
-        return this.db;
+    }
+
+    /**
+     * Schließt alle Verbindungen zur Datenbank.
+     */
+    public void close() {
+        this.changeListener.stop();
+        this.pool.close();
     }
 
     /**
@@ -89,39 +259,17 @@ public class DataManager {
      * @return Alle verfügbaren Standorte
      */
     public List<Location> getLocations() throws SQLException {
-        final List<Location> locations = new ArrayList<>();
-
-        final ResultSet res = this.getConnection().prepareCall("SELECT * FROM locations ORDER BY name").executeQuery();
-        while (res.next()) {
-            locations.add(this.getLocation(res));
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.LOCATIONS_ALL.prepare(connection)) {
+            return this.getLocations(s.executeQuery());
         }
-
-        return locations;
     }
 
     /**
      * Holt einen Standort anhand seiner ID
      */
     public Location getLocation(int id) throws SQLException {
-        if (this.locations.containsKey(id)) {
-            final Location location = this.locations.get(id);
-            try {
-                location.update();
-            } catch (final NoDataFoundException e) {
-                this.locations.remove(id);
-                return null;
-            }
-            return location;
-        } else {
-            Location location;
-            try {
-                location = new Location(this, id);
-            } catch (final NoDataFoundException e) {
-                return null;
-            }
-            this.locations.put(id, location);
-            return location;
-        }
+        return this.locations.get(id, Location::update, () -> new Location(this, id));
     }
 
     /**
@@ -131,13 +279,15 @@ public class DataManager {
      * @return Der Ort mit dem gegebenen Namen.
      */
     public Location getLocation(String name) throws SQLException {
-        final PreparedStatement s = this.getConnection().prepareStatement("SELECT * FROM locations WHERE name=?");
-        s.setString(1, name);
-        final ResultSet res = s.executeQuery();
-        if (res.next()) {
-            return this.getLocation(res);
-        } else {
-            return null;
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.LOCATION_BY_NAME.prepare(connection)) {
+            s.setString(1, name);
+            final ResultSet res = s.executeQuery();
+            if (res.next()) {
+                return this.getLocation(res);
+            } else {
+                return null;
+            }
         }
     }
 
@@ -145,24 +295,33 @@ public class DataManager {
      * Holt einen Standort aus einem Abfrageergebnis
      */
     Location getLocation(ResultSet res) throws SQLException {
-        if (this.locations.containsKey(res.getInt("id"))) {
-            final Location l = this.locations.get(res.getInt("id"));
-            l.update(res);
-            return l;
-        } else {
-            final Location l = new Location(this, res);
-            this.locations.put(l.getId(), l);
-            return l;
+        return this.locations.merge(res.getInt("id"), l -> l.update(res), () -> new Location(this, res));
+    }
+
+    /**
+     * Holt alle Standorte eines Abfrageergebnisses und lädt ihre Benutzergruppen gemeinsam
+     *
+     * @param res Das Abfrageergebnis
+     * @return Die Standorte in der Reihenfolge des Abfrageergebnisses
+     */
+    List<Location> getLocations(ResultSet res) throws SQLException {
+        final List<Location> result = new ArrayList<>();
+        while (res.next()) {
+            result.add(this.locations.merge(res.getInt("id"), l -> l.updateFields(res),
+                    () -> new Location(this, res, false)));
         }
+        this.loadLocationRelations(result);
+        return result;
     }
 
     /**
      * Entfernt nicht verwendete Standorte aus der Datenbank
      */
     public void removeUnusedLocations() throws SQLException {
-        this.getConnection().prepareCall(
-                "DELETE FROM locations WHERE locations.id NOT IN (SELECT location_id FROM devices) AND locations.id<>1")
-                .execute();
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.LOCATIONS_DELETE_UNUSED.prepare(connection)) {
+            s.execute();
+        }
     }
 
     /**
@@ -171,16 +330,10 @@ public class DataManager {
      * @return Eine Liste aller Geräte
      */
     public List<Device> getDevices() throws SQLException {
-        final ResultSet res = this.getConnection().prepareCall("SELECT * FROM devices").executeQuery();
-        final List<Device> result = new ArrayList<>();
-
-        if (res.isBeforeFirst()) {
-            while (res.next()) {
-                result.add(this.getDevice(res));
-            }
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.DEVICES_ALL.prepare(connection)) {
+            return this.getDevices(s.executeQuery());
         }
-
-        return result;
     }
 
     /**
@@ -189,14 +342,11 @@ public class DataManager {
     public Device[] getDevicesToDisplayXs(Location location) throws SQLException {
         final Device[] result = new Device[4];
 
-        final ResultSet sqlRes = this.getConnection()
-                .prepareCall("SELECT id FROM devices WHERE location_id=" + location.getId() + " ORDER BY position")
-                .executeQuery();
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.DEVICES_BY_LOCATION_POSITION.prepare(connection)) {
+            s.setInt(1, location.getId());
 
-        if (sqlRes.isBeforeFirst()) {
-            while (sqlRes.next()) {
-                final int id = sqlRes.getInt("id");
-                final Device dev = this.getDevice(id);
+            for (final Device dev : this.getDevices(s.executeQuery())) {
                 for (int i = 0; i < 4; i++) {
                     if (dev.getPosition() == i + 1 && result[i] == null) {
                         result[i] = dev;
@@ -204,9 +354,9 @@ public class DataManager {
                     }
                 }
             }
-        }
 
-        return result;
+            return result;
+        }
     }
 
     /**
@@ -215,19 +365,11 @@ public class DataManager {
      * @param location Der Ort, an dem der elwaClient stationiert ist.
      */
     public List<Device> getDevicesToDisplay(Location location) throws SQLException {
-        final ResultSet sqlRes = this.getConnection()
-                .prepareCall("SELECT id FROM devices WHERE location_id=" + location.getId() + " ORDER BY name")
-                .executeQuery();
-
-        List<Device> res = new ArrayList<>();
-        if (sqlRes.isBeforeFirst()) {
-            while (sqlRes.next()) {
-                final int id = sqlRes.getInt("id");
-                final Device dev = this.getDevice(id);
-                res.add(dev);
-            }
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.DEVICES_BY_LOCATION_NAME.prepare(connection)) {
+            s.setInt(1, location.getId());
+            return this.getDevices(s.executeQuery());
         }
-        return res;
     }
 
     /**
@@ -237,18 +379,11 @@ public class DataManager {
      * @return Eine Liste an Geräten, auf denen das Programm p verfügbar ist
      */
     public List<Device> getDevices(Program p) throws SQLException {
-        final ResultSet res = this.getConnection().prepareCall(
-                "SELECT devices.* FROM device_program_rel LEFT JOIN devices ON device_program_rel.device_id=devices" +
-                        ".id WHERE program_id=" + p.getId()).executeQuery();
-
-        final List<Device> result = new ArrayList<>();
-        if (res.isBeforeFirst()) {
-            while (res.next()) {
-                result.add(this.getDevice(res));
-            }
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.DEVICES_BY_PROGRAM.prepare(connection)) {
+            s.setInt(1, p.getId());
+            return this.getDevices(s.executeQuery());
         }
-
-        return result;
     }
 
     /**
@@ -258,26 +393,7 @@ public class DataManager {
      * @return Das geholte Gerät oder null, wenn kein Eintrag zur ID gefunden werden kann
      */
     public Device getDevice(int id) throws SQLException {
-        if (this.devices.containsKey(id)) {
-            final Device d = this.devices.get(id);
-            try {
-                d.update();
-            } catch (final NoDataFoundException e) {
-                // Das Gerät wurde aus der Datenbank gelöscht
-                this.devices.remove(id);
-                return null;
-            }
-            return d;
-        } else {
-            Device d;
-            try {
-                d = new Device(this, id);
-            } catch (final NoDataFoundException e) {
-                return null;
-            }
-            this.devices.put(d.getId(), d);
-            return d;
-        }
+        return this.devices.get(id, Device::update, () -> new Device(this, id));
     }
 
     /**
@@ -287,30 +403,57 @@ public class DataManager {
      * @return Das geholte Gerät
      */
     Device getDevice(ResultSet res) throws SQLException {
-        if (this.devices.containsKey(res.getInt("id"))) {
-            final Device d = this.devices.get(res.getInt("id"));
-            d.update(res);
-            return d;
-        } else {
-            final Device d = new Device(this, res);
-            this.devices.put(d.getId(), d);
-            return d;
+        return this.devices.merge(res.getInt("id"), d -> d.update(res), () -> new Device(this, res));
+    }
+
+    /**
+     * Holt alle Geräte eines Abfrageergebnisses. Programme und Benutzergruppen aller Geräte werden dabei gemeinsam
+     * geladen, sodass unabhängig von der Anzahl der Geräte nur eine feste Anzahl an Abfragen nötig ist.
+     *
+     * @param res Das Abfrageergebnis
+     * @return Die Geräte in der Reihenfolge des Abfrageergebnisses
+     */
+    List<Device> getDevices(ResultSet res) throws SQLException {
+        final List<Device> result = new ArrayList<>();
+        while (res.next()) {
+            result.add(this.devices.merge(res.getInt("id"), d -> d.updateFields(res),
+                    () -> new Device(this, res, false)));
         }
+        this.loadDeviceRelations(result);
+        return result;
     }
 
     /**
-     * Holt alle verfügbaren Programme aus der Datenbank
+     * Lädt die Programme und Benutzergruppen mehrerer Geräte gemeinsam
      */
-    public List<Program> getPrograms() throws SQLException {
-        final List<Program> programs = new LinkedList<>();
+    private void loadDeviceRelations(List<Device> devices) throws SQLException {
+        if (devices.isEmpty()) {
+            return;
+        }
+        final List<Integer> ids = new ArrayList<>();
+        devices.forEach(d -> ids.add(d.getId()));
 
-        final ResultSet res = this.getConnection().prepareCall("SELECT * FROM programs").executeQuery();
+        final Map<Integer, List<Integer>> programIds =
+                this.getRelation(Query.DEVICE_PROGRAMS_BY_DEVICES, ids, "device_id", "program_id");
+        final Map<Integer, List<Integer>> groupIds =
+                this.getRelation(Query.DEVICE_VALID_GROUPS_BY_DEVICES, ids, "device_id", "group_id");
+        final Map<Integer, Program> programs = this.getProgramsById(this.getRelatedIds(programIds));
+        final Map<Integer, UserGroup> groups = this.getUserGroupsById(this.getRelatedIds(groupIds));
 
-        while (res.next()) {
-            programs.add(this.getProgram(res));
+        for (final Device d : devices) {
+            d.setRelations(this.resolve(programIds.get(d.getId()), programs),
+                    this.resolve(groupIds.get(d.getId()), groups));
         }
+    }
 
-        return programs;
+    /**
+     * Holt alle verfügbaren Programme aus der Datenbank
+     */
+    public List<Program> getPrograms() throws SQLException {
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.PROGRAMS_ALL.prepare(connection)) {
+            return new LinkedList<>(this.getPrograms(s.executeQuery()));
+        }
     }
 
     /**
@@ -319,27 +462,7 @@ public class DataManager {
      * @return Das Programm
      */
     public Program getProgramById(int id) throws SQLException {
-        // Prüfe, ob das Gerät schon einmal geladen wurde
-        if (this.programs.containsKey(id)) {
-            final Program p = this.programs.get(id);
-            try {
-                p.update();
-            } catch (final NoDataFoundException e) {
-                // Das Programm wurde aus der Datenbank gelöscht
-                this.programs.remove(id);
-                return null;
-            }
-            return p;
-        } else {
-            Program p;
-            try {
-                p = new Program(this, id);
-            } catch (final NoDataFoundException e) {
-                return null;
-            }
-            this.programs.put(p.getId(), p);
-            return p;
-        }
+        return this.programs.get(id, Program::update, () -> new Program(this, id));
     }
 
     /**
@@ -349,14 +472,62 @@ public class DataManager {
      * @return Das Programm
      */
     Program getProgram(ResultSet res) throws SQLException {
-        if (this.programs.containsKey(res.getInt("id"))) {
-            final Program p = this.programs.get(res.getInt("id"));
-            p.update(res);
-            return p;
-        } else {
-            final Program p = new Program(this, res);
-            this.programs.put(res.getInt("id"), p);
-            return p;
+        return this.programs.merge(res.getInt("id"), p -> p.update(res), () -> new Program(this, res));
+    }
+
+    /**
+     * Holt alle Programme eines Abfrageergebnisses und lädt ihre Benutzergruppen gemeinsam
+     *
+     * @param res Das Abfrageergebnis
+     * @return Die Programme in der Reihenfolge des Abfrageergebnisses
+     */
+    List<Program> getPrograms(ResultSet res) throws SQLException {
+        final List<Program> result = new ArrayList<>();
+        while (res.next()) {
+            result.add(this.programs.merge(res.getInt("id"), p -> p.updateFields(res),
+                    () -> new Program(this, res, false)));
+        }
+        this.loadProgramRelations(result);
+        return result;
+    }
+
+    /**
+     * Holt mehrere Programme mit einer einzigen Abfrage
+     *
+     * @param ids Die IDs der Programme
+     * @return Die gefundenen Programme nach ihrer ID
+     */
+    private Map<Integer, Program> getProgramsById(Collection<Integer> ids) throws SQLException {
+        final Map<Integer, Program> result = new HashMap<>();
+        if (ids.isEmpty()) {
+            return result;
+        }
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.PROGRAMS_BY_IDS.prepare(connection)) {
+            s.setArray(1, connection.createArrayOf("integer", ids.toArray()));
+            for (final Program p : this.getPrograms(s.executeQuery())) {
+                result.put(p.getId(), p);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Lädt die Benutzergruppen mehrerer Programme gemeinsam
+     */
+    private void loadProgramRelations(List<Program> programs) throws SQLException {
+        if (programs.isEmpty()) {
+            return;
+        }
+        final List<Integer> ids = new ArrayList<>();
+        programs.forEach(p -> ids.add(p.getId()));
+
+        final Map<Integer, List<Integer>> groupIds =
+                this.getRelation(Query.PROGRAM_VALID_GROUPS_BY_PROGRAMS, ids, "program_id", "group_id");
+        final Map<Integer, UserGroup> groups = this.getUserGroupsById(this.getRelatedIds(groupIds));
+
+        for (final Program p : programs) {
+            p.setRelations(this.resolve(groupIds.get(p.getId()), groups));
         }
     }
 
@@ -366,14 +537,17 @@ public class DataManager {
      * @return Eine Liste aller verfügbarer Benutzergruppen.
      */
     public List<UserGroup> getUserGroups() throws SQLException {
-        ResultSet res = this.getConnection().prepareCall("SELECT * FROM user_groups ORDER BY name").executeQuery();
-        List<UserGroup> groups = new ArrayList<>();
-        if (res.isBeforeFirst()) {
-            while (res.next()) {
-                groups.add(this.getUserGroupById(res));
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.USER_GROUPS_ALL.prepare(connection)) {
+            ResultSet res = s.executeQuery();
+            List<UserGroup> groups = new ArrayList<>();
+            if (res.isBeforeFirst()) {
+                while (res.next()) {
+                    groups.add(this.getUserGroupById(res));
+                }
             }
+            return groups;
         }
-        return groups;
     }
 
     /**
@@ -383,25 +557,7 @@ public class DataManager {
      * @return Die Benutzergruppe
      */
     public UserGroup getUserGroupById(int id) throws SQLException {
-        if (this.userGroups.containsKey(id)) {
-            UserGroup g = this.userGroups.get(id);
-            try {
-                g.update();
-            } catch (NoDataFoundException e) {
-                this.userGroups.remove(id);
-                return null;
-            }
-            return g;
-        } else {
-            UserGroup g;
-            try {
-                g = new UserGroup(this, id);
-            } catch (NoDataFoundException e) {
-                return null;
-            }
-            this.userGroups.put(id, g);
-            return g;
-        }
+        return this.userGroups.get(id, UserGroup::update, () -> new UserGroup(this, id));
     }
 
     /**
@@ -411,30 +567,113 @@ public class DataManager {
      * @return Die Benutzergruppe
      */
     private UserGroup getUserGroupById(ResultSet res) throws SQLException {
-        if (this.userGroups.containsKey(res.getInt("id"))) {
-            UserGroup g = this.userGroups.get(res.getInt("id"));
-            g.update(res);
-            return g;
-        } else {
-            UserGroup g;
-            g = new UserGroup(this, res);
-            this.userGroups.put(res.getInt("id"), g);
-            return g;
+        return this.userGroups.merge(res.getInt("id"), g -> g.update(res), () -> new UserGroup(this, res));
+    }
+
+    /**
+     * Holt mehrere Benutzergruppen mit einer einzigen Abfrage
+     *
+     * @param ids Die IDs der Benutzergruppen
+     * @return Die gefundenen Benutzergruppen nach ihrer ID
+     */
+    private Map<Integer, UserGroup> getUserGroupsById(Collection<Integer> ids) throws SQLException {
+        final Map<Integer, UserGroup> result = new HashMap<>();
+        if (ids.isEmpty()) {
+            return result;
+        }
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.USER_GROUPS_BY_IDS.prepare(connection)) {
+            s.setArray(1, connection.createArrayOf("integer", ids.toArray()));
+            final ResultSet res = s.executeQuery();
+            while (res.next()) {
+                final UserGroup group = this.getUserGroupById(res);
+                result.put(group.getId(), group);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Lädt die Benutzergruppen mehrerer Standorte gemeinsam
+     */
+    private void loadLocationRelations(List<Location> locations) throws SQLException {
+        if (locations.isEmpty()) {
+            return;
+        }
+        final List<Integer> ids = new ArrayList<>();
+        locations.forEach(l -> ids.add(l.getId()));
+
+        final Map<Integer, List<Integer>> groupIds =
+                this.getRelation(Query.LOCATION_VALID_GROUPS_BY_LOCATIONS, ids, "location_id", "group_id");
+        final Map<Integer, UserGroup> groups = this.getUserGroupsById(this.getRelatedIds(groupIds));
+
+        for (final Location l : locations) {
+            l.setRelations(this.resolve(groupIds.get(l.getId()), groups));
         }
     }
 
+    /**
+     * Liest eine Beziehungstabelle für mehrere Einträge mit einer einzigen Abfrage.
+     *
+     * @param query    Die Abfrage, die als einzigen Parameter ein Array der IDs erwartet
+     * @param ids      Die IDs, deren Beziehungen gelesen werden sollen
+     * @param keyCol   Die Spalte mit der ID des Eintrags
+     * @param valueCol Die Spalte mit der ID des verknüpften Eintrags
+     * @return Die IDs der verknüpften Einträge je Eintrag
+     */
+    private Map<Integer, List<Integer>> getRelation(Query query, Collection<Integer> ids, String keyCol,
+                                                    String valueCol) throws SQLException {
+        final Map<Integer, List<Integer>> result = new HashMap<>();
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = query.prepare(connection)) {
+            s.setArray(1, connection.createArrayOf("integer", ids.toArray()));
+            final ResultSet res = s.executeQuery();
+            while (res.next()) {
+                result.computeIfAbsent(res.getInt(keyCol), k -> new ArrayList<>()).add(res.getInt(valueCol));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gibt alle verknüpften IDs einer Beziehung zurück
+     */
+    private Set<Integer> getRelatedIds(Map<Integer, List<Integer>> relation) {
+        final Set<Integer> result = new HashSet<>();
+        relation.values().forEach(result::addAll);
+        return result;
+    }
+
+    /**
+     * Ordnet verknüpften IDs die bereits geladenen Einträge zu. Nicht mehr vorhandene Einträge werden übersprungen.
+     */
+    private <T> List<T> resolve(List<Integer> ids, Map<Integer, T> entities) {
+        final List<T> result = new ArrayList<>();
+        if (ids != null) {
+            for (final Integer id : ids) {
+                final T entity = entities.get(id);
+                if (entity != null) {
+                    result.add(entity);
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * Ermittelt die Standard-Benutzergruppe
      *
      * @return Die Standard-Benutzergruppe
      */
     public UserGroup getDefaultUserGroup() throws SQLException {
-        ResultSet res =
-                this.getConnection().prepareCall("SELECT * FROM user_groups ORDER BY id ASC LIMIT 1").executeQuery();
-        if (res.isBeforeFirst() && res.next()) {
-            return new UserGroup(this, res);
-        } else {
-            return null;
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.USER_GROUP_DEFAULT.prepare(connection)) {
+            ResultSet res = s.executeQuery();
+            if (res.isBeforeFirst() && res.next()) {
+                return new UserGroup(this, res);
+            } else {
+                return null;
+            }
         }
     }
 
@@ -446,14 +685,15 @@ public class DataManager {
      * @throws SQLException Wenn der letzte Benutzer nicht geladen werden kann
      */
     public User getLastUser(Device d) throws SQLException {
-        final ResultSet res = this.getConnection().prepareCall(
-                "SELECT users.* " + "FROM executions LEFT JOIN users ON executions.user_id=users.id " +
-                        "WHERE device_id=" + d.getId() + " AND user_id>=0 AND start IS NOT NULL " +
-                        "ORDER BY executions.id DESC LIMIT 1").executeQuery();
-        if (res.isBeforeFirst() && res.next()) {
-            return this.getUser(res);
-        } else {
-            return null;
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.USER_LAST_ON_DEVICE.prepare(connection)) {
+            s.setInt(1, d.getId());
+            final ResultSet res = s.executeQuery();
+            if (res.isBeforeFirst() && res.next()) {
+                return this.getUser(res);
+            } else {
+                return null;
+            }
         }
     }
 
@@ -465,27 +705,19 @@ public class DataManager {
      * @throws SQLException Wenn die Abfrage nicht ausgeführt werden kann
      */
     public User getUserById(int id) throws SQLException {
-        if (this.users.containsKey(id)) {
-            final User u = this.users.get(id);
-            try {
-                u.update();
-            } catch (final NoDataFoundException e) {
-                // Benutzer wurde aus der Datenbank gelöscht
-                this.users.remove(id);
-                return null;
-            }
-            return u;
-        } else {
+        return this.users.get(id, User::update, () -> {
             // Benutzer aus Datenbank laden
-            final ResultSet res = this.getConnection().prepareCall("SELECT * FROM users WHERE id=" + id).executeQuery();
-            if (res.isBeforeFirst() && res.next()) {
-                final User u = new User(this, res, this.getUserGroupById(res.getInt("group_id")));
-                this.users.put(u.getId(), u);
-                return u;
-            } else {
-                return null;
+            try (Connection connection = this.getConnection();
+                 PreparedStatement s = Query.USER_BY_ID.prepare(connection)) {
+                s.setInt(1, id);
+                final ResultSet res = s.executeQuery();
+                if (res.isBeforeFirst() && res.next()) {
+                    return new User(this, res, this.getUserGroupById(res.getInt("group_id")));
+                } else {
+                    return null;
+                }
             }
-        }
+        });
     }
 
     /**
@@ -495,13 +727,134 @@ public class DataManager {
      * @throws SQLException Wenn die Abfrage nicht ausgeführt werden kann
      */
     public List<User> getUsers() throws SQLException {
-        final ResultSet res =
-                this.getConnection().prepareCall("SELECT * FROM users WHERE deleted=FALSE").executeQuery();
-        final Vector<User> users = new Vector<>();
-        while (res.next()) {
-            users.add(new User(this, res, this.getUserGroupById(res.getInt("group_id"))));
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.USERS_ALL.prepare(connection)) {
+            final ResultSet res = s.executeQuery();
+            final Vector<User> users = new Vector<>();
+            while (res.next()) {
+                users.add(new User(this, res, this.getUserGroupById(res.getInt("group_id"))));
+            }
+            return users;
+        }
+    }
+
+    /**
+     * Holt einen Ausschnitt der Benutzer aus der Datenbank. Das Guthaben wird dabei in derselben Abfrage ermittelt.
+     *
+     * @param filter    Nur Benutzer, deren Name, Benutzername oder Kartennummer diesen Text enthält, oder null
+     * @param order     Die Sortierung
+     * @param ascending Ob aufsteigend sortiert werden soll
+     * @param offset    Die Anzahl zu überspringender Benutzer
+     * @param limit     Die maximale Anzahl Benutzer
+     * @return Die Benutzer
+     * @throws SQLException Wenn die Abfrage nicht ausgeführt werden kann
+     */
+    public List<User> getUsers(String filter, UserOrder order, boolean ascending, int offset, int limit)
+            throws SQLException {
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.USERS_PAGE.prepareFormatted(connection, order.toSql(ascending))) {
+            final int i = this.setUserFilter(s, filter);
+            s.setInt(i, limit);
+            s.setInt(i + 1, offset);
+            final ResultSet res = s.executeQuery();
+            final List<User> users = new ArrayList<>(limit);
+            while (res.next()) {
+                users.add(this.users.merge(res.getInt("id"), u -> u.update(res, true),
+                        () -> new User(this, res, this.getUserGroupById(res.getInt("group_id")), true)));
+            }
+            return users;
+        }
+    }
+
+    /**
+     * Zählt die Benutzer, die einem Filter entsprechen.
+     *
+     * @param filter Nur Benutzer, deren Name, Benutzername oder Kartennummer diesen Text enthält, oder null
+     */
+    public int getUserCount(String filter) throws SQLException {
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.USERS_COUNT.prepare(connection)) {
+            this.setUserFilter(s, filter);
+            final ResultSet res = s.executeQuery();
+            res.next();
+            return res.getInt(1);
+        }
+    }
+
+    /**
+     * Summiert die Kontostände der Benutzer, die einem Filter entsprechen. Die Kosten laufender Programme sind hierin
+     * nicht abgezogen.
+     *
+     * @param filter Nur Benutzer, deren Name, Benutzername oder Kartennummer diesen Text enthält, oder null
+     */
+    public BigDecimal getCreditSum(String filter) throws SQLException {
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.USERS_CREDIT_SUM.prepare(connection)) {
+            this.setUserFilter(s, filter);
+            final ResultSet res = s.executeQuery();
+            res.next();
+            return res.getBigDecimal(1);
+        }
+    }
+
+    /**
+     * Sucht Benutzer, deren Name, Benutzername oder Kartennummer den gegebenen Text enthält. Die Treffer sind nach
+     * Relevanz sortiert: exakte Treffer auf Benutzername oder Kartennummer zuerst, dann Benutzer, deren Name oder
+     * Benutzername mit dem Text beginnt, dann nach Ähnlichkeit. Die Suche verwendet den Trigramm-Index über die
+     * durchsuchten Spalten.
+     *
+     * @param text   Der Suchtext
+     * @param offset Die Anzahl zu überspringender Treffer
+     * @param limit  Die maximale Anzahl Treffer
+     * @return Die gefundenen Benutzer
+     * @throws SQLException Wenn die Abfrage nicht ausgeführt werden kann
+     */
+    public List<User> searchUsers(String text, int offset, int limit) throws SQLException {
+        final String term = text.trim();
+        final String lowerTerm = term.toLowerCase(Locale.ROOT);
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.USERS_SEARCH.prepare(connection)) {
+            s.setString(1, "%" + escapeLike(lowerTerm) + "%");
+            s.setString(2, lowerTerm);
+            s.setString(3, term);
+            s.setString(4, escapeLike(lowerTerm) + "%");
+            s.setString(5, escapeLike(lowerTerm) + "%");
+            s.setString(6, lowerTerm);
+            s.setInt(7, limit);
+            s.setInt(8, offset);
+            final ResultSet res = s.executeQuery();
+            final List<User> users = new ArrayList<>(limit);
+            while (res.next()) {
+                users.add(this.users.merge(res.getInt("id"), u -> u.update(res, true),
+                        () -> new User(this, res, this.getUserGroupById(res.getInt("group_id")), true)));
+            }
+            return users;
+        }
+    }
+
+    /**
+     * Setzt die Parameter des Benutzer-Filters an den Anfang einer Abfrage.
+     *
+     * @return Die Position des nächsten Parameters
+     */
+    private int setUserFilter(PreparedStatement s, String filter) throws SQLException {
+        if (filter == null || filter.trim().isEmpty()) {
+            s.setNull(1, Types.VARCHAR);
+            s.setNull(2, Types.VARCHAR);
+        } else {
+            // Klein geschrieben, damit der Trigramm-Index über lower(...) verwendet werden kann
+            final String pattern = "%" + escapeLike(filter.trim().toLowerCase(Locale.ROOT)) + "%";
+            s.setString(1, pattern);
+            s.setString(2, pattern);
         }
-        return users;
+        return 3;
+    }
+
+    /**
+     * Maskiert die Platzhalter eines Textes für die Verwendung in einem LIKE-Muster.
+     */
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
     }
 
     /**
@@ -512,15 +865,8 @@ public class DataManager {
      * @throws SQLException Wenn beim Laden der Daten ein Fehler auftritt
      */
     private User getUser(ResultSet res) throws SQLException {
-        if (this.users.containsKey(res.getInt("id"))) {
-            final User u = this.users.get(res.getInt("id"));
-            u.update(res);
-            return u;
-        } else {
-            final User u = new User(this, res, this.getUserGroupById(res.getInt("group_id")));
-            this.users.put(u.getId(), u);
-            return u;
-        }
+        return this.users.merge(res.getInt("id"), u -> u.update(res),
+                () -> new User(this, res, this.getUserGroupById(res.getInt("group_id"))));
     }
 
     /**
@@ -530,13 +876,60 @@ public class DataManager {
      * @return Den gefundenen Benutzer oder null, wenn kein Eintrag zur Id gefunden werden kann
      */
     public User getUserByCardId(String cardId) throws SQLException {
-        final ResultSet res = this.getConnection()
-                .prepareCall("SELECT * FROM users WHERE deleted=false AND card_ids ~ '(?n)^" + cardId + "$' LIMIT 1")
-                .executeQuery();
-        if (res.isBeforeFirst() && res.next()) {
-            return this.getUser(res);
-        } else {
-            return null;
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.USER_BY_CARD_ID.prepare(connection)) {
+            s.setString(1, cardId);
+            final ResultSet res = s.executeQuery();
+            if (res.isBeforeFirst() && res.next()) {
+                return this.getUser(res);
+            } else {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Holt die Kartennummern aller Benutzer aus der Datenbank
+     *
+     * @return Die Ids der Benutzer, zugeordnet zu ihren Kartennummern
+     * @throws SQLException Wenn die Abfrage nicht ausgeführt werden kann
+     */
+    public Map<String, Integer> getUserIdsByCardId() throws SQLException {
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.USER_CARD_IDS_ALL.prepare(connection)) {
+            final ResultSet res = s.executeQuery();
+            final Map<String, Integer> userIds = new HashMap<>();
+            while (res.next()) {
+                final String cardIds = res.getString("card_ids");
+                if (cardIds == null) {
+                    continue;
+                }
+                for (final String cardId : cardIds.split("\n")) {
+                    if (!cardId.isEmpty()) {
+                        userIds.put(cardId, res.getInt("id"));
+                    }
+                }
+            }
+            return userIds;
+        }
+    }
+
+    /**
+     * Sucht den Benutzer mit dem gegebenen Benutzernamen, ohne Beachtung der Groß- und Kleinschreibung.
+     *
+     * @param username Der Benutzername
+     * @return Den gefundenen Benutzer oder null, wenn es keinen solchen gibt.
+     */
+    public User getUserByUsername(String username) throws SQLException {
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.USER_BY_USERNAME.prepare(connection)) {
+            s.setString(1, username);
+            final ResultSet res = s.executeQuery();
+            if (res.next()) {
+                return this.getUser(res);
+            } else {
+                return null;
+            }
         }
     }
 
@@ -547,14 +940,15 @@ public class DataManager {
      * @return Den Benutzer mit der gegebenen Email-Adresse oder null, wenn es keinen solchen gibt.
      */
     public User getUserByEmail(String email) throws SQLException {
-        final PreparedStatement s =
-                this.getConnection().prepareStatement("SELECT * FROM users WHERE deleted=FALSE AND email=? LIMIT 1");
-        s.setString(1, email);
-        final ResultSet res = s.executeQuery();
-        if (res.isBeforeFirst() && res.next()) {
-            return this.getUser(res);
-        } else {
-            return null;
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.USER_BY_EMAIL.prepare(connection)) {
+            s.setString(1, email);
+            final ResultSet res = s.executeQuery();
+            if (res.isBeforeFirst() && res.next()) {
+                return this.getUser(res);
+            } else {
+                return null;
+            }
         }
     }
 
@@ -566,17 +960,18 @@ public class DataManager {
      * @return Den gefundenen Benutzer, oder null, wenn der Schlüssel unbekannt oder abgelaufen ist.
      */
     public User getUserByPasswordResetKey(String key) throws SQLException {
-        final PreparedStatement s = this.getConnection()
-                .prepareStatement("SELECT * FROM users WHERE deleted=FALSE AND " + "password_reset_key=?");
-        s.setString(1, key);
-        final ResultSet res = s.executeQuery();
-        if (res.isBeforeFirst() && res.next()) {
-            final User u = this.getUser(res);
-            if (u.passwordResetKeyIsValid()) {
-                return u;
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.USER_BY_PASSWORD_RESET_KEY.prepare(connection)) {
+            s.setString(1, key);
+            final ResultSet res = s.executeQuery();
+            if (res.isBeforeFirst() && res.next()) {
+                final User u = this.getUser(res);
+                if (u.passwordResetKeyIsValid()) {
+                    return u;
+                }
             }
+            return null;
         }
-        return null;
     }
 
     /**
@@ -588,13 +983,36 @@ public class DataManager {
      */
     public List<Execution> getNotFinishedExecutions(User u) throws SQLException {
         final List<Execution> executions = new LinkedList<>();
-        final ResultSet res = this.getConnection().prepareCall(
-                "SELECT * FROM executions WHERE user_id=" + u.getId() + " AND finished=false AND start IS NOT NULL")
-                .executeQuery();
-        while (res.next()) {
-            executions.add(this.getExecution(res));
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.EXECUTIONS_NOT_FINISHED_BY_USER.prepare(connection)) {
+            s.setInt(1, u.getId());
+            final ResultSet res = s.executeQuery();
+            while (res.next()) {
+                executions.add(this.getExecution(res));
+            }
+            return executions;
+        }
+    }
+
+    /**
+     * Sucht alle Ausführungen, deren Höchstdauer abgelaufen ist, ohne dass sie beendet wurden, die ältesten zuerst.
+     *
+     * @param gracePeriod Die Zeit über die Höchstdauer hinaus, die einem Client zum Beenden gelassen wird
+     * @return Die abgelaufenen Ausführungen
+     * @throws SQLException Falls ein Fehler bei der Datenbankabfrage auftritt
+     * @see ExpiredExecutionReconciler
+     */
+    public List<Execution> getExpiredExecutions(Duration gracePeriod) throws SQLException {
+        final List<Execution> executions = new ArrayList<>();
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.EXECUTIONS_EXPIRED.prepare(connection)) {
+            s.setLong(1, gracePeriod.getSeconds());
+            final ResultSet res = s.executeQuery();
+            while (res.next()) {
+                executions.add(this.getExecution(res));
+            }
+            return executions;
         }
-        return executions;
     }
 
     /**
@@ -604,29 +1022,21 @@ public class DataManager {
      * @return Die Ausführung
      */
     private Execution getExecution(ResultSet res) throws SQLException {
-        if (this.executions.containsKey(res.getInt("id"))) {
-            final Execution e = this.executions.get(res.getInt("id"));
-            e.update(res);
-            return e;
-        } else {
-            final Execution e = new Execution(this, res, this.getDevice(res.getInt("device_id")),
-                    this.getProgramById(res.getInt("program_id")), this.getUserById(res.getInt("user_id")));
-            this.executions.put(e.getId(), e);
-            return e;
-        }
+        return this.executions.merge(res.getInt("id"), e -> e.update(res),
+                () -> new Execution(this, res, this.getDevice(res.getInt("device_id")),
+                        this.getProgramById(res.getInt("program_id")), this.getUserById(res.getInt("user_id"))));
     }
 
     public Execution getExecution(int id) throws SQLException {
-        if (this.executions.containsKey(id)) {
-            final Execution e = this.executions.get(id);
-            e.update();
-            return e;
-        } else {
-            final ResultSet res =
-                    this.getConnection().prepareCall("SELECT * FROM executions WHERE id=" + id).executeQuery();
-            res.next();
-            return this.getExecution(res);
-        }
+        return this.executions.get(id, Execution::update, () -> {
+            try (Connection connection = this.getConnection();
+                 PreparedStatement s = Query.EXECUTION_BY_ID.prepare(connection)) {
+                s.setInt(1, id);
+                final ResultSet res = s.executeQuery();
+                res.next();
+                return this.getExecution(res);
+            }
+        });
     }
 
     /**
@@ -636,19 +1046,19 @@ public class DataManager {
      * @return Die derzeit laufende Ausführung auf dem Gerät.
      */
     public Execution getRunningExecution(Device device) throws SQLException {
-        final PreparedStatement s = this.getConnection()
-                .prepareStatement("SELECT * FROM executions WHERE device_id=? AND finished=? AND start IS NOT NULL");
-        s.setInt(1, device.getId());
-        s.setBoolean(2, false);
-        final ResultSet res = s.executeQuery();
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.EXECUTIONS_NOT_FINISHED_BY_DEVICE.prepare(connection)) {
+            s.setInt(1, device.getId());
+            final ResultSet res = s.executeQuery();
 
-        while (res.next()) {
-            final Execution e = this.getExecution(res);
-            if (!e.isExpired()) {
-                return e;
+            while (res.next()) {
+                final Execution e = this.getExecution(res);
+                if (!e.isExpired()) {
+                    return e;
+                }
             }
+            return null;
         }
-        return null;
     }
 
     /**
@@ -658,18 +1068,59 @@ public class DataManager {
      * @return Die Ausführungen auf dem Gerät.
      */
     public List<Execution> getExecutions(Device device) throws SQLException {
-        final PreparedStatement s = this.getConnection().prepareStatement(
-                "SELECT * FROM executions WHERE device_id=? AND start IS NOT NULL ORDER BY start DESC");
-        s.setInt(1, device.getId());
-        final ResultSet res = s.executeQuery();
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.EXECUTIONS_BY_DEVICE.prepare(connection)) {
+            s.setInt(1, device.getId());
+            final ResultSet res = s.executeQuery();
 
-        final List<Execution> executions = new Vector<>();
+            final List<Execution> executions = new Vector<>();
 
-        while (res.next()) {
-            executions.add(this.getExecution(res));
+            while (res.next()) {
+                executions.add(this.getExecution(res));
+            }
+
+            return executions;
         }
+    }
+
+    /**
+     * Holt einen Ausschnitt der registrierten Ausführungen auf einem Gerät aus der Datenbank, die jüngsten zuerst.
+     *
+     * @param device Das Gerät, wessen Ausführungen gesucht sind.
+     * @param offset Die Anzahl zu überspringender Ausführungen.
+     * @param limit  Die maximale Anzahl Ausführungen.
+     * @return Die Ausführungen auf dem Gerät.
+     */
+    public List<Execution> getExecutions(Device device, int offset, int limit) throws SQLException {
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.EXECUTIONS_BY_DEVICE_PAGE.prepare(connection)) {
+            s.setInt(1, device.getId());
+            s.setInt(2, limit);
+            s.setInt(3, offset);
+            final ResultSet res = s.executeQuery();
 
-        return executions;
+            final List<Execution> executions = new ArrayList<>(limit);
+            while (res.next()) {
+                executions.add(this.getExecution(res));
+            }
+            return executions;
+        }
+    }
+
+    /**
+     * Zählt die registrierten Ausführungen auf einem Gerät.
+     *
+     * @param device Das Gerät, wessen Ausführungen gezählt werden.
+     * @return Die Anzahl Ausführungen auf dem Gerät.
+     */
+    public int getExecutionCount(Device device) throws SQLException {
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.EXECUTIONS_COUNT_BY_DEVICE.prepare(connection)) {
+            s.setInt(1, device.getId());
+            final ResultSet res = s.executeQuery();
+            res.next();
+            return res.getInt(1);
+        }
     }
 
     /**
@@ -683,8 +1134,7 @@ public class DataManager {
      */
     public Execution newExecution(User user, Program program, Device device) throws SQLException {
         final Execution e = new Execution(this, device, program, user);
-        this.executions.put(e.getId(), e);
-        return e;
+        return this.executions.put(e.getId(), e, true);
     }
 
     /**
@@ -694,15 +1144,222 @@ public class DataManager {
      * @return Die Buchungen eines Benutzers
      */
     public List<CreditAccountingEntry> getAccountingEntries(User user) throws SQLException {
-        final ResultSet res = this.getConnection()
-                .prepareCall("SELECT * FROM credit_accounting WHERE user_id=" + user.getId() + " ORDER BY date DESC")
-                .executeQuery();
-        final List<CreditAccountingEntry> entries;
-        entries = new LinkedList<>();
-        while (res.next()) {
-            entries.add(new CreditAccountingEntry(this, res, user));
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.ACCOUNTING_BY_USER.prepare(connection)) {
+            s.setInt(1, user.getId());
+            final ResultSet res = s.executeQuery();
+            final List<CreditAccountingEntry> entries;
+            entries = new LinkedList<>();
+            while (res.next()) {
+                entries.add(new CreditAccountingEntry(this, res, user));
+            }
+            return entries;
+        }
+    }
+
+    /**
+     * Holt einen Ausschnitt der Buchungen eines Benutzers aus der Datenbank, die jüngsten zuerst.
+     *
+     * @param user   Der Benutzer, dessen Buchungen geladen werden sollen
+     * @param offset Die Anzahl zu überspringender Buchungen
+     * @param limit  Die maximale Anzahl Buchungen
+     * @return Die Buchungen
+     */
+    public List<CreditAccountingEntry> getAccountingEntries(User user, int offset, int limit) throws SQLException {
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.ACCOUNTING_BY_USER_PAGE.prepare(connection)) {
+            s.setInt(1, user.getId());
+            s.setInt(2, limit);
+            s.setInt(3, offset);
+            final ResultSet res = s.executeQuery();
+            final List<CreditAccountingEntry> entries = new ArrayList<>(limit);
+            while (res.next()) {
+                entries.add(new CreditAccountingEntry(this, res, user));
+            }
+            return entries;
+        }
+    }
+
+    /**
+     * Zählt die Buchungen eines Benutzers.
+     *
+     * @param user Der Benutzer, dessen Buchungen gezählt werden sollen
+     */
+    public int getAccountingEntryCount(User user) throws SQLException {
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.ACCOUNTING_COUNT_BY_USER.prepare(connection)) {
+            s.setInt(1, user.getId());
+            final ResultSet res = s.executeQuery();
+            res.next();
+            return res.getInt(1);
+        }
+    }
+
+    /**
+     * Holt die Nutzung je Monat aus der vorab verdichteten Tagesstatistik, die umsatzstärksten Einträge eines Monats
+     * zuerst.
+     *
+     * @param dimension Das Merkmal, nach dem die Nutzung aufgeschlüsselt wird
+     * @param from      Der erste Monat
+     * @param to        Der letzte Monat
+     * @return Die Nutzung je Monat und Merkmal, die jüngsten Monate zuerst
+     */
+    public List<UsageStatistics> getMonthlyUsage(UsageDimension dimension, YearMonth from, YearMonth to)
+            throws SQLException {
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.USAGE_BY_MONTH
+                     .prepareFormatted(connection, dimension.getColumn(), dimension.getTable())) {
+            s.setDate(1, java.sql.Date.valueOf(from.atDay(1)));
+            s.setDate(2, java.sql.Date.valueOf(to.plusMonths(1).atDay(1)));
+            final ResultSet res = s.executeQuery();
+            final List<UsageStatistics> usage = new ArrayList<>();
+            while (res.next()) {
+                usage.add(new UsageStatistics(res));
+            }
+            return usage;
+        }
+    }
+
+    /**
+     * Schreibt beendete Ausführungen in die Tagesstatistik des Tages, an dem sie jeweils begonnen haben.
+     *
+     * @param connection Die Verbindung der Transaktion, in der die Ausführungen beendet werden
+     * @param executions Die beendeten Ausführungen
+     */
+    void addUsage(Connection connection, Collection<Execution> executions) throws SQLException {
+        if (executions.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement s = Query.USAGE_ADD.prepare(connection)) {
+            for (final Execution e : executions) {
+                final Duration duration = Duration.between(e.getStartDate(), e.getEndDate());
+                final BigDecimal listPrice = e.getProgram().getListPrice(duration);
+                // Ausführungen ohne Benutzerkonto werden nicht bezahlt, siehe User#payExecution(Execution). Erlassene
+                // Preise zählen nicht als Rabatt.
+                final boolean paid = e.getUser().getId() >= 0;
+                final BigDecimal price = paid ? e.getPrice() : BigDecimal.ZERO;
+                final BigDecimal discount = paid && listPrice != null && !e.isPriceWaived() ?
+                        listPrice.subtract(price) : BigDecimal.ZERO;
+                s.setDate(1, java.sql.Date.valueOf(e.getStartDate().toLocalDate()));
+                s.setInt(2, e.getDevice().getId());
+                s.setInt(3, e.getProgram().getId());
+                s.setInt(4, e.getDevice().getLocation() != null ? e.getDevice().getLocation().getId() : -1);
+                s.setInt(5, e.getUser().getGroup() != null ? e.getUser().getGroup().getId() : -1);
+                s.setLong(6, duration.getSeconds());
+                s.setBigDecimal(7, price);
+                s.setBigDecimal(8, discount);
+                // Ausführungen ohne Messung zählen nicht zum Energieverbrauch je Lauf
+                final double energy = e.getEnergy();
+                s.setInt(9, Double.isNaN(energy) ? 0 : 1);
+                s.setDouble(10, Double.isNaN(energy) ? 0 : energy);
+                s.addBatch();
+            }
+            s.executeBatch();
+        }
+    }
+
+    /**
+     * Holt den gelernten Leistungsverlauf eines Programms auf einem Gerät.
+     *
+     * @return Der Leistungsverlauf, oder null, falls noch keine Ausführung gelernt wurde
+     */
+    public AutoEndProfile getAutoEndProfile(Device device, Program program) throws SQLException {
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.AUTO_END_PROFILE.prepare(connection)) {
+            s.setInt(1, device.getId());
+            s.setInt(2, program.getId());
+            final ResultSet res = s.executeQuery();
+            return res.next() ? new AutoEndProfile(res) : null;
+        }
+    }
+
+    /**
+     * Speichert einen gelernten Leistungsverlauf und ersetzt dabei den bisherigen.
+     */
+    public void saveAutoEndProfile(AutoEndProfile profile) throws SQLException {
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.AUTO_END_PROFILE_SAVE.prepare(connection)) {
+            s.setInt(1, profile.getDeviceId());
+            s.setInt(2, profile.getProgramId());
+            s.setInt(3, profile.getRuns());
+            s.setInt(4, (int) profile.getActiveDuration().getSeconds());
+            s.setInt(5, (int) profile.getLongestPause().getSeconds());
+            s.execute();
+        }
+    }
+
+    /**
+     * Speichert eine während einer Ausführung erkannte Störung eines Geräts.
+     *
+     * @param execution Die Ausführung, während der die Störung erkannt wurde
+     * @param type      Die Art der Störung
+     * @param message   Die Beschreibung der Störung
+     */
+    public void addDeviceFault(Execution execution, DeviceFaultType type, String message) throws SQLException {
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.DEVICE_FAULT_INSERT.prepare(connection)) {
+            s.setInt(1, execution.getDevice().getId());
+            s.setInt(2, execution.getId());
+            s.setString(3, type.name());
+            s.setString(4, message);
+            s.execute();
+        }
+    }
+
+    /**
+     * Holt die noch nicht erledigten Störungen der Geräte eines Standorts, die jüngsten zuerst.
+     */
+    public List<DeviceFault> getOpenDeviceFaults(Location location) throws SQLException {
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.DEVICE_FAULTS_OPEN_BY_LOCATION.prepare(connection)) {
+            s.setInt(1, location.getId());
+            final ResultSet res = s.executeQuery();
+            final List<DeviceFault> faults = new ArrayList<>();
+            while (res.next()) {
+                faults.add(new DeviceFault(res));
+            }
+            return faults;
+        }
+    }
+
+    /**
+     * Markiert eine Störung als erledigt.
+     */
+    public void resolveDeviceFault(DeviceFault fault) throws SQLException {
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.DEVICE_FAULT_RESOLVE.prepare(connection)) {
+            s.setInt(1, fault.getId());
+            s.execute();
+        }
+    }
+
+    /**
+     * Speichert Leistungsmesswerte mit einer einzigen Anweisung.
+     *
+     * @param deviceIds Die Ids der Geräte
+     * @param times     Die Zeitpunkte der Messungen in Millisekunden seit der Epoche
+     * @param watts     Die gemessenen Leistungen
+     * @param count     Die Anzahl zu speichernder Messwerte am Anfang der Felder
+     */
+    public void addPowerSamples(int[] deviceIds, long[] times, float[] watts, int count) throws SQLException {
+        if (count == 0) {
+            return;
+        }
+        final Integer[] deviceArray = new Integer[count];
+        final Timestamp[] timeArray = new Timestamp[count];
+        final Float[] wattArray = new Float[count];
+        for (int i = 0; i < count; i++) {
+            deviceArray[i] = deviceIds[i];
+            timeArray[i] = new Timestamp(times[i]);
+            wattArray[i] = watts[i];
+        }
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.POWER_SAMPLES_INSERT.prepare(connection)) {
+            s.setArray(1, connection.createArrayOf("integer", deviceArray));
+            s.setArray(2, connection.createArrayOf("timestamp", timeArray));
+            s.setArray(3, connection.createArrayOf("real", wattArray));
+            s.execute();
         }
-        return entries;
     }
 
     /**
@@ -712,13 +1369,15 @@ public class DataManager {
      * @return Die letzte Einzahlung des Benutzers
      */
     public CreditAccountingEntry getLastInpayment(User user) throws SQLException {
-        final ResultSet res = this.getConnection().prepareCall(
-                "SELECT * FROM credit_accounting WHERE user_id=" + user.getId() +
-                        " AND amount>0 ORDER BY DATE DESC LIMIT 1").executeQuery();
-        if (res.next()) {
-            return new CreditAccountingEntry(this, res, user);
-        } else {
-            return null;
+        try (Connection connection = this.getConnection();
+             PreparedStatement s = Query.ACCOUNTING_LAST_INPAYMENT.prepare(connection)) {
+            s.setInt(1, user.getId());
+            final ResultSet res = s.executeQuery();
+            if (res.next()) {
+                return new CreditAccountingEntry(this, res, user);
+            } else {
+                return null;
+            }
         }
     }
 }
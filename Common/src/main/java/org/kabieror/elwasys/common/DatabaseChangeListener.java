@@ -0,0 +1,215 @@
+package org.kabieror.elwasys.common;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+/**
+ * Empfängt die Änderungsbenachrichtigungen der Datenbank auf einer eigenen Verbindung und leitet sie an den
+ * {@link DataManager} weiter.
+ * <p>
+ * Bricht die Verbindung ab, so wird sie wiederhergestellt. Da in der Zwischenzeit Benachrichtigungen verloren gegangen
+ * sein können, werden danach alle zwischengespeicherten Entitäten als abgelaufen markiert.
+ *
+ * @author Oliver Kabierschke
+ */
+class DatabaseChangeListener implements Runnable {
+
+    /**
+     * Der Kanal, auf dem die Trigger der Datenbank Änderungen veröffentlichen.
+     */
+    static final String CHANNEL = "elwasys_changes";
+
+    /**
+     * Die Zeit, die höchstens auf eine Benachrichtigung gewartet wird, bevor die Verbindung geprüft wird.
+     */
+    private static final int POLL_TIMEOUT_MILLIS = 10000;
+
+    /**
+     * Die Wartezeit vor einem erneuten Verbindungsversuch.
+     */
+    private static final long RETRY_DELAY_MILLIS = 5000;
+
+    /**
+     * Der Abstand, in dem Treiber ohne Warten auf Benachrichtigungen abgefragt werden.
+     */
+    private static final long POLL_INTERVAL_MILLIS = 1000;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final DataManager dataManager;
+    private final String url;
+    private final Properties properties;
+
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile Connection connection;
+
+    /**
+     * Gibt an, ob der Treiber auf Benachrichtigungen warten kann. Ältere Treiber als 42.x können das nicht.
+     */
+    private boolean blockingPoll = true;
+
+    DatabaseChangeListener(DataManager dataManager, String url, Properties properties) {
+        this.dataManager = dataManager;
+        this.url = url;
+        this.properties = properties;
+        this.thread = new Thread(this, "DatabaseChangeListener");
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        this.thread.start();
+    }
+
+    void stop() {
+        this.running = false;
+        this.thread.interrupt();
+        this.closeConnection();
+    }
+
+    @Override
+    public void run() {
+        boolean missed = false;
+        while (this.running) {
+            try {
+                if (this.connection == null) {
+                    this.connect();
+                    if (missed) {
+                        this.logger.info("Listening for database changes again.");
+                        this.dataManager.onChangesLost();
+                        missed = false;
+                    }
+                }
+                final PGNotification[] notifications = this.poll();
+                if (notifications == null || notifications.length == 0) {
+                    // Beim Abfragen ohne Warten prüft bereits die leere Abfrage die Verbindung
+                    if (this.blockingPoll && !this.connection.isValid(POLL_TIMEOUT_MILLIS / 1000)) {
+                        throw new SQLException("The connection for database change notifications is broken.");
+                    }
+                    continue;
+                }
+                for (final PGNotification notification : notifications) {
+                    this.dispatch(notification.getParameter());
+                }
+            } catch (final SQLException e) {
+                if (!this.running) {
+                    break;
+                }
+                this.logger.warn("Lost the connection for database change notifications. Retrying in " +
+                        RETRY_DELAY_MILLIS + " ms.", e);
+                missed = true;
+                if (!this.reconnectLater()) {
+                    break;
+                }
+            } catch (final RuntimeException | Error e) {
+                // Der Thread darf nicht enden, sonst würden die zwischengespeicherten Entitäten nie mehr verworfen
+                if (!this.running) {
+                    break;
+                }
+                this.logger.error("Error while listening for database changes. Reconnecting in " +
+                        RETRY_DELAY_MILLIS + " ms.", e);
+                missed = true;
+                if (!this.reconnectLater()) {
+                    break;
+                }
+            }
+        }
+        this.closeConnection();
+    }
+
+    /**
+     * Schließt die Verbindung und wartet vor dem erneuten Verbindungsversuch.
+     *
+     * @return Falsch, wenn der Thread beim Warten unterbrochen wurde
+     */
+    private boolean reconnectLater() {
+        this.closeConnection();
+        try {
+            Thread.sleep(RETRY_DELAY_MILLIS);
+            return true;
+        } catch (final InterruptedException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Holt die eingegangenen Benachrichtigungen. Kann der Treiber nicht auf Benachrichtigungen warten, wird in
+     * kurzen Abständen mit einer leeren Abfrage nachgesehen.
+     *
+     * @return Die Benachrichtigungen, oder null bzw. ein leeres Feld, falls keine eingegangen sind
+     */
+    private PGNotification[] poll() throws SQLException {
+        final PGConnection pgConnection = this.connection.unwrap(PGConnection.class);
+        if (this.blockingPoll) {
+            try {
+                return pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+            } catch (final NoSuchMethodError e) {
+                this.logger.warn("The PostgreSQL driver cannot wait for notifications. Polling every " +
+                        POLL_INTERVAL_MILLIS + " ms instead.");
+                this.blockingPoll = false;
+            }
+        }
+        try {
+            Thread.sleep(POLL_INTERVAL_MILLIS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        // Ältere Treiber lesen Benachrichtigungen nur beim Ausführen einer Abfrage
+        try (Statement s = this.connection.createStatement()) {
+            s.execute("SELECT 1");
+        }
+        return pgConnection.getNotifications();
+    }
+
+    private void connect() throws SQLException {
+        final Connection c = DriverManager.getConnection(this.url, this.properties);
+        try (Statement s = c.createStatement()) {
+            s.execute("LISTEN " + CHANNEL);
+        } catch (final SQLException e) {
+            c.close();
+            throw e;
+        }
+        this.connection = c;
+        this.logger.debug("Listening for database changes on channel " + CHANNEL);
+    }
+
+    /**
+     * Wertet eine Benachrichtigung der Form '&lt;Tabelle&gt;:&lt;Id&gt;' aus.
+     */
+    private void dispatch(String payload) {
+        final int separator = payload.indexOf(':');
+        final EntityType type = separator < 0 ? null : EntityType.fromTableName(payload.substring(0, separator));
+        if (type == null) {
+            this.logger.warn("Ignoring unknown database change notification '" + payload + "'.");
+            return;
+        }
+        try {
+            this.dataManager.onEntityChanged(type, Integer.parseInt(payload.substring(separator + 1)));
+        } catch (final NumberFormatException e) {
+            this.logger.warn("Ignoring database change notification with invalid id '" + payload + "'.");
+        } catch (final RuntimeException e) {
+            this.logger.error("Error while handling the database change notification '" + payload + "'.", e);
+        }
+    }
+
+    private void closeConnection() {
+        final Connection c = this.connection;
+        this.connection = null;
+        if (c != null) {
+            try {
+                c.close();
+            } catch (final SQLException e) {
+                this.logger.debug("Could not close the connection for database change notifications.", e);
+            }
+        }
+    }
+}
@@ -3,10 +3,10 @@ package org.kabieror.elwasys.common;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -101,11 +101,25 @@ public class Device {
      * Erstellt ein lokales Abbild eines Gerätes in der Datenbank.
      */
     public Device(DataManager dataManager, ResultSet res) throws SQLException {
+        this(dataManager, res, true);
+    }
+
+    /**
+     * Erstellt ein lokales Abbild eines Gerätes in der Datenbank.
+     *
+     * @param loadRelations Ob Programme und Benutzergruppen geladen werden sollen. Andernfalls müssen sie mit
+     *                      {@link #setRelations(List, List)} gesetzt werden.
+     */
+    Device(DataManager dataManager, ResultSet res, boolean loadRelations) throws SQLException {
         this.dataManager = dataManager;
         this.id = res.getInt("id");
         this.programs = new ArrayList<>();
         this.validUserGroups = new ArrayList<>();
-        this.update(res);
+        if (loadRelations) {
+            this.update(res);
+        } else {
+            this.updateFields(res);
+        }
     }
 
     /**
@@ -153,69 +167,72 @@ public class Device {
         this.programs = programs;
         this.validUserGroups = validUserGroups;
 
-        final PreparedStatement s = this.dataManager.getConnection().prepareStatement(
-                "INSERT INTO devices (name, position, location_id, fhem_name, " +
-                        "fhem_switch_name, fhem_power_name, deconz_uuid, auto_end_power_threashold, auto_end_wait_time, " +
-                        "enabled) VALUES (?, ?, ?, ?, " + "?, ?, ?, ?, ?, " + "?)", Statement.RETURN_GENERATED_KEYS);
-
-        int i = 1;
-        s.setString(i++, name);
-        s.setInt(i++, position);
-        s.setInt(i++, location.getId());
-        s.setString(i++, fhem_name);
-        s.setString(i++, fhem_switch_name);
-        s.setString(i++, fhem_power_name);
-        s.setString(i++, deconz_uuid);
-        s.setFloat(i++, autoEndPowerThreashold);
-        s.setInt(i++, (int)autoEndWaitTime.getSeconds());
-        s.setBoolean(i++, enabled);
-        s.executeUpdate();
-
-        final ResultSet res = s.getGeneratedKeys();
-        if (res.next()) {
-            this.id = res.getInt(1);
-        } else {
-            throw new SQLException("No ID received by database.");
-        }
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.DEVICE_INSERT.prepare(connection)) {
+            int i = 1;
+            s.setString(i++, name);
+            s.setInt(i++, position);
+            s.setInt(i++, location.getId());
+            s.setString(i++, fhem_name);
+            s.setString(i++, fhem_switch_name);
+            s.setString(i++, fhem_power_name);
+            s.setString(i++, deconz_uuid);
+            s.setFloat(i++, autoEndPowerThreashold);
+            s.setInt(i++, (int)autoEndWaitTime.getSeconds());
+            s.setBoolean(i++, enabled);
+            s.executeUpdate();
 
-        // Relationen herstellen
-        try {
-            for (final Program p : programs) {
-                this.dataManager.getConnection().prepareCall(
-                        "INSERT INTO device_program_rel (device_id, program_id) VALUES (" + this.id + ", " + p.getId() +
-                                ")").execute();
-            }
-            for (final UserGroup g : validUserGroups) {
-                this.dataManager.getConnection().prepareCall(
-                        "INSERT INTO devices_valid_user_groups (device_id, group_id) VALUES (" + this.id + ", " +
-                                g.getId() + ")").execute();
-            }
-        } catch (final SQLException e) {
-            // Fehler. Alles zurücksetzen.
-            try {
-                this.dataManager.getConnection()
-                        .prepareCall("DELETE FROM device_program_rel WHERE device_id=" + this.id).execute();
-            } catch (final SQLException e1) {
-                // ignorieren und weiter.
-                this.logger.error("Could not delete newly created relations between this device and its programs", e1);
-            }
-            try {
-                this.dataManager.getConnection()
-                        .prepareCall("DELETE FROM devices_valid_user_groups WHERE device_id=" + this.id).execute();
-            } catch (final SQLException e1) {
-                // ignorieren und weiter.
-                this.logger
-                        .error("Could not delete newly created relations between this device and its valid user groups",
-                                e1);
+            final ResultSet res = s.getGeneratedKeys();
+            if (res.next()) {
+                this.id = res.getInt(1);
+            } else {
+                throw new SQLException("No ID received by database.");
             }
 
+            // Relationen herstellen
             try {
-                this.dataManager.getConnection().prepareCall("DELETE FROM devices WHERE id=" + this.id).execute();
-            } catch (final SQLException e1) {
-                // ignorieren und weiter.
-                this.logger.error("Could not delete the newly created device.");
+                try (PreparedStatement rel = Query.DEVICE_PROGRAM_INSERT.prepare(connection)) {
+                    for (final Program p : programs) {
+                        rel.setInt(1, this.id);
+                        rel.setInt(2, p.getId());
+                        rel.execute();
+                    }
+                }
+                try (PreparedStatement rel = Query.DEVICE_VALID_GROUP_INSERT.prepare(connection)) {
+                    for (final UserGroup g : validUserGroups) {
+                        rel.setInt(1, this.id);
+                        rel.setInt(2, g.getId());
+                        rel.execute();
+                    }
+                }
+            } catch (final SQLException e) {
+                // Fehler. Alles zurücksetzen.
+                try (PreparedStatement del = Query.DEVICE_PROGRAMS_DELETE.prepare(connection)) {
+                    del.setInt(1, this.id);
+                    del.execute();
+                } catch (final SQLException e1) {
+                    // ignorieren und weiter.
+                    this.logger.error("Could not delete newly created relations between this device and its programs", e1);
+                }
+                try (PreparedStatement del = Query.DEVICE_VALID_GROUPS_DELETE.prepare(connection)) {
+                    del.setInt(1, this.id);
+                    del.execute();
+                } catch (final SQLException e1) {
+                    // ignorieren und weiter.
+                    this.logger
+                            .error("Could not delete newly created relations between this device and its valid user groups",
+                                    e1);
+                }
+
+                try (PreparedStatement del = Query.DEVICE_DELETE.prepare(connection)) {
+                    del.setInt(1, this.id);
+                    del.execute();
+                } catch (final SQLException e1) {
+                    // ignorieren und weiter.
+                    this.logger.error("Could not delete the newly created device.");
+                }
+                throw e;
             }
-            throw e;
         }
     }
 
@@ -232,88 +249,95 @@ public class Device {
     public void modify(String name, int position, Location location, String fhemName, String fhemSwitchName,
                        String fhemPowerName, String deconzUuid, float autoEndPowerThreashold, Duration autoEndWaitTime, boolean enabled,
                        List<Program> programs, List<UserGroup> validUserGroups) throws SQLException {
-        final PreparedStatement s = this.dataManager.getConnection().prepareStatement(
-                "UPDATE devices SET name=?, position=?, location_id=?, fhem_name=?, fhem_switch_name=?, " +
-                        "fhem_power_name=?, deconz_uuid=?, " +
-                        "auto_end_power_threashold=?, auto_end_wait_time=?, enabled=? WHERE id=?");
-        {
-            int i = 1;
-            s.setString(i++, name);
-            s.setInt(i++, position);
-            s.setInt(i++, location.getId());
-            s.setString(i++, fhemName);
-            s.setString(i++, fhemSwitchName);
-            s.setString(i++, fhemPowerName);
-            s.setString(i++, deconzUuid);
-            s.setFloat(i++, autoEndPowerThreashold);
-            s.setInt(i++, (int)autoEndWaitTime.getSeconds());
-            s.setBoolean(i++, enabled);
-            s.setInt(i++, this.id);
-        }
-
-        s.execute();
-
-        this.name = name;
-        this.position = position;
-        this.location = location;
-        this.fhemName = fhemName;
-        this.fhemSwitchName = fhemSwitchName;
-        this.fhemPowerName = fhemPowerName;
-        this.deconzUuid = deconzUuid;
-        this.autoEndPowerThreashold = autoEndPowerThreashold;
-        this.autoEndWaitTime = autoEndWaitTime;
-        this.enabled = enabled;
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.DEVICE_UPDATE.prepare(connection)) {
+            {
+                int i = 1;
+                s.setString(i++, name);
+                s.setInt(i++, position);
+                s.setInt(i++, location.getId());
+                s.setString(i++, fhemName);
+                s.setString(i++, fhemSwitchName);
+                s.setString(i++, fhemPowerName);
+                s.setString(i++, deconzUuid);
+                s.setFloat(i++, autoEndPowerThreashold);
+                s.setInt(i++, (int)autoEndWaitTime.getSeconds());
+                s.setBoolean(i++, enabled);
+                s.setInt(i++, this.id);
+            }
 
-        // Programme aktualisieren
-        final List<Program> skippedPrograms = new Vector<>();
-        final int oldProgramsCount = this.programs.size();
-        for (final Program p : programs) {
-            if (this.programs.contains(p)) {
-                skippedPrograms.add(p);
-                continue;
+            s.execute();
+
+            this.name = name;
+            this.position = position;
+            this.location = location;
+            this.fhemName = fhemName;
+            this.fhemSwitchName = fhemSwitchName;
+            this.fhemPowerName = fhemPowerName;
+            this.deconzUuid = deconzUuid;
+            this.autoEndPowerThreashold = autoEndPowerThreashold;
+            this.autoEndWaitTime = autoEndWaitTime;
+            this.enabled = enabled;
+
+            // Programme aktualisieren
+            final List<Program> skippedPrograms = new Vector<>();
+            final int oldProgramsCount = this.programs.size();
+            for (final Program p : programs) {
+                if (this.programs.contains(p)) {
+                    skippedPrograms.add(p);
+                    continue;
+                }
+                try (PreparedStatement rel = Query.DEVICE_PROGRAM_INSERT.prepare(connection)) {
+                    rel.setInt(1, this.id);
+                    rel.setInt(2, p.getId());
+                    rel.execute();
+                }
+                this.programs.add(p);
             }
-            this.dataManager.getConnection().prepareCall(
-                    "INSERT INTO device_program_rel (device_id, program_id) VALUES (" + this.id + ", " + p.getId() +
-                            ")").execute();
-            this.programs.add(p);
-        }
 
-        if (oldProgramsCount > skippedPrograms.size()) {
-            // Look for deleted programs
-            for (int i = 0; i < this.programs.size(); i++) {
-                if (!programs.contains(this.programs.get(i))) {
-                    this.dataManager.getConnection().prepareCall(
-                            "DELETE FROM device_program_rel WHERE device_id=" + this.id + " AND program_id=" +
-                                    this.programs.get(i).getId()).execute();
-                    this.programs.remove(i);
-                    i--;
+            if (oldProgramsCount > skippedPrograms.size()) {
+                // Look for deleted programs
+                for (int i = 0; i < this.programs.size(); i++) {
+                    if (!programs.contains(this.programs.get(i))) {
+                        try (PreparedStatement rel = Query.DEVICE_PROGRAM_DELETE.prepare(connection)) {
+                            rel.setInt(1, this.id);
+                            rel.setInt(2, this.programs.get(i).getId());
+                            rel.execute();
+                        }
+                        this.programs.remove(i);
+                        i--;
+                    }
                 }
             }
-        }
 
-        // Benutzergruppen aktualisieren
-        final List<UserGroup> skippedGroups = new Vector<>();
-        final int oldGroupsCount = this.validUserGroups.size();
-        for (final UserGroup g : validUserGroups) {
-            if (this.validUserGroups.contains(g)) {
-                skippedGroups.add(g);
-                continue;
+            // Benutzergruppen aktualisieren
+            final List<UserGroup> skippedGroups = new Vector<>();
+            final int oldGroupsCount = this.validUserGroups.size();
+            for (final UserGroup g : validUserGroups) {
+                if (this.validUserGroups.contains(g)) {
+                    skippedGroups.add(g);
+                    continue;
+                }
+                try (PreparedStatement rel = Query.DEVICE_VALID_GROUP_INSERT.prepare(connection)) {
+                    rel.setInt(1, this.id);
+                    rel.setInt(2, g.getId());
+                    rel.execute();
+                }
+                this.validUserGroups.add(g);
             }
-            this.dataManager.getConnection().prepareCall(
-                    "INSERT INTO devices_valid_user_groups (device_id, group_id) VALUES (" + this.id + ", " +
-                            g.getId() + ")").execute();
-            this.validUserGroups.add(g);
-        }
 
-        if (oldGroupsCount > skippedGroups.size()) {
-            // Look for deleted groups
-            for (int i = 0; i < this.validUserGroups.size(); i++) {
-                if (!validUserGroups.contains(this.validUserGroups.get(i))) {
-                    this.dataManager.getConnection().prepareCall(
-                            "DELETE FROM devices_valid_user_groups WHERE device_id=" + this.id + " AND group_id=" +
-                                    this.validUserGroups.get(i).getId()).execute();
-                    this.validUserGroups.remove(i);
-                    i--;
+            if (oldGroupsCount > skippedGroups.size()) {
+                // Look for deleted groups
+                for (int i = 0; i < this.validUserGroups.size(); i++) {
+                    if (!validUserGroups.contains(this.validUserGroups.get(i))) {
+                        try (PreparedStatement rel = Query.DEVICE_VALID_GROUP_DELETE.prepare(connection)) {
+                            rel.setInt(1, this.id);
+                            rel.setInt(2, this.validUserGroups.get(i).getId());
+                            rel.execute();
+                        }
+                        this.validUserGroups.remove(i);
+                        i--;
+                    }
                 }
             }
         }
@@ -326,7 +350,18 @@ public class Device {
      */
     public void delete() throws SQLException {
         // Gerät löschen
-        this.dataManager.getConnection().prepareCall("DELETE FROM devices WHERE id=" + this.id).execute();
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.DEVICE_DELETE.prepare(connection)) {
+            s.setInt(1, this.id);
+            s.execute();
+        }
+    }
+
+    /**
+     * Sorgt dafür, dass die nächste Aktualisierung die Daten des Geräts aus der Datenbank liest.
+     */
+    void invalidate() {
+        this.lastUpdateTime = null;
     }
 
     /**
@@ -343,13 +378,16 @@ public class Device {
         }
         this.lastUpdateTime = LocalDateTime.now();
 
-        final ResultSet res = this.dataManager.getConnection().prepareCall("SELECT * FROM devices WHERE id=" + this.id)
-                .executeQuery();
-        if (!res.next()) {
-            throw new NoDataFoundException(
-                    String.format("Das Gerät '%1s' wurde aus der Datenbank gelöscht.", this.name));
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.DEVICE_BY_ID.prepare(connection)) {
+            s.setInt(1, this.id);
+            final ResultSet res = s.executeQuery();
+            if (!res.next()) {
+                throw new NoDataFoundException(
+                        String.format("Das Gerät '%1s' wurde aus der Datenbank gelöscht.", this.name));
+            }
+            this.update(res);
         }
-        this.update(res);
     }
 
     /**
@@ -359,6 +397,17 @@ public class Device {
      * @throws SQLException
      */
     public void update(ResultSet res) throws SQLException {
+        this.updateFields(res);
+        this.updatePrograms();
+        this.updateValidGroups();
+    }
+
+    /**
+     * Aktualisiert die Daten des Geräts ohne seine Programme und Benutzergruppen
+     *
+     * @param res Das Abfrageergebnis, mit denen die Daten des Gerätes aktualisiert werden sollen
+     */
+    void updateFields(ResultSet res) throws SQLException {
         this.name = res.getString("name");
         this.position = res.getInt("position");
         this.fhemName = res.getString("fhem_name");
@@ -369,30 +418,42 @@ public class Device {
         this.autoEndWaitTime = Duration.ofSeconds(res.getInt("auto_end_wait_time"));
         this.enabled = res.getBoolean("enabled");
         this.location = this.dataManager.getLocation(res.getInt("location_id"));
+    }
 
-        this.updatePrograms();
-        this.updateValidGroups();
+    /**
+     * Setzt die bereits geladenen Programme und Benutzergruppen des Geräts
+     */
+    void setRelations(List<Program> programs, List<UserGroup> validUserGroups) {
+        this.programs.clear();
+        this.programs.addAll(programs);
+        this.validUserGroups.clear();
+        this.validUserGroups.addAll(validUserGroups);
     }
 
     private void updatePrograms() throws SQLException {
-        ResultSet res = this.dataManager.getConnection()
-                .prepareCall("SELECT program_id FROM device_program_rel WHERE device_id=" + this.id).executeQuery();
-        this.programs.clear();
-        if (res.isBeforeFirst()) {
-            while (res.next()) {
-                this.programs.add(this.dataManager.getProgramById(res.getInt("program_id")));
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.DEVICE_PROGRAMS.prepare(connection)) {
+            s.setInt(1, this.id);
+            ResultSet res = s.executeQuery();
+            this.programs.clear();
+            if (res.isBeforeFirst()) {
+                while (res.next()) {
+                    this.programs.add(this.dataManager.getProgramById(res.getInt("program_id")));
+                }
             }
         }
     }
 
     private void updateValidGroups() throws SQLException {
-        ResultSet res = this.dataManager.getConnection()
-                .prepareCall("SELECT group_id FROM devices_valid_user_groups WHERE device_id=" + this.id)
-                .executeQuery();
-        this.validUserGroups.clear();
-        if (res.isBeforeFirst()) {
-            while (res.next()) {
-                this.validUserGroups.add(this.dataManager.getUserGroupById(res.getInt("group_id")));
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.DEVICE_VALID_GROUPS.prepare(connection)) {
+            s.setInt(1, this.id);
+            ResultSet res = s.executeQuery();
+            this.validUserGroups.clear();
+            if (res.isBeforeFirst()) {
+                while (res.next()) {
+                    this.validUserGroups.add(this.dataManager.getUserGroupById(res.getInt("group_id")));
+                }
             }
         }
     }
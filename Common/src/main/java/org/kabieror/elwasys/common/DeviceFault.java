@@ -0,0 +1,62 @@
+package org.kabieror.elwasys.common;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+
+/**
+ * Eine an einem Gerät erkannte Störung, die noch nicht als erledigt markiert wurde.
+ *
+ * @author Oliver Kabierschke
+ * @see DataManager#getOpenDeviceFaults(Location)
+ */
+public class DeviceFault {
+
+    private final int id;
+
+    private final int deviceId;
+
+    /**
+     * Die Id der Ausführung, während der die Störung erkannt wurde
+     */
+    private final int executionId;
+
+    private final DeviceFaultType type;
+
+    private final LocalDateTime detected;
+
+    private final String message;
+
+    DeviceFault(ResultSet res) throws SQLException {
+        this.id = res.getInt("id");
+        this.deviceId = res.getInt("device_id");
+        this.executionId = res.getInt("execution_id");
+        this.type = DeviceFaultType.valueOf(res.getString("type"));
+        this.detected = res.getTimestamp("detected").toLocalDateTime();
+        this.message = res.getString("message");
+    }
+
+    public int getId() {
+        return this.id;
+    }
+
+    public int getDeviceId() {
+        return this.deviceId;
+    }
+
+    public int getExecutionId() {
+        return this.executionId;
+    }
+
+    public DeviceFaultType getType() {
+        return this.type;
+    }
+
+    public LocalDateTime getDetected() {
+        return this.detected;
+    }
+
+    public String getMessage() {
+        return this.message;
+    }
+}
@@ -0,0 +1,17 @@
+package org.kabieror.elwasys.common;
+
+/**
+ * Die Arten von Störungen, die an einem Gerät während einer Ausführung erkannt werden
+ *
+ * @author Oliver Kabierschke
+ */
+public enum DeviceFaultType {
+    /**
+     * Das Gerät wurde eingeschaltet, nimmt aber keine Leistung auf
+     */
+    NO_POWER,
+    /**
+     * Das Gerät nimmt lange nach der Höchstdauer des Programms noch volle Leistung auf
+     */
+    OVERRUN
+}
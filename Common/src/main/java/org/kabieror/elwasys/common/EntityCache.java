@@ -0,0 +1,249 @@
+package org.kabieror.elwasys.common;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Ein threadsicherer, größenbeschränkter Zwischenspeicher für Entitäten, der zu jeder Id höchstens eine Instanz
+ * herausgibt.
+ * <p>
+ * Eine Entität wird nach Ablauf ihrer Gültigkeitsdauer beim nächsten Zugriff aus der Datenbank aktualisiert. Wird die
+ * Höchstzahl an Einträgen überschritten, so werden die am längsten nicht verwendeten Einträge verdrängt. Entitäten,
+ * deren Instanz weiterhin verwendet wird, etwa Geräte mit laufender Ausführung, können von der Verdrängung ausgenommen
+ * werden, damit zu ihrer Id keine zweite Instanz entsteht.
+ *
+ * @author Oliver Kabierschke
+ */
+class EntityCache<T> {
+
+    /**
+     * Lädt eine Entität, die noch nicht zwischengespeichert ist.
+     */
+    @FunctionalInterface
+    interface ILoader<T> {
+        T load() throws SQLException, NoDataFoundException;
+    }
+
+    /**
+     * Aktualisiert eine zwischengespeicherte Entität.
+     */
+    @FunctionalInterface
+    interface IRefresher<T> {
+        void refresh(T entity) throws SQLException, NoDataFoundException;
+    }
+
+    private final String name;
+    private final int maxSize;
+    private final long ttlNanos;
+
+    /**
+     * Gibt an, ob eine Entität nicht verdrängt werden darf
+     */
+    private final Predicate<? super T> pinned;
+
+    private final Map<Integer, Entry<T>> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param name    Der Name des Zwischenspeichers für Kennzahlen und Protokolle
+     * @param maxSize Die höchste Anzahl an Einträgen
+     * @param ttl     Die Zeit, nach der eine Entität vor ihrer nächsten Verwendung aktualisiert wird
+     */
+    EntityCache(String name, int maxSize, Duration ttl) {
+        this(name, maxSize, ttl, value -> false);
+    }
+
+    /**
+     * @param name    Der Name des Zwischenspeichers für Kennzahlen und Protokolle
+     * @param maxSize Die höchste Anzahl an Einträgen, die nur für nicht verdrängbare Entitäten überschritten wird
+     * @param ttl     Die Zeit, nach der eine Entität vor ihrer nächsten Verwendung aktualisiert wird
+     * @param pinned  Gibt an, ob eine Entität derzeit nicht verdrängt werden darf
+     */
+    EntityCache(String name, int maxSize, Duration ttl, Predicate<? super T> pinned) {
+        this.name = name;
+        this.maxSize = Math.max(1, maxSize);
+        this.ttlNanos = ttl.toNanos();
+        this.pinned = pinned;
+    }
+
+    /**
+     * Gibt die Entität mit der gegebenen Id zurück. Ist ihre Gültigkeit abgelaufen, so wird sie zuvor aktualisiert.
+     * Ist sie nicht zwischengespeichert, so wird sie geladen.
+     *
+     * @param id        Die Id der Entität
+     * @param refresher Aktualisiert eine abgelaufene Entität
+     * @param loader    Lädt eine noch unbekannte Entität
+     * @return Die Entität oder null, wenn sie in der Datenbank nicht (mehr) existiert
+     */
+    T get(int id, IRefresher<T> refresher, ILoader<T> loader) throws SQLException {
+        final Entry<T> entry = this.entries.get(id);
+        if (entry != null) {
+            final long now = System.nanoTime();
+            entry.lastAccess = now;
+            if (now - entry.loaded < this.ttlNanos) {
+                this.hits.incrementAndGet();
+                return entry.value;
+            }
+            this.refreshes.incrementAndGet();
+            try {
+                refresher.refresh(entry.value);
+            } catch (final NoDataFoundException e) {
+                this.entries.remove(id, entry);
+                return null;
+            }
+            entry.loaded = System.nanoTime();
+            return entry.value;
+        }
+
+        this.misses.incrementAndGet();
+        final T value;
+        try {
+            value = loader.load();
+        } catch (final NoDataFoundException e) {
+            return null;
+        }
+        return value == null ? null : this.put(id, value, false);
+    }
+
+    /**
+     * Gibt die Entität mit der gegebenen Id zurück, nachdem sie mit bereits aus der Datenbank gelesenen Daten
+     * aktualisiert wurde. Ist sie nicht zwischengespeichert, so wird sie aus diesen Daten erstellt.
+     *
+     * @param id      Die Id der Entität
+     * @param updater Überträgt die gelesenen Daten auf die zwischengespeicherte Entität
+     * @param creator Erstellt die Entität aus den gelesenen Daten
+     * @return Die Entität
+     */
+    T merge(int id, IRefresher<T> updater, ILoader<T> creator) throws SQLException {
+        final Entry<T> entry = this.entries.get(id);
+        try {
+            if (entry != null) {
+                entry.lastAccess = System.nanoTime();
+                this.hits.incrementAndGet();
+                updater.refresh(entry.value);
+                entry.loaded = System.nanoTime();
+                return entry.value;
+            }
+            this.misses.incrementAndGet();
+            return this.put(id, creator.load(), false);
+        } catch (final NoDataFoundException e) {
+            // Die Daten liegen bereits vor
+            throw new SQLException(e);
+        }
+    }
+
+    /**
+     * Speichert eine Entität zwischen. Existiert bereits eine Instanz zur Id, so wird diese zurückgegeben, sofern
+     * nicht das Ersetzen verlangt ist.
+     *
+     * @param id      Die Id der Entität
+     * @param value   Die Entität
+     * @param replace Ob eine bestehende Instanz ersetzt werden soll
+     * @return Die zwischengespeicherte Instanz
+     */
+    T put(int id, T value, boolean replace) {
+        final Entry<T> entry = new Entry<>(value);
+        final T result;
+        if (replace) {
+            this.entries.put(id, entry);
+            result = value;
+        } else {
+            final Entry<T> existing = this.entries.putIfAbsent(id, entry);
+            result = existing == null ? value : existing.value;
+        }
+        if (this.entries.size() > this.maxSize) {
+            this.evict();
+        }
+        return result;
+    }
+
+    /**
+     * Entfernt die Entität mit der gegebenen Id.
+     */
+    void remove(int id) {
+        this.entries.remove(id);
+    }
+
+    /**
+     * Markiert die Entität mit der gegebenen Id als abgelaufen, sodass sie beim nächsten Zugriff aktualisiert wird.
+     *
+     * @return Die zwischengespeicherte Entität oder null, wenn sie nicht zwischengespeichert ist
+     */
+    T invalidate(int id) {
+        final Entry<T> entry = this.entries.get(id);
+        if (entry == null) {
+            return null;
+        }
+        entry.loaded = System.nanoTime() - this.ttlNanos;
+        return entry.value;
+    }
+
+    /**
+     * Markiert alle Entitäten als abgelaufen.
+     *
+     * @return Die zwischengespeicherten Entitäten
+     */
+    List<T> invalidateAll() {
+        final long expired = System.nanoTime() - this.ttlNanos;
+        final List<T> values = new ArrayList<>();
+        for (final Entry<T> entry : this.entries.values()) {
+            entry.loaded = expired;
+            values.add(entry.value);
+        }
+        return values;
+    }
+
+    /**
+     * Gibt eine Momentaufnahme der Kennzahlen zurück.
+     */
+    EntityCacheStatistics getStatistics() {
+        return new EntityCacheStatistics(this.name, this.entries.size(), this.maxSize, this.hits.get(),
+                this.misses.get(), this.refreshes.get(), this.evictions.get());
+    }
+
+    /**
+     * Verdrängt die am längsten nicht verwendeten Einträge, bis wieder ein Zehntel der Plätze frei ist. Nicht
+     * verdrängbare Entitäten werden übersprungen.
+     */
+    private synchronized void evict() {
+        int excess = this.entries.size() - this.maxSize * 9 / 10;
+        if (excess <= 0) {
+            return;
+        }
+        final List<Map.Entry<Integer, Entry<T>>> candidates = new ArrayList<>(this.entries.entrySet());
+        candidates.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+        for (int i = 0; excess > 0 && i < candidates.size(); i++) {
+            final Map.Entry<Integer, Entry<T>> candidate = candidates.get(i);
+            if (this.pinned.test(candidate.getValue().value)) {
+                continue;
+            }
+            if (this.entries.remove(candidate.getKey(), candidate.getValue())) {
+                this.evictions.incrementAndGet();
+                excess--;
+            }
+        }
+    }
+
+    private static class Entry<T> {
+        private final T value;
+        private volatile long loaded;
+        private volatile long lastAccess;
+
+        private Entry(T value) {
+            this.value = value;
+            this.loaded = System.nanoTime();
+            this.lastAccess = this.loaded;
+        }
+    }
+}
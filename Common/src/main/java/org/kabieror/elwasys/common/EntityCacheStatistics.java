@@ -0,0 +1,83 @@
+package org.kabieror.elwasys.common;
+
+/**
+ * Eine Momentaufnahme der Kennzahlen eines Zwischenspeichers für Entitäten.
+ *
+ * @author Oliver Kabierschke
+ */
+public class EntityCacheStatistics {
+
+    private final String name;
+    private final int size;
+    private final int maxSize;
+    private final long hits;
+    private final long misses;
+    private final long refreshes;
+    private final long evictions;
+
+    EntityCacheStatistics(String name, int size, int maxSize, long hits, long misses, long refreshes,
+                          long evictions) {
+        this.name = name;
+        this.size = size;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+        this.refreshes = refreshes;
+        this.evictions = evictions;
+    }
+
+    /**
+     * Der Name des Zwischenspeichers.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Die Anzahl der derzeit zwischengespeicherten Entitäten.
+     */
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Die höchste Anzahl an Entitäten, die zwischengespeichert werden.
+     */
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * Die Anzahl der Zugriffe, die ohne Datenbankabfrage beantwortet wurden.
+     */
+    public long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Die Anzahl der Zugriffe, für welche die Entität erst geladen werden musste.
+     */
+    public long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Die Anzahl der Zugriffe, für welche die Entität wegen abgelaufener Gültigkeit aktualisiert wurde.
+     */
+    public long getRefreshes() {
+        return this.refreshes;
+    }
+
+    /**
+     * Die Anzahl der wegen Platzmangels verdrängten Entitäten.
+     */
+    public long getEvictions() {
+        return this.evictions;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: size=%d/%d, hits=%d, misses=%d, refreshes=%d, evictions=%d", this.name, this.size,
+                this.maxSize, this.hits, this.misses, this.refreshes, this.evictions);
+    }
+}
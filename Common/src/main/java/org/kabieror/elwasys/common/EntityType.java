@@ -0,0 +1,46 @@
+package org.kabieror.elwasys.common;
+
+/**
+ * Die Typen von Entitäten, über deren Änderung die Datenbank benachrichtigt.
+ *
+ * @author Oliver Kabierschke
+ */
+public enum EntityType {
+    LOCATION("locations"),
+    DEVICE("devices"),
+    PROGRAM("programs"),
+    USER_GROUP("user_groups"),
+    USER("users"),
+    EXECUTION("executions"),
+    /**
+     * Störungen eines Geräts. Gemeldet wird die Id des Geräts.
+     */
+    DEVICE_FAULT("device_faults");
+
+    private final String tableName;
+
+    EntityType(String tableName) {
+        this.tableName = tableName;
+    }
+
+    /**
+     * Gibt den Namen der Tabelle zurück, in welcher die Entitäten gespeichert sind.
+     */
+    public String getTableName() {
+        return this.tableName;
+    }
+
+    /**
+     * Ermittelt den Typ anhand des Tabellennamens.
+     *
+     * @return Den Typ oder null, wenn die Tabelle keinen Entitäten zugeordnet ist
+     */
+    public static EntityType fromTableName(String tableName) {
+        for (final EntityType type : values()) {
+            if (type.tableName.equals(tableName)) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
@@ -4,9 +4,12 @@ import java.math.BigDecimal;
 import java.sql.*;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Collections;
 
 public class Execution {
 
+    private static final double WATT_SECONDS_PER_KWH = 3600000;
+
     /**
      * Der Daten-Verwalter, der die Verbindung zur Datenbank bereit stellt
      */
@@ -54,6 +57,22 @@ public class Execution {
 
     private LocalDateTime lastUpdateTime;
 
+    /**
+     * Die aufgenommene Energie in Wattsekunden, oder NaN, solange keine Leistung gemessen wurde
+     */
+    private double energy = Double.NaN;
+
+    /**
+     * Der Zeitpunkt und die Leistung der letzten Messung, von der aus die Energie weitergezählt wird
+     */
+    private long lastPowerTime;
+    private double lastPower;
+
+    /**
+     * Der Grund, aus dem der Preis erlassen wird, oder null, wenn die Ausführung bezahlt werden muss
+     */
+    private volatile String waiveReason;
+
     /**
      * Erstellt eine neue Ausführung
      *
@@ -68,20 +87,20 @@ public class Execution {
 
         this.finished = false;
 
-        final PreparedStatement s = dataManager.getConnection()
-                .prepareStatement("INSERT INTO executions (device_id, program_id, user_id) VALUES (?, ?, ?)",
-                        Statement.RETURN_GENERATED_KEYS);
-        s.setInt(1, d.getId());
-        s.setInt(2, p.getId());
-        s.setInt(3, u.getId());
+        try (Connection connection = dataManager.getConnection();
+             PreparedStatement s = Query.EXECUTION_INSERT.prepare(connection)) {
+            s.setInt(1, d.getId());
+            s.setInt(2, p.getId());
+            s.setInt(3, u.getId());
 
-        s.executeUpdate();
+            s.executeUpdate();
 
-        final ResultSet res = s.getGeneratedKeys();
-        if (res.next()) {
-            this.id = res.getInt(1);
-        } else {
-            throw new SQLException("No ID received by database.");
+            final ResultSet res = s.getGeneratedKeys();
+            if (res.next()) {
+                this.id = res.getInt(1);
+            } else {
+                throw new SQLException("No ID received by database.");
+            }
         }
     }
 
@@ -145,6 +164,19 @@ public class Execution {
         }
 
         this.finished = res.getBoolean("finished");
+
+        // Laufende Ausführungen haben noch keine gespeicherte Energie, die gemessene bleibt dann erhalten
+        final double energy = res.getDouble("energy");
+        if (!res.wasNull()) {
+            this.energy = energy * WATT_SECONDS_PER_KWH;
+        }
+    }
+
+    /**
+     * Sorgt dafür, dass die nächste Aktualisierung die Daten der Ausführung aus der Datenbank liest.
+     */
+    void invalidate() {
+        this.lastUpdateTime = null;
     }
 
     /**
@@ -159,11 +191,13 @@ public class Execution {
         }
         this.lastUpdateTime = LocalDateTime.now();
 
-        final ResultSet res =
-                this.dataManager.getConnection().prepareCall("SELECT * FROM executions WHERE id=" + this.id)
-                        .executeQuery();
-        res.next();
-        this.update(res);
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.EXECUTION_BY_ID.prepare(connection)) {
+            s.setInt(1, this.id);
+            final ResultSet res = s.executeQuery();
+            res.next();
+            this.update(res);
+        }
     }
 
     /**
@@ -186,10 +220,20 @@ public class Execution {
         this.endDate = LocalDateTime.now();
         if (this.id >= 0) {
             try {
-                final PreparedStatement s = this.dataManager.getConnection()
-                        .prepareStatement("UPDATE executions SET stop=?, finished=TRUE WHERE id=" + this.id);
-                s.setTimestamp(1, Timestamp.valueOf(this.endDate));
-                s.execute();
+                this.dataManager.runInTransaction(connection -> {
+                    final boolean stopped;
+                    try (PreparedStatement s = Query.EXECUTION_STOP.prepare(connection)) {
+                        s.setTimestamp(1, Timestamp.valueOf(this.endDate));
+                        this.setEnergy(s, 2);
+                        s.setInt(3, this.id);
+                        stopped = s.executeUpdate() > 0;
+                    }
+                    // Die Nutzungsstatistik wird in derselben Transaktion fortgeschrieben
+                    if (stopped && this.startDate != null) {
+                        this.dataManager.addUsage(connection, Collections.singletonList(this));
+                    }
+                    return null;
+                });
             } catch (final SQLException e) {
                 this.finished = false;
                 this.endDate = null;
@@ -198,6 +242,111 @@ public class Execution {
         }
     }
 
+    /**
+     * Markiert die Ausführung als beendet, ohne die Datenbank zu ändern. Eine laufende Ausführung endet jetzt, jedoch
+     * höchstens nach der Höchstdauer ihres Programms.
+     *
+     * @return Wahr, wenn die Ausführung zuvor lief
+     * @see ExecutionSettler
+     */
+    boolean markFinished() throws SQLException {
+        this.assertNotDeleted();
+        if (this.finished) {
+            return false;
+        }
+        final LocalDateTime now = LocalDateTime.now();
+        this.endDate = this.startDate != null && now.isAfter(this.getEndDate()) ? this.getEndDate() : now;
+        this.finished = true;
+        return true;
+    }
+
+    /**
+     * Nimmt {@link #markFinished()} zurück, nachdem die Ausführung nicht beendet werden konnte.
+     */
+    void unmarkFinished() {
+        this.finished = false;
+        this.endDate = null;
+    }
+
+    /**
+     * Zählt die seit der letzten Messung aufgenommene Energie hinzu. Zwischen zwei Messungen wird die Leistung als
+     * linear verlaufend angenommen. Verspätete Messungen und Messungen nach dem Ende der Ausführung werden ignoriert.
+     *
+     * @param time  Der Zeitpunkt der Messung in Millisekunden seit der Epoche
+     * @param power Die gemessene Leistung in Watt
+     */
+    public synchronized void addPowerMeasurement(long time, double power) {
+        if (this.finished || !(power >= 0)) {
+            return;
+        }
+        if (Double.isNaN(this.energy)) {
+            this.energy = 0;
+        } else if (time > this.lastPowerTime) {
+            this.energy += (this.lastPower + power) / 2 * (time - this.lastPowerTime) / 1000;
+        } else {
+            return;
+        }
+        this.lastPowerTime = time;
+        this.lastPower = power;
+    }
+
+    /**
+     * Gibt die bisher aufgenommene Energie zurück.
+     *
+     * @return Die Energie in Kilowattstunden, oder {@link Double#NaN}, falls keine Leistung gemessen wurde
+     */
+    public synchronized double getEnergy() {
+        return this.energy / WATT_SECONDS_PER_KWH;
+    }
+
+    /**
+     * Setzt die aufgenommene Energie in Kilowattstunden als Parameter einer Anweisung, oder NULL, falls keine
+     * Leistung gemessen wurde.
+     */
+    void setEnergy(PreparedStatement s, int parameterIndex) throws SQLException {
+        final double energy = this.getEnergy();
+        if (Double.isNaN(energy)) {
+            s.setNull(parameterIndex, Types.DOUBLE);
+        } else {
+            s.setDouble(parameterIndex, energy);
+        }
+    }
+
+    /**
+     * Gibt die Beschreibung der Buchung zurück, mit der die Ausführung bezahlt wird.
+     */
+    String getPaymentDescription() {
+        final String description = this.program.getName() + " auf " + this.device.getName() + " (" +
+                this.device.getLocation().getName() + ") bezahlt von " + this.user.getName() + ".";
+        final String reason = this.waiveReason;
+        return reason == null ? description : description + " Preis erlassen: " + reason;
+    }
+
+    /**
+     * Erlässt den Preis der Ausführung, etwa wenn das Gerät gestört war. Wirkt sich nur aus, solange die Ausführung
+     * noch nicht abgerechnet ist; sie wird dann mit einer Buchung über 0 abgerechnet, die den Grund nennt.
+     *
+     * @param reason Der Grund, aus dem der Preis erlassen wird
+     * @see ExecutionSettler
+     */
+    public void waivePrice(String reason) {
+        this.waiveReason = reason;
+    }
+
+    /**
+     * Hebt den Erlass des Preises wieder auf, etwa wenn die Ausführung beim Abbruch nicht abgerechnet werden konnte.
+     */
+    public void revokePriceWaiver() {
+        this.waiveReason = null;
+    }
+
+    /**
+     * Gibt zurück, ob der Preis der Ausführung erlassen wurde.
+     */
+    public boolean isPriceWaived() {
+        return this.waiveReason != null;
+    }
+
     /**
      * Startet die Ausführung
      *
@@ -212,11 +361,12 @@ public class Execution {
         this.startDate = LocalDateTime.now();
         if (this.id >= 0) {
             try {
-                final PreparedStatement s =
-                        this.dataManager.getConnection().prepareStatement("UPDATE executions SET start=? WHERE id=?");
-                s.setTimestamp(1, Timestamp.valueOf(this.startDate));
-                s.setInt(2, this.id);
-                s.execute();
+                try (Connection connection = this.dataManager.getConnection();
+                     PreparedStatement s = Query.EXECUTION_START.prepare(connection)) {
+                    s.setTimestamp(1, Timestamp.valueOf(this.startDate));
+                    s.setInt(2, this.id);
+                    s.execute();
+                }
             } catch (final SQLException e) {
                 this.startDate = null;
                 throw e;
@@ -233,14 +383,19 @@ public class Execution {
         this.startDate = null;
         this.endDate = null;
         this.finished = false;
+        this.waiveReason = null;
+        synchronized (this) {
+            this.energy = Double.NaN;
+        }
         if (this.id >= 0) {
-            final PreparedStatement s = this.dataManager.getConnection()
-                    .prepareStatement("UPDATE executions SET start=?, stop=?, finished=? WHERE id=?");
-            s.setTimestamp(1, null);
-            s.setTimestamp(2, null);
-            s.setBoolean(3, true);
-            s.setInt(4, this.id);
-            s.execute();
+            try (Connection connection = this.dataManager.getConnection();
+                 PreparedStatement s = Query.EXECUTION_RESET.prepare(connection)) {
+                s.setTimestamp(1, null);
+                s.setTimestamp(2, null);
+                s.setBoolean(3, true);
+                s.setInt(4, this.id);
+                s.execute();
+            }
         }
     }
 
@@ -346,7 +501,7 @@ public class Execution {
      * @return Den Preis für die Programmausführung
      */
     public BigDecimal getPrice() {
-        if (this.startDate == null) {
+        if (this.startDate == null || this.waiveReason != null) {
             return BigDecimal.ZERO;
         }
         if (this.finished) {
@@ -421,8 +576,12 @@ public class Execution {
      */
     public void delete() throws SQLException {
         if (!this.deleted && this.id >= 0) {
-            this.dataManager.getConnection().prepareCall("DELETE FROM executions WHERE id=" + this.id).execute();
-            this.deleted = true;
+            try (Connection connection = this.dataManager.getConnection();
+                 PreparedStatement s = Query.EXECUTION_DELETE.prepare(connection)) {
+                s.setInt(1, this.id);
+                s.execute();
+                this.deleted = true;
+            }
         }
     }
 
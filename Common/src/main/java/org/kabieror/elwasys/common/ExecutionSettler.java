@@ -0,0 +1,164 @@
+package org.kabieror.elwasys.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.*;
+
+/**
+ * Rechnet beendete Ausführungen ab. Das Beenden, die Nutzungsstatistik und die Buchung samt Kontostand werden in einer
+ * Transaktion geschrieben, sodass eine Ausführung nie beendet, aber unbezahlt zurückbleibt.
+ * <p>
+ * Die Abrechnung ist wiederholbar: Eine Ausführung wird nur einmal beendet und, über die Id der Ausführung als
+ * Schlüssel der Buchung, nur einmal gebucht. Mehrere Ausführungen werden mit gebündelten Anweisungen in einer
+ * gemeinsamen Transaktion abgerechnet.
+ *
+ * @author Oliver Kabierschke
+ */
+public class ExecutionSettler {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final DataManager dataManager;
+
+    public ExecutionSettler(DataManager dataManager) {
+        this.dataManager = dataManager;
+    }
+
+    /**
+     * Beendet eine Ausführung und bucht ihren Preis vom Konto des Benutzers ab.
+     *
+     * @param execution Die abzurechnende Ausführung
+     * @throws SQLException Wenn die Abrechnung nicht geschrieben werden kann. Die Ausführung bleibt dann unverändert.
+     */
+    public void settle(Execution execution) throws SQLException {
+        this.settle(Collections.singletonList(execution));
+    }
+
+    /**
+     * Beendet mehrere Ausführungen und bucht ihre Preise in einer gemeinsamen Transaktion.
+     *
+     * @param executions Die abzurechnenden Ausführungen
+     * @return Die Anzahl neu gebuchter Ausführungen
+     * @throws SQLException Wenn die Abrechnung nicht geschrieben werden kann. Keine der Ausführungen wird dann
+     *                      verändert.
+     */
+    public int settle(Collection<Execution> executions) throws SQLException {
+        final List<Execution> batch = new ArrayList<>(executions);
+        // Die Kontostände werden stets in derselben Reihenfolge gesperrt, damit gleichzeitige Abrechnungen mehrerer
+        // Clients sich nicht gegenseitig blockieren
+        batch.sort(Comparator.comparingInt((Execution e) -> e.getUser().getId()).thenComparingInt(Execution::getId));
+
+        final List<Execution> marked = new ArrayList<>();
+        final int booked;
+        try {
+            for (final Execution e : batch) {
+                if (e.markFinished()) {
+                    marked.add(e);
+                }
+            }
+            booked = this.dataManager.runInTransaction(connection -> this.settle(connection, batch));
+        } catch (final SQLException | RuntimeException e) {
+            for (final Execution m : marked) {
+                m.unmarkFinished();
+            }
+            throw e;
+        }
+
+        final Set<Integer> users = new HashSet<>();
+        for (final Execution e : batch) {
+            if (e.getUser().getId() >= 0 && users.add(e.getUser().getId())) {
+                try {
+                    e.getUser().loadCredit();
+                } catch (final SQLException ex) {
+                    this.logger.warn("Could not reload the credit of user " + e.getUser().getName() + ".", ex);
+                }
+            }
+        }
+
+        this.logger.debug("Settled " + batch.size() + " execution(s), " + booked + " of them newly booked.");
+        return booked;
+    }
+
+    private int settle(Connection connection, List<Execution> batch) throws SQLException {
+        final List<Execution> stored = new ArrayList<>(batch.size());
+        for (final Execution e : batch) {
+            if (e.getId() >= 0) {
+                stored.add(e);
+            }
+        }
+        if (stored.isEmpty()) {
+            return 0;
+        }
+
+        // 1. Ausführungen beenden. Nur die hier erstmals beendeten gehen in die Nutzungsstatistik ein.
+        final int[] stopped;
+        try (PreparedStatement s = Query.EXECUTION_STOP.prepare(connection)) {
+            for (final Execution e : stored) {
+                s.setTimestamp(1, e.getEndDate() != null ? Timestamp.valueOf(e.getEndDate()) : null);
+                e.setEnergy(s, 2);
+                s.setInt(3, e.getId());
+                s.addBatch();
+            }
+            stopped = s.executeBatch();
+        }
+        final List<Execution> usage = new ArrayList<>();
+        for (int i = 0; i < stored.size(); i++) {
+            if (stopped[i] > 0 && stored.get(i).getStartDate() != null) {
+                usage.add(stored.get(i));
+            }
+        }
+        this.dataManager.addUsage(connection, usage);
+
+        // 2. Preise buchen. Ausführungen ohne Benutzerkonto und kostenlose Ausführungen werden nicht gebucht, erlassene
+        // Preise dagegen mit 0, damit der Benutzer den Grund sieht und die Ausführung nicht nachträglich bezahlt wird.
+        final List<Execution> payable = new ArrayList<>();
+        for (final Execution e : stored) {
+            if (e.getUser().getId() >= 0 && (e.getPrice().signum() != 0 || e.isPriceWaived())) {
+                payable.add(e);
+            }
+        }
+        if (payable.isEmpty()) {
+            return 0;
+        }
+        final int[] inserted;
+        try (PreparedStatement s = Query.ACCOUNTING_INSERT_EXECUTION.prepare(connection)) {
+            for (final Execution e : payable) {
+                s.setInt(1, e.getUser().getId());
+                s.setInt(2, e.getId());
+                s.setBigDecimal(3, e.getPrice().negate());
+                s.setString(4, e.getPaymentDescription());
+                s.addBatch();
+            }
+            inserted = s.executeBatch();
+        }
+
+        // 3. Kontostände nur für die tatsächlich eingefügten Buchungen fortschreiben
+        int booked = 0;
+        try (PreparedStatement s = Query.BALANCE_ADD.prepare(connection)) {
+            for (int i = 0; i < payable.size(); i++) {
+                if (inserted[i] > 0) {
+                    final BigDecimal price = payable.get(i).getPrice();
+                    booked++;
+                    if (price.signum() == 0) {
+                        continue;
+                    }
+                    s.setInt(1, payable.get(i).getUser().getId());
+                    s.setBigDecimal(2, price.negate());
+                    s.addBatch();
+                } else {
+                    this.logger.info("Execution " + payable.get(i).getId() + " has already been paid.");
+                }
+            }
+            if (booked > 0) {
+                s.executeBatch();
+            }
+        }
+        return booked;
+    }
+}
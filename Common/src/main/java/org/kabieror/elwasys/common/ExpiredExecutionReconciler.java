@@ -0,0 +1,59 @@
+package org.kabieror.elwasys.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Rechnet Ausführungen ab, die von keinem Client beendet wurden, etwa weil dieser abgestürzt ist.
+ * <p>
+ * Eine Ausführung gilt als verwaist, sobald ihre Höchstdauer um mehr als eine Karenzzeit überschritten ist. Sie wird
+ * zum Ende ihrer Höchstdauer beendet und zum dafür fälligen Preis gebucht. Beendet der Client sie später doch noch,
+ * bleibt dies dank der wiederholbaren Abrechnung ohne Wirkung.
+ *
+ * @author Oliver Kabierschke
+ */
+public class ExpiredExecutionReconciler {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final DataManager dataManager;
+
+    private final ExecutionSettler settler;
+
+    private final Duration gracePeriod;
+
+    /**
+     * @param dataManager Der Daten-Verwalter
+     * @param gracePeriod Die Zeit über die Höchstdauer hinaus, die einem Client zum Beenden gelassen wird
+     */
+    public ExpiredExecutionReconciler(DataManager dataManager, Duration gracePeriod) {
+        this.dataManager = dataManager;
+        this.settler = new ExecutionSettler(dataManager);
+        this.gracePeriod = gracePeriod;
+    }
+
+    /**
+     * Sucht alle verwaisten Ausführungen und rechnet sie ab.
+     *
+     * @return Die Anzahl abgerechneter Ausführungen
+     * @throws SQLException Wenn ein Fehler bei der Datenbankabfrage auftritt
+     */
+    public int reconcile() throws SQLException {
+        final List<Execution> expired = this.dataManager.getExpiredExecutions(this.gracePeriod);
+        if (expired.isEmpty()) {
+            this.logger.debug("There are no expired executions.");
+            return 0;
+        }
+
+        for (final Execution e : expired) {
+            this.logger.warn("Execution " + e.getId() + " of user " + e.getUser().getName() + " on " +
+                    e.getDevice().getName() + " has not been finished by a client. Settling it now.");
+        }
+        this.settler.settle(expired);
+        return expired.size();
+    }
+}
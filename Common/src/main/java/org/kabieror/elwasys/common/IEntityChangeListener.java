@@ -0,0 +1,25 @@
+package org.kabieror.elwasys.common;
+
+/**
+ * Wird über Änderungen an Entitäten in der Datenbank benachrichtigt, auch wenn diese von einer anderen Anwendung
+ * vorgenommen wurden.
+ *
+ * @author Oliver Kabierschke
+ * @see DataManager#listenToEntityChanges(IEntityChangeListener)
+ */
+public interface IEntityChangeListener {
+
+    /**
+     * Eine Entität wurde angelegt, geändert oder gelöscht.
+     *
+     * @param type Der Typ der Entität
+     * @param id   Die Id der Entität
+     */
+    void onEntityChanged(EntityType type, int id);
+
+    /**
+     * Die Verbindung zur Datenbank war unterbrochen, sodass Änderungen verpasst worden sein können.
+     */
+    default void onChangesLost() {
+    }
+}
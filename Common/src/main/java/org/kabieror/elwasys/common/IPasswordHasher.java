@@ -0,0 +1,35 @@
+package org.kabieror.elwasys.common;
+
+/**
+ * Erzeugt und prüft die Hashes, unter denen die Passwörter der Benutzer gespeichert werden.
+ *
+ * @author Oliver Kabierschke
+ * @see DataManager#getPasswordHasher()
+ */
+public interface IPasswordHasher {
+
+    /**
+     * Erzeugt den zu speichernden Hash eines Passworts.
+     *
+     * @param password Das Passwort im Klartext
+     * @return Der Hash einschließlich aller Parameter, die zu seiner Prüfung nötig sind
+     */
+    String hash(String password);
+
+    /**
+     * Prüft ein Passwort gegen einen gespeicherten Hash.
+     *
+     * @param password Das zu prüfende Passwort
+     * @param hash     Der gespeicherte Hash, oder null
+     * @return True, wenn das Passwort zum Hash passt
+     */
+    boolean verify(String password, String hash);
+
+    /**
+     * Gibt zurück, ob ein gespeicherter Hash mit veralteten Parametern erzeugt wurde und nach der nächsten
+     * erfolgreichen Anmeldung ersetzt werden soll.
+     *
+     * @param hash Der gespeicherte Hash
+     */
+    boolean needsRehash(String hash);
+}
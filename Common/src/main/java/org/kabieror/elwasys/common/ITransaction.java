@@ -0,0 +1,23 @@
+package org.kabieror.elwasys.common;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Eine Folge von Datenbankoperationen, die gemeinsam in einer Transaktion ausgeführt wird.
+ *
+ * @author Oliver Kabierschke
+ * @see DataManager#runInTransaction(ITransaction)
+ */
+@FunctionalInterface
+public interface ITransaction<T> {
+
+    /**
+     * Führt die Operationen auf der gegebenen Verbindung aus.
+     *
+     * @param connection Die Verbindung, auf welcher die Transaktion läuft
+     * @return Das Ergebnis der Transaktion
+     * @throws SQLException Wenn eine Operation fehlschlägt. Die Transaktion wird dann zurückgerollt.
+     */
+    T execute(Connection connection) throws SQLException;
+}
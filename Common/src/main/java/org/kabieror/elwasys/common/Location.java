@@ -31,12 +31,26 @@ public class Location {
      * @param res         Das Abfrageergebnis, aus dem der Standort gelesen werden soll
      */
     public Location(DataManager dataManager, ResultSet res) throws SQLException {
+        this(dataManager, res, true);
+    }
+
+    /**
+     * Erstellt einen Standort anhand eines Datenbankeintrags
+     *
+     * @param loadRelations Ob die Benutzergruppen geladen werden sollen. Andernfalls müssen sie mit
+     *                      {@link #setRelations(List)} gesetzt werden.
+     */
+    Location(DataManager dataManager, ResultSet res, boolean loadRelations) throws SQLException {
         this.dataManager = dataManager;
 
         this.id = res.getInt("id");
         this.validUserGroups = new ArrayList<>();
 
-        this.update(res);
+        if (loadRelations) {
+            this.update(res);
+        } else {
+            this.updateFields(res);
+        }
     }
 
     /**
@@ -65,16 +79,17 @@ public class Location {
         this.name = name;
         this.validUserGroups = new ArrayList<>();
 
-        final PreparedStatement s = this.dataManager.getConnection()
-                .prepareStatement("INSERT INTO locations (name) VALUES (?)", Statement.RETURN_GENERATED_KEYS);
-        s.setString(1, name);
-        s.executeUpdate();
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.LOCATION_INSERT.prepare(connection)) {
+            s.setString(1, name);
+            s.executeUpdate();
 
-        final ResultSet res = s.getGeneratedKeys();
-        if (res.next()) {
-            this.id = res.getInt(1);
-        } else {
-            throw new SQLException("No ID received by database.");
+            final ResultSet res = s.getGeneratedKeys();
+            if (res.next()) {
+                this.id = res.getInt(1);
+            } else {
+                throw new SQLException("No ID received by database.");
+            }
         }
     }
 
@@ -84,7 +99,18 @@ public class Location {
      * @throws SQLException
      */
     public void delete() throws SQLException {
-        this.dataManager.getConnection().prepareCall("DELETE FROM locations WHERE id=" + this.id).execute();
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.LOCATION_DELETE.prepare(connection)) {
+            s.setInt(1, this.id);
+            s.execute();
+        }
+    }
+
+    /**
+     * Sorgt dafür, dass die nächste Aktualisierung die Daten des Standorts aus der Datenbank liest.
+     */
+    void invalidate() {
+        this.lastUpdateTime = null;
     }
 
     /**
@@ -103,14 +129,16 @@ public class Location {
         }
         this.lastUpdateTime = LocalDateTime.now();
 
-        final ResultSet res =
-                this.dataManager.getConnection().prepareCall("SELECT * FROM locations WHERE id=" + this.id)
-                        .executeQuery();
-        if (!res.next()) {
-            throw new NoDataFoundException(
-                    String.format("Der Standort '%1s' wurde aus der Datenbank gelöscht.", this.name));
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.LOCATION_BY_ID.prepare(connection)) {
+            s.setInt(1, this.id);
+            final ResultSet res = s.executeQuery();
+            if (!res.next()) {
+                throw new NoDataFoundException(
+                        String.format("Der Standort '%1s' wurde aus der Datenbank gelöscht.", this.name));
+            }
+            this.update(res);
         }
-        this.update(res);
     }
 
     /**
@@ -121,24 +149,40 @@ public class Location {
      * @throws SQLException
      */
     public void update(ResultSet res) throws SQLException {
+        this.updateFields(res);
+        this.updateValidGroups();
+    }
+
+    /**
+     * Aktualisiert diesen Standort ohne seine Benutzergruppen
+     */
+    void updateFields(ResultSet res) throws SQLException {
         this.name = res.getString("name");
         final Timestamp ts = res.getTimestamp("client_last_seen");
         if (ts != null) {
             this.clientLastSeen = ts.toLocalDateTime();
         }
         this.clientUid = res.getString("client_uid");
+    }
 
-        this.updateValidGroups();
+    /**
+     * Setzt die bereits geladenen Benutzergruppen des Standorts
+     */
+    void setRelations(List<UserGroup> validUserGroups) {
+        this.validUserGroups.clear();
+        this.validUserGroups.addAll(validUserGroups);
     }
 
     private void updateValidGroups() throws SQLException {
-        ResultSet res = this.dataManager.getConnection()
-                .prepareCall("SELECT group_id FROM locations_valid_user_groups WHERE location_id=" + this.id)
-                .executeQuery();
-        this.validUserGroups.clear();
-        if (res.isBeforeFirst()) {
-            while (res.next()) {
-                this.validUserGroups.add(this.dataManager.getUserGroupById(res.getInt("group_id")));
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.LOCATION_VALID_GROUPS.prepare(connection)) {
+            s.setInt(1, this.id);
+            ResultSet res = s.executeQuery();
+            this.validUserGroups.clear();
+            if (res.isBeforeFirst()) {
+                while (res.next()) {
+                    this.validUserGroups.add(this.dataManager.getUserGroupById(res.getInt("group_id")));
+                }
             }
         }
     }
@@ -149,37 +193,42 @@ public class Location {
      * @param name Der neue Name des Standorts
      */
     public void modify(String name, List<UserGroup> validUserGroups) throws SQLException {
-        final PreparedStatement s =
-                this.dataManager.getConnection().prepareStatement("UPDATE locations SET name=? WHERE id=?");
-        s.setString(1, name);
-        s.setInt(2, this.id);
-        s.execute();
-
-        this.name = name;
-
-        // Benutzergruppen aktualisieren
-        final List<UserGroup> skippedGroups = new Vector<>();
-        final int oldGroupsCount = this.validUserGroups.size();
-        for (final UserGroup g : validUserGroups) {
-            if (this.validUserGroups.contains(g)) {
-                skippedGroups.add(g);
-                continue;
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.LOCATION_UPDATE_NAME.prepare(connection)) {
+            s.setString(1, name);
+            s.setInt(2, this.id);
+            s.execute();
+
+            this.name = name;
+
+            // Benutzergruppen aktualisieren
+            final List<UserGroup> skippedGroups = new Vector<>();
+            final int oldGroupsCount = this.validUserGroups.size();
+            for (final UserGroup g : validUserGroups) {
+                if (this.validUserGroups.contains(g)) {
+                    skippedGroups.add(g);
+                    continue;
+                }
+                try (PreparedStatement rel = Query.LOCATION_VALID_GROUP_INSERT.prepare(connection)) {
+                    rel.setInt(1, this.id);
+                    rel.setInt(2, g.getId());
+                    rel.execute();
+                }
+                this.validUserGroups.add(g);
             }
-            this.dataManager.getConnection().prepareCall(
-                    "INSERT INTO locations_valid_user_groups (location_id, group_id) VALUES (" + this.id + ", " +
-                            g.getId() + ")").execute();
-            this.validUserGroups.add(g);
-        }
 
-        if (oldGroupsCount > skippedGroups.size()) {
-            // Look for deleted groups
-            for (int i = 0; i < this.validUserGroups.size(); i++) {
-                if (!validUserGroups.contains(this.validUserGroups.get(i))) {
-                    this.dataManager.getConnection().prepareCall(
-                            "DELETE FROM locations_valid_user_groups WHERE location_id=" + this.id + " AND group_id=" +
-                                    this.validUserGroups.get(i).getId()).execute();
-                    this.validUserGroups.remove(i);
-                    i--;
+            if (oldGroupsCount > skippedGroups.size()) {
+                // Look for deleted groups
+                for (int i = 0; i < this.validUserGroups.size(); i++) {
+                    if (!validUserGroups.contains(this.validUserGroups.get(i))) {
+                        try (PreparedStatement rel = Query.LOCATION_VALID_GROUP_DELETE.prepare(connection)) {
+                            rel.setInt(1, this.id);
+                            rel.setInt(2, this.validUserGroups.get(i).getId());
+                            rel.execute();
+                        }
+                        this.validUserGroups.remove(i);
+                        i--;
+                    }
                 }
             }
         }
@@ -200,17 +249,18 @@ public class Location {
 
         final LocalDateTime lastSeen = LocalDateTime.now();
 
-        final PreparedStatement s = this.dataManager.getConnection().prepareStatement(
-                "UPDATE locations SET client_uid=?, client_last_seen=? WHERE id=?");
-        int i = 1;
-        s.setString(i++, uid);
-        s.setTimestamp(i++, Timestamp.valueOf(lastSeen));
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.LOCATION_UPDATE_CLIENT.prepare(connection)) {
+            int i = 1;
+            s.setString(i++, uid);
+            s.setTimestamp(i++, Timestamp.valueOf(lastSeen));
 
-        s.setInt(i++, this.id);
-        s.execute();
+            s.setInt(i++, this.id);
+            s.execute();
 
-        this.clientUid = uid;
-        this.clientLastSeen = lastSeen;
+            this.clientUid = uid;
+            this.clientLastSeen = lastSeen;
+        }
     }
 
     /**
@@ -220,13 +270,14 @@ public class Location {
      * @throws SQLException
      */
     public void releaseLocation() throws SQLException {
-        final PreparedStatement s =
-                this.dataManager.getConnection().prepareStatement("UPDATE locations SET client_uid=? WHERE id=?");
-        s.setString(1, null);
-        s.setInt(2, this.id);
-        s.execute();
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.LOCATION_RELEASE_CLIENT.prepare(connection)) {
+            s.setString(1, null);
+            s.setInt(2, this.id);
+            s.execute();
 
-        this.clientUid = null;
+            this.clientUid = null;
+        }
     }
 
     private boolean clientCanRegister(String uid) {
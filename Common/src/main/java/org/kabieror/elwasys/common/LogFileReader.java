@@ -0,0 +1,252 @@
+package org.kabieror.elwasys.common;
+
+import ch.qos.logback.classic.Level;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Liest Ausschnitte einer Log-Datei vom Ende her, ohne die gesamte Datei in den Speicher zu laden.
+ * <p>
+ * Ein Eintrag beginnt mit Zeitstempel und Log-Level im Format {@code %d %level ...}. Zeilen ohne diesen Kopf, etwa
+ * von Stacktraces, gehören zum vorangehenden Eintrag und werden mit ihm gefiltert.
+ *
+ * @author Oliver Kabierschke
+ */
+public class LogFileReader {
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private static final Pattern ENTRY_HEAD =
+            Pattern.compile("^(\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2},\\d{3}) (TRACE|DEBUG|INFO|WARN|ERROR)\\b");
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss,SSS");
+
+    private final Path file;
+
+    public LogFileReader(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Liest die jüngsten passenden Einträge vor einem Byte-Offset.
+     *
+     * @param before   Nur Zeilen vor diesem Byte-Offset werden gelesen. 0 steht für das Ende der Datei.
+     * @param maxLines Die maximale Anzahl Zeilen. 0 steht für unbegrenzt. Ein einzelner Eintrag wird nie geteilt.
+     * @param since    Nur Einträge ab diesem Zeitpunkt, oder null.
+     * @param minLevel Nur Einträge ab diesem Log-Level, oder null.
+     * @return Der gelesene Ausschnitt.
+     * @throws IOException Falls die Datei nicht gelesen werden kann.
+     */
+    public Chunk read(long before, int maxLines, LocalDateTime since, String minLevel) throws IOException {
+        final Level level = minLevel == null ? null : Level.toLevel(minLevel, null);
+        final List<String> lines = new ArrayList<>();
+
+        try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            final long end = before <= 0 || before > size ? size : before;
+            final ReverseLineIterator it = new ReverseLineIterator(channel, end, before <= 0);
+
+            // Zeilen des aktuellen Eintrags in umgekehrter Reihenfolge
+            final List<String> entry = new ArrayList<>();
+            long scannedOffset = it.position();
+            while (it.hasNext()) {
+                final String line = it.next();
+                entry.add(line);
+                final Matcher m = ENTRY_HEAD.matcher(line);
+                final boolean head = m.find();
+                if (!head && it.hasNext()) {
+                    // Fortsetzungszeile, der Kopf des Eintrags folgt noch
+                    continue;
+                }
+
+                // Zeilen am Anfang der Datei ohne Kopf werden nie herausgefiltert
+                final LocalDateTime timestamp = head ? parseTimestamp(m.group(1)) : null;
+                if (since != null && timestamp != null && timestamp.isBefore(since)) {
+                    // Alle weiteren Einträge sind älter
+                    return new Chunk(reverse(lines), scannedOffset, false);
+                }
+                if (level == null || !head || Level.toLevel(m.group(2)).isGreaterOrEqual(level)) {
+                    if (maxLines > 0 && !lines.isEmpty() && lines.size() + entry.size() > maxLines) {
+                        return new Chunk(reverse(lines), scannedOffset, true);
+                    }
+                    lines.addAll(entry);
+                }
+                entry.clear();
+                scannedOffset = it.position();
+                if (maxLines > 0 && lines.size() >= maxLines) {
+                    return new Chunk(reverse(lines), scannedOffset, scannedOffset > 0);
+                }
+            }
+            return new Chunk(reverse(lines), 0, false);
+        }
+    }
+
+    private static LocalDateTime parseTimestamp(String timestamp) {
+        try {
+            return LocalDateTime.parse(timestamp, TIMESTAMP_FORMAT);
+        } catch (final DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static List<String> reverse(List<String> lines) {
+        Collections.reverse(lines);
+        return lines;
+    }
+
+    /**
+     * Ein gelesener Ausschnitt einer Log-Datei.
+     */
+    public static class Chunk {
+        private final List<String> lines;
+        private final long startOffset;
+        private final boolean hasMore;
+
+        Chunk(List<String> lines, long startOffset, boolean hasMore) {
+            this.lines = lines;
+            this.startOffset = startOffset;
+            this.hasMore = hasMore;
+        }
+
+        /**
+         * @return Die gelesenen Zeilen in chronologischer Reihenfolge.
+         */
+        public List<String> getLines() {
+            return this.lines;
+        }
+
+        /**
+         * @return Der Byte-Offset, ab dem ein weiterer Aufruf ältere Einträge liest.
+         */
+        public long getStartOffset() {
+            return this.startOffset;
+        }
+
+        /**
+         * @return Ob vor dem Start-Offset weitere passende Einträge liegen können.
+         */
+        public boolean hasMore() {
+            return this.hasMore;
+        }
+    }
+
+    /**
+     * Liefert die Zeilen einer Datei vom Ende zum Anfang, gelesen in Blöcken über positionierte Zugriffe.
+     */
+    private static class ReverseLineIterator {
+        private final FileChannel channel;
+
+        /**
+         * Die noch nicht gelesenen Bytes liegen vor dieser Position.
+         */
+        private long blockStart;
+
+        /**
+         * Die Bytes ab {@link #blockStart}, die noch nicht als Zeile zurückgegeben wurden.
+         */
+        private byte[] pending = new byte[0];
+
+        private int pendingLength = 0;
+
+        ReverseLineIterator(FileChannel channel, long end, boolean skipIncompleteLine) throws IOException {
+            this.channel = channel;
+            this.blockStart = end;
+            if (skipIncompleteLine) {
+                // Eine unvollständige letzte Zeile wird gerade noch geschrieben
+                while (this.loadBlock() && this.lastNewline() < 0) {
+                    // Lade weitere Blöcke
+                }
+                final int newline = this.lastNewline();
+                this.pendingLength = newline < 0 ? 0 : newline + 1;
+            }
+        }
+
+        boolean hasNext() {
+            return this.position() > 0;
+        }
+
+        /**
+         * @return Die Position der zuletzt gelieferten Zeile in der Datei.
+         */
+        long position() {
+            return this.blockStart + this.pendingLength;
+        }
+
+        String next() throws IOException {
+            if (this.pendingLength == 0) {
+                this.loadBlock();
+            }
+
+            // Der abschließende Zeilenumbruch gehört zur zurückzugebenden Zeile
+            int lineEnd = this.pendingLength;
+            if (lineEnd > 0 && this.pending[lineEnd - 1] == '\n') {
+                lineEnd--;
+            }
+            int start;
+            while ((start = this.lastIndexOf('\n', lineEnd)) < 0 && this.blockStart > 0) {
+                final int loaded = this.pendingLength;
+                this.loadBlock();
+                lineEnd += this.pendingLength - loaded;
+            }
+            start++;
+            int textEnd = lineEnd;
+            if (textEnd > start && this.pending[textEnd - 1] == '\r') {
+                textEnd--;
+            }
+            final String line = new String(this.pending, start, textEnd - start, StandardCharsets.UTF_8);
+            this.pendingLength = start;
+            return line;
+        }
+
+        private int lastNewline() {
+            return this.lastIndexOf('\n', this.pendingLength);
+        }
+
+        private int lastIndexOf(char c, int before) {
+            for (int i = before - 1; i >= 0; i--) {
+                if (this.pending[i] == c) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Lädt den Block vor den bisher geladenen Bytes.
+         *
+         * @return False, falls der Anfang der Datei bereits erreicht ist.
+         */
+        private boolean loadBlock() throws IOException {
+            if (this.blockStart == 0) {
+                return false;
+            }
+            final int length = (int) Math.min(BLOCK_SIZE, this.blockStart);
+            final byte[] combined = new byte[length + this.pendingLength];
+            final ByteBuffer buffer = ByteBuffer.wrap(combined, 0, length);
+            final long position = this.blockStart - length;
+            while (buffer.hasRemaining()) {
+                if (this.channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of the log file.");
+                }
+            }
+            System.arraycopy(this.pending, 0, combined, length, this.pendingLength);
+            this.pending = combined;
+            this.pendingLength = combined.length;
+            this.blockStart = position;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.kabieror.elwasys.common;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Speichert Passwörter als PBKDF2-HMAC-SHA256 mit zufälligem Salt. Die Anzahl Iterationen wird im Hash abgelegt,
+ * sodass sie jederzeit erhöht werden kann; ältere Hashes werden bei der nächsten Anmeldung ersetzt.
+ * <p>
+ * Hashes im früheren Format (SHA-1 ohne Salt, hexadezimal) werden weiterhin geprüft, gelten aber immer als veraltet.
+ *
+ * @author Oliver Kabierschke
+ */
+public class Pbkdf2PasswordHasher implements IPasswordHasher {
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2-sha256";
+
+    private static final int SALT_BYTES = 16;
+    private static final int KEY_BYTES = 32;
+
+    private static final Pattern FORMAT = Pattern.compile("^" + PREFIX + "\\$(\\d+)\\$([A-Za-z0-9+/]+)\\$([A-Za-z0-9+/]+)$");
+    private static final Pattern LEGACY_FORMAT = Pattern.compile("^[0-9a-f]{40}$");
+
+    private final SecureRandom random = new SecureRandom();
+
+    private final int iterations;
+
+    /**
+     * @param iterations Die Anzahl Iterationen für neu erzeugte Hashes
+     */
+    public Pbkdf2PasswordHasher(int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("The number of iterations must be positive.");
+        }
+        this.iterations = iterations;
+    }
+
+    @Override
+    public String hash(String password) {
+        final byte[] salt = new byte[SALT_BYTES];
+        this.random.nextBytes(salt);
+        final Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PREFIX + "$" + this.iterations + "$" + encoder.encodeToString(salt) + "$" +
+                encoder.encodeToString(derive(password, salt, this.iterations));
+    }
+
+    @Override
+    public boolean verify(String password, String hash) {
+        if (password == null || hash == null) {
+            return false;
+        }
+        final Matcher m = FORMAT.matcher(hash);
+        if (m.matches()) {
+            final int storedIterations;
+            try {
+                storedIterations = Integer.parseInt(m.group(1));
+            } catch (final NumberFormatException e) {
+                return false;
+            }
+            final Base64.Decoder decoder = Base64.getDecoder();
+            final byte[] salt = decoder.decode(m.group(2));
+            final byte[] expected = decoder.decode(m.group(3));
+            return MessageDigest.isEqual(expected, derive(password, salt, storedIterations));
+        }
+        if (LEGACY_FORMAT.matcher(hash).matches()) {
+            try {
+                return MessageDigest.isEqual(hash.getBytes(StandardCharsets.US_ASCII),
+                        Utilities.sha1(password).getBytes(StandardCharsets.US_ASCII));
+            } catch (final NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-1 is not available.", e);
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean needsRehash(String hash) {
+        final Matcher m = FORMAT.matcher(hash);
+        return !m.matches() || !m.group(1).equals(Integer.toString(this.iterations));
+    }
+
+    private static byte[] derive(String password, byte[] salt, int iterations) {
+        final PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, KEY_BYTES * 8);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (final GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available.", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -0,0 +1,429 @@
+package org.kabieror.elwasys.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Eine physische Datenbankverbindung, die vom {@link ConnectionPool} verwaltet wird.
+ * <p>
+ * Nach außen wird die Verbindung nur über Stellvertreter-Objekte herausgegeben, deren {@link Connection#close()} die
+ * Verbindung an den Pool zurückgibt, anstatt sie zu schließen.
+ * <p>
+ * Die Anweisungen aus dem {@link Query}-Verzeichnis werden je physischer Verbindung nur einmal vorbereitet und über
+ * alle Leihvorgänge hinweg wiederverwendet. Dadurch kann der Datenbanktreiber nach einigen Ausführungen auf
+ * serverseitig vorbereitete Anweisungen umstellen.
+ *
+ * @author Oliver Kabierschke
+ */
+class PooledConnection {
+
+    /**
+     * SQL-Zustände dieser Klasse zeigen eine unterbrochene Verbindung an.
+     */
+    private static final String CONNECTION_EXCEPTION_CLASS = "08";
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final ConnectionPool pool;
+    private final Connection physical;
+
+    /**
+     * Die Anweisungen, die während des aktuellen Leihvorgangs erstellt und noch nicht geschlossen wurden.
+     */
+    private final List<Statement> statements = new ArrayList<>();
+
+    /**
+     * Die bereits vorbereiteten Anweisungen des Abfrageverzeichnisses.
+     */
+    private final Map<Query, CachedStatement> statementCache = new EnumMap<>(Query.class);
+
+    /**
+     * Die Anzahl der offenen Leihvorgänge des haltenden Threads.
+     */
+    private int depth = 0;
+
+    /**
+     * Der Thread, der die Verbindung hält, oder null, solange sie frei ist.
+     */
+    private Thread owner;
+
+    /**
+     * Gibt an, ob während der Verwendung ein Verbindungsfehler aufgetreten ist.
+     */
+    private volatile boolean broken = false;
+
+    private volatile long lastReleased = System.nanoTime();
+
+    PooledConnection(ConnectionPool pool, Connection physical) {
+        this.pool = pool;
+        this.physical = physical;
+    }
+
+    /**
+     * Beginnt einen neuen Leihvorgang.
+     *
+     * @return Ein Stellvertreter, dessen close() den Leihvorgang beendet
+     */
+    synchronized Connection lease() {
+        if (this.depth == 0) {
+            this.owner = Thread.currentThread();
+        }
+        this.depth++;
+        return (Connection) Proxy.newProxyInstance(PooledConnection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler());
+    }
+
+    /**
+     * Beginnt einen weiteren Leihvorgang, sofern der aktuelle Thread die Verbindung noch hält. Wurde ihr letzter
+     * Leihvorgang in einem anderen Thread beendet, so ist sie bereits an den Pool zurückgegeben.
+     *
+     * @return Ein Stellvertreter, dessen close() den Leihvorgang beendet, oder null, falls der aktuelle Thread die
+     * Verbindung nicht mehr hält
+     */
+    synchronized Connection leaseAgain() {
+        if (this.depth == 0 || this.owner != Thread.currentThread()) {
+            return null;
+        }
+        return this.lease();
+    }
+
+    /**
+     * Gibt an, ob der aktuelle Thread die Verbindung hält.
+     */
+    synchronized boolean isLeasedByCurrentThread() {
+        return this.depth > 0 && this.owner == Thread.currentThread();
+    }
+
+    /**
+     * Gibt eine vorbereitete Anweisung der gegebenen Abfrage zurück. Wird die zwischengespeicherte Anweisung gerade
+     * verwendet, etwa bei verschachtelten Ladevorgängen, so wird eine zusätzliche Anweisung erstellt, die beim
+     * Schließen verworfen wird.
+     *
+     * @param query  Die Abfrage
+     * @param handle Der Stellvertreter der Verbindung, über den die Anweisung angefordert wurde
+     * @return Die vorbereitete Anweisung
+     */
+    PreparedStatement prepare(Query query, Connection handle) throws SQLException {
+        CachedStatement cached = this.statementCache.get(query);
+        if (cached == null) {
+            this.pool.onStatementCacheMiss();
+            try {
+                cached = new CachedStatement(query, query.create(this.physical));
+            } catch (final SQLException e) {
+                this.checkBroken(e);
+                throw e;
+            }
+            this.statementCache.put(query, cached);
+        } else if (cached.inUse) {
+            this.pool.onStatementCacheMiss();
+            return query.create(handle);
+        } else {
+            this.pool.onStatementCacheHit();
+        }
+        cached.inUse = true;
+        return (PreparedStatement) Proxy.newProxyInstance(PooledConnection.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, new CachedStatementHandler(cached, handle));
+    }
+
+    long getLastReleased() {
+        return this.lastReleased;
+    }
+
+    void touch() {
+        this.lastReleased = System.nanoTime();
+    }
+
+    /**
+     * Prüft, ob die physische Verbindung noch verwendbar ist.
+     */
+    boolean isValid(int timeoutSeconds) {
+        try {
+            return !this.broken && this.physical.isValid(timeoutSeconds);
+        } catch (final SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Schließt alle offenen Anweisungen und setzt die Verbindung in den Ausgangszustand zurück.
+     *
+     * @return True, wenn die Verbindung weiter verwendet werden kann
+     */
+    boolean resetForReuse() {
+        for (final Statement s : this.statements) {
+            try {
+                s.close();
+            } catch (final SQLException e) {
+                this.logger.debug("Could not close statement.", e);
+            }
+        }
+        this.statements.clear();
+
+        for (final CachedStatement cached : new ArrayList<>(this.statementCache.values())) {
+            if (cached.inUse) {
+                cached.release();
+            }
+        }
+
+        if (this.broken) {
+            return false;
+        }
+        try {
+            if (this.physical.isClosed()) {
+                return false;
+            }
+            if (!this.physical.getAutoCommit()) {
+                this.logger.warn("A database connection has been returned with an open transaction. Rolling back.");
+                this.physical.rollback();
+                this.physical.setAutoCommit(true);
+            }
+        } catch (final SQLException e) {
+            this.logger.warn("Could not reset database connection.", e);
+            return false;
+        }
+        this.touch();
+        return true;
+    }
+
+    void closePhysical() {
+        this.statementCache.clear();
+        try {
+            this.physical.close();
+        } catch (final SQLException e) {
+            this.logger.debug("Could not close database connection.", e);
+        }
+    }
+
+    private void endLease() {
+        synchronized (this) {
+            this.depth--;
+            if (this.depth > 0) {
+                return;
+            }
+            this.owner = null;
+        }
+        this.pool.release(this);
+    }
+
+    private Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (final InvocationTargetException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                this.checkBroken((SQLException) cause);
+            }
+            throw cause;
+        }
+    }
+
+    /**
+     * Vermerkt die Verbindung als unbrauchbar, wenn der Fehler eine unterbrochene Verbindung anzeigt.
+     */
+    private void checkBroken(SQLException e) {
+        final String state = e.getSQLState();
+        if (state != null && state.startsWith(CONNECTION_EXCEPTION_CLASS)) {
+            this.broken = true;
+        }
+    }
+
+    /**
+     * Stellvertreter einer Verbindung für einen einzelnen Leihvorgang.
+     */
+    private class ConnectionHandler implements InvocationHandler {
+        private boolean closed = false;
+        private Connection self;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            this.self = (Connection) proxy;
+            switch (method.getName()) {
+                case "close":
+                    if (!this.closed) {
+                        this.closed = true;
+                        PooledConnection.this.endLease();
+                    }
+                    return null;
+                case "isClosed":
+                    return this.closed || PooledConnection.this.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + PooledConnection.this.physical.toString();
+                default:
+                    break;
+            }
+            if (this.closed) {
+                throw new SQLException("The connection has already been returned to the pool.");
+            }
+            if (args != null && args.length == 1 && args[0] == PooledConnection.class) {
+                if (method.getName().equals("unwrap")) {
+                    return PooledConnection.this;
+                } else if (method.getName().equals("isWrapperFor")) {
+                    return true;
+                }
+            }
+
+            final Object result = PooledConnection.this.invoke(PooledConnection.this.physical, method, args);
+            if (result instanceof Statement) {
+                return this.track((Statement) result);
+            }
+            return result;
+        }
+
+        private Statement track(Statement statement) {
+            final Class<?> type;
+            if (statement instanceof CallableStatement) {
+                type = CallableStatement.class;
+            } else if (statement instanceof PreparedStatement) {
+                type = PreparedStatement.class;
+            } else {
+                type = Statement.class;
+            }
+            PooledConnection.this.statements.add(statement);
+            return (Statement) Proxy.newProxyInstance(PooledConnection.class.getClassLoader(), new Class<?>[]{type},
+                    new StatementHandler(statement, this.self));
+        }
+    }
+
+    /**
+     * Stellvertreter einer Anweisung, der Verbindungsfehler erkennt und das Schließen vermerkt.
+     */
+    private class StatementHandler implements InvocationHandler {
+        private final Statement statement;
+        private final Connection connection;
+
+        StatementHandler(Statement statement, Connection connection) {
+            this.statement = statement;
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "getConnection":
+                    return this.connection;
+                case "close":
+                    PooledConnection.this.statements.remove(this.statement);
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            return PooledConnection.this.invoke(this.statement, method, args);
+        }
+    }
+
+    /**
+     * Eine zwischengespeicherte Anweisung des Abfrageverzeichnisses.
+     */
+    private class CachedStatement {
+        private final Query query;
+        private final PreparedStatement statement;
+        private final List<ResultSet> resultSets = new ArrayList<>();
+        private boolean inUse = false;
+
+        /**
+         * Wird bei jeder Freigabe erhöht, sodass ältere Stellvertreter ungültig werden.
+         */
+        private int generation = 0;
+
+        CachedStatement(Query query, PreparedStatement statement) {
+            this.query = query;
+            this.statement = statement;
+        }
+
+        /**
+         * Schließt die Ergebnisse der letzten Verwendung und gibt die Anweisung für die nächste Verwendung frei.
+         */
+        void release() {
+            try {
+                for (final ResultSet res : this.resultSets) {
+                    res.close();
+                }
+                this.statement.clearParameters();
+                this.statement.clearBatch();
+            } catch (final SQLException e) {
+                PooledConnection.this.logger.debug("Could not reset cached statement " + this.query + ".", e);
+                PooledConnection.this.statementCache.remove(this.query);
+                try {
+                    this.statement.close();
+                } catch (final SQLException e1) {
+                    // ignorieren
+                }
+            } finally {
+                this.resultSets.clear();
+                this.inUse = false;
+                this.generation++;
+            }
+        }
+    }
+
+    /**
+     * Stellvertreter einer zwischengespeicherten Anweisung. Beim Schließen wird die Anweisung nur freigegeben.
+     */
+    private class CachedStatementHandler implements InvocationHandler {
+        private final CachedStatement cached;
+        private final Connection connection;
+        private final int generation;
+
+        CachedStatementHandler(CachedStatement cached, Connection connection) {
+            this.cached = cached;
+            this.connection = connection;
+            this.generation = cached.generation;
+        }
+
+        private boolean isClosed() {
+            return this.generation != this.cached.generation;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "getConnection":
+                    return this.connection;
+                case "close":
+                    if (!this.isClosed()) {
+                        this.cached.release();
+                    }
+                    return null;
+                case "isClosed":
+                    return this.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            if (this.isClosed()) {
+                throw new SQLException("The statement has already been closed.");
+            }
+            final Object result = PooledConnection.this.invoke(this.cached.statement, method, args);
+            if (result instanceof ResultSet) {
+                this.cached.resultSets.add((ResultSet) result);
+            }
+            return result;
+        }
+    }
+}
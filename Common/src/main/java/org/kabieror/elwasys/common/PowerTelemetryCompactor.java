@@ -0,0 +1,68 @@
+package org.kabieror.elwasys.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Verdichtet die gespeicherten Leistungsmesswerte. Messwerte, die älter als ihre Aufbewahrungszeit sind, werden zu
+ * Minuten zusammengefasst, Minuten später zu Stunden. Stunden werden nach ihrer Aufbewahrungszeit gelöscht.
+ * <p>
+ * Jede Stufe wird mit einer einzigen Anweisung verschoben, sodass keine Messwerte verloren gehen oder doppelt zählen.
+ *
+ * @author Oliver Kabierschke
+ */
+public class PowerTelemetryCompactor {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final DataManager dataManager;
+
+    private final Duration sampleRetention;
+    private final Duration minuteRetention;
+    private final Duration hourRetention;
+
+    /**
+     * @param sampleRetention Die Zeit, für die einzelne Messwerte aufbewahrt werden
+     * @param minuteRetention Die Zeit, für die Minuten aufbewahrt werden
+     * @param hourRetention   Die Zeit, für die Stunden aufbewahrt werden, oder null, um sie nie zu löschen
+     */
+    public PowerTelemetryCompactor(DataManager dataManager, Duration sampleRetention, Duration minuteRetention,
+                                   Duration hourRetention) {
+        this.dataManager = dataManager;
+        this.sampleRetention = sampleRetention;
+        this.minuteRetention = minuteRetention;
+        this.hourRetention = hourRetention;
+    }
+
+    /**
+     * Verdichtet alle Messwerte, deren Aufbewahrungszeit abgelaufen ist.
+     *
+     * @throws SQLException Wenn ein Fehler bei der Datenbankabfrage auftritt
+     */
+    public void compact() throws SQLException {
+        final LocalDateTime now = LocalDateTime.now();
+        final int minutes = this.move(Query.POWER_SAMPLES_TO_MINUTES, now.minus(this.sampleRetention));
+        final int hours = this.move(Query.POWER_MINUTES_TO_HOURS, now.minus(this.minuteRetention));
+        int purged = 0;
+        if (this.hourRetention != null) {
+            purged = this.move(Query.POWER_HOURS_PURGE, now.minus(this.hourRetention));
+        }
+        this.logger.debug("Compacted power telemetry: " + minutes + " minute(s) and " + hours + " hour(s) written, " +
+                purged + " hour(s) purged.");
+    }
+
+    private int move(Query query, LocalDateTime before) throws SQLException {
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = query.prepare(connection)) {
+            s.setTimestamp(1, Timestamp.valueOf(before));
+            return s.executeUpdate();
+        }
+    }
+}
@@ -4,10 +4,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
@@ -92,10 +92,24 @@ public class Program {
     }
 
     public Program(DataManager dataManager, ResultSet res) throws SQLException {
+        this(dataManager, res, true);
+    }
+
+    /**
+     * Erstellt ein Programm aus einem Abfrageergebnis.
+     *
+     * @param loadRelations Ob die Benutzergruppen geladen werden sollen. Andernfalls müssen sie mit
+     *                      {@link #setRelations(List)} gesetzt werden.
+     */
+    Program(DataManager dataManager, ResultSet res, boolean loadRelations) throws SQLException {
         this.dataManager = dataManager;
         this.id = res.getInt("id");
         this.validUserGroups = new ArrayList<>();
-        this.update(res);
+        if (loadRelations) {
+            this.update(res);
+        } else {
+            this.updateFields(res);
+        }
     }
 
     /**
@@ -118,55 +132,55 @@ public class Program {
         this.enabled = enabled;
         this.validUserGroups = validUserGroups;
 
-        final PreparedStatement s = dataManager.getConnection().prepareStatement(
-                "INSERT INTO programs (name, type, flagfall, rate, time_unit, max_duration, free_duration, auto_end, " +
-                        "earliest_auto_end, enabled) VALUES (?, ?::PROGRAM_TYPE, ?, ?, ?::TIME_UNIT_TYPE, ?, ?, ?, ?," +
-                        " ?)", Statement.RETURN_GENERATED_KEYS);
-        int i = 1;
-        s.setString(i++, name);
-        s.setString(i++, this.getTypeString(type));
-        s.setBigDecimal(i++, flagfall);
-        s.setBigDecimal(i++, rate);
-        s.setString(i++, this.getTimeUnitString(timeUnit));
-        s.setInt(i++, new Long(maxDuration.getSeconds()).intValue());
-        s.setInt(i++, new Long(freeDuration.getSeconds()).intValue());
-        s.setBoolean(i++, this.autoEnd);
-        s.setInt(i++, new Long(this.earliestAutoEnd.getSeconds()).intValue());
-        s.setBoolean(i++, enabled);
-        s.executeUpdate();
-
-        final ResultSet res = s.getGeneratedKeys();
-        if (res.next()) {
-            this.id = res.getInt(1);
-        } else {
-            throw new SQLException("No ID received by database.");
-        }
-
-        // Relationen herstellen
-        try {
-            for (final UserGroup g : validUserGroups) {
-                this.dataManager.getConnection().prepareCall(
-                        "INSERT INTO programs_valid_user_groups (program_id, group_id) VALUES (" + this.id + ", " +
-                                g.getId() + ")").execute();
-            }
-        } catch (final SQLException e) {
-            // Fehler. Alles zurücksetzen.
-            try {
-                this.dataManager.getConnection()
-                        .prepareCall("DELETE FROM programs_valid_user_groups WHERE program_id=" + this.id).execute();
-            } catch (final SQLException e1) {
-                // ignorieren und weiter.
-                this.logger.error("Could not delete newly created relations between this program and its valid user " +
-                        "groups", e1);
+        try (Connection connection = dataManager.getConnection();
+             PreparedStatement s = Query.PROGRAM_INSERT.prepare(connection)) {
+            int i = 1;
+            s.setString(i++, name);
+            s.setString(i++, this.getTypeString(type));
+            s.setBigDecimal(i++, flagfall);
+            s.setBigDecimal(i++, rate);
+            s.setString(i++, this.getTimeUnitString(timeUnit));
+            s.setInt(i++, new Long(maxDuration.getSeconds()).intValue());
+            s.setInt(i++, new Long(freeDuration.getSeconds()).intValue());
+            s.setBoolean(i++, this.autoEnd);
+            s.setInt(i++, new Long(this.earliestAutoEnd.getSeconds()).intValue());
+            s.setBoolean(i++, enabled);
+            s.executeUpdate();
+
+            final ResultSet res = s.getGeneratedKeys();
+            if (res.next()) {
+                this.id = res.getInt(1);
+            } else {
+                throw new SQLException("No ID received by database.");
             }
 
-            try {
-                this.dataManager.getConnection().prepareCall("DELETE FROM programs WHERE id=" + this.id).execute();
-            } catch (final SQLException e1) {
-                // ignorieren und weiter.
-                this.logger.error("Could not delete the newly created program.");
+            // Relationen herstellen
+            try (PreparedStatement rel = Query.PROGRAM_VALID_GROUP_INSERT.prepare(connection)) {
+                for (final UserGroup g : validUserGroups) {
+                    rel.setInt(1, this.id);
+                    rel.setInt(2, g.getId());
+                    rel.execute();
+                }
+            } catch (final SQLException e) {
+                // Fehler. Alles zurücksetzen.
+                try (PreparedStatement del = Query.PROGRAM_VALID_GROUPS_DELETE.prepare(connection)) {
+                    del.setInt(1, this.id);
+                    del.execute();
+                } catch (final SQLException e1) {
+                    // ignorieren und weiter.
+                    this.logger.error("Could not delete newly created relations between this program and its valid user " +
+                            "groups", e1);
+                }
+
+                try (PreparedStatement del = Query.PROGRAM_DELETE.prepare(connection)) {
+                    del.setInt(1, this.id);
+                    del.execute();
+                } catch (final SQLException e1) {
+                    // ignorieren und weiter.
+                    this.logger.error("Could not delete the newly created program.");
+                }
+                throw e;
             }
-            throw e;
         }
     }
 
@@ -194,6 +208,13 @@ public class Program {
                 Duration.ZERO);
     }
 
+    /**
+     * Sorgt dafür, dass die nächste Aktualisierung die Daten des Programms aus der Datenbank liest.
+     */
+    void invalidate() {
+        this.lastUpdateTime = null;
+    }
+
     /**
      * Aktualisiert die Daten des Geräts mit denen aus der Datenbank
      *
@@ -209,13 +230,16 @@ public class Program {
         }
         this.lastUpdateTime = LocalDateTime.now();
 
-        final ResultSet res = this.dataManager.getConnection().prepareCall("SELECT * FROM programs WHERE id=" + this.id)
-                .executeQuery();
-        if (!res.next()) {
-            throw new NoDataFoundException(
-                    String.format("Das Programm '%1s' wurde aus der Datenbank gelöscht.", this.name));
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.PROGRAM_BY_ID.prepare(connection)) {
+            s.setInt(1, this.id);
+            final ResultSet res = s.executeQuery();
+            if (!res.next()) {
+                throw new NoDataFoundException(
+                        String.format("Das Programm '%1s' wurde aus der Datenbank gelöscht.", this.name));
+            }
+            this.update(res);
         }
-        this.update(res);
     }
 
     /**
@@ -225,6 +249,16 @@ public class Program {
      * @throws SQLException
      */
     public void update(ResultSet res) throws SQLException {
+        this.updateFields(res);
+        this.updateValidGroups();
+    }
+
+    /**
+     * Aktualisiert die Daten des Programms ohne seine Benutzergruppen
+     *
+     * @param res Das Abfrageergebnis mit denen das Programm aktualisiert werden soll
+     */
+    void updateFields(ResultSet res) throws SQLException {
         this.name = res.getString("name");
         this.maxDuration = Duration.ofSeconds(res.getInt("max_duration"));
         this.freeDuration = Duration.ofSeconds(res.getInt("free_duration"));
@@ -263,18 +297,26 @@ public class Program {
                 this.logger.warn("The time unit of program " + this.id + " is not set.");
             }
         }
+    }
 
-        this.updateValidGroups();
+    /**
+     * Setzt die bereits geladenen Benutzergruppen des Programms
+     */
+    void setRelations(List<UserGroup> validUserGroups) {
+        this.validUserGroups.clear();
+        this.validUserGroups.addAll(validUserGroups);
     }
 
     private void updateValidGroups() throws SQLException {
-        ResultSet res = this.dataManager.getConnection()
-                .prepareCall("SELECT group_id FROM programs_valid_user_groups WHERE program_id=" + this.id)
-                .executeQuery();
-        this.validUserGroups.clear();
-        if (res.isBeforeFirst()) {
-            while (res.next()) {
-                this.validUserGroups.add(this.dataManager.getUserGroupById(res.getInt("group_id")));
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.PROGRAM_VALID_GROUPS.prepare(connection)) {
+            s.setInt(1, this.id);
+            ResultSet res = s.executeQuery();
+            this.validUserGroups.clear();
+            if (res.isBeforeFirst()) {
+                while (res.next()) {
+                    this.validUserGroups.add(this.dataManager.getUserGroupById(res.getInt("group_id")));
+                }
             }
         }
     }
@@ -294,58 +336,61 @@ public class Program {
     public void modify(String name, ProgramType type, BigDecimal flagfall, BigDecimal rate, ChronoUnit timeUnit,
                        Duration maxDuration, Duration freeDuration, Boolean autoEnd, Duration earliestAutoEnd,
                        Boolean enabled, List<UserGroup> validUserGroups) throws SQLException {
-        final PreparedStatement s = this.dataManager.getConnection().prepareStatement(
-                "UPDATE programs SET name=?, type=?::PROGRAM_TYPE, flagfall=?, " +
-                        "rate=?, time_unit=?::TIME_UNIT_TYPE, max_duration=?, free_duration=?, auto_end=?, " +
-                        "earliest_auto_end=?, enabled=? WHERE id=?");
-        int i = 1;
-        s.setString(i++, name);
-        s.setString(i++, this.getTypeString(type));
-        s.setBigDecimal(i++, flagfall);
-        s.setBigDecimal(i++, rate);
-        s.setString(i++, this.getTimeUnitString(timeUnit));
-        s.setInt(i++, new Long(maxDuration.getSeconds()).intValue());
-        s.setInt(i++, new Long(freeDuration.getSeconds()).intValue());
-        s.setBoolean(i++, autoEnd);
-        s.setInt(i++, new Long(earliestAutoEnd.getSeconds()).intValue());
-        s.setBoolean(i++, enabled);
-        s.setInt(i++, this.id);
-        s.execute();
-
-        this.name = name;
-        this.type = type;
-        this.flagfall = flagfall;
-        this.rate = rate;
-        this.timeUnit = timeUnit;
-        this.maxDuration = maxDuration;
-        this.freeDuration = freeDuration;
-        this.autoEnd = autoEnd;
-        this.earliestAutoEnd = earliestAutoEnd;
-        this.enabled = enabled;
-
-        // Benutzergruppen aktualisieren
-        final List<UserGroup> skippedGroups = new Vector<>();
-        final int oldGroupsCount = this.validUserGroups.size();
-        for (final UserGroup g : validUserGroups) {
-            if (this.validUserGroups.contains(g)) {
-                skippedGroups.add(g);
-                continue;
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.PROGRAM_UPDATE.prepare(connection)) {
+            int i = 1;
+            s.setString(i++, name);
+            s.setString(i++, this.getTypeString(type));
+            s.setBigDecimal(i++, flagfall);
+            s.setBigDecimal(i++, rate);
+            s.setString(i++, this.getTimeUnitString(timeUnit));
+            s.setInt(i++, new Long(maxDuration.getSeconds()).intValue());
+            s.setInt(i++, new Long(freeDuration.getSeconds()).intValue());
+            s.setBoolean(i++, autoEnd);
+            s.setInt(i++, new Long(earliestAutoEnd.getSeconds()).intValue());
+            s.setBoolean(i++, enabled);
+            s.setInt(i++, this.id);
+            s.execute();
+
+            this.name = name;
+            this.type = type;
+            this.flagfall = flagfall;
+            this.rate = rate;
+            this.timeUnit = timeUnit;
+            this.maxDuration = maxDuration;
+            this.freeDuration = freeDuration;
+            this.autoEnd = autoEnd;
+            this.earliestAutoEnd = earliestAutoEnd;
+            this.enabled = enabled;
+
+            // Benutzergruppen aktualisieren
+            final List<UserGroup> skippedGroups = new Vector<>();
+            final int oldGroupsCount = this.validUserGroups.size();
+            for (final UserGroup g : validUserGroups) {
+                if (this.validUserGroups.contains(g)) {
+                    skippedGroups.add(g);
+                    continue;
+                }
+                try (PreparedStatement rel = Query.PROGRAM_VALID_GROUP_INSERT.prepare(connection)) {
+                    rel.setInt(1, this.id);
+                    rel.setInt(2, g.getId());
+                    rel.execute();
+                }
+                this.validUserGroups.add(g);
             }
-            this.dataManager.getConnection().prepareCall(
-                    "INSERT INTO programs_valid_user_groups (program_id, group_id) VALUES (" + this.id + ", " +
-                            g.getId() + ")").execute();
-            this.validUserGroups.add(g);
-        }
 
-        if (oldGroupsCount > skippedGroups.size()) {
-            // Look for deleted groups
-            for (i = 0; i < this.validUserGroups.size(); i++) {
-                if (!validUserGroups.contains(this.validUserGroups.get(i))) {
-                    this.dataManager.getConnection().prepareCall(
-                            "DELETE FROM programs_valid_user_groups WHERE program_id=" + this.id + " AND group_id=" +
-                                    this.validUserGroups.get(i).getId()).execute();
-                    this.validUserGroups.remove(i);
-                    i--;
+            if (oldGroupsCount > skippedGroups.size()) {
+                // Look for deleted groups
+                for (i = 0; i < this.validUserGroups.size(); i++) {
+                    if (!validUserGroups.contains(this.validUserGroups.get(i))) {
+                        try (PreparedStatement rel = Query.PROGRAM_VALID_GROUP_DELETE.prepare(connection)) {
+                            rel.setInt(1, this.id);
+                            rel.setInt(2, this.validUserGroups.get(i).getId());
+                            rel.execute();
+                        }
+                        this.validUserGroups.remove(i);
+                        i--;
+                    }
                 }
             }
         }
@@ -367,18 +412,7 @@ public class Program {
             user = User.getAnonymous();
         }
 
-        BigDecimal price = null;
-        switch (this.type) {
-            case DYNAMIC:
-                price = this.getDynamicPrice(duration);
-                break;
-            case FIXED:
-                price = this.flagfall;
-                break;
-            case OPEN_DOOR:
-                price = BigDecimal.ZERO;
-                break;
-        }
+        final BigDecimal price = this.getListPrice(duration);
         if (price != null) {
             if (user.getGroup().getDiscountType() == DiscountType.Factor) {
                 return price.subtract(price.multiply(new BigDecimal(user.getGroup().getDiscountValue())));
@@ -391,6 +425,28 @@ public class Program {
         return null;
     }
 
+    /**
+     * Gibt den Preis für eine Programmausführung ohne Rabatt der Benutzergruppe zurück
+     *
+     * @param duration Die Dauer der Programmausführung
+     * @return Den Preis vor Abzug des Rabatts
+     */
+    public BigDecimal getListPrice(Duration duration) {
+        if (duration.compareTo(this.freeDuration) <= 0) {
+            return BigDecimal.ZERO;
+        }
+        switch (this.type) {
+            case DYNAMIC:
+                return this.getDynamicPrice(duration);
+            case FIXED:
+                return this.flagfall;
+            case OPEN_DOOR:
+                return BigDecimal.ZERO;
+            default:
+                return null;
+        }
+    }
+
     private BigDecimal getDynamicPrice(Duration duration) {
         final BigDecimal factor;
         switch (this.timeUnit) {
@@ -504,6 +560,10 @@ public class Program {
      * @throws SQLException
      */
     public void delete() throws SQLException {
-        this.dataManager.getConnection().prepareCall("DELETE FROM programs WHERE id=" + this.id).execute();
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.PROGRAM_DELETE.prepare(connection)) {
+            s.setInt(1, this.id);
+            s.execute();
+        }
     }
 }
@@ -0,0 +1,304 @@
+package org.kabieror.elwasys.common;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Verzeichnis aller Datenbankabfragen der Anwendung.
+ * <p>
+ * Jede Abfrage wird je Datenbankverbindung nur einmal vorbereitet und anschließend wiederverwendet. Eine mit
+ * {@link #prepare(Connection)} erhaltene Anweisung muss nach Gebrauch geschlossen werden, wodurch sie für die nächste
+ * Verwendung freigegeben wird.
+ *
+ * @author Oliver Kabierschke
+ */
+public enum Query {
+
+    // Standorte
+    LOCATIONS_ALL("SELECT * FROM locations ORDER BY name"),
+    LOCATION_BY_ID("SELECT * FROM locations WHERE id=?"),
+    LOCATION_BY_NAME("SELECT * FROM locations WHERE name=?"),
+    LOCATION_INSERT("INSERT INTO locations (name) VALUES (?)", true),
+    LOCATION_UPDATE_NAME("UPDATE locations SET name=? WHERE id=?"),
+    LOCATION_UPDATE_CLIENT("UPDATE locations SET client_uid=?, client_last_seen=? WHERE id=?"),
+    LOCATION_RELEASE_CLIENT("UPDATE locations SET client_uid=? WHERE id=?"),
+    LOCATION_DELETE("DELETE FROM locations WHERE id=?"),
+    LOCATIONS_DELETE_UNUSED(
+            "DELETE FROM locations WHERE locations.id NOT IN (SELECT location_id FROM devices) AND locations.id<>1"),
+    LOCATION_VALID_GROUPS("SELECT group_id FROM locations_valid_user_groups WHERE location_id=?"),
+    LOCATION_VALID_GROUPS_BY_LOCATIONS(
+            "SELECT location_id, group_id FROM locations_valid_user_groups WHERE location_id=ANY(?)"),
+    LOCATION_VALID_GROUP_INSERT("INSERT INTO locations_valid_user_groups (location_id, group_id) VALUES (?, ?)"),
+    LOCATION_VALID_GROUP_DELETE("DELETE FROM locations_valid_user_groups WHERE location_id=? AND group_id=?"),
+
+    // Geräte
+    DEVICES_ALL("SELECT * FROM devices"),
+    DEVICE_BY_ID("SELECT * FROM devices WHERE id=?"),
+    DEVICES_BY_LOCATION_POSITION("SELECT * FROM devices WHERE location_id=? ORDER BY position"),
+    DEVICES_BY_LOCATION_NAME("SELECT * FROM devices WHERE location_id=? ORDER BY name"),
+    DEVICES_BY_PROGRAM("SELECT devices.* FROM device_program_rel LEFT JOIN devices " +
+            "ON device_program_rel.device_id=devices.id WHERE program_id=?"),
+    DEVICE_INSERT("INSERT INTO devices (name, position, location_id, fhem_name, fhem_switch_name, fhem_power_name, " +
+            "deconz_uuid, auto_end_power_threashold, auto_end_wait_time, enabled) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", true),
+    DEVICE_UPDATE("UPDATE devices SET name=?, position=?, location_id=?, fhem_name=?, fhem_switch_name=?, " +
+            "fhem_power_name=?, deconz_uuid=?, auto_end_power_threashold=?, auto_end_wait_time=?, enabled=? " +
+            "WHERE id=?"),
+    DEVICE_DELETE("DELETE FROM devices WHERE id=?"),
+    DEVICE_PROGRAMS("SELECT program_id FROM device_program_rel WHERE device_id=?"),
+    DEVICE_PROGRAMS_BY_DEVICES("SELECT device_id, program_id FROM device_program_rel WHERE device_id=ANY(?)"),
+    DEVICE_PROGRAM_INSERT("INSERT INTO device_program_rel (device_id, program_id) VALUES (?, ?)"),
+    DEVICE_PROGRAM_DELETE("DELETE FROM device_program_rel WHERE device_id=? AND program_id=?"),
+    DEVICE_PROGRAMS_DELETE("DELETE FROM device_program_rel WHERE device_id=?"),
+    DEVICE_VALID_GROUPS("SELECT group_id FROM devices_valid_user_groups WHERE device_id=?"),
+    DEVICE_VALID_GROUPS_BY_DEVICES(
+            "SELECT device_id, group_id FROM devices_valid_user_groups WHERE device_id=ANY(?)"),
+    DEVICE_VALID_GROUP_INSERT("INSERT INTO devices_valid_user_groups (device_id, group_id) VALUES (?, ?)"),
+    DEVICE_VALID_GROUP_DELETE("DELETE FROM devices_valid_user_groups WHERE device_id=? AND group_id=?"),
+    DEVICE_VALID_GROUPS_DELETE("DELETE FROM devices_valid_user_groups WHERE device_id=?"),
+
+    // Programme
+    PROGRAMS_ALL("SELECT * FROM programs"),
+    PROGRAM_BY_ID("SELECT * FROM programs WHERE id=?"),
+    PROGRAMS_BY_IDS("SELECT * FROM programs WHERE id=ANY(?)"),
+    PROGRAM_INSERT("INSERT INTO programs (name, type, flagfall, rate, time_unit, max_duration, free_duration, " +
+            "auto_end, earliest_auto_end, enabled) " +
+            "VALUES (?, ?::PROGRAM_TYPE, ?, ?, ?::TIME_UNIT_TYPE, ?, ?, ?, ?, ?)", true),
+    PROGRAM_UPDATE("UPDATE programs SET name=?, type=?::PROGRAM_TYPE, flagfall=?, rate=?, " +
+            "time_unit=?::TIME_UNIT_TYPE, max_duration=?, free_duration=?, auto_end=?, earliest_auto_end=?, " +
+            "enabled=? WHERE id=?"),
+    PROGRAM_DELETE("DELETE FROM programs WHERE id=?"),
+    PROGRAM_VALID_GROUPS("SELECT group_id FROM programs_valid_user_groups WHERE program_id=?"),
+    PROGRAM_VALID_GROUPS_BY_PROGRAMS(
+            "SELECT program_id, group_id FROM programs_valid_user_groups WHERE program_id=ANY(?)"),
+    PROGRAM_VALID_GROUP_INSERT("INSERT INTO programs_valid_user_groups (program_id, group_id) VALUES (?, ?)"),
+    PROGRAM_VALID_GROUP_DELETE("DELETE FROM programs_valid_user_groups WHERE program_id=? AND group_id=?"),
+    PROGRAM_VALID_GROUPS_DELETE("DELETE FROM programs_valid_user_groups WHERE program_id=?"),
+
+    // Benutzergruppen
+    USER_GROUPS_ALL("SELECT * FROM user_groups ORDER BY name"),
+    USER_GROUP_BY_ID("SELECT * FROM user_groups WHERE id=?"),
+    USER_GROUPS_BY_IDS("SELECT * FROM user_groups WHERE id=ANY(?)"),
+    USER_GROUP_DEFAULT("SELECT * FROM user_groups ORDER BY id ASC LIMIT 1"),
+    USER_GROUP_INSERT("INSERT INTO user_groups (name, discount_type, discount_value) " +
+            "VALUES (?, ?::DISCOUNT_TYPE, ?)", true),
+    USER_GROUP_UPDATE("UPDATE user_groups SET name=?, discount_type=?::DISCOUNT_TYPE, discount_value=? WHERE id=?"),
+    USER_GROUP_MOVE_USERS(
+            "UPDATE users SET group_id=(SELECT id FROM user_groups WHERE id<>? LIMIT 1) WHERE group_id=?"),
+    USER_GROUP_DELETE("DELETE FROM user_groups WHERE id=?"),
+    USER_GROUP_VALID_LOCATIONS("SELECT * FROM locations_valid_user_groups val " +
+            "LEFT JOIN locations loc ON loc.id=val.location_id WHERE val.group_id=?"),
+    USER_GROUP_VALID_DEVICES("SELECT * FROM devices_valid_user_groups val " +
+            "LEFT JOIN devices dev ON dev.id=val.device_id WHERE val.group_id=?"),
+    USER_GROUP_VALID_PROGRAMS("SELECT * FROM programs_valid_user_groups val " +
+            "LEFT JOIN programs pro ON pro.id=val.program_id WHERE val.group_id=?"),
+
+    // Benutzer
+    USERS_ALL("SELECT * FROM users WHERE deleted=FALSE"),
+    USER_BY_ID("SELECT * FROM users WHERE id=?"),
+    USER_BY_CARD_ID(
+            "SELECT * FROM users WHERE deleted=FALSE AND string_to_array(card_ids, chr(10)) @> ARRAY[?::TEXT] LIMIT 1"),
+    USER_CARD_IDS_ALL("SELECT id, card_ids FROM users WHERE deleted=FALSE"),
+    // Enthält einen Platzhalter für die Sortierung, siehe UserOrder
+    USERS_PAGE("SELECT users.*, COALESCE(b.balance, 0) AS credit, " +
+            "ARRAY(SELECT program_id FROM executions e WHERE e.finished=FALSE AND e.user_id=users.id) " +
+            "AS running_programs FROM users JOIN user_groups g ON g.id=users.group_id " +
+            "LEFT JOIN credit_balances b ON b.user_id=users.id WHERE users.deleted=FALSE AND (?::TEXT IS NULL " +
+            "OR lower(users.name || chr(10) || users.username || chr(10) || users.card_ids) LIKE ?) " +
+            "ORDER BY %s LIMIT ? OFFSET ?"),
+    USERS_COUNT("SELECT COUNT(*) FROM users WHERE deleted=FALSE AND (?::TEXT IS NULL " +
+            "OR lower(users.name || chr(10) || users.username || chr(10) || users.card_ids) LIKE ?)"),
+    USERS_CREDIT_SUM("SELECT COALESCE(SUM(b.balance), 0) FROM users JOIN credit_balances b ON b.user_id=users.id " +
+            "WHERE users.deleted=FALSE AND (?::TEXT IS NULL " +
+            "OR lower(users.name || chr(10) || users.username || chr(10) || users.card_ids) LIKE ?)"),
+    // Rangfolge: exakter Benutzername oder Kartennummer, dann Präfix von Name oder Benutzername, dann Ähnlichkeit
+    USERS_SEARCH("SELECT users.*, COALESCE(b.balance, 0) AS credit, " +
+            "ARRAY(SELECT program_id FROM executions e WHERE e.finished=FALSE AND e.user_id=users.id) " +
+            "AS running_programs FROM users LEFT JOIN credit_balances b ON b.user_id=users.id " +
+            "WHERE users.deleted=FALSE " +
+            "AND lower(users.name || chr(10) || users.username || chr(10) || users.card_ids) LIKE ? " +
+            "ORDER BY (lower(users.username)=? OR string_to_array(users.card_ids, chr(10)) @> ARRAY[?::TEXT]) DESC, " +
+            "(lower(users.name) LIKE ? OR lower(users.username) LIKE ?) DESC, " +
+            "similarity(lower(users.name || chr(10) || users.username || chr(10) || users.card_ids), ?) DESC, " +
+            "lower(users.name), users.id LIMIT ? OFFSET ?"),
+    USER_BY_USERNAME("SELECT * FROM users WHERE deleted=FALSE AND lower(username)=lower(?)"),
+    USER_BY_EMAIL("SELECT * FROM users WHERE deleted=FALSE AND email<>'' AND lower(email)=lower(?) LIMIT 1"),
+    USER_BY_PASSWORD_RESET_KEY("SELECT * FROM users WHERE deleted=FALSE AND password_reset_key=?"),
+    USER_LAST_ON_DEVICE("SELECT users.* FROM executions LEFT JOIN users ON executions.user_id=users.id " +
+            "WHERE device_id=? AND user_id>=0 AND start IS NOT NULL ORDER BY executions.id DESC LIMIT 1"),
+    USER_INSERT("INSERT INTO users (name, username, email, card_ids, blocked, is_admin, email_notification, " +
+            "group_id, push_notification, app_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", true),
+    USER_UPDATE("UPDATE users SET name=?, username=?, email=?, card_ids=?, blocked=?, is_admin=?, " +
+            "email_notification=?, group_id=?, push_notification=? WHERE id=?"),
+    USER_UPDATE_PASSWORD("UPDATE users SET password=? WHERE id=?"),
+    USER_UPDATE_PASSWORD_RESET_KEY("UPDATE users SET password_reset_key=? WHERE id=?"),
+    USER_UPDATE_PASSWORD_RESET_TIMEOUT("UPDATE users SET password_reset_timeout=? WHERE id=?"),
+    USER_UPDATE_LAST_LOGIN("UPDATE users SET last_login=now() WHERE id=?"),
+    USER_UPDATE_DELETED("UPDATE users SET deleted=?, username=? WHERE id=?"),
+    USER_UPDATE_PUSHOVER_KEY("UPDATE users SET pushover_user_key=? WHERE id=?"),
+    USER_RESET_AUTH_KEY("UPDATE users SET auth_key=generate_user_authkey() WHERE id=?", true),
+
+    // Guthaben
+    USER_CREDIT("SELECT COALESCE((SELECT balance FROM credit_balances WHERE user_id=?), 0) AS credit, " +
+            "ARRAY(SELECT program_id FROM executions WHERE finished=FALSE AND user_id=?) AS running_programs"),
+    BALANCE_ADD("INSERT INTO credit_balances (user_id, balance) VALUES (?, ?) ON CONFLICT (user_id) " +
+            "DO UPDATE SET balance=credit_balances.balance+EXCLUDED.balance, updated=now()"),
+    BALANCE_ENSURE("INSERT INTO credit_balances (user_id, balance) VALUES (?, 0) ON CONFLICT (user_id) DO NOTHING"),
+    BALANCE_LOCK("SELECT balance FROM credit_balances WHERE user_id=? FOR UPDATE"),
+    BALANCE_UPDATE("UPDATE credit_balances SET balance=?, updated=now() WHERE user_id=?"),
+    BALANCE_MISMATCHES("SELECT COALESCE(b.user_id, l.user_id) AS user_id FROM credit_balances b " +
+            "FULL OUTER JOIN (SELECT user_id, SUM(amount) AS total FROM credit_accounting GROUP BY user_id) l " +
+            "ON b.user_id=l.user_id WHERE COALESCE(b.balance, 0)<>COALESCE(l.total, 0)"),
+    ACCOUNTING_SUM_BY_USER("SELECT COALESCE(SUM(amount), 0) AS total FROM credit_accounting WHERE user_id=?"),
+    ACCOUNTING_BY_USER("SELECT * FROM credit_accounting WHERE user_id=? ORDER BY date DESC"),
+    ACCOUNTING_BY_USER_PAGE(
+            "SELECT * FROM credit_accounting WHERE user_id=? ORDER BY date DESC, id DESC LIMIT ? OFFSET ?"),
+    ACCOUNTING_COUNT_BY_USER("SELECT COUNT(*) FROM credit_accounting WHERE user_id=?"),
+    ACCOUNTING_LAST_INPAYMENT(
+            "SELECT * FROM credit_accounting WHERE user_id=? AND amount>0 ORDER BY date DESC LIMIT 1"),
+    // Jede Ausführung wird höchstens einmal gebucht, die Id der Ausführung dient als Idempotenzschlüssel
+    ACCOUNTING_INSERT_EXECUTION(
+            "INSERT INTO credit_accounting (user_id, execution_id, amount, description) VALUES (?, ?, ?, ?) " +
+                    "ON CONFLICT (execution_id) WHERE execution_id IS NOT NULL DO NOTHING"),
+    ACCOUNTING_INSERT("INSERT INTO credit_accounting (user_id, amount, description) VALUES (?, ?, ?)"),
+
+    // Ausführungen
+    EXECUTION_BY_ID("SELECT * FROM executions WHERE id=?"),
+    EXECUTIONS_NOT_FINISHED_BY_USER(
+            "SELECT * FROM executions WHERE user_id=? AND finished=FALSE AND start IS NOT NULL"),
+    EXECUTIONS_NOT_FINISHED_BY_DEVICE(
+            "SELECT * FROM executions WHERE device_id=? AND finished=FALSE AND start IS NOT NULL"),
+    EXECUTIONS_BY_DEVICE("SELECT * FROM executions WHERE device_id=? AND start IS NOT NULL ORDER BY start DESC"),
+    EXECUTIONS_BY_DEVICE_PAGE("SELECT * FROM executions WHERE device_id=? AND start IS NOT NULL " +
+            "ORDER BY start DESC LIMIT ? OFFSET ?"),
+    // Ausführungen, deren Höchstdauer um mehr als die gegebenen Sekunden überschritten ist
+    EXECUTIONS_EXPIRED("SELECT e.* FROM executions e JOIN programs p ON p.id=e.program_id " +
+            "WHERE e.finished=FALSE AND e.start IS NOT NULL " +
+            "AND e.start + (p.max_duration + ?) * INTERVAL '1 second' < LOCALTIMESTAMP ORDER BY e.start"),
+    EXECUTIONS_COUNT_BY_DEVICE("SELECT COUNT(*) FROM executions WHERE device_id=? AND start IS NOT NULL"),
+    EXECUTION_INSERT("INSERT INTO executions (device_id, program_id, user_id) VALUES (?, ?, ?)", true),
+    EXECUTION_START("UPDATE executions SET start=? WHERE id=?"),
+    // Beendet eine Ausführung nur einmal, damit sie nur einmal in die Nutzungsstatistik eingeht
+    EXECUTION_STOP("UPDATE executions SET stop=?, energy=?, finished=TRUE WHERE id=? AND finished=FALSE"),
+    EXECUTION_RESET("UPDATE executions SET start=?, stop=?, finished=?, energy=NULL WHERE id=?"),
+    EXECUTION_DELETE("DELETE FROM executions WHERE id=?"),
+
+    // Nutzungsstatistik
+    USAGE_ADD("INSERT INTO usage_daily (day, device_id, program_id, location_id, group_id, runs, seconds, revenue, " +
+            "discount, metered_runs, energy) VALUES (?, ?, ?, ?, ?, 1, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (day, device_id, program_id, location_id, group_id) DO UPDATE SET runs=usage_daily.runs+1, " +
+            "seconds=usage_daily.seconds+EXCLUDED.seconds, revenue=usage_daily.revenue+EXCLUDED.revenue, " +
+            "discount=usage_daily.discount+EXCLUDED.discount, " +
+            "metered_runs=usage_daily.metered_runs+EXCLUDED.metered_runs, energy=usage_daily.energy+EXCLUDED.energy"),
+    // Enthält Platzhalter für die Spalte und die Tabelle der Dimension, siehe UsageDimension
+    USAGE_BY_MONTH("SELECT date_trunc('month', r.day)::DATE AS month, r.%1$s AS id, t.name AS name, " +
+            "SUM(r.runs) AS runs, SUM(r.seconds) AS seconds, SUM(r.revenue) AS revenue, " +
+            "SUM(r.discount) AS discount, SUM(r.metered_runs) AS metered_runs, SUM(r.energy) AS energy " +
+            "FROM usage_daily r LEFT JOIN %2$s t ON t.id=r.%1$s " +
+            "WHERE r.day>=? AND r.day<? GROUP BY 1, 2, 3 ORDER BY 1 DESC, 6 DESC, 2"),
+
+    // Automatisches Beenden
+    AUTO_END_PROFILE("SELECT * FROM auto_end_profiles WHERE device_id=? AND program_id=?"),
+    AUTO_END_PROFILE_SAVE("INSERT INTO auto_end_profiles (device_id, program_id, runs, active_seconds, " +
+            "longest_pause_seconds) VALUES (?, ?, ?, ?, ?) ON CONFLICT (device_id, program_id) DO UPDATE SET " +
+            "runs=EXCLUDED.runs, active_seconds=EXCLUDED.active_seconds, " +
+            "longest_pause_seconds=EXCLUDED.longest_pause_seconds, updated=now()"),
+
+    // Störungen
+    DEVICE_FAULT_INSERT("INSERT INTO device_faults (device_id, execution_id, type, message) " +
+            "VALUES (?, ?, ?::DEVICE_FAULT_TYPE, ?)"),
+    DEVICE_FAULTS_OPEN_BY_LOCATION("SELECT f.* FROM device_faults f JOIN devices d ON d.id=f.device_id " +
+            "WHERE d.location_id=? AND f.resolved IS NULL ORDER BY f.detected DESC"),
+    DEVICE_FAULT_RESOLVE("UPDATE device_faults SET resolved=now() WHERE id=? AND resolved IS NULL"),
+
+    // Leistungsmesswerte
+    POWER_SAMPLES_INSERT("INSERT INTO power_samples (device_id, time, watts) " +
+            "SELECT * FROM unnest(?::INTEGER[], ?::TIMESTAMP[], ?::REAL[])"),
+    // Verschiebt Messwerte vor dem gegebenen Zeitpunkt in die Minuten; bereits verdichtete Minuten werden ergänzt
+    POWER_SAMPLES_TO_MINUTES("WITH moved AS (DELETE FROM power_samples WHERE time<? RETURNING *) " +
+            "INSERT INTO power_minutes (device_id, minute, samples, min_watts, max_watts, sum_watts) " +
+            "SELECT device_id, date_trunc('minute', time), COUNT(*), MIN(watts), MAX(watts), SUM(watts) FROM moved " +
+            "GROUP BY 1, 2 ON CONFLICT (device_id, minute) DO UPDATE SET " +
+            "samples=power_minutes.samples+EXCLUDED.samples, " +
+            "min_watts=LEAST(power_minutes.min_watts, EXCLUDED.min_watts), " +
+            "max_watts=GREATEST(power_minutes.max_watts, EXCLUDED.max_watts), " +
+            "sum_watts=power_minutes.sum_watts+EXCLUDED.sum_watts"),
+    POWER_MINUTES_TO_HOURS("WITH moved AS (DELETE FROM power_minutes WHERE minute<? RETURNING *) " +
+            "INSERT INTO power_hours (device_id, hour, samples, min_watts, max_watts, sum_watts) " +
+            "SELECT device_id, date_trunc('hour', minute), SUM(samples), MIN(min_watts), MAX(max_watts), " +
+            "SUM(sum_watts) FROM moved GROUP BY 1, 2 ON CONFLICT (device_id, hour) DO UPDATE SET " +
+            "samples=power_hours.samples+EXCLUDED.samples, " +
+            "min_watts=LEAST(power_hours.min_watts, EXCLUDED.min_watts), " +
+            "max_watts=GREATEST(power_hours.max_watts, EXCLUDED.max_watts), " +
+            "sum_watts=power_hours.sum_watts+EXCLUDED.sum_watts"),
+    POWER_HOURS_PURGE("DELETE FROM power_hours WHERE hour<?"),
+
+    // Benachrichtigungen
+    NOTIFICATION_INSERT("INSERT INTO notification_outbox (location_id, channel, recipient, title, message, created) " +
+            "VALUES (?, ?::NOTIFICATION_CHANNEL, ?, ?, ?, ?)", true),
+    NOTIFICATIONS_PENDING("SELECT * FROM notification_outbox WHERE location_id=? AND sent IS NULL AND attempts<? " +
+            "AND next_attempt<=? ORDER BY id LIMIT ?"),
+    NOTIFICATION_SENT("UPDATE notification_outbox SET sent=?, attempts=attempts+1, last_error=NULL WHERE id=?"),
+    NOTIFICATION_FAILED("UPDATE notification_outbox SET attempts=?, next_attempt=?, last_error=? WHERE id=?"),
+    NOTIFICATIONS_DELETE_SENT("DELETE FROM notification_outbox WHERE location_id=? AND sent<?");
+
+    private final String sql;
+    private final boolean returnGeneratedKeys;
+
+    Query(String sql) {
+        this(sql, false);
+    }
+
+    Query(String sql, boolean returnGeneratedKeys) {
+        this.sql = sql;
+        this.returnGeneratedKeys = returnGeneratedKeys;
+    }
+
+    /**
+     * Gibt den SQL-Text der Abfrage zurück.
+     */
+    public String getSql() {
+        return this.sql;
+    }
+
+    /**
+     * Gibt eine vorbereitete Anweisung dieser Abfrage auf der gegebenen Verbindung zurück. Stammt die Verbindung aus
+     * einem {@link ConnectionPool}, so wird eine bereits vorbereitete Anweisung wiederverwendet.
+     *
+     * @param connection Die Verbindung, auf welcher die Abfrage ausgeführt werden soll
+     * @return Die vorbereitete Anweisung. Sie muss nach Gebrauch geschlossen werden.
+     * @throws SQLException Wenn die Anweisung nicht vorbereitet werden kann
+     */
+    public PreparedStatement prepare(Connection connection) throws SQLException {
+        if (connection.isWrapperFor(PooledConnection.class)) {
+            return connection.unwrap(PooledConnection.class).prepare(this, connection);
+        }
+        return this.create(connection);
+    }
+
+    /**
+     * Gibt eine vorbereitete Anweisung einer Abfrage zurück, deren SQL-Text Platzhalter für Bezeichner enthält, etwa
+     * für die Sortierung. Die Argumente werden unverändert eingesetzt und dürfen daher nicht aus Benutzereingaben
+     * stammen. Solche Anweisungen werden nicht je Verbindung zwischengespeichert.
+     *
+     * @param connection Die Verbindung, auf welcher die Abfrage ausgeführt werden soll
+     * @param arguments  Die einzusetzenden Bezeichner
+     * @return Die vorbereitete Anweisung. Sie muss nach Gebrauch geschlossen werden.
+     * @throws SQLException Wenn die Anweisung nicht vorbereitet werden kann
+     */
+    public PreparedStatement prepareFormatted(Connection connection, Object... arguments) throws SQLException {
+        return connection.prepareStatement(String.format(this.sql, arguments));
+    }
+
+    /**
+     * Bereitet die Abfrage ohne Zwischenspeicher auf der gegebenen Verbindung vor.
+     */
+    PreparedStatement create(Connection connection) throws SQLException {
+        if (this.returnGeneratedKeys) {
+            return connection.prepareStatement(this.sql, Statement.RETURN_GENERATED_KEYS);
+        }
+        return connection.prepareStatement(this.sql);
+    }
+}
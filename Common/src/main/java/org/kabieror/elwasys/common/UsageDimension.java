@@ -0,0 +1,36 @@
+package org.kabieror.elwasys.common;
+
+/**
+ * Die Merkmale, nach denen die Nutzungsstatistik aufgeschlüsselt werden kann.
+ *
+ * @author Oliver Kabierschke
+ * @see DataManager#getMonthlyUsage(UsageDimension, java.time.YearMonth, java.time.YearMonth)
+ */
+public enum UsageDimension {
+    DEVICE("device_id", "devices"),
+    PROGRAM("program_id", "programs"),
+    LOCATION("location_id", "locations"),
+    USER_GROUP("group_id", "user_groups");
+
+    private final String column;
+    private final String table;
+
+    UsageDimension(String column, String table) {
+        this.column = column;
+        this.table = table;
+    }
+
+    /**
+     * Die Spalte in usage_daily, die das Merkmal enthält.
+     */
+    String getColumn() {
+        return this.column;
+    }
+
+    /**
+     * Die Tabelle, aus der der Name des Merkmals gelesen wird.
+     */
+    String getTable() {
+        return this.table;
+    }
+}
@@ -0,0 +1,108 @@
+package org.kabieror.elwasys.common;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.YearMonth;
+
+/**
+ * Die Nutzung eines Geräts, Programms, Standorts oder einer Benutzergruppe in einem Monat.
+ *
+ * @author Oliver Kabierschke
+ * @see DataManager#getMonthlyUsage(UsageDimension, YearMonth, YearMonth)
+ */
+public class UsageStatistics {
+
+    private final YearMonth month;
+
+    /**
+     * Die Id des Geräts, Programms, Standorts oder der Benutzergruppe
+     */
+    private final int id;
+
+    /**
+     * Der Name, oder null, falls die Entität inzwischen gelöscht ist
+     */
+    private final String name;
+
+    private final int runs;
+
+    private final Duration duration;
+
+    /**
+     * Der von den Benutzern bezahlte Betrag
+     */
+    private final BigDecimal revenue;
+
+    /**
+     * Der den Benutzergruppen gewährte Rabatt
+     */
+    private final BigDecimal discount;
+
+    /**
+     * Die Anzahl Läufe, deren Energie gemessen wurde
+     */
+    private final int meteredRuns;
+
+    /**
+     * Die von den gemessenen Läufen aufgenommene Energie in kWh
+     */
+    private final double energy;
+
+    UsageStatistics(ResultSet res) throws SQLException {
+        this.month = YearMonth.from(res.getDate("month").toLocalDate());
+        this.id = res.getInt("id");
+        this.name = res.getString("name");
+        this.runs = res.getInt("runs");
+        this.duration = Duration.ofSeconds(res.getLong("seconds"));
+        this.revenue = res.getBigDecimal("revenue");
+        this.discount = res.getBigDecimal("discount");
+        this.meteredRuns = res.getInt("metered_runs");
+        this.energy = res.getDouble("energy");
+    }
+
+    public YearMonth getMonth() {
+        return this.month;
+    }
+
+    public int getId() {
+        return this.id;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public int getRuns() {
+        return this.runs;
+    }
+
+    public Duration getDuration() {
+        return this.duration;
+    }
+
+    public BigDecimal getRevenue() {
+        return this.revenue;
+    }
+
+    public BigDecimal getDiscount() {
+        return this.discount;
+    }
+
+    public int getMeteredRuns() {
+        return this.meteredRuns;
+    }
+
+    public double getEnergy() {
+        return this.energy;
+    }
+
+    /**
+     * Gibt die durchschnittliche Energie eines gemessenen Laufs in kWh zurück, oder {@link Double#NaN}, falls kein
+     * Lauf gemessen wurde.
+     */
+    public double getEnergyPerRun() {
+        return this.meteredRuns > 0 ? this.energy / this.meteredRuns : Double.NaN;
+    }
+}
@@ -10,7 +10,6 @@ import java.sql.*;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
-import java.util.List;
 
 /**
  * Diese Klasse repräsentiert einen Benutzer des Systems.
@@ -141,10 +140,20 @@ public class User {
      * @throws SQLException
      */
     public User(DataManager dataManager, ResultSet res, UserGroup group) throws SQLException {
+        this(dataManager, res, group, false);
+    }
+
+    /**
+     * Erstellt einen Benutzer aus einem Abfrageergebnis
+     *
+     * @param withCredit Ob das Abfrageergebnis bereits das Guthaben in den Spalten 'credit' und 'running_programs'
+     *                   enthält, sodass es nicht einzeln abgefragt werden muss
+     */
+    User(DataManager dataManager, ResultSet res, UserGroup group, boolean withCredit) throws SQLException {
         this.dataManager = dataManager;
         this.id = res.getInt("id");
         this.group = group;
-        this.load(res);
+        this.load(res, withCredit);
     }
 
     /**
@@ -173,33 +182,32 @@ public class User {
         this.pushIonicId = "";
         this.pushEnabled = true;
 
-        final PreparedStatement s = dataManager.getConnection().prepareStatement(
-                "INSERT INTO users (name, username, email, card_ids, blocked, is_admin, email_notification, group_id, push_notification, app_id)" +
-                        " VALUES " +
-                        "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS);
-        int i = 1;
-        s.setString(i++, name);
-        s.setString(i++, username.toLowerCase());
-        s.setString(i++, email);
-        s.setString(i++, StringUtils.join(cardIds, "\n"));
-        s.setBoolean(i++, blocked);
-        s.setBoolean(i++, isAdmin);
-        s.setBoolean(i++, emailNotification);
-        s.setInt(i++, group.getId());
-        // Halte Push-Einstellung nur lokal
-        s.setBoolean(i++, true);
-        s.setString(i++, this.pushIonicId);
-        s.executeUpdate();
-
-        final ResultSet res = s.getGeneratedKeys();
-        if (res.next()) {
-            this.id = res.getInt(1);
-            this.authKey = res.getString(AUTH_KEY_KEY);
-        } else {
-            throw new SQLException("No ID received by database.");
-        }
+        try (Connection connection = dataManager.getConnection();
+             PreparedStatement s = Query.USER_INSERT.prepare(connection)) {
+            int i = 1;
+            s.setString(i++, name);
+            s.setString(i++, username.toLowerCase());
+            s.setString(i++, email);
+            s.setString(i++, StringUtils.join(cardIds, "\n"));
+            s.setBoolean(i++, blocked);
+            s.setBoolean(i++, isAdmin);
+            s.setBoolean(i++, emailNotification);
+            s.setInt(i++, group.getId());
+            // Halte Push-Einstellung nur lokal
+            s.setBoolean(i++, true);
+            s.setString(i++, this.pushIonicId);
+            s.executeUpdate();
+
+            final ResultSet res = s.getGeneratedKeys();
+            if (res.next()) {
+                this.id = res.getInt(1);
+                this.authKey = res.getString(AUTH_KEY_KEY);
+            } else {
+                throw new SQLException("No ID received by database.");
+            }
 
-        this.loadCredit();
+            this.loadCredit();
+        }
     }
 
     /**
@@ -239,6 +247,13 @@ public class User {
         return new User(name);
     }
 
+    /**
+     * Sorgt dafür, dass die nächste Aktualisierung die Daten des Benutzers aus der Datenbank liest.
+     */
+    void invalidate() {
+        this.lastUpdateTime = null;
+    }
+
     /**
      * Aktualisiert die Daten des Benutzers mit denen aus der Datenbank
      *
@@ -264,7 +279,18 @@ public class User {
      * @throws SQLException
      */
     public void update(ResultSet res) throws SQLException {
-        this.load(res);
+        this.update(res, false);
+    }
+
+    /**
+     * Aktualisiert die Daten des Benutzers mit denen aus einem Abfrageergebnis
+     *
+     * @param res        Das Abfrageergebnis, mit dem der Benutzer aktualisiert werden soll
+     * @param withCredit Ob das Abfrageergebnis bereits das Guthaben enthält
+     * @throws SQLException
+     */
+    void update(ResultSet res, boolean withCredit) throws SQLException {
+        this.load(res, withCredit);
         try {
             this.group.update();
         } catch (NoDataFoundException e) {
@@ -285,51 +311,53 @@ public class User {
      */
     public void modify(String name, String username, String email, String[] cardIds, boolean blocked, boolean isAdmin,
                        boolean emailNotification, UserGroup userGroup, boolean pushEnabled) throws SQLException {
-        final PreparedStatement s = this.dataManager.getConnection().prepareStatement(
-                "UPDATE users SET name=?, username=?, email=?, card_ids=?, blocked=?, is_admin=?, " +
-                        "email_notification=?, group_id=?, push_notification=? WHERE id=?");
-        int i = 1;
-        s.setString(i++, name);
-        s.setString(i++, username.toLowerCase());
-        s.setString(i++, email);
-        s.setString(i++, StringUtils.join(cardIds, "\n"));
-        s.setBoolean(i++, blocked);
-        s.setBoolean(i++, isAdmin);
-        s.setBoolean(i++, emailNotification);
-        s.setInt(i++, userGroup.getId());
-        s.setBoolean(i++, pushEnabled);
-        s.setInt(i++, this.id);
-        s.execute();
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.USER_UPDATE.prepare(connection)) {
+            int i = 1;
+            s.setString(i++, name);
+            s.setString(i++, username.toLowerCase());
+            s.setString(i++, email);
+            s.setString(i++, StringUtils.join(cardIds, "\n"));
+            s.setBoolean(i++, blocked);
+            s.setBoolean(i++, isAdmin);
+            s.setBoolean(i++, emailNotification);
+            s.setInt(i++, userGroup.getId());
+            s.setBoolean(i++, pushEnabled);
+            s.setInt(i++, this.id);
+            s.execute();
 
-        this.name = name;
-        this.username = username.toLowerCase();
-        this.email = email;
-        this.cardIds = cardIds;
-        this.blocked = blocked;
-        this.isAdmin = isAdmin;
-        this.emailNotification = emailNotification;
-        this.pushEnabled = pushEnabled;
-        this.group = userGroup;
+            this.name = name;
+            this.username = username.toLowerCase();
+            this.email = email;
+            this.cardIds = cardIds;
+            this.blocked = blocked;
+            this.isAdmin = isAdmin;
+            this.emailNotification = emailNotification;
+            this.pushEnabled = pushEnabled;
+            this.group = userGroup;
+        }
     }
 
     private void setPasswordResetKey(String key) throws SQLException {
-        final PreparedStatement s =
-                this.dataManager.getConnection().prepareStatement("UPDATE users SET password_reset_key=? WHERE id=?");
-        s.setString(1, key);
-        s.setInt(2, this.id);
-        s.execute();
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.USER_UPDATE_PASSWORD_RESET_KEY.prepare(connection)) {
+            s.setString(1, key);
+            s.setInt(2, this.id);
+            s.execute();
 
-        this.passwordResetKey = key;
+            this.passwordResetKey = key;
+        }
     }
 
     private void setPasswordResetTimeout(LocalDateTime timeout) throws SQLException {
-        final PreparedStatement s = this.dataManager.getConnection()
-                .prepareStatement("UPDATE users SET password_reset_timeout=? WHERE id=?");
-        s.setTimestamp(1, Timestamp.valueOf(timeout));
-        s.setInt(2, this.id);
-        s.execute();
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.USER_UPDATE_PASSWORD_RESET_TIMEOUT.prepare(connection)) {
+            s.setTimestamp(1, Timestamp.valueOf(timeout));
+            s.setInt(2, this.id);
+            s.execute();
 
-        this.passwordResetTimeout = timeout;
+            this.passwordResetTimeout = timeout;
+        }
     }
 
     /**
@@ -338,7 +366,11 @@ public class User {
      * @throws SQLException
      */
     public void updateLastLogin() throws SQLException {
-        this.dataManager.getConnection().prepareCall("UPDATE users SET last_login=now() WHERE id=" + this.id).execute();
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.USER_UPDATE_LAST_LOGIN.prepare(connection)) {
+            s.setInt(1, this.id);
+            s.execute();
+        }
     }
 
     /**
@@ -348,13 +380,16 @@ public class User {
      * @throws SQLException         Wenn beim Laden der Daten ein Fehler auftritt
      */
     private void load() throws NoDataFoundException, SQLException {
-        final ResultSet res =
-                this.dataManager.getConnection().prepareCall("SELECT * FROM users WHERE id=" + this.id).executeQuery();
-        if (res.isBeforeFirst() && res.next()) {
-            this.load(res);
-        } else {
-            throw new NoDataFoundException(
-                    String.format("Der Benutzer '%1s' wurde aus der Datenbank gelöscht.", this.name));
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.USER_BY_ID.prepare(connection)) {
+            s.setInt(1, this.id);
+            final ResultSet res = s.executeQuery();
+            if (res.isBeforeFirst() && res.next()) {
+                this.load(res);
+            } else {
+                throw new NoDataFoundException(
+                        String.format("Der Benutzer '%1s' wurde aus der Datenbank gelöscht.", this.name));
+            }
         }
     }
 
@@ -365,6 +400,17 @@ public class User {
      * @throws SQLException Wenn beim Laden der Daten ein Fehler auftritt
      */
     private void load(ResultSet res) throws SQLException {
+        this.load(res, false);
+    }
+
+    /**
+     * Befüllt die Felder dieses Objekts mit Werten aus einem Abfrageergebnis
+     *
+     * @param res        Das Abfrageergebnis aus dem die Werte des Benutzers zu entnehmen sind
+     * @param withCredit Ob das Abfrageergebnis bereits das Guthaben enthält
+     * @throws SQLException Wenn beim Laden der Daten ein Fehler auftritt
+     */
+    private void load(ResultSet res, boolean withCredit) throws SQLException {
         this.name = res.getString(NAME_KEY);
         this.username = res.getString(USERNAME_KEY);
         this.email = res.getString(EMAIL_KEY);
@@ -386,7 +432,11 @@ public class User {
         if (ts != null) {
             this.passwordResetTimeout = ts.toLocalDateTime();
         }
-        this.loadCredit();
+        if (withCredit) {
+            this.readCredit(res);
+        } else {
+            this.loadCredit();
+        }
 
         this.group = this.dataManager.getUserGroupById(res.getInt("group_id"));
     }
@@ -396,28 +446,49 @@ public class User {
      *
      * @throws SQLException
      */
-    private synchronized void loadCredit() throws SQLException {
+    synchronized void loadCredit() throws SQLException {
         this.credit = null;
 
-        ResultSet res = this.dataManager.getConnection()
-                .prepareCall("SELECT SUM(amount) AS credit FROM credit_accounting WHERE user_id=" + this.id)
-                .executeQuery();
-        if (res.isBeforeFirst() && res.next()) {
-            this.credit = res.getBigDecimal(CREDIT_KEY);
+        // Der Kontostand wird mit jeder Buchung fortgeschrieben, sodass die Buchungen nicht summiert werden müssen.
+        final BigDecimal balance;
+        final Integer[] runningPrograms;
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.USER_CREDIT.prepare(connection)) {
+            s.setInt(1, this.id);
+            s.setInt(2, this.id);
+            final ResultSet res = s.executeQuery();
+            if (!res.next()) {
+                this.credit = new BigDecimal("0.00");
+                return;
+            }
+            balance = res.getBigDecimal(CREDIT_KEY);
+            runningPrograms = (Integer[]) res.getArray("running_programs").getArray();
         }
+        this.applyCredit(balance, runningPrograms);
+    }
+
+    /**
+     * Übernimmt das Guthaben aus den Spalten 'credit' und 'running_programs' eines Abfrageergebnisses
+     */
+    private void readCredit(ResultSet res) throws SQLException {
+        this.applyCredit(res.getBigDecimal(CREDIT_KEY), (Integer[]) res.getArray("running_programs").getArray());
+    }
+
+    /**
+     * Setzt das Guthaben auf den Kontostand abzüglich der Kosten laufender Programme
+     */
+    private synchronized void applyCredit(BigDecimal balance, Integer[] runningPrograms) throws SQLException {
+        this.credit = balance;
 
         if (this.credit == null) {
             this.credit = new BigDecimal("0.00");
         }
 
         // Kosten laufender Programme vom Guthaben abziehen
-        res = this.dataManager.getConnection()
-                .prepareCall("SELECT program_id FROM executions WHERE finished=FALSE AND user_id=" + this.id)
-                .executeQuery();
-        while (res.next()) {
-            final Program prog = this.dataManager.getProgramById(res.getInt("program_id"));
+        for (final Integer programId : runningPrograms) {
+            final Program prog = programId == null ? null : this.dataManager.getProgramById(programId);
             if (prog == null) {
-                this.logger.error("Invalid entry in the database: Execution #" + res.getInt("id")
+                this.logger.error("Invalid entry in the database: Execution of user #" + this.id
                     + " has no program set.");
                 continue;
             }
@@ -484,21 +555,22 @@ public class User {
      * @throws SQLException
      */
     public void setDeleted(boolean d) throws SQLException {
-        final PreparedStatement s =
-                this.dataManager.getConnection().prepareStatement("UPDATE users SET deleted=?, username=? WHERE id=?");
-        s.setBoolean(1, d);
-        String newUserName;
-        if (d) {
-            newUserName = "#del" + this.id + "#" + this.username;
-        } else {
-            newUserName = this.username.replaceFirst("^#del" + this.id + "#", "");
-        }
-        s.setString(2, newUserName);
-        s.setInt(3, this.id);
-        s.execute();
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.USER_UPDATE_DELETED.prepare(connection)) {
+            s.setBoolean(1, d);
+            String newUserName;
+            if (d) {
+                newUserName = "#del" + this.id + "#" + this.username;
+            } else {
+                newUserName = this.username.replaceFirst("^#del" + this.id + "#", "");
+            }
+            s.setString(2, newUserName);
+            s.setInt(3, this.id);
+            s.execute();
 
-        this.deleted = d;
-        this.username = newUserName;
+            this.deleted = d;
+            this.username = newUserName;
+        }
     }
 
     public boolean getEmailNotification() {
@@ -517,13 +589,14 @@ public class User {
     }
 
     public void setPushoverUserKey(String key) throws SQLException {
-        final PreparedStatement s =
-                this.dataManager.getConnection().prepareStatement("UPDATE users SET pushover_user_key=? WHERE id=?");
-        s.setString(1, key);
-        s.setInt(2, this.id);
-        s.execute();
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.USER_UPDATE_PUSHOVER_KEY.prepare(connection)) {
+            s.setString(1, key);
+            s.setInt(2, this.id);
+            s.execute();
 
-        this.pushoverUserKey = key;
+            this.pushoverUserKey = key;
+        }
     }
 
     /**
@@ -549,15 +622,16 @@ public class User {
      * Setzt die Anbindung zur elwaApp zurück, sodass sich der Benutzer neu registrieren kann.
      */
     public void resetAppConnection() throws SQLException {
-        final PreparedStatement s =
-                this.dataManager.getConnection()
-                        .prepareStatement("UPDATE users SET auth_key=generate_user_authkey() WHERE id=?",
-                                Statement.RETURN_GENERATED_KEYS);
-        s.setInt(1, this.id);
-        s.execute();
-
-        ResultSet res = s.getGeneratedKeys();
-        this.authKey = res.getString(AUTH_KEY_KEY);
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.USER_RESET_AUTH_KEY.prepare(connection)) {
+            s.setInt(1, this.id);
+            s.execute();
+
+            ResultSet res = s.getGeneratedKeys();
+            if (res.next()) {
+                this.authKey = res.getString(AUTH_KEY_KEY);
+            }
+        }
     }
 
     /**
@@ -607,12 +681,21 @@ public class User {
      * @return True, wenn das Passwort mit dem gespeicherten übereinstimmt.
      */
     public boolean checkPassword(String password) {
-        try {
-            return this.password.equals(Utilities.sha1(password));
-        } catch (final NoSuchAlgorithmException e) {
-            this.logger.error("Could not create a hash of the given password.", e);
+        final IPasswordHasher hasher = this.dataManager.getPasswordHasher();
+        final String storedHash = this.password;
+        if (!hasher.verify(password, storedHash)) {
             return false;
         }
+        if (hasher.needsRehash(storedHash)) {
+            // Veraltete Hashes werden ersetzt, solange das Passwort im Klartext vorliegt
+            try {
+                this.storePasswordHash(hasher.hash(password));
+                this.logger.info("Upgraded the password hash of user " + this.id + ".");
+            } catch (final SQLException e) {
+                this.logger.warn("Could not upgrade the password hash of user " + this.id + ".", e);
+            }
+        }
+        return true;
     }
 
     /**
@@ -623,44 +706,58 @@ public class User {
      * @throws NoSuchAlgorithmException
      */
     public void changePassword(String value) throws NoSuchAlgorithmException, SQLException {
-        PreparedStatement s =
-                this.dataManager.getConnection().prepareStatement("UPDATE users SET password=? WHERE id=?");
-        final String newPwHash = Utilities.sha1(value);
-        s.setString(1, newPwHash);
-        s.setInt(2, this.id);
-        s.execute();
-        this.password = newPwHash;
-
-        // Password-Reset-Key konsumieren
-        if (this.passwordResetKey != null) {
-            this.passwordResetKey = null;
-            s = this.dataManager.getConnection().prepareStatement("UPDATE users SET password_reset_key=? WHERE ID=?");
-            s.setString(1, null);
+        try (Connection connection = this.dataManager.getConnection()) {
+            this.storePasswordHash(this.dataManager.getPasswordHasher().hash(value));
+
+            // Password-Reset-Key konsumieren
+            if (this.passwordResetKey != null) {
+                this.passwordResetKey = null;
+                try (PreparedStatement s = Query.USER_UPDATE_PASSWORD_RESET_KEY.prepare(connection)) {
+                    s.setString(1, null);
+                    s.setInt(2, this.id);
+                    s.execute();
+                }
+            }
+        }
+    }
+
+    private void storePasswordHash(String hash) throws SQLException {
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.USER_UPDATE_PASSWORD.prepare(connection)) {
+            s.setString(1, hash);
             s.setInt(2, this.id);
             s.execute();
         }
+        this.password = hash;
     }
 
     /**
-     * Bezahlt eine Ausführung
+     * Bezahlt eine Ausführung. Eine bereits bezahlte Ausführung wird nicht erneut gebucht.
      *
      * @param e Die zu bezahlende Ausführung
      * @throws SQLException
+     * @see ExecutionSettler
      */
     public void payExecution(Execution e) throws SQLException {
         if (this.id >= 0) {
-            if (e.getPrice().equals(BigDecimal.ZERO)) {
+            if (e.getPrice().signum() == 0) {
                 // A free execution has not to be payed.
                 return;
             }
-            final PreparedStatement s = this.dataManager.getConnection().prepareStatement(
-                    "INSERT INTO credit_accounting (user_id, execution_id, amount, description) VALUES (?, ?, ?, ?)");
-            s.setInt(1, this.id);
-            s.setInt(2, e.getId());
-            s.setBigDecimal(3, e.getPrice().negate());
-            s.setString(4, e.getProgram().getName() + " auf " + e.getDevice().getName() + " (" +
-                    e.getDevice().getLocation().getName() + ") bezahlt von " + this.name + ".");
-            s.execute();
+            this.dataManager.runInTransaction(connection -> {
+                final boolean booked;
+                try (PreparedStatement s = Query.ACCOUNTING_INSERT_EXECUTION.prepare(connection)) {
+                    s.setInt(1, this.id);
+                    s.setInt(2, e.getId());
+                    s.setBigDecimal(3, e.getPrice().negate());
+                    s.setString(4, e.getPaymentDescription());
+                    booked = s.executeUpdate() > 0;
+                }
+                if (booked) {
+                    this.addToBalance(connection, e.getPrice().negate());
+                }
+                return null;
+            });
 
             this.loadCredit();
         }
@@ -677,12 +774,7 @@ public class User {
     }
 
     public void inpayment(BigDecimal amount, String text) throws SQLException {
-        final PreparedStatement s = this.dataManager.getConnection()
-                .prepareStatement("INSERT INTO credit_accounting (user_id, amount, description) VALUES (?, ?, ?)");
-        s.setInt(1, this.id);
-        s.setBigDecimal(2, amount);
-        s.setString(3, text);
-        s.execute();
+        this.book(amount, text);
         this.loadCredit();
     }
 
@@ -702,30 +794,38 @@ public class User {
             // Guthaben reicht zum Auszahlen nicht aus.
             throw new NotEnoughCreditException();
         }
-        final PreparedStatement s = this.dataManager.getConnection()
-                .prepareStatement("INSERT INTO credit_accounting (user_id, amount, description) VALUES (?, ?, ?)");
-        s.setInt(1, this.id);
-        s.setBigDecimal(2, amount.negate());
-        s.setString(3, text);
-        s.execute();
+        this.book(amount.negate(), text);
         this.loadCredit();
     }
 
     /**
-     * Gibt zurück, ob der Benutzer Ausführungsaufträge aufgegeben hat, die
-     * abgelaufen sind, jedoch nicht verbucht wurden.
+     * Bucht einen Betrag auf das Konto des Benutzers und schreibt den Kontostand in derselben Transaktion fort.
      *
-     * @return Wahr, wenn es abgelaufene Ausführungsaufträge gibt
-     * @throws SQLException Wenn ein Fehler bei der Datenbankabfrage auftritt
-     */
-    public boolean hasExpiredExecutions() throws SQLException {
-        final List<Execution> executions = this.dataManager.getNotFinishedExecutions(this);
-        for (final Execution e : executions) {
-            if (e.isExpired()) {
-                return true;
+     * @param amount Der zu buchende Betrag
+     * @param text   Die Beschreibung der Buchung
+     */
+    private void book(BigDecimal amount, String text) throws SQLException {
+        this.dataManager.runInTransaction(connection -> {
+            try (PreparedStatement s = Query.ACCOUNTING_INSERT.prepare(connection)) {
+                s.setInt(1, this.id);
+                s.setBigDecimal(2, amount);
+                s.setString(3, text);
+                s.execute();
             }
+            this.addToBalance(connection, amount);
+            return null;
+        });
+    }
+
+    /**
+     * Schreibt den Kontostand des Benutzers fort. Muss in der Transaktion der zugehörigen Buchung aufgerufen werden.
+     */
+    private void addToBalance(Connection connection, BigDecimal amount) throws SQLException {
+        try (PreparedStatement s = Query.BALANCE_ADD.prepare(connection)) {
+            s.setInt(1, this.id);
+            s.setBigDecimal(2, amount);
+            s.execute();
         }
-        return false;
     }
 
 }
@@ -3,10 +3,10 @@ package org.kabieror.elwasys.common;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -93,30 +93,30 @@ public class UserGroup {
         this.discountType = discountType;
         this.discountValue = discountValue;
 
-        final PreparedStatement s = dataManager.getConnection().prepareStatement(
-                "INSERT INTO user_groups (name, discount_type, discount_value) VALUES " + "(?, ?::DISCOUNT_TYPE, ?)",
-                Statement.RETURN_GENERATED_KEYS);
-        int i = 1;
-        s.setString(i++, name);
-        switch (discountType) {
-            case Factor:
-                s.setString(i++, "FACTOR");
-                break;
-            case Fix:
-                s.setString(i++, "FIX");
-                break;
-            default:
-                s.setString(i++, "NONE");
-                break;
-        }
-        s.setDouble(i++, discountValue);
-        s.executeUpdate();
-
-        final ResultSet res = s.getGeneratedKeys();
-        if (res.next()) {
-            this.id = res.getInt(1);
-        } else {
-            throw new SQLException("No ID received by database.");
+        try (Connection connection = dataManager.getConnection();
+             PreparedStatement s = Query.USER_GROUP_INSERT.prepare(connection)) {
+            int i = 1;
+            s.setString(i++, name);
+            switch (discountType) {
+                case Factor:
+                    s.setString(i++, "FACTOR");
+                    break;
+                case Fix:
+                    s.setString(i++, "FIX");
+                    break;
+                default:
+                    s.setString(i++, "NONE");
+                    break;
+            }
+            s.setDouble(i++, discountValue);
+            s.executeUpdate();
+
+            final ResultSet res = s.getGeneratedKeys();
+            if (res.next()) {
+                this.id = res.getInt(1);
+            } else {
+                throw new SQLException("No ID received by database.");
+            }
         }
     }
 
@@ -144,38 +144,56 @@ public class UserGroup {
      * @param discountValue Der neue Rabattierungswert der Benutzergruppe.
      */
     public void modify(String name, DiscountType discountType, double discountValue) throws SQLException {
-        final PreparedStatement s = this.dataManager.getConnection().prepareStatement(
-                "UPDATE user_groups SET name=?, discount_type=?::DISCOUNT_TYPE, discount_value=? WHERE id=?");
-        int i = 1;
-        s.setString(i++, name);
-        switch (discountType) {
-            case Factor:
-                s.setString(i++, "FACTOR");
-                break;
-            case Fix:
-                s.setString(i++, "FIX");
-                break;
-            default:
-                s.setString(i++, "NONE");
-                break;
-        }
-        s.setDouble(i++, discountValue);
-        s.setInt(i++, this.id);
-        s.execute();
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.USER_GROUP_UPDATE.prepare(connection)) {
+            int i = 1;
+            s.setString(i++, name);
+            switch (discountType) {
+                case Factor:
+                    s.setString(i++, "FACTOR");
+                    break;
+                case Fix:
+                    s.setString(i++, "FIX");
+                    break;
+                default:
+                    s.setString(i++, "NONE");
+                    break;
+            }
+            s.setDouble(i++, discountValue);
+            s.setInt(i++, this.id);
+            s.execute();
 
-        this.name = name;
-        this.discountType = discountType;
-        this.discountValue = discountValue;
+            this.name = name;
+            this.discountType = discountType;
+            this.discountValue = discountValue;
+        }
     }
 
     /**
      * Löscht die Benutzergruppe aus der Datenbank.
      */
     public void delete() throws SQLException {
-        this.dataManager.getConnection().prepareCall(String.format(
-                "UPDATE users SET group_id=(SELECT id FROM user_groups WHERE id<>%d LIMIT 1) WHERE group_id=%d",
-                this.id, this.id)).execute();
-        this.dataManager.getConnection().prepareCall("DELETE FROM user_groups WHERE id=" + this.id).execute();
+        try (Connection connection = this.dataManager.getConnection()) {
+            try (PreparedStatement s = Query.USER_GROUP_MOVE_USERS.prepare(connection)) {
+                s.setInt(1, this.id);
+                s.setInt(2, this.id);
+                s.execute();
+            }
+            try (PreparedStatement s = Query.USER_GROUP_DELETE.prepare(connection)) {
+                s.setInt(1, this.id);
+                s.execute();
+            }
+        }
+    }
+
+    /**
+     * Sorgt dafür, dass die nächste Aktualisierung die Daten der Benutzergruppe aus der Datenbank liest.
+     */
+    void invalidate() {
+        this.lastUpdateTime = null;
+        this.lastLocationsUpdateTime = null;
+        this.lastDevicesUpdateTime = null;
+        this.lastProgramsUpdateTime = null;
     }
 
     /**
@@ -209,14 +227,16 @@ public class UserGroup {
      * @throws SQLException         Wenn beim Laden der Daten ein Fehler auftritt
      */
     private void load() throws NoDataFoundException, SQLException {
-        final ResultSet res =
-                this.dataManager.getConnection().prepareCall("SELECT * FROM user_groups WHERE id=" + this.id)
-                        .executeQuery();
-        if (res.isBeforeFirst() && res.next()) {
-            this.load(res);
-        } else {
-            throw new NoDataFoundException(
-                    String.format("Die Benutzergruppe '%1s' wurde aus der Datenbank gelöscht.", this.name));
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.USER_GROUP_BY_ID.prepare(connection)) {
+            s.setInt(1, this.id);
+            final ResultSet res = s.executeQuery();
+            if (res.isBeforeFirst() && res.next()) {
+                this.load(res);
+            } else {
+                throw new NoDataFoundException(
+                        String.format("Die Benutzergruppe '%1s' wurde aus der Datenbank gelöscht.", this.name));
+            }
         }
     }
 
@@ -268,16 +288,14 @@ public class UserGroup {
         }
         this.lastLocationsUpdateTime = LocalDateTime.now();
 
-        ResultSet res = this.dataManager.getConnection().prepareCall(
-                "SELECT * FROM locations_valid_user_groups val LEFT JOIN locations loc ON loc.id=val.location_id " +
-                        "WHERE val.group_id=" + this.id).executeQuery();
-        this.validLocations.clear();
-        if (res.isBeforeFirst()) {
-            while (res.next()) {
-                this.validLocations.add(this.dataManager.getLocation(res));
-            }
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.USER_GROUP_VALID_LOCATIONS.prepare(connection)) {
+            s.setInt(1, this.id);
+            final List<Location> valid = this.dataManager.getLocations(s.executeQuery());
+            this.validLocations.clear();
+            this.validLocations.addAll(valid);
+            return this.validLocations;
         }
-        return this.validLocations;
     }
 
     public void setValidLocations(List<Location> valid) throws SQLException {
@@ -288,21 +306,27 @@ public class UserGroup {
                 skippedLocations.add(l);
                 continue;
             }
-            this.dataManager.getConnection().prepareCall(
-                    "INSERT INTO locations_valid_user_groups (location_id, group_id) VALUES (" + l.getId() + ", " +
-                            this.id + ")").execute();
-            this.validLocations.add(l);
+            try (Connection connection = this.dataManager.getConnection();
+                 PreparedStatement s = Query.LOCATION_VALID_GROUP_INSERT.prepare(connection)) {
+                s.setInt(1, l.getId());
+                s.setInt(2, this.id);
+                s.execute();
+                this.validLocations.add(l);
+            }
         }
 
         if (oldLocationsCount > skippedLocations.size()) {
             // Look for deleted items
             for (int i = 0; i < this.validLocations.size(); i++) {
                 if (!valid.contains(this.validLocations.get(i))) {
-                    this.dataManager.getConnection().prepareCall(
-                            "DELETE FROM locations_valid_user_groups WHERE location_id=" +
-                                    this.validLocations.get(i).getId() + " AND group_id=" + this.id).execute();
-                    this.validLocations.remove(i);
-                    i--;
+                    try (Connection connection = this.dataManager.getConnection();
+                         PreparedStatement s = Query.LOCATION_VALID_GROUP_DELETE.prepare(connection)) {
+                        s.setInt(1, this.validLocations.get(i).getId());
+                        s.setInt(2, this.id);
+                        s.execute();
+                        this.validLocations.remove(i);
+                        i--;
+                    }
                 }
             }
         }
@@ -317,16 +341,14 @@ public class UserGroup {
         }
         this.lastDevicesUpdateTime = LocalDateTime.now();
 
-        ResultSet res = this.dataManager.getConnection().prepareCall(
-                "SELECT * FROM devices_valid_user_groups val LEFT JOIN devices dev ON dev.id=val.device_id WHERE val" +
-                        ".group_id=" + this.id).executeQuery();
-        this.validDevices.clear();
-        if (res.isBeforeFirst()) {
-            while (res.next()) {
-                this.validDevices.add(this.dataManager.getDevice(res));
-            }
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.USER_GROUP_VALID_DEVICES.prepare(connection)) {
+            s.setInt(1, this.id);
+            final List<Device> valid = this.dataManager.getDevices(s.executeQuery());
+            this.validDevices.clear();
+            this.validDevices.addAll(valid);
+            return this.validDevices;
         }
-        return this.validDevices;
     }
 
     public void setValidDevices(List<Device> valid) throws SQLException {
@@ -337,21 +359,27 @@ public class UserGroup {
                 skippedDevices.add(d);
                 continue;
             }
-            this.dataManager.getConnection().prepareCall(
-                    "INSERT INTO devices_valid_user_groups (device_id, group_id) VALUES (" + d.getId() + ", " +
-                            this.id + ")").execute();
-            this.validDevices.add(d);
+            try (Connection connection = this.dataManager.getConnection();
+                 PreparedStatement s = Query.DEVICE_VALID_GROUP_INSERT.prepare(connection)) {
+                s.setInt(1, d.getId());
+                s.setInt(2, this.id);
+                s.execute();
+                this.validDevices.add(d);
+            }
         }
 
         if (oldDevicesCount > skippedDevices.size()) {
             // Look for deleted items
             for (int i = 0; i < this.validDevices.size(); i++) {
                 if (!valid.contains(this.validDevices.get(i))) {
-                    this.dataManager.getConnection().prepareCall(
-                            "DELETE FROM devices_valid_user_groups WHERE device_id=" +
-                                    this.validDevices.get(i).getId() + " AND group_id=" + this.id).execute();
-                    this.validDevices.remove(i);
-                    i--;
+                    try (Connection connection = this.dataManager.getConnection();
+                         PreparedStatement s = Query.DEVICE_VALID_GROUP_DELETE.prepare(connection)) {
+                        s.setInt(1, this.validDevices.get(i).getId());
+                        s.setInt(2, this.id);
+                        s.execute();
+                        this.validDevices.remove(i);
+                        i--;
+                    }
                 }
             }
         }
@@ -366,16 +394,14 @@ public class UserGroup {
         }
         this.lastProgramsUpdateTime = LocalDateTime.now();
 
-        ResultSet res = this.dataManager.getConnection().prepareCall(
-                "SELECT * FROM programs_valid_user_groups val LEFT JOIN programs pro ON pro.id=val.program_id WHERE " +
-                        "val.group_id=" + this.id).executeQuery();
-        this.validPrograms.clear();
-        if (res.isBeforeFirst()) {
-            while (res.next()) {
-                this.validPrograms.add(this.dataManager.getProgram(res));
-            }
+        try (Connection connection = this.dataManager.getConnection();
+             PreparedStatement s = Query.USER_GROUP_VALID_PROGRAMS.prepare(connection)) {
+            s.setInt(1, this.id);
+            final List<Program> valid = this.dataManager.getPrograms(s.executeQuery());
+            this.validPrograms.clear();
+            this.validPrograms.addAll(valid);
+            return this.validPrograms;
         }
-        return this.validPrograms;
     }
 
     public void setValidPrograms(List<Program> valid) throws SQLException {
@@ -386,21 +412,27 @@ public class UserGroup {
                 skippedPrograms.add(p);
                 continue;
             }
-            this.dataManager.getConnection().prepareCall(
-                    "INSERT INTO programs_valid_user_groups (program_id, group_id) VALUES (" + p.getId() + ", " +
-                            this.id + ")").execute();
-            this.validPrograms.add(p);
+            try (Connection connection = this.dataManager.getConnection();
+                 PreparedStatement s = Query.PROGRAM_VALID_GROUP_INSERT.prepare(connection)) {
+                s.setInt(1, p.getId());
+                s.setInt(2, this.id);
+                s.execute();
+                this.validPrograms.add(p);
+            }
         }
 
         if (oldProgramsCount > skippedPrograms.size()) {
             // Look for deleted items
             for (int i = 0; i < this.validPrograms.size(); i++) {
                 if (!valid.contains(this.validPrograms.get(i))) {
-                    this.dataManager.getConnection().prepareCall(
-                            "DELETE FROM programs_valid_user_groups WHERE program_id=" +
-                                    this.validPrograms.get(i).getId() + " AND group_id=" + this.id).execute();
-                    this.validPrograms.remove(i);
-                    i--;
+                    try (Connection connection = this.dataManager.getConnection();
+                         PreparedStatement s = Query.PROGRAM_VALID_GROUP_DELETE.prepare(connection)) {
+                        s.setInt(1, this.validPrograms.get(i).getId());
+                        s.setInt(2, this.id);
+                        s.execute();
+                        this.validPrograms.remove(i);
+                        i--;
+                    }
                 }
             }
         }
@@ -0,0 +1,40 @@
+package org.kabieror.elwasys.common;
+
+/**
+ * Die Spalten, nach denen eine Liste von Benutzern sortiert werden kann.
+ *
+ * @author Oliver Kabierschke
+ * @see DataManager#getUsers(String, UserOrder, boolean, int, int)
+ */
+public enum UserOrder {
+    ID("users.id"),
+    NAME("lower(users.name)"),
+    GROUP("lower(g.name)", "lower(users.name)"),
+    CARD_IDS("users.card_ids"),
+    CREDIT("credit");
+
+    private final String[] columns;
+
+    UserOrder(String... columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * Gibt die Sortierung als SQL-Ausdruck zurück. Die Id des Benutzers sorgt bei gleichen Werten für eine stabile
+     * Reihenfolge über mehrere Seiten hinweg.
+     *
+     * @param ascending Ob aufsteigend sortiert werden soll
+     */
+    String toSql(boolean ascending) {
+        final StringBuilder sql = new StringBuilder();
+        for (final String column : this.columns) {
+            sql.append(column).append(ascending ? " ASC, " : " DESC, ");
+        }
+        if (this != ID) {
+            sql.append(ID.columns[0]).append(ascending ? " ASC" : " DESC");
+        } else {
+            sql.setLength(sql.length() - 2);
+        }
+        return sql.toString();
+    }
+}
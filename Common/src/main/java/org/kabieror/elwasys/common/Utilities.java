@@ -95,10 +95,22 @@ public class Utilities {
      * @throws EmailException
      */
     public void sendEmail(String subject, String content, User to) throws EmailException {
-        this.logger.debug("Sending mail to " + to.getEmail() + ", using " + this.config.getSmtpServer() + ":" +
+        this.sendEmail(subject, content, to.getEmail());
+    }
+
+    /**
+     * Sendet eine einfache Email an eine Adresse.
+     *
+     * @param subject Betreff
+     * @param content Inhalt
+     * @param to      Die Adresse des Empfängers
+     * @throws EmailException
+     */
+    public void sendEmail(String subject, String content, String to) throws EmailException {
+        this.logger.debug("Sending mail to " + to + ", using " + this.config.getSmtpServer() + ":" +
                 this.config.getSmtpPort() + ", with user " + this.config.getSmtpUser());
         final SimpleEmail mail = new SimpleEmail();
-        mail.addTo(to.getEmail());
+        mail.addTo(to);
         mail.setSubject(subject);
         mail.setMsg(content);
 
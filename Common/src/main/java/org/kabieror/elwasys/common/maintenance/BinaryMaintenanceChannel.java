@@ -0,0 +1,66 @@
+package org.kabieror.elwasys.common.maintenance;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Überträgt Wartungs-Nachrichten im Binärformat des {@link MaintenanceCodec}. Jeder Nachricht wird ihre Länge
+ * vorangestellt.
+ *
+ * @author Oliver Kabierschke
+ */
+class BinaryMaintenanceChannel implements IMaintenanceChannel {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final DataInputStream in;
+
+    private final DataOutputStream out;
+
+    private final int version;
+
+    BinaryMaintenanceChannel(InputStream in, OutputStream out, int version) {
+        this.in = new DataInputStream(in);
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.version = version;
+    }
+
+    @Override
+    public MaintenanceMessage read() throws IOException {
+        while (true) {
+            final int length = this.in.readInt();
+            if (length <= 0 || length > MaintenanceCodec.MAX_FRAME_LENGTH) {
+                throw new IOException("Received message with invalid length " + length + ".");
+            }
+            final byte[] frame = new byte[length];
+            this.in.readFully(frame);
+            final MaintenanceMessage message = MaintenanceCodec.decode(frame);
+            if (message != null) {
+                return message;
+            }
+            this.logger.debug("Skipping message of unknown type " + frame[1] + ".");
+        }
+    }
+
+    @Override
+    public void write(MaintenanceMessage message) throws IOException {
+        final byte[] frame = MaintenanceCodec.encode(message);
+        synchronized (this.out) {
+            this.out.writeInt(frame.length);
+            this.out.write(frame);
+            this.out.flush();
+        }
+    }
+
+    @Override
+    public int getVersion() {
+        return this.version;
+    }
+}
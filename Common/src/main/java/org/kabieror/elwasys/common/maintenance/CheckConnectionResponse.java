@@ -21,4 +21,8 @@ public class CheckConnectionResponse extends MaintenanceResponse {
         super(request);
     }
 
+    CheckConnectionResponse() {
+        super();
+    }
+
 }
@@ -6,7 +6,16 @@ package org.kabieror.elwasys.common.maintenance;
  * @author Oliver Kabierschke
  */
 class ConnectionResponse extends MaintenanceResponse {
+    /**
+     * Entspricht der bisher berechneten Version, damit ältere Gegenstellen die Klasse weiterhin lesen können.
+     */
+    private static final long serialVersionUID = -11525827580839995L;
+
     ConnectionResponse(ConnectionRequest connectionRequest) {
         super(connectionRequest);
     }
+
+    ConnectionResponse() {
+        super();
+    }
 }
@@ -3,7 +3,14 @@
  */
 package org.kabieror.elwasys.common.maintenance;
 
+import java.time.LocalDateTime;
+
 /**
+ * Fragt einen Ausschnitt der aktuellen Log-Datei ab. Die Datei wird vom Ende her gelesen; weitere, ältere
+ * Ausschnitte werden mit dem Start-Offset der vorigen Antwort abgefragt.
+ * <p>
+ * Die Standardwerte aller Felder entsprechen der Anfrage älterer Versionen nach der gesamten Datei.
+ *
  * @author Oliver
  *
  */
@@ -13,7 +20,57 @@ public class GetLogRequest extends MaintenanceRequest {
      */
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Die maximale Anzahl Zeilen der Antwort. 0 steht für unbegrenzt.
+     */
+    private int maxLines;
+
+    /**
+     * Nur Zeilen vor diesem Byte-Offset werden gelesen. 0 steht für das Ende der Datei.
+     */
+    private long before;
+
+    /**
+     * Nur Einträge ab diesem Zeitpunkt werden gelesen, oder null.
+     */
+    private LocalDateTime since;
+
+    /**
+     * Nur Einträge ab diesem Log-Level werden gelesen, oder null.
+     */
+    private String minLevel;
+
     public GetLogRequest() {
         super();
     }
+
+    /**
+     * @param maxLines Die maximale Anzahl Zeilen. 0 steht für unbegrenzt.
+     * @param before   Nur Zeilen vor diesem Byte-Offset werden gelesen. 0 steht für das Ende der Datei.
+     * @param since    Nur Einträge ab diesem Zeitpunkt werden gelesen, oder null.
+     * @param minLevel Nur Einträge ab diesem Log-Level (z.B. "WARN") werden gelesen, oder null.
+     */
+    public GetLogRequest(int maxLines, long before, LocalDateTime since, String minLevel) {
+        super();
+        this.maxLines = maxLines;
+        this.before = before;
+        this.since = since;
+        this.minLevel = minLevel;
+    }
+
+    public int getMaxLines() {
+        return this.maxLines;
+    }
+
+    public long getBefore() {
+        return this.before;
+    }
+
+    public LocalDateTime getSince() {
+        return this.since;
+    }
+
+    public String getMinLevel() {
+        return this.minLevel;
+    }
 }
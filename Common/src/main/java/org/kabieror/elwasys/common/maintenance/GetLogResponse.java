@@ -18,6 +18,16 @@ public class GetLogResponse extends MaintenanceResponse {
 
     private final List<String> logContent;
 
+    /**
+     * Der Byte-Offset der ersten gelesenen Zeile in der Log-Datei.
+     */
+    private long startOffset;
+
+    /**
+     * Gibt an, ob vor dem Start-Offset weitere passende Zeilen liegen können.
+     */
+    private boolean hasMore;
+
     /**
      * @param id
      */
@@ -26,8 +36,36 @@ public class GetLogResponse extends MaintenanceResponse {
         this.logContent = logContent;
     }
 
+    /**
+     * @param request     Die Anfrage.
+     * @param logContent  Die gelesenen Zeilen in chronologischer Reihenfolge.
+     * @param startOffset Der Byte-Offset der ersten gelesenen Zeile.
+     * @param hasMore     Ob vor dem Start-Offset weitere passende Zeilen liegen können.
+     */
+    public GetLogResponse(MaintenanceRequest request, List<String> logContent, long startOffset, boolean hasMore) {
+        super(request);
+        this.logContent = logContent;
+        this.startOffset = startOffset;
+        this.hasMore = hasMore;
+    }
+
+    GetLogResponse(List<String> logContent, long startOffset, boolean hasMore) {
+        super();
+        this.logContent = logContent;
+        this.startOffset = startOffset;
+        this.hasMore = hasMore;
+    }
+
     public List<String> getLogContent() {
         return this.logContent;
     }
 
+    public long getStartOffset() {
+        return this.startOffset;
+    }
+
+    public boolean hasMore() {
+        return this.hasMore;
+    }
+
 }
@@ -5,10 +5,12 @@ package org.kabieror.elwasys.common.maintenance;
 
 import org.kabieror.elwasys.common.Execution;
 import org.kabieror.elwasys.common.maintenance.data.BacklightStatus;
+import org.kabieror.elwasys.common.maintenance.data.ExecutionStatus;
 import org.kabieror.elwasys.common.maintenance.data.InterfaceStatus;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * @author Oliver
@@ -27,12 +29,16 @@ public class GetStatusResponse extends MaintenanceResponse {
 
     private LocalDateTime startupTime;
 
-    private List<Execution> runningExecutions;
+    private List<ExecutionStatus> runningExecutions;
 
     public GetStatusResponse(MaintenanceRequest request) {
         super(request);
     }
 
+    GetStatusResponse() {
+        super();
+    }
+
     public InterfaceStatus getInterfaceStatus() {
         return this.interfaceStatus;
     }
@@ -72,16 +78,20 @@ public class GetStatusResponse extends MaintenanceResponse {
         this.startupTime = startupTime;
     }
 
-    public List<Execution> getRunningExecutions() {
+    public List<ExecutionStatus> getRunningExecutions() {
         return this.runningExecutions;
     }
 
     /**
-     * The currently cunning executions.
+     * The currently cunning executions. Only a snapshot of each execution is transmitted.
      *
      * @param executions
      */
     public void setRunningExecutions(List<Execution> executions) {
+        this.runningExecutions = executions.stream().map(ExecutionStatus::new).collect(Collectors.toList());
+    }
+
+    void setRunningExecutionStatus(List<ExecutionStatus> executions) {
         this.runningExecutions = executions;
     }
 
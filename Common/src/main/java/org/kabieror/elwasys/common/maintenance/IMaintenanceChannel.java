@@ -0,0 +1,34 @@
+package org.kabieror.elwasys.common.maintenance;
+
+import java.io.IOException;
+
+/**
+ * Ein Kanal, über den Wartungs-Nachrichten mit der Gegenstelle ausgetauscht werden.
+ *
+ * @author Oliver Kabierschke
+ */
+interface IMaintenanceChannel {
+
+    /**
+     * Wartet auf die nächste Nachricht der Gegenstelle.
+     *
+     * @return Die empfangene Nachricht.
+     * @throws IOException Falls die Verbindung unterbrochen ist.
+     */
+    MaintenanceMessage read() throws IOException;
+
+    /**
+     * Sendet eine Nachricht an die Gegenstelle. Kann von mehreren Threads gleichzeitig aufgerufen werden.
+     *
+     * @param message Die zu sendende Nachricht.
+     * @throws IOException Falls die Verbindung unterbrochen ist.
+     */
+    void write(MaintenanceMessage message) throws IOException;
+
+    /**
+     * Gibt die mit der Gegenstelle vereinbarte Protokoll-Version zurück.
+     *
+     * @return Die Protokoll-Version, oder {@link MaintenanceCodec#VERSION_SERIALIZED} bei Java-Serialisierung.
+     */
+    int getVersion();
+}
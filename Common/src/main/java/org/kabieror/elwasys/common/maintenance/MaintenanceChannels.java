@@ -0,0 +1,57 @@
+package org.kabieror.elwasys.common.maintenance;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+/**
+ * Baut Kanäle für Wartungs-Verbindungen auf Seite des Clients auf und handelt dabei das Protokoll aus.
+ * <p>
+ * Ein Client, der das Binärformat beherrscht, beginnt die Verbindung mit der Kennung {@code 'E' 'M'} und seiner
+ * Protokoll-Version. Der Server antwortet mit derselben Kennung und der gemeinsamen Version. Ältere Clients beginnen
+ * mit dem Kopf eines Java-Serialisierungs-Streams, woran der Server sie erkennt und mit ihnen weiter per
+ * Serialisierung kommuniziert.
+ *
+ * @author Oliver Kabierschke
+ */
+final class MaintenanceChannels {
+
+    static final int PREAMBLE_0 = 'E';
+    static final int PREAMBLE_1 = 'M';
+
+    static final int SERIALIZATION_MAGIC_0 = 0xAC;
+    static final int SERIALIZATION_MAGIC_1 = 0xED;
+
+    private MaintenanceChannels() {
+    }
+
+    /**
+     * Öffnet auf Seite des Clients einen Kanal zum Server.
+     *
+     * @param socket     Die Verbindung zum Server.
+     * @param serialized Ob Java-Serialisierung statt des Binärformats verwendet werden soll.
+     * @return Der Kanal.
+     * @throws IOException Falls der Server das Binärformat nicht beherrscht.
+     */
+    static IMaintenanceChannel connect(Socket socket, boolean serialized) throws IOException {
+        final InputStream in = new BufferedInputStream(socket.getInputStream());
+        final OutputStream out = socket.getOutputStream();
+        if (serialized) {
+            return new SerializedMaintenanceChannel(in, out);
+        }
+        out.write(new byte[]{PREAMBLE_0, PREAMBLE_1, (byte) MaintenanceCodec.VERSION});
+        out.flush();
+        final DataInputStream din = new DataInputStream(in);
+        if (din.readUnsignedByte() != PREAMBLE_0 || din.readUnsignedByte() != PREAMBLE_1) {
+            throw new IOException("The server does not support the binary protocol.");
+        }
+        final int version = din.readUnsignedByte();
+        if (version < 1 || version > MaintenanceCodec.VERSION) {
+            throw new IOException("The server offered the unsupported protocol version " + version + ".");
+        }
+        return new BinaryMaintenanceChannel(in, out, version);
+    }
+}
@@ -7,8 +7,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.Socket;
 import java.util.HashMap;
 import java.util.Map;
@@ -34,6 +32,7 @@ public class MaintenanceClient {
     private final Map<Long, BlockingQueue<MaintenanceResponse>> incomingMessage = new HashMap<>();
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
     private final Socket socket;
+    private final IMaintenanceChannel channel;
     private final Thread checkConnectionThread;
     private final Thread listenerThread;
     private final IMaintenanceMessageHandler messageHandler;
@@ -46,25 +45,20 @@ public class MaintenanceClient {
         this.messageHandler = messageHandler;
         this.timeout = timeout;
         this.checkConnectionInterval = checkConnectionInterval;
-        this.socket = new Socket(serverAddress, port);
-        this.socket.setSoTimeout(timeout);
-
-        {
-            ConnectionRequest req = new ConnectionRequest(locationName);
-            ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
-            out.writeObject(req);
-            ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
-            Object responseObject;
-            try {
-                responseObject = in.readObject();
-            } catch (ClassNotFoundException e) {
-                throw new IOException("Could not parse answer from server.");
-            }
-            if (!(responseObject instanceof ConnectionResponse)) {
-                throw new IOException(String.format("Server sent answer of type %1s instead of %2s.",
-                        responseObject.getClass().getName(), ConnectionResponse.class.getName()));
-            }
+
+        // Versuche zuerst das Binärformat und falle auf Java-Serialisierung zurück, falls der Server es nicht kennt.
+        Socket s = new Socket(serverAddress, port);
+        IMaintenanceChannel c;
+        try {
+            c = this.connect(s, locationName, false);
+        } catch (final IOException e) {
+            this.logger.info("Server does not accept the binary maintenance protocol, falling back to " +
+                    "serialization.", e);
+            s = new Socket(serverAddress, port);
+            c = this.connect(s, locationName, true);
         }
+        this.socket = s;
+        this.channel = c;
 
         this.checkConnectionThread = new Thread(() -> {
             while (!this.shutdown) {
@@ -100,25 +94,17 @@ public class MaintenanceClient {
             try {
                 // Receiver loop
                 while (!Thread.interrupted()) {
-                    try {
-                        ObjectInputStream in = new ObjectInputStream(this.socket.getInputStream());
-                        final Object o = in.readObject();
-
-                        // Nachricht abarbeiten.
-                        final MaintenanceMessage response = this.handleIncomingObject(o);
+                    final MaintenanceMessage o = this.channel.read();
 
-                        if (response == null) {
-                            // Keine Antwort zu senden.
-                            continue;
-                        }
+                    // Nachricht abarbeiten.
+                    final MaintenanceMessage response = this.handleIncomingObject(o);
 
-                        synchronized (this.socket) {
-                            ObjectOutputStream out = new ObjectOutputStream(this.socket.getOutputStream());
-                            out.writeObject(response);
-                        }
-                    } catch (final ClassNotFoundException e) {
-                        this.logger.warn("Could not process the incoming message from " + remoteIdentifier + ".");
+                    if (response == null) {
+                        // Keine Antwort zu senden.
+                        continue;
                     }
+
+                    this.channel.write(response);
                 }
             } catch (final IOException e) {
                 if (!this.shutdown) {
@@ -148,6 +134,35 @@ public class MaintenanceClient {
         this.listenerThread.start();
     }
 
+    /**
+     * Baut den Kanal zum Server auf und meldet den Standort an.
+     *
+     * @param socket       Die Verbindung zum Server.
+     * @param locationName Der Name des Standorts.
+     * @param serialized   Ob Java-Serialisierung statt des Binärformats verwendet werden soll.
+     * @return Der angemeldete Kanal.
+     */
+    private IMaintenanceChannel connect(Socket socket, String locationName, boolean serialized) throws IOException {
+        socket.setSoTimeout(this.timeout);
+        final IMaintenanceChannel channel;
+        final MaintenanceMessage responseObject;
+        try {
+            channel = MaintenanceChannels.connect(socket, serialized);
+            channel.write(new ConnectionRequest(locationName));
+            responseObject = channel.read();
+        } catch (final IOException e) {
+            socket.close();
+            throw e;
+        }
+        if (!(responseObject instanceof ConnectionResponse)) {
+            socket.close();
+            throw new IOException(String.format("Server sent answer of type %1s instead of %2s.",
+                    responseObject.getClass().getName(), ConnectionResponse.class.getName()));
+        }
+        this.logger.debug("Connected with protocol version " + channel.getVersion() + ".");
+        return channel;
+    }
+
     public boolean isAlive() {
         return this.listenerThread.isAlive();
     }
@@ -240,10 +255,7 @@ public class MaintenanceClient {
         BlockingQueue<MaintenanceResponse> queue = new LinkedBlockingQueue<>();
         this.incomingMessage.put(request.getConversationId(), queue);
 
-        synchronized (this.socket) {
-            final ObjectOutputStream out = new ObjectOutputStream(this.socket.getOutputStream());
-            out.writeObject(request);
-        }
+        this.channel.write(request);
 
         MaintenanceResponse response;
         try {
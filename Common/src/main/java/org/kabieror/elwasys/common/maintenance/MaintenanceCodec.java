@@ -0,0 +1,320 @@
+package org.kabieror.elwasys.common.maintenance;
+
+import org.kabieror.elwasys.common.maintenance.data.BacklightStatus;
+import org.kabieror.elwasys.common.maintenance.data.ExecutionStatus;
+import org.kabieror.elwasys.common.maintenance.data.InterfaceStatus;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Kodiert Wartungs-Nachrichten in ein kompaktes Binärformat und zurück.
+ * <p>
+ * Jede Nachricht besteht aus einem Kopf (Schema-Version, Nachrichtentyp, Konversations-ID) und den Feldern ihres
+ * Typs in fester Reihenfolge. Längen von Zeichenketten und Listen werden als Varint um eins erhöht übertragen, wobei
+ * 0 für null steht. Neue Felder werden nur am Ende angehängt und mit einer höheren Schema-Version versehen. Da jede
+ * Nachricht mit ihrer Länge übertragen wird, ignoriert ein älterer Empfänger unbekannte Felder am Ende und
+ * überspringt Nachrichten unbekannten Typs.
+ *
+ * @author Oliver Kabierschke
+ */
+public final class MaintenanceCodec {
+
+    /**
+     * Die aktuelle Version des Binärformats.
+     */
+    public static final int VERSION = 2;
+
+    /**
+     * Die Version, die für die Übertragung per Java-Serialisierung steht.
+     */
+    public static final int VERSION_SERIALIZED = 0;
+
+    /**
+     * Die maximale Größe einer Nachricht in Bytes.
+     */
+    static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+    private static final byte TYPE_CONNECTION_REQUEST = 1;
+    private static final byte TYPE_CONNECTION_RESPONSE = 2;
+    private static final byte TYPE_CHECK_CONNECTION_REQUEST = 3;
+    private static final byte TYPE_CHECK_CONNECTION_RESPONSE = 4;
+    private static final byte TYPE_CLOSE_CONNECTION = 5;
+    private static final byte TYPE_ERROR = 6;
+    private static final byte TYPE_GET_LOG_REQUEST = 7;
+    private static final byte TYPE_GET_LOG_RESPONSE = 8;
+    private static final byte TYPE_GET_STATUS_REQUEST = 9;
+    private static final byte TYPE_GET_STATUS_RESPONSE = 10;
+    private static final byte TYPE_RESTART_APP_REQUEST = 11;
+
+    private MaintenanceCodec() {
+    }
+
+    /**
+     * Kodiert eine Nachricht.
+     *
+     * @param message Die zu kodierende Nachricht.
+     * @return Die kodierte Nachricht ohne Längenangabe.
+     * @throws IOException Falls der Typ der Nachricht nicht unterstützt wird.
+     */
+    public static byte[] encode(MaintenanceMessage message) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream(64);
+        final DataOutputStream out = new DataOutputStream(buffer);
+        out.writeByte(VERSION);
+        out.writeByte(typeOf(message));
+        out.writeLong(message.getConversationId());
+
+        if (message instanceof ConnectionRequest) {
+            writeString(out, ((ConnectionRequest) message).getLocation());
+        } else if (message instanceof ErrorMessage) {
+            writeString(out, ((ErrorMessage) message).getMessage());
+        } else if (message instanceof GetLogRequest) {
+            // Seit Version 2
+            final GetLogRequest request = (GetLogRequest) message;
+            out.writeInt(request.getMaxLines());
+            out.writeLong(request.getBefore());
+            writeDateTime(out, request.getSince());
+            writeString(out, request.getMinLevel());
+        } else if (message instanceof GetLogResponse) {
+            final GetLogResponse response = (GetLogResponse) message;
+            final List<String> lines = response.getLogContent();
+            writeCount(out, lines == null ? -1 : lines.size());
+            if (lines != null) {
+                for (final String line : lines) {
+                    writeString(out, line);
+                }
+            }
+            // Seit Version 2
+            out.writeLong(response.getStartOffset());
+            out.writeBoolean(response.hasMore());
+        } else if (message instanceof GetStatusResponse) {
+            final GetStatusResponse status = (GetStatusResponse) message;
+            writeEnum(out, status.getInterfaceStatus());
+            writeEnum(out, status.getBacklightStatus());
+            writeDateTime(out, status.getStartupTime());
+            final List<ExecutionStatus> executions = status.getRunningExecutions();
+            writeCount(out, executions == null ? -1 : executions.size());
+            if (executions != null) {
+                for (final ExecutionStatus e : executions) {
+                    out.writeInt(e.getId());
+                    writeString(out, e.getDeviceName());
+                    writeString(out, e.getProgramName());
+                    writeString(out, e.getUserName());
+                    writeDateTime(out, e.getStartDate());
+                }
+            }
+        }
+
+        out.flush();
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Dekodiert eine Nachricht.
+     *
+     * @param frame Die kodierte Nachricht ohne Längenangabe.
+     * @return Die Nachricht, oder null, falls ihr Typ unbekannt ist.
+     * @throws IOException Falls die Nachricht nicht gelesen werden kann.
+     */
+    public static MaintenanceMessage decode(byte[] frame) throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame));
+        final int version = in.readUnsignedByte();
+        if (version < 1) {
+            throw new IOException("Invalid message version " + version + ".");
+        }
+        final byte type = in.readByte();
+        final long conversationId = in.readLong();
+
+        final MaintenanceMessage message;
+        switch (type) {
+            case TYPE_CONNECTION_REQUEST:
+                message = new ConnectionRequest(readString(in));
+                break;
+            case TYPE_CONNECTION_RESPONSE:
+                message = new ConnectionResponse();
+                break;
+            case TYPE_CHECK_CONNECTION_REQUEST:
+                message = new CheckConnectionRequest();
+                break;
+            case TYPE_CHECK_CONNECTION_RESPONSE:
+                message = new CheckConnectionResponse();
+                break;
+            case TYPE_CLOSE_CONNECTION:
+                message = new CloseConnectionMessage();
+                break;
+            case TYPE_ERROR:
+                message = new ErrorMessage(readString(in));
+                break;
+            case TYPE_GET_LOG_REQUEST:
+                if (version >= 2) {
+                    message = new GetLogRequest(in.readInt(), in.readLong(), readDateTime(in), readString(in));
+                } else {
+                    message = new GetLogRequest();
+                }
+                break;
+            case TYPE_GET_LOG_RESPONSE: {
+                final int count = readCount(in);
+                List<String> lines = null;
+                if (count >= 0) {
+                    lines = new ArrayList<>(Math.min(count, frame.length));
+                    for (int i = 0; i < count; i++) {
+                        lines.add(readString(in));
+                    }
+                }
+                if (version >= 2) {
+                    message = new GetLogResponse(lines, in.readLong(), in.readBoolean());
+                } else {
+                    message = new GetLogResponse(lines, 0, false);
+                }
+                break;
+            }
+            case TYPE_GET_STATUS_REQUEST:
+                message = new GetStatusRequest();
+                break;
+            case TYPE_GET_STATUS_RESPONSE: {
+                final GetStatusResponse status = new GetStatusResponse();
+                status.setInterfaceStatus(readEnum(in, InterfaceStatus.class));
+                status.setBacklightStatus(readEnum(in, BacklightStatus.class));
+                status.setStartupTime(readDateTime(in));
+                final int count = readCount(in);
+                if (count >= 0) {
+                    final List<ExecutionStatus> executions = new ArrayList<>(Math.min(count, frame.length));
+                    for (int i = 0; i < count; i++) {
+                        executions.add(new ExecutionStatus(in.readInt(), readString(in), readString(in),
+                                readString(in), readDateTime(in)));
+                    }
+                    status.setRunningExecutionStatus(executions);
+                }
+                message = status;
+                break;
+            }
+            case TYPE_RESTART_APP_REQUEST:
+                message = new RestartAppRequest();
+                break;
+            default:
+                return null;
+        }
+
+        message.setConversationId(conversationId);
+        return message;
+    }
+
+    private static byte typeOf(MaintenanceMessage message) throws IOException {
+        if (message instanceof ConnectionRequest) {
+            return TYPE_CONNECTION_REQUEST;
+        } else if (message instanceof ConnectionResponse) {
+            return TYPE_CONNECTION_RESPONSE;
+        } else if (message instanceof CheckConnectionRequest) {
+            return TYPE_CHECK_CONNECTION_REQUEST;
+        } else if (message instanceof CheckConnectionResponse) {
+            return TYPE_CHECK_CONNECTION_RESPONSE;
+        } else if (message instanceof CloseConnectionMessage) {
+            return TYPE_CLOSE_CONNECTION;
+        } else if (message instanceof ErrorMessage) {
+            return TYPE_ERROR;
+        } else if (message instanceof GetLogRequest) {
+            return TYPE_GET_LOG_REQUEST;
+        } else if (message instanceof GetLogResponse) {
+            return TYPE_GET_LOG_RESPONSE;
+        } else if (message instanceof GetStatusRequest) {
+            return TYPE_GET_STATUS_REQUEST;
+        } else if (message instanceof GetStatusResponse) {
+            return TYPE_GET_STATUS_RESPONSE;
+        } else if (message instanceof RestartAppRequest) {
+            return TYPE_RESTART_APP_REQUEST;
+        }
+        throw new IOException("Cannot encode messages of type " + message.getClass().getName() + ".");
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            writeCount(out, -1);
+            return;
+        }
+        final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeCount(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        final int length = readCount(in);
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.available()) {
+            throw new IOException("String length " + length + " exceeds the message.");
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Schreibt eine Anzahl als Varint. -1 steht für null.
+     */
+    private static void writeCount(DataOutputStream out, int count) throws IOException {
+        int value = count + 1;
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readCount(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    throw new IOException("Invalid length in message.");
+                }
+                return value - 1;
+            }
+        }
+        throw new IOException("Invalid length in message.");
+    }
+
+    private static void writeEnum(DataOutputStream out, Enum<?> value) throws IOException {
+        writeString(out, value == null ? null : value.name());
+    }
+
+    private static <E extends Enum<E>> E readEnum(DataInputStream in, Class<E> type) throws IOException {
+        final String name = readString(in);
+        if (name == null) {
+            return null;
+        }
+        try {
+            return Enum.valueOf(type, name);
+        } catch (final IllegalArgumentException e) {
+            // Unbekannter Wert einer neueren Version
+            return null;
+        }
+    }
+
+    private static void writeDateTime(DataOutputStream out, LocalDateTime dateTime) throws IOException {
+        out.writeBoolean(dateTime != null);
+        if (dateTime != null) {
+            out.writeLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(dateTime.getNano());
+        }
+    }
+
+    private static LocalDateTime readDateTime(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        final long seconds = in.readLong();
+        final int nanos = in.readInt();
+        return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+    }
+}
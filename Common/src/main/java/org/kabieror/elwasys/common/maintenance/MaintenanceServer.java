@@ -7,25 +7,49 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.util.HashMap;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Dieser Server akzeptiert die Verbindung von Maintenance-Clients um ihnen Befehler zu senden und ihren Status
  * abzufragen.
+ * <p>
+ * Alle Verbindungen werden von einem einzigen Thread über einen Selector bedient. Anfragen werden über ihre
+ * Konversations-ID den Antworten zugeordnet, sodass beliebig viele Anfragen pro Verbindung gleichzeitig offen sein
+ * können. Zeitüberschreitungen von Verbindungen und Anfragen verwaltet ein gemeinsames {@link TimerWheel}.
  *
  * @author Oliver Kabierschke
  */
 public class MaintenanceServer {
 
+    /**
+     * Die Dauer eines Schritts des Timer-Rads in Millisekunden.
+     */
+    private static final int TICK_MILLIS = 100;
+
+    /**
+     * Die Anzahl der Fächer des Timer-Rads.
+     */
+    private static final int WHEEL_SLOTS = 512;
+
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+
     /**
      * Die Zeit, nach der eine Verbindung als nicht mehr aktiv angenommen und
      * beendet wird.
@@ -34,34 +58,43 @@ public class MaintenanceServer {
 
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
-    private final ServerSocket socket;
+    private final Selector selector;
+
+    private final ServerSocketChannel serverChannel;
 
     private final Thread serverThread;
 
-    private final Map<String, ClientConnectionThread> clientConnections;
+    /**
+     * Die angemeldeten Verbindungen nach dem Namen ihres Standorts.
+     */
+    private final Map<String, ClientConnection> clientConnections = new ConcurrentHashMap<>();
 
-    private boolean shutdown = false;
+    /**
+     * Alle offenen Verbindungen, auch solche, die sich noch nicht angemeldet haben. Nur im Server-Thread verwendet.
+     */
+    private final Set<ClientConnection> openConnections = new HashSet<>();
+
+    /**
+     * Aufgaben anderer Threads, die im Server-Thread ausgeführt werden müssen.
+     */
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    private final TimerWheel timerWheel;
+
+    private volatile boolean shutdown = false;
 
     public MaintenanceServer(int port, int timeout) throws IOException {
         this.logger.info("MaintenanceServer starting to listen on port " + port + ".");
         this.timeout = timeout;
-        this.socket = new ServerSocket(port);
-        this.serverThread = new Thread(() -> {
-            while (!Thread.interrupted()) {
-                try {
-                    final Socket s = this.socket.accept();
-                    this.handleConnection(s);
-                } catch (final IOException e) {
-                    if (this.shutdown) {
-                        // Shutting down server.
-                        break;
-                    }
-                    this.logger.error("Could not accept a connection.", e);
-                }
-            }
-        });
+        this.timerWheel = new TimerWheel(TICK_MILLIS, WHEEL_SLOTS, System.currentTimeMillis());
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        this.serverChannel.bind(new InetSocketAddress(port));
+        this.serverChannel.configureBlocking(false);
+        this.serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+        this.serverThread = new Thread(this::runEventLoop);
         this.serverThread.setName("MaintenanceServerThread");
-        this.clientConnections = new HashMap<>();
         this.serverThread.start();
     }
 
@@ -81,47 +114,25 @@ public class MaintenanceServer {
      * @return Die gesuchte Verbindung.
      */
     public IClientConnection getClientConnection(String location) {
-        ClientConnectionThread cct =
-                this.clientConnections.containsKey(location) ? this.clientConnections.get(location) : null;
-        if (cct != null && cct.isAlive()) {
-            return cct;
+        final ClientConnection c = this.clientConnections.get(location);
+        if (c != null && !c.closed) {
+            return c;
         }
         return null;
     }
 
-    /**
-     * Behandelt eine eingehende Wartungs-Verbindung.
-     *
-     * @param socket Der eingehende Socket.
-     */
-    private void handleConnection(Socket socket) {
-        this.logger.info("Incoming maintenance connection from " + socket.getInetAddress().getHostAddress());
-        try {
-            new ClientConnectionThread(socket);
-        } catch (IOException e) {
-            this.logger.error("Could not accept connection from " + socket.getInetAddress().getHostAddress(), e);
-        }
-    }
-
     /**
      * Schließt alle Wartungs-Verbindungen und beendet den Server.
      */
     public void shutdown() {
         this.logger.info("Shutting down MaintenanceServer.");
         this.shutdown = true;
-        for (final ClientConnectionThread t : this.clientConnections.values()) {
-            t.shutdown();
-        }
-        if (this.serverThread != null && this.serverThread.isAlive()) {
+        this.selector.wakeup();
+        if (this.serverThread.isAlive() && Thread.currentThread() != this.serverThread) {
             try {
-                this.socket.close();
-                try {
-                    this.serverThread.join();
-                } catch (final InterruptedException e) {
-                    this.logger.error("Error while waiting for the server thread to end.", e);
-                }
-            } catch (final IOException e1) {
-                this.logger.error("Could not close the server socket.", e1);
+                this.serverThread.join();
+            } catch (final InterruptedException e) {
+                this.logger.error("Error while waiting for the server thread to end.", e);
             }
         }
     }
@@ -132,312 +143,465 @@ public class MaintenanceServer {
      * @return True, wenn der Server auf Verbindungen wartet.
      */
     public boolean isAlive() {
-        return this.socket != null && this.socket.isBound() && !this.socket.isClosed();
+        return this.serverChannel.isOpen() && this.serverThread.isAlive();
+    }
+
+    /**
+     * Bedient alle Verbindungen, bis der Server beendet wird.
+     */
+    private void runEventLoop() {
+        try {
+            while (!this.shutdown) {
+                this.selector.select(TICK_MILLIS);
+
+                Runnable task;
+                while ((task = this.tasks.poll()) != null) {
+                    task.run();
+                }
+
+                final Iterator<SelectionKey> it = this.selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    final SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        this.acceptConnection();
+                        continue;
+                    }
+                    final ClientConnection c = (ClientConnection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            c.onReadable();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            c.onWritable();
+                        }
+                    } catch (final IOException | RuntimeException e) {
+                        this.logger.error("Connection to " + c.hostAddress + " is broken.", e);
+                        c.close();
+                    }
+                }
+
+                this.timerWheel.advance(System.currentTimeMillis());
+            }
+        } catch (final IOException e) {
+            this.logger.error("The maintenance server failed.", e);
+        } finally {
+            for (final ClientConnection c : new ArrayList<>(this.openConnections)) {
+                c.close();
+            }
+            try {
+                this.serverChannel.close();
+                this.selector.close();
+            } catch (final IOException e) {
+                this.logger.error("Could not close the server socket.", e);
+            }
+        }
     }
 
     /**
-     * Dieser Thread wartet auf eingehende Objekte vom MaintenanceClient.
+     * Nimmt eine eingehende Wartungs-Verbindung an.
+     */
+    private void acceptConnection() {
+        SocketChannel channel = null;
+        try {
+            channel = this.serverChannel.accept();
+            if (channel == null) {
+                return;
+            }
+            this.logger.info("Incoming maintenance connection from " + channel.socket().getInetAddress()
+                    .getHostAddress());
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            final ClientConnection c = new ClientConnection(channel);
+            c.key = channel.register(this.selector, SelectionKey.OP_READ, c);
+            this.openConnections.add(c);
+            c.scheduleTimeout();
+        } catch (final IOException e) {
+            this.logger.error("Could not accept a connection.", e);
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (final IOException e1) {
+                    // Do nothing.
+                }
+            }
+        }
+    }
+
+    /**
+     * Führt eine Aufgabe im Server-Thread aus.
+     */
+    private void runInEventLoop(Runnable task) {
+        if (Thread.currentThread() == this.serverThread) {
+            task.run();
+        } else {
+            this.tasks.add(task);
+            this.selector.wakeup();
+        }
+    }
+
+    /**
+     * Eine Verbindung zu einem Wartungs-Client. Sämtliche Ein- und Ausgaben erfolgen im Server-Thread, Anfragen
+     * können aus beliebigen Threads gestellt werden.
      *
      * @author Oliver Kabierschke
      */
-    private class ClientConnectionThread extends Thread implements IClientConnection {
-        private final Logger logger = LoggerFactory.getLogger(this.getClass());
-
-        private final Socket socket;
+    private class ClientConnection implements IClientConnection {
 
-        private final Thread timeoutThread;
+        private final SocketChannel channel;
 
-        private final String locationName;
+        private final String hostAddress;
 
         /**
-         * Eine Verknüpfung von Nachrichten-IDs zur jeweiligen Warteschlange, in welche Antworten gespeichert werden.
+         * Ausgehende Nachrichten, die noch nicht vollständig gesendet wurden.
          */
-        private final Map<Long, BlockingQueue<MaintenanceResponse>> incomingMessage = new HashMap<>();
+        private final Queue<ByteBuffer> outgoing = new ConcurrentLinkedQueue<>();
 
-        private long currentConversationId = (long) (Math.random() * Long.MAX_VALUE);
         /**
-         * Gibt an, ob der Thread gerade beendet wird.
+         * Eine Verknüpfung von Nachrichten-IDs zur jeweils auf eine Antwort wartenden Anfrage.
          */
-        private boolean shutdown = false;
+        private final Map<Long, CompletableFuture<MaintenanceResponse>> pendingQueries = new ConcurrentHashMap<>();
+
+        private final AtomicLong currentConversationId = new AtomicLong((long) (Math.random() * Long.MAX_VALUE));
+
+        private SelectionKey key;
+
+        private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
 
         /**
-         * Gibt an, ob der Thread gerade durch ein Timeout beendet wird.
+         * Die Anzahl unverarbeiteter Bytes beim letzten erfolglosen Lesen einer serialisierten Nachricht. Erst wenn
+         * mehr Bytes vorliegen, wird erneut gelesen.
          */
-        private boolean timeout = false;
-
-        ClientConnectionThread(Socket socket) throws IOException {
-            super();
+        private int incompleteSerializedLength = -1;
 
-            // Warte für Verbindungs-Anfrage
-            socket.setSoTimeout(MaintenanceServer.this.timeout);
-            ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
-            ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
-            Object requestObject;
-            try {
-                requestObject = in.readObject();
-            } catch (ClassNotFoundException e) {
-                socket.close();
-                throw new IOException("Received an invalid request.", e);
-            }
+        /**
+         * Ob die Gegenstelle Java-Serialisierung verwendet. Null, solange das Protokoll nicht ausgehandelt ist.
+         */
+        private volatile Boolean serialized;
 
-            if (!(requestObject instanceof ConnectionRequest)) {
-                socket.close();
-                throw new IOException(String.format("Received invalid connection request of type '%1s'.",
-                        requestObject.getClass().getName()));
-            }
-            ConnectionRequest connectionRequest = (ConnectionRequest) requestObject;
+        /**
+         * Der Standort des Clients. Null, solange sich der Client nicht angemeldet hat.
+         */
+        private String locationName;
 
-            // Prüfe, ob nicht bereits eine Verbindung zu einem Client besteht, der denselben Standort besetzt.
-            if (MaintenanceServer.this.clientConnections.containsKey(connectionRequest.getLocation()) &&
-                    MaintenanceServer.this.clientConnections.get(connectionRequest.getLocation()).isAlive()) {
-                this.logger.info(String
-                        .format("'%1s' replaces '%2s' on location '%3s'.", socket.getInetAddress().getHostAddress(),
-                                MaintenanceServer.this.clientConnections.get(connectionRequest.getLocation())
-                                        .getSocket().getInetAddress().getHostAddress(),
-                                connectionRequest.getLocation()));
-                MaintenanceServer.this.clientConnections.get(connectionRequest.getLocation()).shutdown();
-            }
+        private long lastActivity = System.currentTimeMillis();
 
-            // Bestätige Verbindung
-            out.writeObject(new ConnectionResponse(connectionRequest));
-
-            // Verbindung erfolgreich aufgebaut
-            this.locationName = connectionRequest.getLocation();
-            MaintenanceServer.this.clientConnections.put(connectionRequest.getLocation(), this);
-            this.socket = socket;
-            this.setName("ClientConnectionThread with " + socket.getInetAddress().getHostAddress());
-            this.start();
-
-            // Starte Timeout-Thread
-            this.timeoutThread = new Thread(() -> {
-                while (!ClientConnectionThread.this.shutdown) {
-                    try {
-                        Thread.sleep(MaintenanceServer.this.timeout);
-                    } catch (final Exception e) {
-                        // Timeout neu starten.
-                        continue;
-                    }
+        private volatile boolean closed = false;
 
-                    // Timeout ist eingetregen. Beende Verbindung.
-                    this.shutdown = true;
-                    this.timeout = true;
-                    try {
-                        this.socket.close();
-                    } catch (final Exception e) {
-                        MaintenanceServer.this.logger.warn("Could not close the connection to " +
-                                this.socket.getInetAddress().getHostAddress());
-                    }
-                    break;
-                }
-                MaintenanceServer.this.logger.debug("Timeout thread ended.");
-            });
-            this.timeoutThread.setName("TimeoutThread " + this.socket.getInetAddress().getHostAddress());
-            if (MaintenanceServer.this.timeout > 0) {
-                this.timeoutThread.start();
-            }
+        ClientConnection(SocketChannel channel) {
+            this.channel = channel;
+            this.hostAddress = channel.socket().getInetAddress().getHostAddress();
         }
 
         /**
-         * Beendet diese Verbindung zum Client.
+         * Liest die verfügbaren Daten und verarbeitet alle vollständig empfangenen Nachrichten.
          */
-        public void shutdown() {
-            if (this.shutdown) {
-                // Verbindung wurde bereits heruntergefahren
+        void onReadable() throws IOException {
+            final int read = this.channel.read(this.readBuffer);
+            if (read < 0) {
+                this.close();
                 return;
             }
-            MaintenanceServer.this.logger
-                    .debug("Shutting down connection with " + this.socket.getInetAddress().getHostAddress() + ".");
-            this.shutdown = true;
+            this.lastActivity = System.currentTimeMillis();
 
-            // Terminate timeout thread
-            if (this.timeoutThread.isAlive()) {
-                this.timeoutThread.interrupt();
-                try {
-                    this.timeoutThread.join();
-                } catch (final InterruptedException e) {
-                    MaintenanceServer.this.logger.warn("Could not wait for TimeoutThread to terminate.");
+            this.readBuffer.flip();
+            try {
+                while (!this.closed && this.processInput()) {
+                    // Verarbeite die nächste Nachricht
                 }
+            } finally {
+                this.readBuffer.compact();
             }
 
-            // Terminate connection thread
-            try {
-                this.socket.close();
-                try {
-                    this.join();
-                } catch (final InterruptedException e) {
-                    MaintenanceServer.this.logger.warn("Could not wait for ClientConnectionThread to terminate.");
+            if (!this.readBuffer.hasRemaining()) {
+                if (this.readBuffer.capacity() >= MaintenanceCodec.MAX_FRAME_LENGTH + 4) {
+                    throw new IOException("Received a message that exceeds the maximum length.");
                 }
-            } catch (final IOException e1) {
-                MaintenanceServer.this.logger.warn("Could not close the client connection.");
+                final ByteBuffer larger = ByteBuffer.allocate(
+                        Math.min(this.readBuffer.capacity() * 2, MaintenanceCodec.MAX_FRAME_LENGTH + 4));
+                this.readBuffer.flip();
+                larger.put(this.readBuffer);
+                this.readBuffer = larger;
             }
         }
 
-        /*
-         * Sendet Befehler zum Client und empfängt Antworten von ihm.
-         *
-         * (non-Javadoc)
+        /**
+         * Verarbeitet den Anfang des Lesepuffers.
          *
-         * @see java.lang.Thread#run()
+         * @return True, falls Daten verarbeitet wurden, false, falls auf weitere Daten gewartet werden muss.
          */
-        @Override
-        public void run() {
-
-            final String remoteIdentifier = this.socket.getInetAddress().getHostAddress();
-
-            MaintenanceServer.this.logger.info("Maintenance connection to " + remoteIdentifier + " starting.");
-
-            try {
-                // Receiver loop
-                while (!Thread.interrupted()) {
-                    try {
-                        ObjectInputStream in = new ObjectInputStream(this.socket.getInputStream());
-                        final Object o = in.readObject();
+        private boolean processInput() throws IOException {
+            final ByteBuffer in = this.readBuffer;
+            if (this.serialized == null) {
+                return this.negotiateProtocol();
+            }
 
-                        // Nachricht empfangen. Timeout zurücksetzen.
-                        this.timeoutThread.interrupt();
+            final MaintenanceMessage message;
+            if (this.serialized) {
+                if (in.remaining() <= this.incompleteSerializedLength) {
+                    return false;
+                }
+                message = SerializedMaintenanceChannel.read(in);
+                if (message == null) {
+                    this.incompleteSerializedLength = in.remaining();
+                    return false;
+                }
+                this.incompleteSerializedLength = -1;
+            } else {
+                if (in.remaining() < 4) {
+                    return false;
+                }
+                final int length = in.getInt(in.position());
+                if (length <= 0 || length > MaintenanceCodec.MAX_FRAME_LENGTH) {
+                    throw new IOException("Received message with invalid length " + length + ".");
+                }
+                if (in.remaining() < length + 4) {
+                    return false;
+                }
+                in.position(in.position() + 4);
+                final byte[] frame = new byte[length];
+                in.get(frame);
+                message = MaintenanceCodec.decode(frame);
+                if (message == null) {
+                    MaintenanceServer.this.logger.debug("Skipping message of unknown type " + frame[1] + ".");
+                    return true;
+                }
+            }
 
-                        // Nachricht abarbeiten.
-                        final MaintenanceMessage response = this.handleIncomingObject(o);
+            this.handleIncomingMessage(message);
+            return true;
+        }
 
-                        if (response == null) {
-                            // Keine Antwort zu senden.
-                            continue;
-                        }
+        /**
+         * Erkennt anhand der ersten Bytes, ob der Client das Binärformat oder Java-Serialisierung verwendet.
+         */
+        private boolean negotiateProtocol() throws IOException {
+            final ByteBuffer in = this.readBuffer;
+            if (in.remaining() < 2) {
+                return false;
+            }
+            final int b0 = in.get(in.position()) & 0xFF;
+            final int b1 = in.get(in.position() + 1) & 0xFF;
+            if (b0 == MaintenanceChannels.SERIALIZATION_MAGIC_0 && b1 == MaintenanceChannels.SERIALIZATION_MAGIC_1) {
+                this.serialized = true;
+                return true;
+            }
+            if (b0 != MaintenanceChannels.PREAMBLE_0 || b1 != MaintenanceChannels.PREAMBLE_1) {
+                throw new IOException("Received an unknown protocol preamble.");
+            }
+            if (in.remaining() < 3) {
+                return false;
+            }
+            in.position(in.position() + 2);
+            final int clientVersion = in.get() & 0xFF;
+            if (clientVersion < 1) {
+                throw new IOException("Received an invalid protocol version.");
+            }
+            final int version = Math.min(clientVersion, MaintenanceCodec.VERSION);
+            this.serialized = false;
+            this.enqueue(ByteBuffer.wrap(new byte[]{MaintenanceChannels.PREAMBLE_0, MaintenanceChannels.PREAMBLE_1,
+                    (byte) version}));
+            MaintenanceServer.this.logger.debug(this.hostAddress + " uses protocol version " + version + ".");
+            return true;
+        }
 
-                        synchronized (this.socket) {
-                            ObjectOutputStream out = new ObjectOutputStream(this.socket.getOutputStream());
-                            out.writeObject(response);
-                        }
-                    } catch (final ClassNotFoundException e) {
-                        MaintenanceServer.this.logger
-                                .warn("Could not process the incoming message from " + remoteIdentifier + ".");
-                    }
-                }
-            } catch (final IOException e) {
-                if (this.timeout) {
-                    MaintenanceServer.this.logger.warn("Connection to " + remoteIdentifier +
-                            " timed out due to a missing heartbeat message.", e);
-                } else if (!this.shutdown) {
-                    MaintenanceServer.this.logger.error("Connection to " + remoteIdentifier + " is broken.", e);
-                }
-            } finally {
-                try {
-                    this.socket.close();
-                } catch (final IOException e) {
-                    // Do nothing.
+        /**
+         * Nimmt eine eingehende Nachricht entgegen und beantwortet sie gegebenenfalls.
+         *
+         * @param message Die eingegangene Nachricht.
+         */
+        private void handleIncomingMessage(MaintenanceMessage message) throws IOException {
+            MaintenanceServer.this.logger.trace("Incoming " + message.getClass().getSimpleName() + "[" +
+                    message.getConversationId() + "] from " + this.hostAddress + ".");
+
+            if (this.locationName == null) {
+                if (!(message instanceof ConnectionRequest)) {
+                    throw new IOException(String.format("Received invalid connection request of type '%1s'.",
+                            message.getClass().getName()));
                 }
+                this.register((ConnectionRequest) message);
+                return;
             }
 
-            // Thread ending.
-            this.shutdown = true;
-            if (this.timeoutThread.isAlive()) {
-                this.timeoutThread.interrupt();
-                try {
-                    this.timeoutThread.join();
-                } catch (final InterruptedException e) {
-                    MaintenanceServer.this.logger.warn("Could not wait for the TimeoutThread to end.");
+            if (message instanceof CheckConnectionRequest) {
+                this.send(new CheckConnectionResponse((CheckConnectionRequest) message));
+            } else if (message instanceof MaintenanceResponse) {
+                final CompletableFuture<MaintenanceResponse> query =
+                        this.pendingQueries.remove(message.getConversationId());
+                if (query != null) {
+                    query.complete((MaintenanceResponse) message);
+                } else {
+                    this.send(new ErrorMessage(message, "Did not wait for this message."));
                 }
+            } else if (message instanceof ErrorMessage) {
+                // Nicht beantworten, sonst schicken sich beide Seiten endlos Fehlermeldungen
+                MaintenanceServer.this.logger.warn("Received error from " + this.locationName + ": " +
+                        ((ErrorMessage) message).getMessage());
+            } else {
+                this.send(new ErrorMessage(message, "Unknown message type."));
             }
+        }
 
-            MaintenanceServer.this.clientConnections.remove(this.locationName);
+        /**
+         * Meldet den Client unter seinem Standort an.
+         */
+        private void register(ConnectionRequest request) throws IOException {
+            // Prüfe, ob nicht bereits eine Verbindung zu einem Client besteht, der denselben Standort besetzt.
+            final ClientConnection previous = MaintenanceServer.this.clientConnections.get(request.getLocation());
+            if (previous != null && !previous.closed) {
+                MaintenanceServer.this.logger.info(String.format("'%1s' replaces '%2s' on location '%3s'.",
+                        this.hostAddress, previous.hostAddress, request.getLocation()));
+                previous.close();
+            }
 
-            MaintenanceServer.this.logger.info("Maintenance connection to " + remoteIdentifier + " closed.");
+            // Bestätige Verbindung
+            this.send(new ConnectionResponse(request));
+            this.locationName = request.getLocation();
+            MaintenanceServer.this.clientConnections.put(this.locationName, this);
+            MaintenanceServer.this.logger.info("Maintenance connection to " + this.hostAddress + " starting.");
         }
 
+        /**
+         * Sendet ausstehende Daten.
+         */
+        void onWritable() throws IOException {
+            ByteBuffer buffer;
+            while ((buffer = this.outgoing.peek()) != null) {
+                this.channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    // Der Socket-Puffer ist voll
+                    return;
+                }
+                this.outgoing.poll();
+            }
+            this.key.interestOps(SelectionKey.OP_READ);
+        }
 
         /**
-         * Nimmt ein eingehendes Objekt entgegen und generiert eine Antwort dafür.
-         *
-         * @param o Die eingegangene Anfrage.
-         * @return Die Antwort auf die Anfrage.
+         * Stellt eine Nachricht zum Senden ein. Kann aus beliebigen Threads aufgerufen werden.
          */
-        private MaintenanceMessage handleIncomingObject(Object o) {
-            if (!(o instanceof MaintenanceMessage)) {
-                this.logger.debug("Received unknown object of type " + o.getClass().getName());
-                return new ErrorMessage("Invalid Message.");
+        private void send(MaintenanceMessage message) throws IOException {
+            if (this.closed) {
+                throw new IOException("The connection to the maintenance client is broken.");
+            }
+            final ByteBuffer buffer;
+            if (this.serialized) {
+                buffer = ByteBuffer.wrap(SerializedMaintenanceChannel.serialize(message));
+            } else {
+                final byte[] frame = MaintenanceCodec.encode(message);
+                buffer = ByteBuffer.allocate(frame.length + 4);
+                buffer.putInt(frame.length).put(frame).flip();
             }
+            this.enqueue(buffer);
+        }
 
-            this.logger.trace("Incoming " + o.getClass().getSimpleName() + "[" +
-                    ((MaintenanceMessage) o).getConversationId() + "] from " +
-                    this.socket.getInetAddress().getHostAddress() + ".");
+        private void enqueue(ByteBuffer buffer) {
+            this.outgoing.add(buffer);
+            MaintenanceServer.this.runInEventLoop(() -> {
+                if (this.key.isValid()) {
+                    this.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+            });
+        }
 
-            if (o instanceof CheckConnectionRequest) {
-                return new CheckConnectionResponse((CheckConnectionRequest) o);
+        /**
+         * Plant die Prüfung auf eine Zeitüberschreitung der Verbindung ein.
+         */
+        void scheduleTimeout() {
+            if (MaintenanceServer.this.timeout > 0) {
+                MaintenanceServer.this.timerWheel
+                        .schedule(this.lastActivity + MaintenanceServer.this.timeout, this::checkTimeout);
             }
+        }
 
-            if (o instanceof MaintenanceResponse) {
-                MaintenanceResponse resp = (MaintenanceResponse) o;
-                if (this.incomingMessage.containsKey(resp.getConversationId())) {
-                    try {
-                        this.incomingMessage.get(resp.getConversationId()).put(resp);
-                    } catch (InterruptedException e) {
-                        this.logger.error("Interrupted Exception", e);
-                    }
-                } else {
-                    return new ErrorMessage((MaintenanceMessage) o, "Did not wait for this message.");
-                }
+        private void checkTimeout() {
+            if (this.closed) {
+                return;
             }
+            if (System.currentTimeMillis() - this.lastActivity >= MaintenanceServer.this.timeout) {
+                MaintenanceServer.this.logger.warn("Connection to " + this.hostAddress +
+                        " timed out due to a missing heartbeat message.");
+                this.close();
+            } else {
+                this.scheduleTimeout();
+            }
+        }
 
-            return new ErrorMessage((MaintenanceMessage) o, "Unknown message type.");
+        /**
+         * Beendet diese Verbindung zum Client. Wird nur im Server-Thread aufgerufen.
+         */
+        void close() {
+            if (this.closed) {
+                // Verbindung wurde bereits geschlossen
+                return;
+            }
+            this.closed = true;
+            if (this.key != null) {
+                this.key.cancel();
+            }
+            try {
+                this.channel.close();
+            } catch (final IOException e) {
+                MaintenanceServer.this.logger.warn("Could not close the client connection.");
+            }
+            MaintenanceServer.this.openConnections.remove(this);
+            if (this.locationName != null) {
+                MaintenanceServer.this.clientConnections.remove(this.locationName, this);
+            }
+            for (final CompletableFuture<MaintenanceResponse> query : this.pendingQueries.values()) {
+                query.completeExceptionally(new IOException("The connection to the maintenance client was closed."));
+            }
+            this.pendingQueries.clear();
+            MaintenanceServer.this.logger.info("Maintenance connection to " + this.hostAddress + " closed.");
         }
 
         /**
          * Sendet eine Nachricht an den Client und wartet auf eine Antwort.
          *
          * @param request Die Anfrage an den Client
-         * @return Die Antwort des Clients.
+         * @return Die Antwort des Clients, oder null, falls innerhalb der Zeitüberschreitung keine Antwort kam.
          */
         @Override
         public MaintenanceResponse sendQuery(MaintenanceRequest request) throws IOException {
-            if (this.socket.isClosed()) {
-                this.logger.warn("The connection to the maintenance server is broken.");
-                throw new IOException("The connection to the maintenance server is broken.");
-            }
-            request.setConversationId(this.currentConversationId++);
-
-            BlockingQueue<MaintenanceResponse> queue = new LinkedBlockingQueue<>();
-            this.incomingMessage.put(request.getConversationId(), queue);
+            final long id = this.currentConversationId.getAndIncrement();
+            request.setConversationId(id);
 
-            synchronized (this.socket) {
-                ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
-                out.writeObject(request);
-            }
-
-            MaintenanceResponse resp = null;
+            final CompletableFuture<MaintenanceResponse> query = new CompletableFuture<>();
+            this.pendingQueries.put(id, query);
             try {
-                resp = queue.poll(MaintenanceServer.this.timeout, TimeUnit.MILLISECONDS);
-            } catch (InterruptedException e) {
-                this.logger.error("Interrupted while waiting for a response of the client.", e);
+                this.send(request);
+                if (MaintenanceServer.this.timeout > 0) {
+                    final long deadline = System.currentTimeMillis() + MaintenanceServer.this.timeout;
+                    MaintenanceServer.this.runInEventLoop(
+                            () -> MaintenanceServer.this.timerWheel.schedule(deadline, () -> query.complete(null)));
+                }
+                return query.get();
+            } catch (final InterruptedException e) {
+                MaintenanceServer.this.logger.error("Interrupted while waiting for a response of the client.", e);
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (final ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            } finally {
+                this.pendingQueries.remove(id);
             }
-
-            this.incomingMessage.remove(request.getConversationId());
-            return resp;
         }
 
         @Override
         public void sendCommand(MaintenanceRequest request) throws IOException {
-            if (this.socket.isClosed()) {
-                this.logger.warn("The connection to the maintenance server is broken.");
-                throw new IOException("The connection to the maintenance server is broken.");
-            }
-            request.setConversationId(this.currentConversationId++);
-
-            BlockingQueue<MaintenanceResponse> queue = new LinkedBlockingQueue<>();
-            this.incomingMessage.put(request.getConversationId(), queue);
-
-            synchronized (this.socket) {
-                ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
-                out.writeObject(request);
-            }
+            request.setConversationId(this.currentConversationId.getAndIncrement());
+            this.send(request);
         }
 
         @Override
         public String getHostAddress() {
-            return socket.getInetAddress().getHostAddress();
-        }
-
-        private Socket getSocket() {
-            return socket;
+            return this.hostAddress;
         }
     }
 }
@@ -0,0 +1,131 @@
+package org.kabieror.elwasys.common.maintenance;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OptionalDataException;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+
+/**
+ * Überträgt Wartungs-Nachrichten per Java-Serialisierung, wie es Gegenstellen vor Einführung des
+ * {@link MaintenanceCodec} tun. Es werden nur Klassen der Wartungs-Nachrichten und der von ihnen verwendeten Typen
+ * deserialisiert.
+ *
+ * @author Oliver Kabierschke
+ */
+class SerializedMaintenanceChannel implements IMaintenanceChannel {
+
+    private final InputStream in;
+
+    private final OutputStream out;
+
+    SerializedMaintenanceChannel(InputStream in, OutputStream out) {
+        this.in = in;
+        this.out = out;
+    }
+
+    /**
+     * Liest eine Nachricht aus einem Puffer, sofern dieser sie vollständig enthält.
+     * <p>
+     * Da serialisierte Nachrichten keine Länge tragen, wird der Puffer bei jedem Aufruf von vorn gelesen. Nach einem
+     * erfolglosen Versuch sollte erst wieder gelesen werden, wenn neue Daten empfangen wurden.
+     *
+     * @param buffer Der Puffer im Lesemodus. Seine Position wird hinter die gelesene Nachricht gesetzt.
+     * @return Die Nachricht, oder null, falls sie noch nicht vollständig empfangen wurde.
+     */
+    static MaintenanceMessage read(ByteBuffer buffer) throws IOException {
+        final ByteArrayInputStream in =
+                new ByteArrayInputStream(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        final MaintenanceMessage message;
+        try {
+            message = readMessage(in);
+        } catch (final EOFException | StreamCorruptedException | OptionalDataException e) {
+            // Ein abgeschnittener Stream-Kopf oder Block wird je nach Stelle nicht als Dateiende gemeldet. Echte
+            // Fehler im Stream fallen spätestens auf, wenn der Puffer die Höchstlänge einer Nachricht erreicht.
+            return null;
+        }
+        buffer.position(buffer.position() + buffer.remaining() - in.available());
+        return message;
+    }
+
+    /**
+     * Serialisiert eine Nachricht mitsamt Stream-Kopf, wie sie eine Gegenstelle mit Java-Serialisierung erwartet.
+     *
+     * @param message Die Nachricht.
+     * @return Die serialisierte Nachricht.
+     */
+    static byte[] serialize(MaintenanceMessage message) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        final ObjectOutputStream oos = new ObjectOutputStream(buffer);
+        oos.writeObject(message);
+        oos.flush();
+        return buffer.toByteArray();
+    }
+
+    private static MaintenanceMessage readMessage(InputStream in) throws IOException {
+        final Object o;
+        try {
+            o = new FilteringObjectInputStream(in).readObject();
+        } catch (final ClassNotFoundException e) {
+            throw new IOException("Received an object of unknown class.", e);
+        }
+        if (!(o instanceof MaintenanceMessage)) {
+            throw new IOException("Received an object of type " + o.getClass().getName() + ".");
+        }
+        return (MaintenanceMessage) o;
+    }
+
+    @Override
+    public MaintenanceMessage read() throws IOException {
+        return readMessage(this.in);
+    }
+
+    @Override
+    public void write(MaintenanceMessage message) throws IOException {
+        final byte[] bytes = serialize(message);
+        synchronized (this.out) {
+            this.out.write(bytes);
+            this.out.flush();
+        }
+    }
+
+    @Override
+    public int getVersion() {
+        return MaintenanceCodec.VERSION_SERIALIZED;
+    }
+
+    /**
+     * Lässt nur die Klassen zu, aus denen Wartungs-Nachrichten bestehen.
+     */
+    private static class FilteringObjectInputStream extends ObjectInputStream {
+
+        FilteringObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            String name = desc.getName();
+            while (name.startsWith("[")) {
+                name = name.substring(1);
+            }
+            if (name.startsWith("L") && name.endsWith(";")) {
+                name = name.substring(1, name.length() - 1);
+            }
+            if (name.length() > 1 && !name.startsWith(MaintenanceMessage.class.getPackage().getName() + ".") &&
+                    !name.startsWith("java.lang.") && !name.startsWith("java.util.") &&
+                    !name.startsWith("java.time.")) {
+                throw new InvalidClassException(desc.getName(), "Class is not allowed in maintenance messages.");
+            }
+            return super.resolveClass(desc);
+        }
+    }
+}
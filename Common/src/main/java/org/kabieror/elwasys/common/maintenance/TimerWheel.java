@@ -0,0 +1,92 @@
+package org.kabieror.elwasys.common.maintenance;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Ein Timer-Rad, das Zeitüberschreitungen vieler Verbindungen und Anfragen mit konstantem Aufwand verwaltet.
+ * <p>
+ * Aufgaben werden in das Fach ihres Schritts einsortiert und spätestens einen Schritt nach ihrer Frist ausgeführt.
+ * Die Klasse ist nicht thread-sicher und wird ausschließlich vom Thread des {@link MaintenanceServer} verwendet.
+ *
+ * @author Oliver Kabierschke
+ */
+class TimerWheel {
+
+    private final long tickMillis;
+
+    private final List<List<Timeout>> slots;
+
+    /**
+     * Der nächste noch nicht abgearbeitete Schritt.
+     */
+    private long currentTick;
+
+    TimerWheel(long tickMillis, int slotCount, long now) {
+        this.tickMillis = tickMillis;
+        this.slots = new ArrayList<>(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            this.slots.add(new ArrayList<>());
+        }
+        this.currentTick = now / tickMillis;
+    }
+
+    /**
+     * Plant eine Aufgabe ein.
+     *
+     * @param deadline Der Zeitpunkt in Millisekunden, zu dem die Aufgabe ausgeführt werden soll.
+     * @param task     Die Aufgabe.
+     */
+    void schedule(long deadline, Runnable task) {
+        final long tick = Math.max(deadline / this.tickMillis, this.currentTick);
+        this.slotOf(tick).add(new Timeout(deadline, task));
+    }
+
+    /**
+     * Führt alle Aufgaben aus, deren Schritt vollständig vergangen ist.
+     *
+     * @param now Die aktuelle Zeit in Millisekunden.
+     */
+    void advance(long now) {
+        final long lastTick = now / this.tickMillis - 1;
+        if (lastTick - this.currentTick >= this.slots.size()) {
+            // Alle Fächer sind fällig, jedes wird nur einmal geprüft
+            this.currentTick = lastTick - this.slots.size() + 1;
+        }
+        while (this.currentTick <= lastTick) {
+            final List<Timeout> slot = this.slotOf(this.currentTick);
+            this.currentTick++;
+            if (slot.isEmpty()) {
+                continue;
+            }
+
+            // Aufgaben späterer Umläufe verbleiben im Fach
+            final List<Timeout> due = new ArrayList<>();
+            for (final Iterator<Timeout> it = slot.iterator(); it.hasNext(); ) {
+                final Timeout t = it.next();
+                if (t.deadline <= now) {
+                    it.remove();
+                    due.add(t);
+                }
+            }
+            for (final Timeout t : due) {
+                t.task.run();
+            }
+        }
+    }
+
+    private List<Timeout> slotOf(long tick) {
+        return this.slots.get((int) (tick % this.slots.size()));
+    }
+
+    private static class Timeout {
+        final long deadline;
+        final Runnable task;
+
+        Timeout(long deadline, Runnable task) {
+            this.deadline = deadline;
+            this.task = task;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.kabieror.elwasys.common.maintenance.data;
+
+import org.kabieror.elwasys.common.Execution;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Eine Momentaufnahme einer laufenden Programmausführung, wie sie über die Wartungs-Verbindung übertragen wird.
+ *
+ * @author Oliver Kabierschke
+ */
+public class ExecutionStatus implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int id;
+
+    private final String deviceName;
+
+    private final String programName;
+
+    private final String userName;
+
+    private final LocalDateTime startDate;
+
+    public ExecutionStatus(int id, String deviceName, String programName, String userName,
+                           LocalDateTime startDate) {
+        this.id = id;
+        this.deviceName = deviceName;
+        this.programName = programName;
+        this.userName = userName;
+        this.startDate = startDate;
+    }
+
+    /**
+     * Erstellt eine Momentaufnahme einer Programmausführung.
+     *
+     * @param execution Die Programmausführung.
+     */
+    public ExecutionStatus(Execution execution) {
+        this(execution.getId(), execution.getDevice().getName(), execution.getProgram().getName(),
+                execution.getUser().getName(), execution.getStartDate());
+    }
+
+    public int getId() {
+        return this.id;
+    }
+
+    public String getDeviceName() {
+        return this.deviceName;
+    }
+
+    public String getProgramName() {
+        return this.programName;
+    }
+
+    public String getUserName() {
+        return this.userName;
+    }
+
+    public LocalDateTime getStartDate() {
+        return this.startDate;
+    }
+}
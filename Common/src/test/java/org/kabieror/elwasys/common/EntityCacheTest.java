@@ -0,0 +1,52 @@
+package org.kabieror.elwasys.common;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+
+/**
+ * Prüft die Verdrängung aus dem Zwischenspeicher für Entitäten.
+ *
+ * @author Oliver Kabierschke
+ */
+public class EntityCacheTest {
+
+    private final EntityCache<StringBuilder> cache =
+            new EntityCache<>("test", 10, Duration.ofMinutes(1), value -> value.toString().startsWith("running"));
+
+    private StringBuilder get(int id) throws Exception {
+        return this.cache.get(id, value -> {
+        }, () -> new StringBuilder("entity " + id));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws Exception {
+        final StringBuilder first = this.cache.put(0, new StringBuilder("entity 0"), false);
+        for (int id = 1; id <= 10; id++) {
+            this.cache.put(id, new StringBuilder("entity " + id), false);
+            Thread.sleep(1);
+        }
+        Assert.assertEquals(9, this.cache.getStatistics().getSize());
+        Assert.assertNotSame(first, this.get(0));
+    }
+
+    @Test
+    public void keepsPinnedInstances() throws Exception {
+        final StringBuilder running = this.cache.put(0, new StringBuilder("running 0"), false);
+        for (int id = 1; id <= 30; id++) {
+            this.cache.put(id, new StringBuilder("entity " + id), false);
+            Thread.sleep(1);
+        }
+        Assert.assertSame(running, this.get(0));
+
+        // Sobald die Entität nicht mehr läuft, darf sie verdrängt werden
+        running.replace(0, running.length(), "entity 0");
+        Thread.sleep(1);
+        for (int id = 31; id <= 60; id++) {
+            this.cache.put(id, new StringBuilder("entity " + id), false);
+            Thread.sleep(1);
+        }
+        Assert.assertNotSame(running, this.get(0));
+    }
+}
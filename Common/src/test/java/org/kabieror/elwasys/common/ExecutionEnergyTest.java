@@ -0,0 +1,40 @@
+package org.kabieror.elwasys.common;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Prüft das Zählen der von einer Ausführung aufgenommenen Energie.
+ *
+ * @author Oliver Kabierschke
+ */
+public class ExecutionEnergyTest {
+
+    private final Execution execution = Execution.getOfflineExecution(null, null, null);
+
+    @Test
+    public void isUnknownWithoutMeasurements() {
+        Assert.assertTrue(Double.isNaN(this.execution.getEnergy()));
+        this.execution.addPowerMeasurement(0, 2000);
+        Assert.assertEquals(0, this.execution.getEnergy(), 0);
+    }
+
+    @Test
+    public void integratesLinearlyBetweenMeasurements() {
+        // Eine Stunde mit 1 kW, dann eine halbe Stunde linear von 1 kW auf 0 W
+        this.execution.addPowerMeasurement(0, 1000);
+        this.execution.addPowerMeasurement(3600000, 1000);
+        this.execution.addPowerMeasurement(5400000, 0);
+        Assert.assertEquals(1.25, this.execution.getEnergy(), 1e-9);
+    }
+
+    @Test
+    public void ignoresInvalidAndOutOfOrderMeasurements() {
+        this.execution.addPowerMeasurement(1000, 3600);
+        this.execution.addPowerMeasurement(2000, Double.NaN);
+        this.execution.addPowerMeasurement(3000, -1);
+        this.execution.addPowerMeasurement(500, 3600);
+        this.execution.addPowerMeasurement(1500, 3600);
+        Assert.assertEquals(1800 / 3600000.0, this.execution.getEnergy(), 1e-12);
+    }
+}
@@ -0,0 +1,101 @@
+package org.kabieror.elwasys.common;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Prüft das abschnittsweise Lesen von Log-Dateien vom Ende her.
+ *
+ * @author Oliver Kabierschke
+ */
+public class LogFileReaderTest {
+
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        this.file = Files.createTempFile("elwasys", ".log");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(this.file);
+    }
+
+    @Test
+    public void testTailWithContinuationLines() throws IOException {
+        this.write("2017-03-04 10:00:00,000 INFO  a - first",
+                "2017-03-04 10:01:00,000 ERROR a - failure",
+                "java.lang.IllegalStateException",
+                "\tat Foo.bar(Foo.java:1)",
+                "2017-03-04 10:02:00,000 INFO  a - last");
+        // Die noch nicht abgeschlossene letzte Zeile wird ausgelassen
+        Files.write(this.file, "2017-03-04 10:03".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        final LogFileReader.Chunk chunk = new LogFileReader(this.file).read(0, 3, null, null);
+        Assert.assertEquals(Arrays.asList("2017-03-04 10:02:00,000 INFO  a - last"), chunk.getLines());
+        Assert.assertTrue(chunk.hasMore());
+
+        final LogFileReader.Chunk older = new LogFileReader(this.file).read(chunk.getStartOffset(), 3, null, null);
+        Assert.assertEquals(Arrays.asList("2017-03-04 10:01:00,000 ERROR a - failure",
+                "java.lang.IllegalStateException", "\tat Foo.bar(Foo.java:1)"), older.getLines());
+        Assert.assertTrue(older.hasMore());
+
+        final LogFileReader.Chunk oldest = new LogFileReader(this.file).read(older.getStartOffset(), 3, null, null);
+        Assert.assertEquals(Arrays.asList("2017-03-04 10:00:00,000 INFO  a - first"), oldest.getLines());
+        Assert.assertEquals(0, oldest.getStartOffset());
+        Assert.assertFalse(oldest.hasMore());
+    }
+
+    @Test
+    public void testPagingAcrossBlocks() throws IOException {
+        final List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            expected.add(String.format("2017-03-04 10:00:%02d,%03d DEBUG a - line %d with some padding text", i % 60,
+                    i % 1000, i));
+        }
+        this.write(expected.toArray(new String[expected.size()]));
+
+        final List<String> read = new ArrayList<>();
+        long before = 0;
+        LogFileReader.Chunk chunk;
+        do {
+            chunk = new LogFileReader(this.file).read(before, 700, null, null);
+            read.addAll(0, chunk.getLines());
+            before = chunk.getStartOffset();
+        } while (chunk.hasMore());
+        Assert.assertEquals(expected, read);
+    }
+
+    @Test
+    public void testLevelAndSinceFilter() throws IOException {
+        this.write("2017-03-04 09:00:00,000 ERROR a - too old",
+                "2017-03-04 10:00:00,000 WARN  a - warning",
+                "2017-03-04 10:01:00,000 INFO  a - info",
+                "2017-03-04 10:02:00,000 ERROR a - error",
+                "\tat Foo.bar(Foo.java:1)");
+
+        final LogFileReader.Chunk chunk =
+                new LogFileReader(this.file).read(0, 0, LocalDateTime.of(2017, 3, 4, 9, 30), "WARN");
+        Assert.assertEquals(Arrays.asList("2017-03-04 10:00:00,000 WARN  a - warning",
+                "2017-03-04 10:02:00,000 ERROR a - error", "\tat Foo.bar(Foo.java:1)"), chunk.getLines());
+        Assert.assertFalse(chunk.hasMore());
+    }
+
+    private void write(String... lines) throws IOException {
+        Files.write(this.file, Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,47 @@
+package org.kabieror.elwasys.common;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Prüft das Hashen von Passwörtern und die Migration von SHA-1-Hashes.
+ *
+ * @author Oliver Kabierschke
+ */
+public class Pbkdf2PasswordHasherTest {
+
+    private final Pbkdf2PasswordHasher hasher = new Pbkdf2PasswordHasher(1000);
+
+    @Test
+    public void verifiesOwnHashes() {
+        final String hash = this.hasher.hash("geheim");
+        Assert.assertTrue(hash.length() <= 200);
+        Assert.assertTrue(this.hasher.verify("geheim", hash));
+        Assert.assertFalse(this.hasher.verify("Geheim", hash));
+        Assert.assertFalse(this.hasher.needsRehash(hash));
+        Assert.assertNotEquals("Each hash uses its own salt", hash, this.hasher.hash("geheim"));
+    }
+
+    @Test
+    public void acceptsLegacyHashesButRequestsRehash() throws Exception {
+        final String legacy = Utilities.sha1("geheim");
+        Assert.assertTrue(this.hasher.verify("geheim", legacy));
+        Assert.assertFalse(this.hasher.verify("falsch", legacy));
+        Assert.assertTrue(this.hasher.needsRehash(legacy));
+    }
+
+    @Test
+    public void requestsRehashWhenCostChanges() {
+        final String hash = this.hasher.hash("geheim");
+        final Pbkdf2PasswordHasher stronger = new Pbkdf2PasswordHasher(2000);
+        Assert.assertTrue(stronger.verify("geheim", hash));
+        Assert.assertTrue(stronger.needsRehash(hash));
+    }
+
+    @Test
+    public void rejectsMissingOrMalformedHashes() {
+        Assert.assertFalse(this.hasher.verify("geheim", null));
+        Assert.assertFalse(this.hasher.verify("geheim", ""));
+        Assert.assertFalse(this.hasher.verify("geheim", "pbkdf2-sha256$x$abc$def"));
+    }
+}
@@ -0,0 +1,107 @@
+package org.kabieror.elwasys.common.maintenance;
+
+import org.kabieror.elwasys.common.maintenance.data.BacklightStatus;
+import org.kabieror.elwasys.common.maintenance.data.ExecutionStatus;
+import org.kabieror.elwasys.common.maintenance.data.InterfaceStatus;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Vergleicht Laufzeit und Größe des Binärformats mit der Java-Serialisierung.
+ * <p>
+ * Aufruf: {@code java -cp target/classes:target/test-classes:<Abhängigkeiten>
+ * org.kabieror.elwasys.common.maintenance.MaintenanceCodecBenchmark}
+ *
+ * @author Oliver Kabierschke
+ */
+public class MaintenanceCodecBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 20000;
+
+    private static final int ITERATIONS = 100000;
+
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws Exception {
+        final CheckConnectionRequest check = new CheckConnectionRequest();
+        check.setConversationId(123456789L);
+
+        final GetStatusResponse status = new GetStatusResponse();
+        status.setConversationId(123456790L);
+        status.setInterfaceStatus(InterfaceStatus.NORMAL);
+        status.setBacklightStatus(BacklightStatus.ON);
+        status.setStartupTime(LocalDateTime.now());
+        final List<ExecutionStatus> executions = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            executions.add(new ExecutionStatus(i, "Waschmaschine " + i, "Koch/Bunt 60°C", "Benutzer " + i,
+                    LocalDateTime.now().minusMinutes(i * 10)));
+        }
+        status.setRunningExecutionStatus(executions);
+
+        final List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            lines.add("2017-03-04 05:06:07.890 [main] INFO  o.k.e.r.ElwaManager - Log line number " + i);
+        }
+        final GetLogResponse log = new GetLogResponse(lines, 0, false);
+        log.setConversationId(123456791L);
+
+        System.out.println(String.format("%-24s %-12s %10s %12s %12s", "message", "format", "bytes",
+                "encode ns", "decode ns"));
+        for (final MaintenanceMessage m : new MaintenanceMessage[]{check, status, log}) {
+            final int iterations = m == log ? ITERATIONS / 50 : ITERATIONS;
+            run(m, "binary", iterations, MaintenanceCodec::encode, MaintenanceCodec::decode);
+            run(m, "serialized", iterations, MaintenanceCodecBenchmark::serialize,
+                    MaintenanceCodecBenchmark::deserialize);
+        }
+    }
+
+    private static void run(MaintenanceMessage message, String format, int iterations, Encoder encoder,
+                            Decoder decoder) throws Exception {
+        final byte[] encoded = encoder.encode(message);
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink = decoder.decode(encoder.encode(message));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink = encoder.encode(message);
+        }
+        final long encodeNanos = (System.nanoTime() - start) / iterations;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink = decoder.decode(encoded);
+        }
+        final long decodeNanos = (System.nanoTime() - start) / iterations;
+
+        System.out.println(String.format("%-24s %-12s %10d %12d %12d", message.getClass().getSimpleName(), format,
+                encoded.length, encodeNanos, decodeNanos));
+    }
+
+    private static byte[] serialize(MaintenanceMessage message) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(buffer);
+        out.writeObject(message);
+        out.flush();
+        return buffer.toByteArray();
+    }
+
+    private static MaintenanceMessage deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        return (MaintenanceMessage) new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+    }
+
+    private interface Encoder {
+        byte[] encode(MaintenanceMessage message) throws Exception;
+    }
+
+    private interface Decoder {
+        MaintenanceMessage decode(byte[] bytes) throws Exception;
+    }
+}
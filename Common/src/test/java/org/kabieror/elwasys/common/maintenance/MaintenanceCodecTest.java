@@ -0,0 +1,153 @@
+package org.kabieror.elwasys.common.maintenance;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kabieror.elwasys.common.maintenance.data.BacklightStatus;
+import org.kabieror.elwasys.common.maintenance.data.ExecutionStatus;
+import org.kabieror.elwasys.common.maintenance.data.InterfaceStatus;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Prüft das Binärformat der Wartungs-Nachrichten und die Verständigung mit Gegenstellen, die noch
+ * Java-Serialisierung verwenden.
+ *
+ * @author Oliver Kabierschke
+ */
+public class MaintenanceCodecTest {
+
+    @Test
+    public void testStatusRoundTrip() throws IOException {
+        final GetStatusResponse status = new GetStatusResponse();
+        status.setConversationId(42);
+        status.setInterfaceStatus(InterfaceStatus.NORMAL);
+        status.setBacklightStatus(BacklightStatus.ON);
+        status.setStartupTime(LocalDateTime.of(2017, 3, 4, 5, 6, 7, 8));
+        status.setRunningExecutionStatus(Arrays.asList(
+                new ExecutionStatus(1, "Waschmaschine 1", "60°C", "Müller", LocalDateTime.of(2017, 3, 4, 6, 0)),
+                new ExecutionStatus(2, "Trockner", null, "Meier", null)));
+
+        final GetStatusResponse decoded = (GetStatusResponse) MaintenanceCodec.decode(MaintenanceCodec.encode(status));
+        Assert.assertEquals(42, decoded.getConversationId());
+        Assert.assertEquals(InterfaceStatus.NORMAL, decoded.getInterfaceStatus());
+        Assert.assertEquals(BacklightStatus.ON, decoded.getBacklightStatus());
+        Assert.assertEquals(status.getStartupTime(), decoded.getStartupTime());
+        Assert.assertEquals(2, decoded.getRunningExecutions().size());
+        Assert.assertEquals("60°C", decoded.getRunningExecutions().get(0).getProgramName());
+        Assert.assertEquals("Müller", decoded.getRunningExecutions().get(0).getUserName());
+        Assert.assertNull(decoded.getRunningExecutions().get(1).getProgramName());
+        Assert.assertNull(decoded.getRunningExecutions().get(1).getStartDate());
+    }
+
+    @Test
+    public void testLogRoundTrip() throws IOException {
+        final GetLogRequest request = new GetLogRequest(500, 1234, LocalDateTime.of(2017, 3, 4, 0, 0), "WARN");
+        final GetLogRequest decodedRequest =
+                (GetLogRequest) MaintenanceCodec.decode(MaintenanceCodec.encode(request));
+        Assert.assertEquals(500, decodedRequest.getMaxLines());
+        Assert.assertEquals(1234, decodedRequest.getBefore());
+        Assert.assertEquals(request.getSince(), decodedRequest.getSince());
+        Assert.assertEquals("WARN", decodedRequest.getMinLevel());
+
+        final GetLogResponse log = new GetLogResponse(Arrays.asList("a", "", "ä"), 99, true);
+        log.setConversationId(-7);
+        final GetLogResponse decoded = (GetLogResponse) MaintenanceCodec.decode(MaintenanceCodec.encode(log));
+        Assert.assertEquals(-7, decoded.getConversationId());
+        Assert.assertEquals(log.getLogContent(), decoded.getLogContent());
+        Assert.assertEquals(99, decoded.getStartOffset());
+        Assert.assertTrue(decoded.hasMore());
+    }
+
+    @Test
+    public void testPartialSerializedMessage() throws IOException {
+        // Eine ArrayList schreibt Blockdaten, deren Abbruch nicht als Dateiende gemeldet wird
+        final GetLogResponse log = new GetLogResponse(new ArrayList<>(Arrays.asList("a", "", "ä")), 99, true);
+        final byte[] bytes = SerializedMaintenanceChannel.serialize(log);
+
+        // Jeder abgeschnittene Anfang gilt als unvollständig, egal an welcher Stelle der Stream endet
+        for (int length = 0; length < bytes.length; length++) {
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+            Assert.assertNull(SerializedMaintenanceChannel.read(buffer));
+            Assert.assertEquals(0, buffer.position());
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 3);
+        buffer.put(bytes).put(new byte[]{1, 2, 3}).flip();
+        final GetLogResponse decoded = (GetLogResponse) SerializedMaintenanceChannel.read(buffer);
+        Assert.assertEquals(log.getLogContent(), decoded.getLogContent());
+        Assert.assertEquals(bytes.length, buffer.position());
+    }
+
+    @Test
+    public void testNewerVersionAndUnknownType() throws IOException {
+        // Eine neuere Version hängt Felder an, die ignoriert werden
+        final byte[] frame = MaintenanceCodec.encode(new ConnectionRequest("Keller"));
+        final byte[] extended = Arrays.copyOf(frame, frame.length + 4);
+        extended[0] = (byte) (MaintenanceCodec.VERSION + 1);
+        Assert.assertEquals("Keller", ((ConnectionRequest) MaintenanceCodec.decode(extended)).getLocation());
+
+        // Unbekannte Nachrichtentypen werden übersprungen
+        frame[1] = 100;
+        Assert.assertNull(MaintenanceCodec.decode(frame));
+    }
+
+    @Test
+    public void testBinaryAndSerializedClients() throws IOException, InterruptedException {
+        final int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        final MaintenanceServer server = new MaintenanceServer(port, 5000);
+        final MaintenanceClient client =
+                new MaintenanceClient("127.0.0.1", port, 5000, 0, "binary", new StatusHandler());
+        try (Socket legacy = new Socket("127.0.0.1", port)) {
+            // Ein Client vor Einführung des Binärformats
+            new ObjectOutputStream(legacy.getOutputStream()).writeObject(new ConnectionRequest("serialized"));
+            Assert.assertTrue(new ObjectInputStream(legacy.getInputStream()).readObject() instanceof
+                    ConnectionResponse);
+
+            final MaintenanceResponse response = server.getClientConnection("binary").sendQuery(new GetStatusRequest());
+            Assert.assertTrue(response instanceof GetStatusResponse);
+            Assert.assertEquals(BacklightStatus.OFF, ((GetStatusResponse) response).getBacklightStatus());
+
+            // Der Server meldet die Verbindung erst nach der Bestätigung an
+            for (int i = 0; i < 50 && server.getClientConnection("serialized") == null; i++) {
+                Thread.sleep(20);
+            }
+            Assert.assertNotNull(server.getClientConnection("serialized"));
+        } catch (final ClassNotFoundException e) {
+            Assert.fail(e.toString());
+        } finally {
+            client.shutdown();
+            server.shutdown();
+        }
+    }
+
+    private static class StatusHandler implements IMaintenanceMessageHandler {
+        @Override
+        public GetLogResponse handleGetLog(GetLogRequest request) {
+            return new GetLogResponse(request, Collections.emptyList());
+        }
+
+        @Override
+        public GetStatusResponse handleGetStatus(GetStatusRequest request) {
+            final GetStatusResponse response = new GetStatusResponse(request);
+            response.setBacklightStatus(BacklightStatus.OFF);
+            response.setRunningExecutionStatus(Collections.emptyList());
+            return response;
+        }
+
+        @Override
+        public void handleRestartApp(RestartAppRequest request) {
+        }
+    }
+}
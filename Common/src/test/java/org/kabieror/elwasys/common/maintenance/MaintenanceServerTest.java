@@ -0,0 +1,100 @@
+package org.kabieror.elwasys.common.maintenance;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prüft das gleichzeitige Stellen von Anfragen über eine Verbindung und die Zeitüberschreitung von Verbindungen.
+ *
+ * @author Oliver Kabierschke
+ */
+public class MaintenanceServerTest {
+
+    private static final int SERVER_TIMEOUT = 1000;
+
+    private MaintenanceServer server;
+
+    private int port;
+
+    @Before
+    public void setUp() throws IOException {
+        try (ServerSocket probe = new ServerSocket(0)) {
+            this.port = probe.getLocalPort();
+        }
+        this.server = new MaintenanceServer(this.port, SERVER_TIMEOUT);
+    }
+
+    @After
+    public void tearDown() {
+        this.server.shutdown();
+    }
+
+    @Test
+    public void testConcurrentQueries() throws Exception {
+        final MaintenanceClient client = new MaintenanceClient("127.0.0.1", this.port, 5000, 200, "Keller",
+                new LogHandler());
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final IClientConnection connection = this.awaitConnection("Keller");
+            final List<Future<MaintenanceResponse>> responses = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                responses.add(executor.submit(() -> connection.sendQuery(new GetLogRequest())));
+            }
+            for (final Future<MaintenanceResponse> response : responses) {
+                Assert.assertTrue(response.get(5, TimeUnit.SECONDS) instanceof GetLogResponse);
+            }
+        } finally {
+            executor.shutdownNow();
+            client.shutdown();
+        }
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        // Ohne Prüfung der Verbindung bleibt der Heartbeat aus
+        final MaintenanceClient client = new MaintenanceClient("127.0.0.1", this.port, 5000, 0, "Keller",
+                new LogHandler());
+        try {
+            Assert.assertNotNull(this.awaitConnection("Keller"));
+            Thread.sleep(SERVER_TIMEOUT + 500);
+            Assert.assertNull(this.server.getClientConnection("Keller"));
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    private IClientConnection awaitConnection(String location) throws InterruptedException {
+        for (int i = 0; i < 50 && this.server.getClientConnection(location) == null; i++) {
+            Thread.sleep(20);
+        }
+        return this.server.getClientConnection(location);
+    }
+
+    private static class LogHandler implements IMaintenanceMessageHandler {
+        @Override
+        public GetLogResponse handleGetLog(GetLogRequest request) {
+            return new GetLogResponse(request, Collections.singletonList("line"));
+        }
+
+        @Override
+        public GetStatusResponse handleGetStatus(GetStatusRequest request) {
+            return new GetStatusResponse(request);
+        }
+
+        @Override
+        public void handleRestartApp(RestartAppRequest request) {
+        }
+    }
+}
@@ -39,6 +39,7 @@ public class AdministratorLayout extends HorizontalLayout {
     private final View userGroupsView = new UserGroupsView();
     private final View programsView = new ProgramsView();
     private final View devicesView = new DevicesView();
+    private final View usageView = new UsageView();
 
     public AdministratorLayout(WaschportalUI ui) {
         // Layout über die ganze Seite erstrecken
@@ -59,6 +60,7 @@ public class AdministratorLayout extends HorizontalLayout {
         this.availableViews.add(UserGroupsView.VIEW_NAME);
         this.availableViews.add(ProgramsView.VIEW_NAME);
         this.availableViews.add(DevicesView.VIEW_NAME);
+        this.availableViews.add(UsageView.VIEW_NAME);
 
         // Navigator erzeugen
         this.navigator = new Navigator(ui, this.contentContainer);
@@ -68,6 +70,7 @@ public class AdministratorLayout extends HorizontalLayout {
         this.navigator.addView(UserGroupsView.VIEW_NAME, this.userGroupsView);
         this.navigator.addView(ProgramsView.VIEW_NAME, this.programsView);
         this.navigator.addView(DevicesView.VIEW_NAME, this.devicesView);
+        this.navigator.addView(UsageView.VIEW_NAME, this.usageView);
 
         // Hauptmenü erzeugen
         this.mainMenu = new MainMenu(ui, this.navigator);
@@ -80,6 +83,8 @@ public class AdministratorLayout extends HorizontalLayout {
                 this.programsView);
         this.mainMenu.addMenuItem("Geräte", DevicesView.VIEW_NAME, FontAwesome.CUBES,
                 this.devicesView);
+        this.mainMenu.addMenuItem("Auswertung", UsageView.VIEW_NAME, FontAwesome.BAR_CHART,
+                this.usageView);
 
         // Hauptmenü zum Layout hinzufügen
         this.mainMenu.addStyleName("valo-menu-part");
@@ -0,0 +1,16 @@
+package org.kabieror.elwasys.webportal;
+
+/**
+ * Eine Anmeldung wurde abgewiesen, ohne das Passwort zu prüfen, etwa nach zu vielen Fehlversuchen oder bei zu vielen
+ * gleichzeitigen Anmeldungen. Die Nachricht kann dem Benutzer angezeigt werden.
+ *
+ * @author Oliver Kabierschke
+ */
+public class LoginRejectedException extends Exception {
+
+    private static final long serialVersionUID = -4128850343402261597L;
+
+    public LoginRejectedException(String message) {
+        super(message);
+    }
+}
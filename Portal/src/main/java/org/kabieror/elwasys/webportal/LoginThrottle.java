@@ -0,0 +1,160 @@
+package org.kabieror.elwasys.webportal;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bremst wiederholte fehlgeschlagene Anmeldungen, getrennt nach Benutzername und IP-Adresse. Nach einigen freien
+ * Versuchen verdoppelt sich die Wartezeit mit jedem weiteren Fehlschlag.
+ * <p>
+ * Die Zähler liegen in Tabellen fester Größe, die über einen zufällig initialisierten Hash des Schlüssels adressiert
+ * werden, sodass der Speicherbedarf unabhängig von der Anzahl Angreifer bleibt. Jeder Eintrag hält einen Fingerabdruck
+ * des Schlüssels, die Anzahl Fehlschläge und den Zeitpunkt des letzten Fehlschlags in einem long. Ein Eintrag gehört
+ * dem Schlüssel, der ihn zuletzt belegt hat, bis er verfällt; Fehlschläge und Erfolge anderer Schlüssel, die sich den
+ * Eintrag teilen, werden so lange nicht gezählt. Damit kann niemand fremde Konten sperren oder freigeben.
+ *
+ * @author Oliver Kabierschke
+ */
+class LoginThrottle {
+
+    private static final int SLOTS = 4096;
+
+    /**
+     * Die Anzahl Fehlschläge, nach denen noch nicht gebremst wird.
+     */
+    private static final int FREE_ATTEMPTS = 5;
+
+    private static final long MAX_DELAY_SECONDS = Duration.ofMinutes(15).getSeconds();
+
+    /**
+     * Die Zeit nach dem letzten Fehlschlag, nach der ein Zähler verfällt.
+     */
+    private static final long RESET_SECONDS = Duration.ofHours(1).getSeconds();
+
+    /**
+     * Aufteilung eines Eintrags: 22 Bit Fingerabdruck, 8 Bit Anzahl Fehlschläge, 34 Bit Sekunden seit der Epoche.
+     */
+    private static final int COUNT_SHIFT = 34;
+    private static final int FINGERPRINT_SHIFT = 42;
+    private static final long TIME_MASK = (1L << COUNT_SHIFT) - 1;
+    private static final long MAX_COUNT = 0xFF;
+
+    private final AtomicLongArray accounts = new AtomicLongArray(SLOTS);
+    private final AtomicLongArray addresses = new AtomicLongArray(SLOTS);
+
+    private final long seed;
+
+    LoginThrottle() {
+        this(new SecureRandom().nextLong());
+    }
+
+    /**
+     * @param seed Der Startwert des Hashs, der die Einträge der Schlüssel bestimmt
+     */
+    LoginThrottle(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Gibt die Zeit zurück, die bis zum nächsten erlaubten Versuch noch zu warten ist.
+     *
+     * @param username Der angegebene Benutzername
+     * @param address  Die IP-Adresse des Anfragenden
+     * @return Die Wartezeit, oder {@link Duration#ZERO}, falls ein Versuch erlaubt ist
+     */
+    Duration getRemainingDelay(String username, String address) {
+        final long now = this.now();
+        final long account = this.hash(normalize(username));
+        final long addressHash = this.hash(address);
+        final long seconds = Math.max(remaining(this.accounts.get(slot(account)), fingerprint(account), now),
+                remaining(this.addresses.get(slot(addressHash)), fingerprint(addressHash), now));
+        return Duration.ofSeconds(seconds);
+    }
+
+    /**
+     * Zählt einen fehlgeschlagenen Versuch.
+     */
+    void onFailure(String username, String address) {
+        final long now = this.now();
+        increment(this.accounts, this.hash(normalize(username)), now);
+        increment(this.addresses, this.hash(address), now);
+    }
+
+    /**
+     * Setzt den Zähler eines Benutzernamens nach erfolgreicher Anmeldung zurück. Der Zähler der IP-Adresse bleibt
+     * bestehen, damit ein gültiges Konto nicht zum Durchprobieren anderer Konten genutzt werden kann.
+     */
+    void onSuccess(String username) {
+        final long hash = this.hash(normalize(username));
+        this.accounts.updateAndGet(slot(hash), entry -> fingerprint(entry) == fingerprint(hash) ? 0 : entry);
+    }
+
+    /**
+     * Gibt die aktuelle Zeit in Sekunden seit der Epoche zurück.
+     */
+    long now() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    private static void increment(AtomicLongArray table, long hash, long now) {
+        final long fingerprint = fingerprint(hash);
+        table.updateAndGet(slot(hash), entry -> {
+            long count = count(entry);
+            if (count == 0 || now - time(entry) >= RESET_SECONDS) {
+                count = 0;
+            } else if (fingerprint(entry) != fingerprint) {
+                // Der Eintrag gehört einem anderen Schlüssel
+                return entry;
+            }
+            return (fingerprint << FINGERPRINT_SHIFT) | (Math.min(count + 1, MAX_COUNT) << COUNT_SHIFT) |
+                    (now & TIME_MASK);
+        });
+    }
+
+    private static long remaining(long entry, long fingerprint, long now) {
+        final long count = count(entry);
+        if (count < FREE_ATTEMPTS || fingerprint(entry) != fingerprint || now - time(entry) >= RESET_SECONDS) {
+            return 0;
+        }
+        final long delay = count - FREE_ATTEMPTS >= 20 ? MAX_DELAY_SECONDS :
+                Math.min(1L << (count - FREE_ATTEMPTS), MAX_DELAY_SECONDS);
+        return Math.max(0, time(entry) + delay - now);
+    }
+
+    private static long count(long entry) {
+        return (entry >>> COUNT_SHIFT) & MAX_COUNT;
+    }
+
+    private static long time(long entry) {
+        return entry & TIME_MASK;
+    }
+
+    private static String normalize(String username) {
+        return username.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Berechnet den Hash eines Schlüssels. Die unteren Bits bestimmen den Eintrag, die oberen den Fingerabdruck.
+     */
+    long hash(String key) {
+        long h = this.seed;
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    static int slot(long hash) {
+        return (int) hash & (SLOTS - 1);
+    }
+
+    private static long fingerprint(long hashOrEntry) {
+        return hashOrEntry >>> FINGERPRINT_SHIFT;
+    }
+}
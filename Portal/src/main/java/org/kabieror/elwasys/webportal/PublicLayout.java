@@ -89,6 +89,12 @@ public class PublicLayout extends VerticalLayout {
                     // Login erfolgreich
                     ui.loadSessionContent();
                 }
+            } catch (final LoginRejectedException e1) {
+                final Notification msg = new Notification("Login nicht möglich", e1.getMessage());
+                msg.setDelayMsec(3000);
+                msg.setPosition(Position.TOP_CENTER);
+                msg.setStyleName("error bar");
+                msg.show(Page.getCurrent());
             } catch (final SQLException e1) {
                 this.logger.error("Failed to log user in.", e1);
                 final Notification msg = new Notification("Datenbankfehler", e1.getMessage());
@@ -1,9 +1,17 @@
 package org.kabieror.elwasys.webportal;
 
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinService;
 import com.vaadin.server.VaadinSession;
+import org.kabieror.elwasys.common.IPasswordHasher;
 import org.kabieror.elwasys.common.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.*;
 
 public class SessionManager {
 
@@ -11,34 +19,136 @@ public class SessionManager {
 
     public final static String ATTRIBUTE_USER = "user";
 
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final LoginThrottle throttle = new LoginThrottle();
+
+    /**
+     * Die Adressen der Reverse-Proxies, deren Angabe der Adresse des Anfragenden vertraut wird
+     */
+    private final Set<String> trustedProxies;
+
+    /**
+     * Prüft Passwörter mit einer begrenzten Anzahl Threads. Ist die Warteschlange voll, werden weitere Anmeldungen
+     * sofort abgewiesen, statt die Threads der Anfragen mit Warten zu belegen.
+     */
+    private final ThreadPoolExecutor verificationExecutor;
+
     /**
-     * Registriert die aktuelle Session als Admin-Session
+     * Ein Hash, gegen den das Passwort unbekannter Benutzernamen geprüft wird, damit diese nicht an der Antwortzeit zu
+     * erkennen sind. Wird mit der ersten Anmeldung eines unbekannten Benutzernamens erzeugt.
+     */
+    private volatile String dummyHash;
+
+    public SessionManager(WashportalConfiguration config) {
+        this.trustedProxies = config.getLoginTrustedProxies();
+        final int threads = config.getLoginVerificationThreads();
+        this.verificationExecutor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(config.getLoginVerificationQueueSize()), r -> {
+            final Thread t = new Thread(r, "PasswordVerification");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Meldet einen Benutzer in der aktuellen Session an.
      *
-     * @throws SQLException
+     * @return True, wenn die Anmeldedaten korrekt sind
+     * @throws SQLException            Wenn der Benutzer nicht geladen werden kann
+     * @throws LoginRejectedException Wenn die Anmeldung wegen zu vieler Versuche oder zu hoher Last abgewiesen wird
      */
-    public boolean login(String username, String password) throws SQLException {
+    public boolean login(String username, String password) throws SQLException, LoginRejectedException {
         if (username == null || username.isEmpty() || password == null) {
             return false;
         }
-        for (final User u : WashportalManager.instance.getDataManager().getUsers()) {
-            if (u.getUsername().equalsIgnoreCase(username)) {
-                if (u.checkPassword(password)) {
-                    u.updateLastLogin();
-                    if (u.isAdmin()) {
-                        VaadinSession.getCurrent().setAttribute(ATTRIBUTE_AUTHORIZED,
-                                AuthorizedType.ADMINISTRATOR);
-                    } else {
-                        VaadinSession.getCurrent().setAttribute(ATTRIBUTE_AUTHORIZED,
-                                AuthorizedType.USER);
-                    }
-                    VaadinSession.getCurrent().setAttribute(ATTRIBUTE_USER, u);
-                    return true;
-                } else {
-                    return false;
+        final String address = this.getRemoteAddress();
+        final Duration delay = this.throttle.getRemainingDelay(username, address);
+        if (!delay.isZero()) {
+            this.logger.info("Rejected login of '" + username + "' from " + address + " for another " +
+                    delay.getSeconds() + " seconds.");
+            throw new LoginRejectedException("Zu viele fehlgeschlagene Anmeldungen. Bitte in " +
+                    Math.max(1, delay.getSeconds()) + " Sekunden erneut versuchen.");
+        }
+
+        final User u = WashportalManager.instance.getDataManager().getUserByUsername(username);
+        final boolean valid;
+        if (u == null) {
+            // Ebenso lange prüfen wie bei einem bekannten Benutzer
+            final IPasswordHasher hasher = WashportalManager.instance.getDataManager().getPasswordHasher();
+            final String hash = this.getDummyHash(hasher);
+            this.verifyPassword("unknown user", () -> {
+                hasher.verify(password, hash);
+                return false;
+            });
+            valid = false;
+        } else {
+            valid = this.verifyPassword("user " + u.getId(), () -> u.checkPassword(password));
+        }
+        if (!valid) {
+            this.throttle.onFailure(username, address);
+            return false;
+        }
+        this.throttle.onSuccess(username);
+        u.updateLastLogin();
+        if (u.isAdmin()) {
+            VaadinSession.getCurrent().setAttribute(ATTRIBUTE_AUTHORIZED,
+                    AuthorizedType.ADMINISTRATOR);
+        } else {
+            VaadinSession.getCurrent().setAttribute(ATTRIBUTE_AUTHORIZED,
+                    AuthorizedType.USER);
+        }
+        VaadinSession.getCurrent().setAttribute(ATTRIBUTE_USER, u);
+        return true;
+    }
+
+    private String getDummyHash(IPasswordHasher hasher) {
+        if (this.dummyHash == null) {
+            this.dummyHash = hasher.hash("dummy");
+        }
+        return this.dummyHash;
+    }
+
+    private boolean verifyPassword(String subject, Callable<Boolean> check) throws LoginRejectedException {
+        final Future<Boolean> result;
+        try {
+            result = this.verificationExecutor.submit(check);
+        } catch (final RejectedExecutionException e) {
+            this.logger.warn("Too many concurrent logins. Rejected login of " + subject + ".");
+            throw new LoginRejectedException("Zu viele gleichzeitige Anmeldungen. Bitte erneut versuchen.");
+        }
+        try {
+            return result.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.cancel(true);
+            throw new LoginRejectedException("Die Anmeldung wurde abgebrochen.");
+        } catch (final ExecutionException e) {
+            this.logger.error("Could not verify the password of " + subject + ".", e.getCause());
+            return false;
+        }
+    }
+
+    private String getRemoteAddress() {
+        final VaadinRequest request = VaadinService.getCurrentRequest();
+        if (request == null || request.getRemoteAddr() == null) {
+            return "unknown";
+        }
+        String address = request.getRemoteAddr();
+        final String forwarded = request.getHeader("X-Forwarded-For");
+        if (forwarded != null && this.trustedProxies.contains(address)) {
+            // Von rechts die erste Adresse, die nicht von einem vertrauenswürdigen Proxy eingetragen wurde. Weiter
+            // links stehende Adressen kann der Anfragende selbst vorgeben.
+            final String[] hops = forwarded.split(",");
+            for (int i = hops.length - 1; i >= 0 && this.trustedProxies.contains(address); i--) {
+                final String hop = hops[i].trim();
+                if (hop.isEmpty()) {
+                    break;
                 }
+                address = hop;
             }
         }
-        return false;
+        return address;
     }
 
     public void logout() {
@@ -1,5 +1,6 @@
 package org.kabieror.elwasys.webportal;
 
+import com.vaadin.annotations.Push;
 import com.vaadin.annotations.Theme;
 import com.vaadin.annotations.Title;
 import com.vaadin.annotations.VaadinServletConfiguration;
@@ -18,6 +19,7 @@ import java.sql.SQLException;
 
 @SuppressWarnings("serial")
 @Theme("waschportal")
+@Push
 @Title("Waschportal")
 public class WaschportalUI extends UI {
 
@@ -3,6 +3,9 @@ package org.kabieror.elwasys.webportal;
 import org.kabieror.elwasys.common.ConfigurationManager;
 
 import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Dieser Manager verwaltet die Konfiguration des Waschportals
@@ -54,4 +57,108 @@ public class WashportalConfiguration extends ConfigurationManager {
         }
         return res;
     }
+
+    /**
+     * Gibt die Anzahl Threads zurück, die Passwörter bei der Anmeldung prüfen.
+     */
+    public int getLoginVerificationThreads() {
+        return Math.max(1, this.getIntProperty("login.verification.threads",
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2)));
+    }
+
+    /**
+     * Gibt die Anzahl Anmeldungen zurück, die auf die Prüfung ihres Passworts warten dürfen. Weitere Anmeldungen
+     * werden abgewiesen.
+     */
+    public int getLoginVerificationQueueSize() {
+        return Math.max(1, this.getIntProperty("login.verification.queueSize", 16));
+    }
+
+    /**
+     * Gibt die Adressen der Reverse-Proxies zurück, deren Header X-Forwarded-For für die Adresse des Anfragenden
+     * vertraut wird.
+     */
+    public Set<String> getLoginTrustedProxies() {
+        final Set<String> proxies = new HashSet<>();
+        for (final String proxy : this.props.getProperty("login.trustedProxies", "").split(",")) {
+            if (!proxy.trim().isEmpty()) {
+                proxies.add(proxy.trim());
+            }
+        }
+        return proxies;
+    }
+
+    /**
+     * Gibt den Abstand zurück, in dem die Kontostände der Benutzer mit den Buchungen abgeglichen werden.
+     *
+     * @return Der Abstand zwischen zwei Abgleichen in Stunden.
+     */
+    public int getCreditReconciliationInterval() {
+        return Math.max(1, this.getIntProperty("credit.reconciliation.interval", 24));
+    }
+
+    /**
+     * Gibt den Abstand zurück, in dem nach Ausführungen gesucht wird, die von keinem Client beendet wurden.
+     *
+     * @return Der Abstand zwischen zwei Suchen in Minuten.
+     */
+    public int getExpiredExecutionInterval() {
+        return Math.max(1, this.getIntProperty("execution.expired.interval", 15));
+    }
+
+    /**
+     * Gibt die Zeit zurück, die einem Client über die Höchstdauer eines Programms hinaus zum Beenden einer Ausführung
+     * gelassen wird, bevor sie ohne ihn abgerechnet wird.
+     *
+     * @return Die Karenzzeit in Minuten.
+     */
+    public int getExpiredExecutionGracePeriod() {
+        return Math.max(0, this.getIntProperty("execution.expired.gracePeriod", 30));
+    }
+
+    /**
+     * Gibt den Strompreis zurück, mit dem die Energiekosten in der Auswertung berechnet werden.
+     *
+     * @return Der Preis je kWh, oder null, falls keiner eingestellt ist.
+     */
+    public BigDecimal getEnergyPrice() {
+        final String price = this.props.getProperty("energy.price", "").trim();
+        if (price.isEmpty()) {
+            return null;
+        }
+        try {
+            return new BigDecimal(price);
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Gibt die Zeit zurück, für die einzelne Leistungsmesswerte aufbewahrt werden, bevor sie zu Minuten verdichtet
+     * werden.
+     *
+     * @return Die Aufbewahrungszeit in Tagen.
+     */
+    public int getTelemetrySampleRetention() {
+        return Math.max(1, this.getIntProperty("telemetry.sampleRetention", 7));
+    }
+
+    /**
+     * Gibt die Zeit zurück, für die Minutenwerte der Leistung aufbewahrt werden, bevor sie zu Stunden verdichtet
+     * werden.
+     *
+     * @return Die Aufbewahrungszeit in Tagen.
+     */
+    public int getTelemetryMinuteRetention() {
+        return Math.max(1, this.getIntProperty("telemetry.minuteRetention", 90));
+    }
+
+    /**
+     * Gibt die Zeit zurück, für die Stundenwerte der Leistung aufbewahrt werden.
+     *
+     * @return Die Aufbewahrungszeit in Tagen, oder 0, falls sie nie gelöscht werden.
+     */
+    public int getTelemetryHourRetention() {
+        return Math.max(0, this.getIntProperty("telemetry.hourRetention", 730));
+    }
 }
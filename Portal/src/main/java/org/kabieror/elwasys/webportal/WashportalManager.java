@@ -3,13 +3,20 @@ package org.kabieror.elwasys.webportal;
 import com.vaadin.server.Page;
 import com.vaadin.shared.Position;
 import com.vaadin.ui.Notification;
+import org.kabieror.elwasys.common.CreditBalanceReconciler;
+import org.kabieror.elwasys.common.ExpiredExecutionReconciler;
 import org.kabieror.elwasys.common.DataManager;
+import org.kabieror.elwasys.common.PowerTelemetryCompactor;
 import org.kabieror.elwasys.common.Utilities;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Dieser Manager verbindet alle anderen Teile der Anwendung und hält u.a.
@@ -38,6 +45,8 @@ public class WashportalManager {
 
     private WashportalUtilities utilities;
 
+    private ScheduledExecutorService reconciliationExecutor;
+
     private WashportalManager() {
         this.logger.info("----------------------------------------------------------------");
         this.logger.info("WASHPORTAL " + WashportalManager.VERSION);
@@ -80,10 +89,56 @@ public class WashportalManager {
         } catch (IOException e) {
             this.logger.error("Cannot start Maintenance Server.", e);
         }
-        this.sessionManager = new SessionManager();
+        this.sessionManager = new SessionManager(this.configurationManager);
+        this.startCreditReconciliation();
         this.logger.debug("Managers initiated");
     }
 
+    /**
+     * Gleicht die Kontostände der Benutzer regelmäßig mit den Buchungen ab und rechnet Ausführungen ab, die von keinem
+     * Client beendet wurden. Verdichtet außerdem stündlich die gespeicherten Leistungsmesswerte.
+     */
+    private void startCreditReconciliation() {
+        final CreditBalanceReconciler reconciler = new CreditBalanceReconciler(this.dataManager);
+        final int interval = this.configurationManager.getCreditReconciliationInterval();
+        this.reconciliationExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread t = new Thread(r, "CreditBalanceReconciler");
+            t.setDaemon(true);
+            return t;
+        });
+        this.reconciliationExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                reconciler.reconcile();
+            } catch (final SQLException | RuntimeException e) {
+                this.logger.error("Could not reconcile the credit balances.", e);
+            }
+        }, 0, interval, TimeUnit.HOURS);
+
+        final ExpiredExecutionReconciler expiredExecutions = new ExpiredExecutionReconciler(this.dataManager,
+                Duration.ofMinutes(this.configurationManager.getExpiredExecutionGracePeriod()));
+        final int expiredInterval = this.configurationManager.getExpiredExecutionInterval();
+        this.reconciliationExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                expiredExecutions.reconcile();
+            } catch (final SQLException | RuntimeException e) {
+                this.logger.error("Could not settle the expired executions.", e);
+            }
+        }, 0, expiredInterval, TimeUnit.MINUTES);
+
+        final int hourRetention = this.configurationManager.getTelemetryHourRetention();
+        final PowerTelemetryCompactor compactor = new PowerTelemetryCompactor(this.dataManager,
+                Duration.ofDays(this.configurationManager.getTelemetrySampleRetention()),
+                Duration.ofDays(this.configurationManager.getTelemetryMinuteRetention()),
+                hourRetention > 0 ? Duration.ofDays(hourRetention) : null);
+        this.reconciliationExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                compactor.compact();
+            } catch (final SQLException | RuntimeException e) {
+                this.logger.error("Could not compact the power telemetry.", e);
+            }
+        }, 0, 1, TimeUnit.HOURS);
+    }
+
     public WashportalConfiguration getConfigurationManager() {
         return this.configurationManager;
     }
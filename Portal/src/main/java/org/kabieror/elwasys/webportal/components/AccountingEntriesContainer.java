@@ -0,0 +1,67 @@
+package org.kabieror.elwasys.webportal.components;
+
+import com.vaadin.data.Item;
+import org.kabieror.elwasys.common.CreditAccountingEntry;
+import org.kabieror.elwasys.common.User;
+import org.kabieror.elwasys.webportal.WashportalManager;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Stellt die Buchungen eines Benutzers, die jüngsten zuerst, für eine Tabelle bereit.
+ *
+ * @author Oliver Kabierschke
+ */
+public class AccountingEntriesContainer extends PagedContainer<CreditAccountingEntry> {
+
+    private static final long serialVersionUID = -1467318720373946162L;
+
+    private final User user;
+
+    private final Object dateProperty;
+    private final Object amountProperty;
+    private final Object textProperty;
+
+    /**
+     * @param user           Der Benutzer, dessen Buchungen angezeigt werden
+     * @param dateProperty   Die Id der Eigenschaft für das Buchungsdatum
+     * @param amountProperty Die Id der Eigenschaft für den Betrag
+     * @param textProperty   Die Id der Eigenschaft für den Buchungstext
+     */
+    public AccountingEntriesContainer(User user, Object dateProperty, Object amountProperty, Object textProperty) {
+        this.user = user;
+        this.dateProperty = dateProperty;
+        this.amountProperty = amountProperty;
+        this.textProperty = textProperty;
+
+        this.addProperty(dateProperty, LocalDateTime.class);
+        this.addProperty(amountProperty, BigDecimal.class);
+        this.addProperty(textProperty, String.class);
+    }
+
+    @Override
+    protected int count() throws SQLException {
+        return WashportalManager.instance.getDataManager().getAccountingEntryCount(this.user);
+    }
+
+    @Override
+    protected List<CreditAccountingEntry> load(int offset, int limit) throws SQLException {
+        return WashportalManager.instance.getDataManager().getAccountingEntries(this.user, offset, limit);
+    }
+
+    @Override
+    protected Object getId(CreditAccountingEntry entry) {
+        return entry.getId();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void fill(Item i, CreditAccountingEntry e) {
+        i.getItemProperty(this.dateProperty).setValue(e.getDate());
+        i.getItemProperty(this.amountProperty).setValue(e.getAmount());
+        i.getItemProperty(this.textProperty).setValue(e.getDescription());
+    }
+}
@@ -1,20 +1,13 @@
 package org.kabieror.elwasys.webportal.components;
 
-import com.vaadin.data.Item;
 import com.vaadin.data.util.converter.StringToBigDecimalConverter;
 import com.vaadin.ui.Table;
-import com.vaadin.ui.Table.Align;
 import com.vaadin.ui.VerticalLayout;
 import com.vaadin.ui.Window;
-import org.kabieror.elwasys.common.CreditAccountingEntry;
 import org.kabieror.elwasys.common.User;
-import org.kabieror.elwasys.webportal.WashportalManager;
 
-import java.math.BigDecimal;
 import java.sql.SQLException;
 import java.text.NumberFormat;
-import java.time.LocalDateTime;
-import java.util.List;
 import java.util.Locale;
 
 /**
@@ -29,7 +22,6 @@ public class CreditAccountingWindow extends Window {
      */
     private static final long serialVersionUID = -4365804859608421600L;
 
-    @SuppressWarnings("unchecked")
     public CreditAccountingWindow(User user) throws SQLException {
         this.setCaption("Umsätze von Benutzer " + user.getName());
         this.setWidth("60em");
@@ -50,9 +42,12 @@ public class CreditAccountingWindow extends Window {
         table.setMultiSelect(false);
         table.setSelectable(false);
 
-        table.addContainerProperty("date", LocalDateTime.class, null, "Datum", null, Align.LEFT);
-        table.addContainerProperty("amount", BigDecimal.class, null, "Betrag", null, Align.LEFT);
-        table.addContainerProperty("text", String.class, null, "Buchungstext", null, Align.LEFT);
+        // Die Buchungen werden erst beim Blättern abschnittsweise geladen
+        table.setContainerDataSource(new AccountingEntriesContainer(user, "date", "amount", "text"));
+        table.setSortEnabled(false);
+        table.setColumnHeader("date", "Datum");
+        table.setColumnHeader("amount", "Betrag");
+        table.setColumnHeader("text", "Buchungstext");
 
         table.setColumnWidth("date", 150);
         table.setColumnWidth("amount", 100);
@@ -66,14 +61,5 @@ public class CreditAccountingWindow extends Window {
                 return NumberFormat.getCurrencyInstance(locale);
             }
         });
-
-        final List<CreditAccountingEntry> entries = WashportalManager.instance.getDataManager()
-                .getAccountingEntries(user);
-        for (final CreditAccountingEntry e : entries) {
-            final Item i = table.addItem(e.getId());
-            i.getItemProperty("date").setValue(e.getDate());
-            i.getItemProperty("amount").setValue(e.getAmount());
-            i.getItemProperty("text").setValue(e.getDescription());
-        }
     }
 }
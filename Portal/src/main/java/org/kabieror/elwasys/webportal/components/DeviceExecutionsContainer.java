@@ -0,0 +1,71 @@
+package org.kabieror.elwasys.webportal.components;
+
+import com.vaadin.data.Item;
+import org.apache.commons.lang3.time.DurationFormatUtils;
+import org.kabieror.elwasys.common.Device;
+import org.kabieror.elwasys.common.Execution;
+import org.kabieror.elwasys.webportal.WashportalManager;
+
+import java.sql.SQLException;
+import java.text.NumberFormat;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Stellt die Ausführungen eines Geräts, die jüngsten zuerst, für eine Tabelle bereit.
+ *
+ * @author Oliver Kabierschke
+ */
+public class DeviceExecutionsContainer extends PagedContainer<Execution> {
+
+    public static final String DATE_PROPERTY = "date";
+    public static final String USER_PROPERTY = "user";
+    public static final String DURATION_PROPERTY = "duration";
+    public static final String PRICE_PROPERTY = "price";
+
+    private static final long serialVersionUID = -2380374951227718043L;
+
+    private final Device device;
+
+    private final DateTimeFormatter dateTimeFormat = DateTimeFormatter.ofLocalizedDateTime(FormatStyle.SHORT);
+
+    private final NumberFormat currencyFormat;
+
+    public DeviceExecutionsContainer(Device device, Locale locale) {
+        this.device = device;
+        this.currencyFormat = NumberFormat.getCurrencyInstance(locale);
+
+        this.addProperty(DATE_PROPERTY, String.class);
+        this.addProperty(USER_PROPERTY, String.class);
+        this.addProperty(DURATION_PROPERTY, String.class);
+        this.addProperty(PRICE_PROPERTY, String.class);
+    }
+
+    @Override
+    protected int count() throws SQLException {
+        return WashportalManager.instance.getDataManager().getExecutionCount(this.device);
+    }
+
+    @Override
+    protected List<Execution> load(int offset, int limit) throws SQLException {
+        return WashportalManager.instance.getDataManager().getExecutions(this.device, offset, limit);
+    }
+
+    @Override
+    protected Object getId(Execution execution) {
+        return execution.getId();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void fill(Item item, Execution e) {
+        item.getItemProperty(DATE_PROPERTY)
+                .setValue(e.getStartDate() != null ? e.getStartDate().format(this.dateTimeFormat) : "-");
+        item.getItemProperty(USER_PROPERTY).setValue(e.getUser() != null ? e.getUser().getName() : "-");
+        item.getItemProperty(DURATION_PROPERTY).setValue(
+                DurationFormatUtils.formatDuration(e.getElapsedTime().getSeconds() * 1000, "HH:mm:ss") + "h");
+        item.getItemProperty(PRICE_PROPERTY).setValue(this.currencyFormat.format(e.getPrice()));
+    }
+}
@@ -1,15 +1,62 @@
 package org.kabieror.elwasys.webportal.components;
 
-import com.vaadin.ui.TextArea;
-import com.vaadin.ui.VerticalLayout;
-import com.vaadin.ui.Window;
-import org.apache.commons.lang3.StringUtils;
+import com.vaadin.data.Item;
+import com.vaadin.server.FontAwesome;
+import com.vaadin.ui.*;
+import org.kabieror.elwasys.common.maintenance.GetLogRequest;
+import org.kabieror.elwasys.common.maintenance.GetLogResponse;
+import org.kabieror.elwasys.common.maintenance.IClientConnection;
+import org.kabieror.elwasys.common.maintenance.MaintenanceResponse;
+import org.kabieror.elwasys.webportal.WashportalManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.List;
 
+/**
+ * Zeigt die Log-Datei eines Clients an. Die Datei wird in Abschnitten vom Ende her geladen; ältere Abschnitte werden
+ * erst auf Anforderung abgefragt. Die Tabelle überträgt nur die sichtbaren Zeilen an den Browser.
+ *
+ * @author Oliver Kabierschke
+ */
 public class LogViewerWindow extends Window {
 
-    public LogViewerWindow(List<String> logContents) {
+    private static final long serialVersionUID = 4283915573960188041L;
+
+    /**
+     * Die Anzahl Zeilen, die pro Abschnitt abgefragt werden.
+     */
+    private static final int CHUNK_LINES = 500;
+
+    private static final String LINE_PROPERTY = "line";
+
+    private static final String ALL_LEVELS = "Alle";
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final IClientConnection connection;
+
+    private final Table table;
+
+    private final NativeSelect levelSelect;
+
+    private final Button btnLoadOlder;
+
+    /**
+     * Der Byte-Offset, vor dem der nächste ältere Abschnitt gelesen wird.
+     */
+    private long nextOffset = 0;
+
+    private int nextItemId = 0;
+
+    /**
+     * @param connection Die Verbindung zum Client, dessen Log angezeigt werden soll
+     * @throws IOException Falls der erste Abschnitt nicht abgefragt werden kann
+     */
+    public LogViewerWindow(IClientConnection connection) throws IOException {
+        this.connection = connection;
+
         this.setCaption("Log");
         this.setClosable(true);
         this.setModal(true);
@@ -19,16 +66,92 @@ public class LogViewerWindow extends Window {
 
         final VerticalLayout content = new VerticalLayout();
         content.setSizeFull();
+        content.setMargin(true);
+        content.setSpacing(true);
+
+        final HorizontalLayout topLayout = new HorizontalLayout();
+        content.addComponent(topLayout);
+        topLayout.setSpacing(true);
 
-        final TextArea tfLog = new TextArea();
+        this.levelSelect = new NativeSelect();
+        topLayout.addComponent(this.levelSelect);
+        this.levelSelect.addItems(ALL_LEVELS, "DEBUG", "INFO", "WARN", "ERROR");
+        this.levelSelect.setNullSelectionAllowed(false);
+        this.levelSelect.setValue(ALL_LEVELS);
+        this.levelSelect.setDescription("Nur Einträge ab diesem Log-Level anzeigen");
+        this.levelSelect.addValueChangeListener(e -> {
+            this.table.removeAllItems();
+            this.nextOffset = 0;
+            this.loadChunk();
+        });
 
-        tfLog.setSizeFull();
-        tfLog.setValue(StringUtils.join(logContents, "\n"));
-        tfLog.setReadOnly(true);
-        tfLog.addStyleName("log-textfield");
+        this.btnLoadOlder = new Button("Ältere Einträge laden");
+        topLayout.addComponent(this.btnLoadOlder);
+        this.btnLoadOlder.setIcon(FontAwesome.ARROW_UP);
+        this.btnLoadOlder.addStyleName("small");
+        this.btnLoadOlder.addClickListener(e -> this.loadChunk());
 
-        content.addComponent(tfLog);
+        this.table = new Table();
+        content.addComponent(this.table);
+        content.setExpandRatio(this.table, 1);
+        this.table.setSizeFull();
+        this.table.addStyleName("log-textfield");
+        this.table.setSortEnabled(false);
+        this.table.setColumnHeaderMode(Table.ColumnHeaderMode.HIDDEN);
+        this.table.addContainerProperty(LINE_PROPERTY, String.class, null);
 
         this.setContent(content);
+
+        this.requestChunk();
+    }
+
+    /**
+     * Lädt den nächsten älteren Abschnitt und zeigt Fehler an.
+     */
+    private void loadChunk() {
+        try {
+            this.requestChunk();
+        } catch (final IOException e) {
+            this.logger.error("Could not load the log.", e);
+            WashportalManager.instance.showError(e);
+        }
+    }
+
+    /**
+     * Fragt den nächsten älteren Abschnitt ab und stellt ihn vor die bereits geladenen Zeilen.
+     */
+    private void requestChunk() throws IOException {
+        final String level = ALL_LEVELS.equals(this.levelSelect.getValue()) ? null : (String) this.levelSelect
+                .getValue();
+        final MaintenanceResponse res =
+                this.connection.sendQuery(new GetLogRequest(CHUNK_LINES, this.nextOffset, null, level));
+        if (!(res instanceof GetLogResponse)) {
+            throw new IOException("Expected GetLogResponse but got " + res.getClass().getName());
+        }
+        final GetLogResponse response = (GetLogResponse) res;
+        final boolean initial = this.table.size() == 0;
+
+        final List<String> lines = response.getLogContent();
+        Object firstId = null;
+        Object previousId = null;
+        for (final String line : lines) {
+            final Object id = this.nextItemId++;
+            final Item item = this.table.addItemAfter(previousId, id);
+            item.getItemProperty(LINE_PROPERTY).setValue(line);
+            if (firstId == null) {
+                firstId = id;
+            }
+            previousId = id;
+        }
+
+        this.nextOffset = response.getStartOffset();
+        this.btnLoadOlder.setEnabled(response.hasMore());
+
+        if (initial && this.table.size() > 0) {
+            // Die jüngsten Einträge stehen am Ende
+            this.table.setCurrentPageFirstItemId(this.table.lastItemId());
+        } else if (firstId != null) {
+            this.table.setCurrentPageFirstItemId(firstId);
+        }
     }
 }
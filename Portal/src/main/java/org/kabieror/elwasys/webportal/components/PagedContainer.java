@@ -0,0 +1,338 @@
+package org.kabieror.elwasys.webportal.components;
+
+import com.vaadin.data.Container;
+import com.vaadin.data.Item;
+import com.vaadin.data.Property;
+import com.vaadin.data.util.AbstractContainer;
+import com.vaadin.data.util.ObjectProperty;
+import com.vaadin.data.util.PropertysetItem;
+import org.kabieror.elwasys.webportal.WashportalManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Stellt Entitäten für eine Tabelle bereit, wobei nur der Ausschnitt aus der Datenbank geladen wird, den die Tabelle
+ * gerade anzeigt. Die Anzahl der Entitäten wird einmalig gezählt und erst mit {@link #refresh()} neu ermittelt.
+ *
+ * @param <T> Der Typ der angezeigten Entitäten
+ * @author Oliver Kabierschke
+ */
+public abstract class PagedContainer<T> extends AbstractContainer
+        implements Container.Indexed, Container.ItemSetChangeNotifier {
+
+    private static final long serialVersionUID = 5123290365386440121L;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final Map<Object, Class<?>> properties = new LinkedHashMap<>();
+
+    /**
+     * Die Anzahl Entitäten, oder -1 falls sie neu gezählt werden muss.
+     */
+    private int size = -1;
+
+    /**
+     * Der Index der ersten geladenen Entität.
+     */
+    private int pageStart = 0;
+
+    /**
+     * Die Ids der geladenen Entitäten in Reihenfolge der Anzeige.
+     */
+    private final List<Object> pageIds = new ArrayList<>();
+
+    /**
+     * Die geladenen Entitäten mit ihren Zeilen.
+     */
+    private final Map<Object, Row> rows = new HashMap<>();
+
+    /**
+     * Registriert eine Eigenschaft, die für jede Entität in {@link #fill(Item, Object)} befüllt wird.
+     */
+    protected void addProperty(Object propertyId, Class<?> type) {
+        this.properties.put(propertyId, type);
+    }
+
+    /**
+     * Zählt alle anzuzeigenden Entitäten.
+     */
+    protected abstract int count() throws SQLException;
+
+    /**
+     * Lädt einen Ausschnitt der Entitäten in der angezeigten Reihenfolge.
+     */
+    protected abstract List<T> load(int offset, int limit) throws SQLException;
+
+    /**
+     * Gibt die Id einer Entität zurück, die auch als Id der Zeile dient.
+     */
+    protected abstract Object getId(T entity);
+
+    /**
+     * Befüllt die Eigenschaften einer Zeile mit den Daten einer Entität.
+     */
+    protected abstract void fill(Item item, T entity);
+
+    /**
+     * Wird aufgerufen, nachdem ein Ausschnitt geladen wurde und bevor dessen Zeilen befüllt werden, etwa um
+     * zusätzliche Daten für alle Entitäten des Ausschnitts in einer Abfrage zu laden.
+     */
+    protected void onPageLoaded(List<T> entities) throws SQLException {
+    }
+
+    /**
+     * Verwirft alle geladenen Entitäten, sodass die Tabelle den angezeigten Ausschnitt neu abfragt.
+     */
+    public void refresh() {
+        this.size = -1;
+        this.pageIds.clear();
+        this.rows.clear();
+        this.fireItemSetChange();
+    }
+
+    /**
+     * Aktualisiert die Zeile einer Entität, falls sie geladen ist.
+     *
+     * @param entity Die geänderte Entität
+     * @return True, falls die Zeile aktualisiert wurde. Andernfalls muss der Container mit {@link #refresh()} neu
+     * geladen werden.
+     */
+    public boolean update(T entity) {
+        final Row row = this.rows.get(this.getId(entity));
+        if (row == null) {
+            return false;
+        }
+        row.setEntity(entity);
+        return true;
+    }
+
+    /**
+     * Gibt eine geladene Entität zurück.
+     *
+     * @param itemId Die Id der Zeile
+     * @return Die Entität, oder null, falls sie nicht geladen ist.
+     */
+    public T getEntity(Object itemId) {
+        final Row row = this.rows.get(itemId);
+        return row == null ? null : row.entity;
+    }
+
+    @Override
+    public int size() {
+        if (this.size < 0) {
+            try {
+                this.size = this.count();
+            } catch (final SQLException e) {
+                this.logger.error("Could not count the entries of the table.", e);
+                WashportalManager.instance.showDatabaseError(e);
+                this.size = 0;
+            }
+        }
+        return this.size;
+    }
+
+    @Override
+    public List<?> getItemIds(int startIndex, int numberOfItems) {
+        final int end = Math.min(startIndex + numberOfItems, this.size());
+        if (startIndex < this.pageStart || end > this.pageStart + this.pageIds.size()) {
+            this.loadPage(startIndex, end - startIndex);
+        }
+        final int from = Math.max(0, Math.min(startIndex - this.pageStart, this.pageIds.size()));
+        final int to = Math.max(from, Math.min(end - this.pageStart, this.pageIds.size()));
+        return Collections.unmodifiableList(new ArrayList<>(this.pageIds.subList(from, to)));
+    }
+
+    private void loadPage(int startIndex, int count) {
+        this.pageIds.clear();
+        this.rows.clear();
+        this.pageStart = startIndex;
+        if (count <= 0) {
+            return;
+        }
+        try {
+            final List<T> entities = this.load(startIndex, count);
+            this.onPageLoaded(entities);
+            for (final T entity : entities) {
+                final Object id = this.getId(entity);
+                this.pageIds.add(id);
+                this.rows.put(id, new Row(entity));
+            }
+        } catch (final SQLException e) {
+            this.logger.error("Could not load the entries of the table.", e);
+            WashportalManager.instance.showDatabaseError(e);
+        }
+    }
+
+    @Override
+    public Object getIdByIndex(int index) {
+        final List<?> ids = this.getItemIds(index, 1);
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+
+    @Override
+    public int indexOfId(Object itemId) {
+        final int index = this.pageIds.indexOf(itemId);
+        return index < 0 ? -1 : this.pageStart + index;
+    }
+
+    @Override
+    public Item getItem(Object itemId) {
+        return this.rows.get(itemId);
+    }
+
+    @Override
+    public Collection<?> getContainerPropertyIds() {
+        return Collections.unmodifiableSet(this.properties.keySet());
+    }
+
+    @Override
+    public Collection<?> getItemIds() {
+        return this.getItemIds(0, this.size());
+    }
+
+    @Override
+    public Property getContainerProperty(Object itemId, Object propertyId) {
+        final Item item = this.getItem(itemId);
+        return item == null ? null : item.getItemProperty(propertyId);
+    }
+
+    @Override
+    public Class<?> getType(Object propertyId) {
+        return this.properties.get(propertyId);
+    }
+
+    @Override
+    public boolean containsId(Object itemId) {
+        return this.rows.containsKey(itemId);
+    }
+
+    @Override
+    public Object nextItemId(Object itemId) {
+        final int index = this.indexOfId(itemId);
+        return index < 0 || index + 1 >= this.size() ? null : this.getIdByIndex(index + 1);
+    }
+
+    @Override
+    public Object prevItemId(Object itemId) {
+        final int index = this.indexOfId(itemId);
+        return index <= 0 ? null : this.getIdByIndex(index - 1);
+    }
+
+    @Override
+    public Object firstItemId() {
+        return this.size() == 0 ? null : this.getIdByIndex(0);
+    }
+
+    @Override
+    public Object lastItemId() {
+        return this.size() == 0 ? null : this.getIdByIndex(this.size() - 1);
+    }
+
+    @Override
+    public boolean isFirstId(Object itemId) {
+        return this.indexOfId(itemId) == 0;
+    }
+
+    @Override
+    public boolean isLastId(Object itemId) {
+        final int index = this.indexOfId(itemId);
+        return index >= 0 && index == this.size() - 1;
+    }
+
+    @Override
+    public void addItemSetChangeListener(ItemSetChangeListener listener) {
+        super.addItemSetChangeListener(listener);
+    }
+
+    @Override
+    @Deprecated
+    public void addListener(ItemSetChangeListener listener) {
+        super.addListener(listener);
+    }
+
+    @Override
+    public void removeItemSetChangeListener(ItemSetChangeListener listener) {
+        super.removeItemSetChangeListener(listener);
+    }
+
+    @Override
+    @Deprecated
+    public void removeListener(ItemSetChangeListener listener) {
+        super.removeListener(listener);
+    }
+
+    @Override
+    public Object addItemAt(int index) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Item addItemAt(int index, Object newItemId) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object addItemAfter(Object previousItemId) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Item addItemAfter(Object previousItemId, Object newItemId) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Item addItem(Object itemId) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object addItem() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeItem(Object itemId) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean addContainerProperty(Object propertyId, Class<?> type, Object defaultValue) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeContainerProperty(Object propertyId) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeAllItems() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Eine Zeile der Tabelle mit den Daten einer Entität.
+     */
+    private class Row extends PropertysetItem {
+        private static final long serialVersionUID = 6398212617354024381L;
+
+        private T entity;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Row(T entity) {
+            for (final Map.Entry<Object, Class<?>> property : PagedContainer.this.properties.entrySet()) {
+                this.addItemProperty(property.getKey(), new ObjectProperty(null, property.getValue()));
+            }
+            this.setEntity(entity);
+        }
+
+        void setEntity(T entity) {
+            this.entity = entity;
+            PagedContainer.this.fill(this, entity);
+        }
+    }
+}
@@ -122,6 +122,19 @@ public class UserWindow extends Window {
         // Das Datenbankfeld hat die maximale Länge 50. Beim Löschen wird ein
         // 10-Zeichen langer Zusatz an den Benutzernamen gehängt.
         this.tfUsername.setMaxLength(40);
+        this.tfUsername.addValidator(value -> {
+            User u;
+            try {
+                u = WashportalManager.instance.getDataManager().getUserByUsername((String) value);
+            } catch (final SQLException e) {
+                WashportalManager.instance.showDatabaseError(e);
+                throw new InvalidValueException("Konnte nicht auf doppelte Verwendung des Benutzernamens prüfen.");
+            }
+            if (u != null && u != UserWindow.this.userToEdit) {
+                throw new InvalidValueException(
+                        "Der Benutzername '" + value + "' ist bereits an " + u.getName() + " vergeben.");
+            }
+        });
 
         this.tfEmail = new TextField("Email");
         form.addComponent(this.tfEmail);
@@ -131,6 +144,22 @@ public class UserWindow extends Window {
                 "Für das Zusenden eines Passworts wird eine Email-Adresse benötigt.");
         this.tfEmail.setValidationVisible(false);
         this.tfEmail.setMaxLength(50);
+        this.tfEmail.addValidator(value -> {
+            if (value == null || ((String) value).isEmpty()) {
+                return;
+            }
+            User u;
+            try {
+                u = WashportalManager.instance.getDataManager().getUserByEmail((String) value);
+            } catch (final SQLException e) {
+                WashportalManager.instance.showDatabaseError(e);
+                throw new InvalidValueException("Konnte nicht auf doppelte Verwendung der Email-Adresse prüfen.");
+            }
+            if (u != null && u != UserWindow.this.userToEdit) {
+                throw new InvalidValueException(
+                        "Die Email-Adresse '" + value + "' ist bereits an " + u.getName() + " vergeben.");
+            }
+        });
 
         this.tfCardIds = new TextArea("Kartennummern");
         this.tfCardIds.setDescription(
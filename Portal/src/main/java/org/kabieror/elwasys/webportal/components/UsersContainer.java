@@ -0,0 +1,120 @@
+package org.kabieror.elwasys.webportal.components;
+
+import com.vaadin.data.Container;
+import com.vaadin.data.Item;
+import org.kabieror.elwasys.common.User;
+import org.kabieror.elwasys.common.UserOrder;
+import org.kabieror.elwasys.webportal.WashportalManager;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Stellt die Benutzer für die Benutzerverwaltung bereit. Sortierung und Filterung übernimmt die Datenbank, die
+ * Guthaben eines Ausschnitts werden mit dessen Abfrage ermittelt.
+ *
+ * @author Oliver Kabierschke
+ */
+public class UsersContainer extends PagedContainer<User> implements Container.Sortable {
+
+    public static final String INDEX_PROPERTY = "ID";
+    public static final String CAPTION_PROPERTY = "Name";
+    public static final String GROUP_PROPERTY = "Gruppe";
+    public static final String CARD_ID_PROPERTY = "Kartennummer";
+    public static final String CREDIT_PROPERTY = "Guthaben";
+
+    private static final long serialVersionUID = 2963373532580187390L;
+
+    private static final Map<Object, UserOrder> ORDERS = new LinkedHashMap<>();
+
+    static {
+        ORDERS.put(INDEX_PROPERTY, UserOrder.ID);
+        ORDERS.put(CAPTION_PROPERTY, UserOrder.NAME);
+        ORDERS.put(GROUP_PROPERTY, UserOrder.GROUP);
+        ORDERS.put(CARD_ID_PROPERTY, UserOrder.CARD_IDS);
+        ORDERS.put(CREDIT_PROPERTY, UserOrder.CREDIT);
+    }
+
+    /**
+     * Die gewählte Sortierung, oder null für die Rangfolge der Suche.
+     */
+    private UserOrder order = UserOrder.GROUP;
+
+    private boolean ascending = true;
+
+    private String filter;
+
+    public UsersContainer() {
+        this.addProperty(INDEX_PROPERTY, Integer.class);
+        this.addProperty(CAPTION_PROPERTY, String.class);
+        this.addProperty(GROUP_PROPERTY, String.class);
+        this.addProperty(CARD_ID_PROPERTY, String.class);
+        this.addProperty(CREDIT_PROPERTY, BigDecimal.class);
+    }
+
+    /**
+     * Zeigt nur Benutzer an, deren Name, Benutzername oder Kartennummer den gegebenen Text enthält. Die Treffer werden
+     * nach Relevanz sortiert, bis eine Spalte zur Sortierung gewählt wird.
+     *
+     * @param filter Der Suchtext, oder null für alle Benutzer
+     */
+    public void setFilter(String filter) {
+        this.filter = filter;
+        if (filter != null) {
+            this.order = null;
+        } else if (this.order == null) {
+            this.order = UserOrder.GROUP;
+            this.ascending = true;
+        }
+        this.refresh();
+    }
+
+    public String getFilter() {
+        return this.filter;
+    }
+
+    @Override
+    public void sort(Object[] propertyId, boolean[] ascending) {
+        if (propertyId.length > 0 && ORDERS.containsKey(propertyId[0])) {
+            this.order = ORDERS.get(propertyId[0]);
+            this.ascending = ascending.length == 0 || ascending[0];
+            this.refresh();
+        }
+    }
+
+    @Override
+    public Collection<?> getSortableContainerPropertyIds() {
+        return Collections.unmodifiableSet(ORDERS.keySet());
+    }
+
+    @Override
+    protected int count() throws SQLException {
+        return WashportalManager.instance.getDataManager().getUserCount(this.filter);
+    }
+
+    @Override
+    protected List<User> load(int offset, int limit) throws SQLException {
+        if (this.order == null) {
+            return WashportalManager.instance.getDataManager().searchUsers(this.filter, offset, limit);
+        }
+        return WashportalManager.instance.getDataManager()
+                .getUsers(this.filter, this.order, this.ascending, offset, limit);
+    }
+
+    @Override
+    protected Object getId(User user) {
+        return user.getId();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void fill(Item i, User u) {
+        i.getItemProperty(INDEX_PROPERTY).setValue(u.getId());
+        i.getItemProperty(CAPTION_PROPERTY).setValue(u.getName());
+        i.getItemProperty(GROUP_PROPERTY).setValue(u.getGroup().getName());
+        i.getItemProperty(CARD_ID_PROPERTY).setValue(u.getCardIds().length > 0 ?
+                u.getCardIds().length == 1 ? u.getCardIds()[0] : u.getCardIds().length + " Karten" : "");
+        i.getItemProperty(CREDIT_PROPERTY).setValue(u.getCredit());
+    }
+}
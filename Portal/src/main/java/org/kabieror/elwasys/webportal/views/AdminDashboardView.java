@@ -1,7 +1,5 @@
 package org.kabieror.elwasys.webportal.views;
 
-import com.vaadin.data.Item;
-import com.vaadin.data.util.IndexedContainer;
 import com.vaadin.navigator.View;
 import com.vaadin.navigator.ViewChangeListener.ViewChangeEvent;
 import com.vaadin.server.FontAwesome;
@@ -11,13 +9,16 @@ import com.vaadin.ui.*;
 import com.vaadin.ui.MenuBar.MenuItem;
 import com.vaadin.ui.themes.ValoTheme;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.time.DurationFormatUtils;
 import org.kabieror.elwasys.common.Device;
+import org.kabieror.elwasys.common.DeviceFault;
+import org.kabieror.elwasys.common.EntityType;
 import org.kabieror.elwasys.common.Execution;
+import org.kabieror.elwasys.common.IEntityChangeListener;
 import org.kabieror.elwasys.common.Location;
 import org.kabieror.elwasys.common.maintenance.*;
 import org.kabieror.elwasys.webportal.MaintenanceConnectionManager;
 import org.kabieror.elwasys.webportal.WashportalManager;
+import org.kabieror.elwasys.webportal.components.DeviceExecutionsContainer;
 import org.kabieror.elwasys.webportal.components.LocationWindow;
 import org.kabieror.elwasys.webportal.components.LogViewerWindow;
 import org.kabieror.elwasys.webportal.events.ILocationUpdatedEventListener;
@@ -26,14 +27,18 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.sql.SQLException;
-import java.text.NumberFormat;
 import java.time.format.DateTimeFormatter;
-import java.time.format.FormatStyle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Seite Administrator-Dashboard
+ * Seite Administrator-Dashboard. Zeigt je Standort den Zustand der Geräte, ihre letzten Ausführungen und die noch
+ * nicht erledigten Störungen.
  *
  * @author Oliver Kabierschke
  */
@@ -46,10 +51,7 @@ public class AdminDashboardView extends VerticalLayout implements View {
      *
      */
     private static final long serialVersionUID = 1L;
-    private static final String USER_PROPERTY = "user";
-    private static final String DATE_PROPERTY = "date";
-    private static final String DURATION_PROPERTY = "duration";
-    private static final String PRICE_PROPERTY = "price";
+    private static final DateTimeFormatter FAULT_TIME_FORMAT = DateTimeFormatter.ofPattern("dd.MM. HH:mm");
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
     private final VerticalLayout locationsContainer;
 
@@ -103,7 +105,8 @@ public class AdminDashboardView extends VerticalLayout implements View {
      *
      * @author Oliver Kabierschke
      */
-    private class AdminDashboardLocationPanel extends VerticalLayout implements ILocationUpdatedEventListener {
+    private class AdminDashboardLocationPanel extends VerticalLayout
+            implements ILocationUpdatedEventListener, IEntityChangeListener {
         /**
          *
          */
@@ -113,6 +116,13 @@ public class AdminDashboardView extends VerticalLayout implements View {
 
         private final Location location;
 
+        /**
+         * Die angezeigten Geräte nach ihrer Id.
+         */
+        private final Map<Integer, DeviceCard> deviceCards = new ConcurrentHashMap<>();
+
+        private CssLayout deviceInfo;
+
         public AdminDashboardLocationPanel(Location location) {
             this.location = location;
             this.addStyleName("location-pane");
@@ -122,6 +132,7 @@ public class AdminDashboardView extends VerticalLayout implements View {
         private void refresh() {
             try {
                 this.removeAllComponents();
+                this.deviceInfo = null;
                 this.buildToolbar();
                 this.buildStatusInfo();
                 this.buildDeviceInfo();
@@ -157,16 +168,8 @@ public class AdminDashboardView extends VerticalLayout implements View {
                     IClientConnection connection =
                             WashportalManager.instance.getMaintenanceConnectionManager().getClient(this.location);
                     if (connection != null) {
-                        MaintenanceResponse res;
                         try {
-                            res = connection.sendQuery(new GetLogRequest());
-                            if (!(res instanceof GetLogResponse)) {
-                                this.logger.warn("Expected GetLogResponse but got " + res.getClass().getName());
-                                WashportalManager.instance
-                                        .showError("Kommunikationsfehler", "Unerwartete Antwort vom Server.");
-                            } else {
-                                this.getUI().addWindow(new LogViewerWindow(((GetLogResponse) res).getLogContent()));
-                            }
+                            this.getUI().addWindow(new LogViewerWindow(connection));
                         } catch (final IOException e1) {
                             this.logger.error("Kommunikationsfehler", e1);
                             WashportalManager.instance.showError(e1);
@@ -268,14 +271,131 @@ public class AdminDashboardView extends VerticalLayout implements View {
             container.addStyleName("device-info");
             Responsive.makeResponsive(container);
 
-            final List<Device> devices = WashportalManager.instance.getDataManager().getDevicesToDisplay(this.location);
+            final Map<Integer, List<DeviceFault>> faults = new HashMap<>();
+            for (final DeviceFault f : WashportalManager.instance.getDataManager().getOpenDeviceFaults(this.location)) {
+                faults.computeIfAbsent(f.getDeviceId(), id -> new ArrayList<>()).add(f);
+            }
 
-            for (final Device device : devices) {
+            this.deviceCards.clear();
+            for (final Device device : WashportalManager.instance.getDataManager().getDevicesToDisplay(this.location)) {
                 if (device == null) {
                     continue;
                 }
-                final CssLayout devOuterCont = new CssLayout();
-                devOuterCont.addStyleName("device-container");
+                final DeviceCard card =
+                        new DeviceCard(device, faults.getOrDefault(device.getId(), Collections.emptyList()));
+                this.deviceCards.put(device.getId(), card);
+                container.addComponent(card);
+            }
+
+            if (this.deviceInfo == null) {
+                this.addComponent(container);
+            } else {
+                this.replaceComponent(this.deviceInfo, container);
+            }
+            this.deviceInfo = container;
+        }
+
+        @Override
+        public void attach() {
+            super.attach();
+            WashportalManager.instance.getDataManager().listenToEntityChanges(this);
+        }
+
+        @Override
+        public void detach() {
+            WashportalManager.instance.getDataManager().stopListenToEntityChanges(this);
+            super.detach();
+        }
+
+        /**
+         * Wird vom Thread der Änderungsbenachrichtigungen aufgerufen. Die betroffenen Entitäten werden hier geladen,
+         * die Oberfläche wird anschließend mit gesperrter Sitzung aktualisiert und per Push an den Browser übertragen.
+         */
+        @Override
+        public void onEntityChanged(EntityType type, int id) {
+            final UI ui = this.getUI();
+            if (ui == null) {
+                return;
+            }
+            try {
+                switch (type) {
+                    case EXECUTION:
+                        final Execution execution;
+                        try {
+                            execution = WashportalManager.instance.getDataManager().getExecution(id);
+                        } catch (final SQLException e) {
+                            // Die Ausführung wurde gelöscht
+                            this.logger.debug("Could not load the changed execution #" + id + ".", e);
+                            ui.access(() -> this.deviceCards.values().forEach(c -> c.lastExeCont.refresh()));
+                            break;
+                        }
+                        final DeviceCard card = this.deviceCards.get(execution.getDevice().getId());
+                        if (card != null) {
+                            final boolean occupied =
+                                    WashportalManager.instance.getDataManager().getRunningExecution(card.device) !=
+                                            null;
+                            ui.access(() -> card.onExecutionChanged(execution, occupied));
+                        }
+                        break;
+                    case DEVICE:
+                        final Device device = WashportalManager.instance.getDataManager().getDevice(id);
+                        if (this.deviceCards.containsKey(id) ||
+                                device != null && device.getLocation().getId() == this.location.getId()) {
+                            ui.access(this::refreshDevices);
+                        }
+                        break;
+                    case DEVICE_FAULT:
+                        if (this.deviceCards.containsKey(id)) {
+                            ui.access(this::refreshDevices);
+                        }
+                        break;
+                    case LOCATION:
+                        if (id == this.location.getId()) {
+                            ui.access(this::refresh);
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            } catch (final SQLException e) {
+                this.logger.error("Could not load the changed " + type + " #" + id + ".", e);
+            }
+        }
+
+        @Override
+        public void onChangesLost() {
+            final UI ui = this.getUI();
+            if (ui != null) {
+                ui.access(this::refresh);
+            }
+        }
+
+        private void refreshDevices() {
+            try {
+                this.buildDeviceInfo();
+            } catch (final SQLException e) {
+                this.logger.error("Could not look up the devices at the location '" + this.location.getName() + "'.");
+                WashportalManager.instance.showDatabaseError(e);
+            }
+        }
+
+        /**
+         * Zeigt den Status, die offenen Störungen und die letzten Ausführungen eines Geräts an.
+         */
+        private class DeviceCard extends CssLayout {
+            private static final long serialVersionUID = 1L;
+
+            private final Device device;
+
+            private final Label statusLabel;
+
+            private final Table tblLastExecutions;
+
+            private final DeviceExecutionsContainer lastExeCont;
+
+            DeviceCard(Device device, List<DeviceFault> faults) throws SQLException {
+                this.device = device;
+                this.addStyleName("device-container");
 
                 final CssLayout devCont = new CssLayout();
                 devCont.addStyleName("device");
@@ -291,96 +411,103 @@ public class AdminDashboardView extends VerticalLayout implements View {
                 final HorizontalLayout deviceKeyValue = new HorizontalLayout();
                 deviceKeyValue.addStyleName("key-value");
 
-                final Execution runningExecution =
-                        WashportalManager.instance.getDataManager().getRunningExecution(device);
-                final Label statusLabel = new Label(runningExecution == null ? "Frei" : "Besetzt");
-                statusLabel.addStyleName("value " + (runningExecution == null ? "device-free" : "device-occupied"));
-                deviceKeyValue.addComponent(statusLabel);
+                this.statusLabel = new Label();
+                this.setOccupied(WashportalManager.instance.getDataManager().getRunningExecution(device) != null);
+                deviceKeyValue.addComponent(this.statusLabel);
                 titleCont.addComponent(deviceKeyValue);
 
                 devCont.addComponent(titleCont);
 
+                // Störungen
+                for (final DeviceFault fault : faults) {
+                    devCont.addComponent(this.buildFault(fault));
+                }
 
                 // Last executions table
-                final Table tblLastExecutions = new Table();
-                tblLastExecutions.setWidth("99%");
-                tblLastExecutions.setHeight("15em");
-
+                this.tblLastExecutions = new Table();
+                this.tblLastExecutions.setWidth("99%");
+                this.tblLastExecutions.setHeight("15em");
 
-                final IndexedContainer lastExeCont = new IndexedContainer();
-                lastExeCont.addContainerProperty(DATE_PROPERTY, String.class, "");
-                lastExeCont.addContainerProperty(USER_PROPERTY, String.class, "?");
-                lastExeCont.addContainerProperty(DURATION_PROPERTY, String.class, "");
-                lastExeCont.addContainerProperty(PRICE_PROPERTY, String.class, "");
-                tblLastExecutions.setContainerDataSource(lastExeCont);
+                this.lastExeCont = new DeviceExecutionsContainer(device, VaadinSession.getCurrent().getLocale());
+                this.tblLastExecutions.setContainerDataSource(this.lastExeCont);
+                this.tblLastExecutions.setSortEnabled(false);
 
-                tblLastExecutions.setColumnHeader(DATE_PROPERTY, "Datum");
-                tblLastExecutions.setColumnHeader(USER_PROPERTY, "Benutzer");
-                tblLastExecutions.setColumnHeader(DURATION_PROPERTY, "Dauer");
-                tblLastExecutions.setColumnHeader(PRICE_PROPERTY, "Preis");
+                this.tblLastExecutions.setColumnHeader(DeviceExecutionsContainer.DATE_PROPERTY, "Datum");
+                this.tblLastExecutions.setColumnHeader(DeviceExecutionsContainer.USER_PROPERTY, "Benutzer");
+                this.tblLastExecutions.setColumnHeader(DeviceExecutionsContainer.DURATION_PROPERTY, "Dauer");
+                this.tblLastExecutions.setColumnHeader(DeviceExecutionsContainer.PRICE_PROPERTY, "Preis");
 
                 // Laufende Ausführung hervorheben.
-                tblLastExecutions.setCellStyleGenerator(new Table.CellStyleGenerator() {
-
-                    @Override
-                    public String getStyle(Table source, Object itemId, Object propertyId) {
-                        if (propertyId == null) {
-                            // Aussehen der Zeile
-                            final List<String> res = new Vector<>();
-                            try {
-                                final Execution execution =
-                                        WashportalManager.instance.getDataManager().getExecution((int) itemId);
-                                if (execution.isRunning()) {
-                                    res.add("running-execution");
-                                }
-                                if (execution.isExpired()) {
-                                    res.add("expired-execution");
-                                }
-                            } catch (final SQLException e) {
-                                AdminDashboardView.this.logger.error("Could not load the execution", e);
-                                WashportalManager.instance.showDatabaseError(e);
-                                return null;
-                            }
-                            return StringUtils.join(res, " ");
-                        } else {
-                            // Aussehen einer Zelle
-                            return null;
-                        }
+                this.tblLastExecutions.setCellStyleGenerator((source, itemId, propertyId) -> {
+                    if (propertyId != null) {
+                        // Aussehen einer Zelle
+                        return null;
+                    }
+                    // Aussehen der Zeile
+                    final Execution execution = this.lastExeCont.getEntity(itemId);
+                    if (execution == null) {
+                        return null;
+                    }
+                    final List<String> res = new Vector<>();
+                    if (execution.isRunning()) {
+                        res.add("running-execution");
+                    }
+                    if (execution.isExpired()) {
+                        res.add("expired-execution");
                     }
+                    return StringUtils.join(res, " ");
                 });
 
-                final DateTimeFormatter dateTimeFormat = DateTimeFormatter.ofLocalizedDateTime(FormatStyle.SHORT);
-                final NumberFormat currencyFormat =
-                        NumberFormat.getCurrencyInstance(VaadinSession.getCurrent().getLocale());
+                devCont.addComponent(this.tblLastExecutions);
+                this.addComponent(devCont);
+            }
 
-                for (final Execution e : WashportalManager.instance.getDataManager().getExecutions(device)) {
-                    final Item item = lastExeCont.addItem(e.getId());
+            private Component buildFault(DeviceFault fault) {
+                final HorizontalLayout faultCont = new HorizontalLayout();
+                faultCont.addStyleName("device-fault");
+                faultCont.setWidth("100%");
+                faultCont.setSpacing(true);
 
-                    if (e.getStartDate() != null) {
-                        item.getItemProperty(DATE_PROPERTY).setValue(e.getStartDate().format(dateTimeFormat));
-                    } else {
-                        item.getItemProperty(DATE_PROPERTY).setValue("-");
-                    }
+                final Label lblFault =
+                        new Label(fault.getDetected().format(FAULT_TIME_FORMAT) + ": " + fault.getMessage());
+                faultCont.addComponent(lblFault);
+                faultCont.setExpandRatio(lblFault, 1);
 
-                    if (e.getUser() != null) {
-                        item.getItemProperty(USER_PROPERTY).setValue(e.getUser().getName());
-                    } else {
-                        item.getItemProperty(USER_PROPERTY).setValue("-");
+                final Button btnResolve = new Button("Erledigt", e -> {
+                    try {
+                        WashportalManager.instance.getDataManager().resolveDeviceFault(fault);
+                    } catch (final SQLException ex) {
+                        AdminDashboardLocationPanel.this.logger
+                                .error("Could not resolve fault #" + fault.getId() + ".", ex);
+                        WashportalManager.instance.showDatabaseError(ex);
+                        return;
                     }
-                    item.getItemProperty(DURATION_PROPERTY).setValue(
-                            DurationFormatUtils.formatDuration(e.getElapsedTime().getSeconds() * 1000, "HH:mm:ss") +
-                                    "h");
-                    item.getItemProperty(PRICE_PROPERTY).setValue(currencyFormat.format(e.getPrice()));
-                }
-
-                devCont.addComponent(tblLastExecutions);
-
-                devOuterCont.addComponent(devCont);
+                    AdminDashboardLocationPanel.this.refreshDevices();
+                });
+                btnResolve.addStyleName(ValoTheme.BUTTON_SMALL);
+                btnResolve.addStyleName(ValoTheme.BUTTON_BORDERLESS_COLORED);
+                btnResolve.setDescription("Störung als erledigt markieren");
+                faultCont.addComponent(btnResolve);
+                return faultCont;
+            }
 
-                container.addComponent(devOuterCont);
+            private void setOccupied(boolean occupied) {
+                this.statusLabel.setValue(occupied ? "Besetzt" : "Frei");
+                this.statusLabel.setStyleName("value " + (occupied ? "device-occupied" : "device-free"));
             }
 
-            this.addComponent(container);
+            /**
+             * Aktualisiert nur die Zeile der geänderten Ausführung. Neue Ausführungen verschieben die Seiten der
+             * Tabelle, weshalb dann der angezeigte Ausschnitt neu geladen wird.
+             */
+            void onExecutionChanged(Execution execution, boolean occupied) {
+                this.setOccupied(occupied);
+                if (this.lastExeCont.update(execution)) {
+                    this.tblLastExecutions.refreshRowCache();
+                } else {
+                    this.lastExeCont.refresh();
+                }
+            }
         }
 
         @Override
@@ -0,0 +1,293 @@
+package org.kabieror.elwasys.webportal.views;
+
+import com.vaadin.data.Item;
+import com.vaadin.data.util.IndexedContainer;
+import com.vaadin.data.util.converter.StringToBigDecimalConverter;
+import com.vaadin.navigator.View;
+import com.vaadin.navigator.ViewChangeListener.ViewChangeEvent;
+import com.vaadin.shared.ui.label.ContentMode;
+import com.vaadin.ui.*;
+import com.vaadin.ui.Table.Align;
+import org.kabieror.elwasys.common.FormatUtilities;
+import org.kabieror.elwasys.common.UsageDimension;
+import org.kabieror.elwasys.common.UsageStatistics;
+import org.kabieror.elwasys.webportal.WashportalManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.SQLException;
+import java.text.NumberFormat;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Seite Auswertung. Zeigt Läufe, Laufzeit, Umsatz, Rabatte und Energie je Monat aus der vorab verdichteten
+ * Nutzungsstatistik. Ist ein Strompreis eingestellt, werden auch die Energiekosten angezeigt.
+ *
+ * @author Oliver Kabierschke
+ */
+public class UsageView extends VerticalLayout implements View {
+    /**
+     * Der Name des Views, der in der Adresszeile angezeigt wird
+     */
+    public static final String VIEW_NAME = "usage";
+    static final String MONTH_PROPERTY = "Monat";
+    static final String CAPTION_PROPERTY = "Name";
+    static final String RUNS_PROPERTY = "Läufe";
+    static final String MINUTES_PROPERTY = "Minuten";
+    static final String REVENUE_PROPERTY = "Umsatz";
+    static final String DISCOUNT_PROPERTY = "Rabatt";
+    static final String ENERGY_PROPERTY = "kWh";
+    static final String ENERGY_PER_RUN_PROPERTY = "kWh/Lauf";
+    static final String ENERGY_COST_PROPERTY = "Stromkosten";
+    static final String CHANGE_PROPERTY = "Vormonat";
+    static final String SHARE_PROPERTY = "Anteil";
+
+    private static final long serialVersionUID = -3061539727520513954L;
+
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("MM/yyyy");
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final NativeSelect dimensionSelect;
+    private final NativeSelect monthsSelect;
+    private final Table usageTable;
+    private final IndexedContainer usageContainer;
+
+    /**
+     * Der Preis je kWh, oder null, falls keiner eingestellt ist
+     */
+    private final BigDecimal energyPrice;
+
+    /**
+     * Der höchste Umsatz eines Eintrags, an dem die Balken bemessen werden
+     */
+    private BigDecimal maxRevenue = BigDecimal.ZERO;
+
+    public UsageView() {
+        this.setMargin(true);
+        this.setSpacing(true);
+        this.setSizeFull();
+
+        // 1. Menüleiste erstellen
+        final HorizontalLayout topLayout = new HorizontalLayout();
+        topLayout.setWidth("100%");
+        topLayout.setSpacing(true);
+        final Label title = new Label("Auswertung");
+        title.addStyleName("h1");
+        topLayout.addComponent(title);
+
+        this.dimensionSelect = new NativeSelect();
+        this.dimensionSelect.addItem(UsageDimension.DEVICE);
+        this.dimensionSelect.setItemCaption(UsageDimension.DEVICE, "Geräte");
+        this.dimensionSelect.addItem(UsageDimension.PROGRAM);
+        this.dimensionSelect.setItemCaption(UsageDimension.PROGRAM, "Programme");
+        this.dimensionSelect.addItem(UsageDimension.LOCATION);
+        this.dimensionSelect.setItemCaption(UsageDimension.LOCATION, "Standorte");
+        this.dimensionSelect.addItem(UsageDimension.USER_GROUP);
+        this.dimensionSelect.setItemCaption(UsageDimension.USER_GROUP, "Benutzergruppen");
+        this.dimensionSelect.setNullSelectionAllowed(false);
+        this.dimensionSelect.setValue(UsageDimension.DEVICE);
+        this.dimensionSelect.addValueChangeListener(e -> this.loadData());
+
+        this.monthsSelect = new NativeSelect();
+        for (final int months : new int[]{3, 6, 12, 24}) {
+            this.monthsSelect.addItem(months);
+            this.monthsSelect.setItemCaption(months, "Letzte " + months + " Monate");
+        }
+        this.monthsSelect.setNullSelectionAllowed(false);
+        this.monthsSelect.setValue(6);
+        this.monthsSelect.addValueChangeListener(e -> this.loadData());
+
+        topLayout.addComponents(this.dimensionSelect, this.monthsSelect);
+        topLayout.setComponentAlignment(this.dimensionSelect, Alignment.BOTTOM_RIGHT);
+        topLayout.setComponentAlignment(this.monthsSelect, Alignment.BOTTOM_RIGHT);
+        topLayout.setExpandRatio(title, 1);
+
+        this.addComponent(topLayout);
+
+        // 2. Tabelle erstellen
+        this.usageTable = new Table();
+        this.addComponent(this.usageTable);
+        this.usageTable.setSizeFull();
+        this.usageTable.setSelectable(false);
+        this.usageTable.setSortEnabled(false);
+        this.usageContainer = new IndexedContainer();
+        this.energyPrice = WashportalManager.instance.getConfigurationManager().getEnergyPrice();
+
+        this.usageContainer.addContainerProperty(MONTH_PROPERTY, String.class, null);
+        this.usageContainer.addContainerProperty(CAPTION_PROPERTY, String.class, null);
+        this.usageContainer.addContainerProperty(RUNS_PROPERTY, Integer.class, null);
+        this.usageContainer.addContainerProperty(MINUTES_PROPERTY, Long.class, null);
+        this.usageContainer.addContainerProperty(REVENUE_PROPERTY, BigDecimal.class, null);
+        this.usageContainer.addContainerProperty(DISCOUNT_PROPERTY, BigDecimal.class, null);
+        this.usageContainer.addContainerProperty(ENERGY_PROPERTY, BigDecimal.class, null);
+        this.usageContainer.addContainerProperty(ENERGY_PER_RUN_PROPERTY, BigDecimal.class, null);
+        if (this.energyPrice != null) {
+            this.usageContainer.addContainerProperty(ENERGY_COST_PROPERTY, BigDecimal.class, null);
+        }
+        this.usageContainer.addContainerProperty(CHANGE_PROPERTY, String.class, null);
+
+        this.usageTable.setContainerDataSource(this.usageContainer);
+        this.usageTable.addGeneratedColumn(SHARE_PROPERTY, (source, itemId, columnId) -> {
+            final BigDecimal revenue =
+                    (BigDecimal) this.usageContainer.getContainerProperty(itemId, REVENUE_PROPERTY).getValue();
+            final int percent = this.maxRevenue.signum() > 0 && revenue.signum() > 0 ?
+                    revenue.multiply(BigDecimal.valueOf(100)).divide(this.maxRevenue, 0, RoundingMode.HALF_UP)
+                            .intValue() : 0;
+            return new Label("<div class=\"usage-bar\" style=\"width: " + percent + "%\"></div>", ContentMode.HTML);
+        });
+        this.usageTable.setColumnWidth(MONTH_PROPERTY, 80);
+        this.usageTable.setColumnAlignment(RUNS_PROPERTY, Align.RIGHT);
+        this.usageTable.setColumnAlignment(MINUTES_PROPERTY, Align.RIGHT);
+        this.usageTable.setColumnAlignment(REVENUE_PROPERTY, Align.RIGHT);
+        this.usageTable.setColumnAlignment(DISCOUNT_PROPERTY, Align.RIGHT);
+        this.usageTable.setColumnAlignment(ENERGY_PROPERTY, Align.RIGHT);
+        this.usageTable.setColumnAlignment(ENERGY_PER_RUN_PROPERTY, Align.RIGHT);
+        this.usageTable.setColumnAlignment(CHANGE_PROPERTY, Align.RIGHT);
+        this.usageTable.setColumnExpandRatio(SHARE_PROPERTY, 1);
+        this.usageTable.setColumnHeader(SHARE_PROPERTY, "");
+        this.usageTable.setConverter(REVENUE_PROPERTY, new CurrencyConverter());
+        this.usageTable.setConverter(DISCOUNT_PROPERTY, new CurrencyConverter());
+        if (this.energyPrice != null) {
+            this.usageTable.setColumnAlignment(ENERGY_COST_PROPERTY, Align.RIGHT);
+            this.usageTable.setConverter(ENERGY_COST_PROPERTY, new CurrencyConverter());
+        }
+        this.usageTable.setFooterVisible(true);
+
+        this.setExpandRatio(this.usageTable, 1);
+    }
+
+    @Override
+    public void enter(ViewChangeEvent event) {
+        this.loadData();
+    }
+
+    /**
+     * Lädt die Nutzung der gewählten Monate. Der Monat davor wird mitgeladen, um die Veränderung zum Vormonat
+     * berechnen zu können.
+     */
+    @SuppressWarnings("unchecked")
+    private void loadData() {
+        this.usageContainer.removeAllItems();
+
+        final int months = (Integer) this.monthsSelect.getValue();
+        final YearMonth to = YearMonth.now();
+        final YearMonth from = to.minusMonths(months - 1);
+        final List<UsageStatistics> usage;
+        try {
+            usage = WashportalManager.instance.getDataManager()
+                    .getMonthlyUsage((UsageDimension) this.dimensionSelect.getValue(), from.minusMonths(1), to);
+        } catch (final SQLException e) {
+            this.logger.error("Could not load the usage statistics.", e);
+            WashportalManager.instance.showDatabaseError(e);
+            return;
+        }
+
+        final Map<String, BigDecimal> revenues = new HashMap<>();
+        for (final UsageStatistics u : usage) {
+            revenues.put(u.getMonth() + "/" + u.getId(), u.getRevenue());
+        }
+
+        int runs = 0;
+        long minutes = 0;
+        BigDecimal revenue = BigDecimal.ZERO;
+        BigDecimal discount = BigDecimal.ZERO;
+        int meteredRuns = 0;
+        double energy = 0;
+        this.maxRevenue = BigDecimal.ZERO;
+        int itemId = 0;
+        for (final UsageStatistics u : usage) {
+            if (u.getMonth().isBefore(from)) {
+                continue;
+            }
+            final Item i = this.usageContainer.addItem(itemId++);
+            i.getItemProperty(MONTH_PROPERTY).setValue(u.getMonth().format(MONTH_FORMAT));
+            i.getItemProperty(CAPTION_PROPERTY).setValue(u.getName() != null ? u.getName() : "(gelöscht)");
+            i.getItemProperty(RUNS_PROPERTY).setValue(u.getRuns());
+            i.getItemProperty(MINUTES_PROPERTY).setValue(u.getDuration().toMinutes());
+            i.getItemProperty(REVENUE_PROPERTY).setValue(u.getRevenue());
+            i.getItemProperty(DISCOUNT_PROPERTY).setValue(u.getDiscount());
+            i.getItemProperty(ENERGY_PROPERTY).setValue(toKwh(u.getEnergy(), 1));
+            i.getItemProperty(ENERGY_PER_RUN_PROPERTY).setValue(toKwh(u.getEnergyPerRun(), 2));
+            if (this.energyPrice != null) {
+                i.getItemProperty(ENERGY_COST_PROPERTY).setValue(this.getEnergyCost(u.getEnergy()));
+            }
+            i.getItemProperty(CHANGE_PROPERTY)
+                    .setValue(formatChange(revenues.get(u.getMonth().minusMonths(1) + "/" + u.getId()),
+                            u.getRevenue()));
+
+            runs += u.getRuns();
+            minutes += u.getDuration().toMinutes();
+            revenue = revenue.add(u.getRevenue());
+            discount = discount.add(u.getDiscount());
+            meteredRuns += u.getMeteredRuns();
+            energy += u.getEnergy();
+            this.maxRevenue = this.maxRevenue.max(u.getRevenue());
+        }
+
+        this.usageTable.setColumnFooter(CAPTION_PROPERTY, "Summe");
+        this.usageTable.setColumnFooter(RUNS_PROPERTY, Integer.toString(runs));
+        this.usageTable.setColumnFooter(MINUTES_PROPERTY, Long.toString(minutes));
+        this.usageTable.setColumnFooter(REVENUE_PROPERTY, FormatUtilities.formatCurrency(revenue));
+        this.usageTable.setColumnFooter(DISCOUNT_PROPERTY, FormatUtilities.formatCurrency(discount));
+        this.usageTable.setColumnFooter(ENERGY_PROPERTY, formatKwh(energy, 1));
+        this.usageTable.setColumnFooter(ENERGY_PER_RUN_PROPERTY,
+                meteredRuns > 0 ? formatKwh(energy / meteredRuns, 2) : "-");
+        if (this.energyPrice != null) {
+            this.usageTable
+                    .setColumnFooter(ENERGY_COST_PROPERTY, FormatUtilities.formatCurrency(this.getEnergyCost(energy)));
+        }
+        this.usageTable.refreshRowCache();
+    }
+
+    /**
+     * Berechnet die Kosten der gegebenen Energie in kWh zum eingestellten Strompreis.
+     */
+    private BigDecimal getEnergyCost(double energy) {
+        return this.energyPrice.multiply(BigDecimal.valueOf(energy)).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Rundet eine Energie in kWh auf die gegebenen Nachkommastellen, oder gibt null zurück, falls sie unbekannt ist.
+     */
+    private static BigDecimal toKwh(double energy, int scale) {
+        return Double.isNaN(energy) ? null : BigDecimal.valueOf(energy).setScale(scale, RoundingMode.HALF_UP);
+    }
+
+    private static String formatKwh(double energy, int scale) {
+        final NumberFormat format = NumberFormat.getNumberInstance(Locale.GERMANY);
+        format.setMinimumFractionDigits(scale);
+        format.setMaximumFractionDigits(scale);
+        return format.format(energy);
+    }
+
+    /**
+     * Formatiert die Veränderung des Umsatzes gegenüber dem Vormonat in Prozent.
+     */
+    private static String formatChange(BigDecimal previous, BigDecimal current) {
+        if (previous == null || previous.signum() == 0) {
+            return "-";
+        }
+        final int percent = current.subtract(previous).multiply(BigDecimal.valueOf(100))
+                .divide(previous, 0, RoundingMode.HALF_UP).intValue();
+        return (percent > 0 ? "+" : "") + percent + " %";
+    }
+
+    /**
+     * Stellt Beträge als Währung dar
+     */
+    private static class CurrencyConverter extends StringToBigDecimalConverter {
+        private static final long serialVersionUID = 1671726149722094077L;
+
+        @Override
+        protected NumberFormat getFormat(Locale locale) {
+            return NumberFormat.getCurrencyInstance(locale);
+        }
+    }
+}
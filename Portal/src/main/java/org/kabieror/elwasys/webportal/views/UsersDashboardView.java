@@ -1,7 +1,5 @@
 package org.kabieror.elwasys.webportal.views;
 
-import com.vaadin.data.Item;
-import com.vaadin.data.util.IndexedContainer;
 import com.vaadin.data.util.converter.StringToBigDecimalConverter;
 import com.vaadin.navigator.View;
 import com.vaadin.navigator.ViewChangeListener.ViewChangeEvent;
@@ -13,17 +11,15 @@ import org.kabieror.elwasys.common.FormatUtilities;
 import org.kabieror.elwasys.common.NoDataFoundException;
 import org.kabieror.elwasys.common.User;
 import org.kabieror.elwasys.webportal.WashportalManager;
+import org.kabieror.elwasys.webportal.components.AccountingEntriesContainer;
 import org.kabieror.elwasys.webportal.components.StringToLocalDateTimeConverter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.math.BigDecimal;
 import java.sql.SQLException;
 import java.text.NumberFormat;
-import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.FormatStyle;
-import java.util.List;
 import java.util.Locale;
 
 /**
@@ -48,7 +44,7 @@ public class UsersDashboardView extends VerticalLayout implements View {
     private final User user;
     private final Label creditLabel;
     private final Table accountingTable;
-    private final IndexedContainer accountingContainer;
+    private final AccountingEntriesContainer accountingContainer;
     private final StringToBigDecimalConverter bigDecimalConverter =
             new StringToBigDecimalConverter() {
                 /**
@@ -134,12 +130,11 @@ public class UsersDashboardView extends VerticalLayout implements View {
         this.accountingTable.setMultiSelect(false);
         this.accountingTable.setSelectable(false);
 
-        this.accountingContainer = new IndexedContainer();
-        this.accountingContainer.addContainerProperty(DATE_PROPERTY, LocalDateTime.class, null);
-        this.accountingContainer.addContainerProperty(VALUE_PROPERTY, BigDecimal.class, null);
-        this.accountingContainer.addContainerProperty(TEXT_PROPERTY, String.class, null);
+        this.accountingContainer =
+                new AccountingEntriesContainer(this.user, DATE_PROPERTY, VALUE_PROPERTY, TEXT_PROPERTY);
 
         this.accountingTable.setContainerDataSource(this.accountingContainer);
+        this.accountingTable.setSortEnabled(false);
         this.accountingTable.setColumnWidth(DATE_PROPERTY, 150);
         this.accountingTable.setColumnAlignment(DATE_PROPERTY, Align.LEFT);
         this.accountingTable.setColumnHeader(DATE_PROPERTY, "Datum");
@@ -189,21 +184,8 @@ public class UsersDashboardView extends VerticalLayout implements View {
                 this.user.getCredit(), String.class, VaadinSession.getCurrent().getLocale()));
 
 
-        // Einträge in Konto-Tabelle
-        List<CreditAccountingEntry> entries;
-        try {
-            entries = WashportalManager.instance.getDataManager().getAccountingEntries(this.user);
-            this.accountingContainer.removeAllItems();
-            for (final CreditAccountingEntry e : entries) {
-                final Item i = this.accountingContainer.addItem(e.getId());
-                i.getItemProperty(DATE_PROPERTY).setValue(e.getDate());
-                i.getItemProperty(VALUE_PROPERTY).setValue(e.getAmount());
-                i.getItemProperty(TEXT_PROPERTY).setValue(e.getDescription());
-            }
-        } catch (final SQLException e1) {
-            this.logger.error("Could not load user accounting entries.", e1);
-            WashportalManager.instance.showDatabaseError(e1);
-        }
+        // Einträge in Konto-Tabelle; geladen wird nur der sichtbare Ausschnitt
+        this.accountingContainer.refresh();
     }
 
 }
@@ -1,17 +1,15 @@
 package org.kabieror.elwasys.webportal.views;
 
-import com.vaadin.data.Container;
-import com.vaadin.data.Item;
-import com.vaadin.data.util.IndexedContainer;
 import com.vaadin.data.util.converter.StringToBigDecimalConverter;
+import com.vaadin.event.FieldEvents.TextChangeEvent;
 import com.vaadin.navigator.View;
 import com.vaadin.navigator.ViewChangeListener.ViewChangeEvent;
 import com.vaadin.server.FontAwesome;
 import com.vaadin.ui.*;
 import com.vaadin.ui.MenuBar.MenuItem;
+import com.vaadin.ui.AbstractTextField.TextChangeEventMode;
 import com.vaadin.ui.Table.Align;
 import org.kabieror.elwasys.common.FormatUtilities;
-import org.kabieror.elwasys.common.NoDataFoundException;
 import org.kabieror.elwasys.common.User;
 import org.kabieror.elwasys.webportal.WashportalManager;
 import org.kabieror.elwasys.webportal.components.*;
@@ -19,11 +17,8 @@ import org.kabieror.elwasys.webportal.events.IUserUpdatedEventListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.math.BigDecimal;
 import java.sql.SQLException;
 import java.text.NumberFormat;
-import java.util.Collection;
-import java.util.List;
 import java.util.Locale;
 
 /**
@@ -37,11 +32,11 @@ public class UsersView extends VerticalLayout implements View, IUserUpdatedEvent
      */
     public static final String VIEW_NAME = "users";
     static final String ICON_PROPERTY = "icon";
-    static final String INDEX_PROPERTY = "ID";
-    static final String CAPTION_PROPERTY = "Name";
-    static final String GROUP_PROPERTY = "Gruppe";
-    static final String CARD_ID_PROPERTY = "Kartennummer";
-    static final String CREDIT_PROPERTY = "Guthaben";
+    static final String INDEX_PROPERTY = UsersContainer.INDEX_PROPERTY;
+    static final String CAPTION_PROPERTY = UsersContainer.CAPTION_PROPERTY;
+    static final String GROUP_PROPERTY = UsersContainer.GROUP_PROPERTY;
+    static final String CARD_ID_PROPERTY = UsersContainer.CARD_ID_PROPERTY;
+    static final String CREDIT_PROPERTY = UsersContainer.CREDIT_PROPERTY;
     static final String BUTTONS_PROPERTY = "buttons";
     /**
      *
@@ -49,7 +44,7 @@ public class UsersView extends VerticalLayout implements View, IUserUpdatedEvent
     private static final long serialVersionUID = 4574040337563844816L;
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
     private final Table usersTable;
-    private final Container usersContainer;
+    private final UsersContainer usersContainer;
 
     public UsersView() {
         this.setMargin(true);
@@ -67,7 +62,16 @@ public class UsersView extends VerticalLayout implements View, IUserUpdatedEvent
         final MenuItem menuAdd = menuBar.addItem("Neu", i -> this.newUser());
         menuAdd.setIcon(FontAwesome.PLUS);
 
+        final TextField searchField = new TextField();
+        searchField.setInputPrompt("Suchen");
+        searchField.setIcon(FontAwesome.SEARCH);
+        searchField.addStyleName("inline-icon small");
+        searchField.setTextChangeEventMode(TextChangeEventMode.LAZY);
+        searchField.addTextChangeListener(this::onSearchTextChanged);
+
+        topLayout.addComponent(searchField);
         topLayout.addComponent(menuBar);
+        topLayout.setComponentAlignment(searchField, Alignment.BOTTOM_RIGHT);
         topLayout.setComponentAlignment(menuBar, Alignment.BOTTOM_RIGHT);
         topLayout.setExpandRatio(menuBar, 2);
         topLayout.setExpandRatio(title, 1);
@@ -80,16 +84,11 @@ public class UsersView extends VerticalLayout implements View, IUserUpdatedEvent
         this.usersTable.setSizeFull();
         this.usersTable.setMultiSelect(false);
         this.usersTable.setSelectable(false);
-        this.usersContainer = new IndexedContainer();
-
-        this.usersContainer.addContainerProperty(ICON_PROPERTY, Button.class, null);
-        this.usersContainer.addContainerProperty(INDEX_PROPERTY, Integer.class, null);
-        this.usersContainer.addContainerProperty(CAPTION_PROPERTY, String.class, null);
-        this.usersContainer.addContainerProperty(GROUP_PROPERTY, String.class, null);
-        this.usersContainer.addContainerProperty(CARD_ID_PROPERTY, String.class, null);
-        this.usersContainer.addContainerProperty(CREDIT_PROPERTY, BigDecimal.class, null);
+        // Sortierung, Filterung und Guthaben übernimmt die Datenbank; geladen wird nur der sichtbare Ausschnitt
+        this.usersContainer = new UsersContainer();
 
         this.usersTable.setContainerDataSource(this.usersContainer);
+        this.usersTable.addGeneratedColumn(ICON_PROPERTY, (source, itemId, columnId) -> this.createIcon(itemId));
         this.usersTable.setColumnWidth(ICON_PROPERTY, 40);
         this.usersTable.setColumnHeader(ICON_PROPERTY, "");
         this.usersTable.setColumnAlignment(ICON_PROPERTY, Align.CENTER);
@@ -108,7 +107,6 @@ public class UsersView extends VerticalLayout implements View, IUserUpdatedEvent
         this.usersTable.setColumnAlignment(CREDIT_PROPERTY, Align.RIGHT);
 
         // 2.1. Buttons in Benutzer-Zeilen
-        this.usersTable.addContainerProperty(BUTTONS_PROPERTY, CssLayout.class, null);
         this.usersTable.addGeneratedColumn(BUTTONS_PROPERTY, (Table source, Object itemId, Object columnId) -> {
             final CssLayout group = new CssLayout();
             group.addStyleName("v-component-group");
@@ -190,6 +188,9 @@ public class UsersView extends VerticalLayout implements View, IUserUpdatedEvent
         this.usersTable.setColumnAlignment(BUTTONS_PROPERTY, Align.CENTER);
         this.usersTable.setColumnHeader(BUTTONS_PROPERTY, "");
 
+        this.usersTable.setVisibleColumns(ICON_PROPERTY, INDEX_PROPERTY, CAPTION_PROPERTY, GROUP_PROPERTY,
+                CARD_ID_PROPERTY, CREDIT_PROPERTY, BUTTONS_PROPERTY);
+        this.usersTable.setSortContainerPropertyId(GROUP_PROPERTY);
         this.usersTable.setFooterVisible(true);
 
         this.setExpandRatio(this.usersTable, 1);
@@ -204,76 +205,42 @@ public class UsersView extends VerticalLayout implements View, IUserUpdatedEvent
      * Lädt die Benutzer aus der Datenbank
      */
     private void loadData() {
-        this.usersContainer.removeAllItems();
+        this.usersContainer.refresh();
+        this.updateSumRow();
+    }
 
-        List<User> users;
-        try {
-            users = WashportalManager.instance.getDataManager().getUsers();
-        } catch (final SQLException e) {
-            this.logger.error("Error while catching the available users from the database", e);
-            WashportalManager.instance.showDatabaseError(e);
-            return;
-        }
-        for (final User u : users) {
-            final Item i = this.usersContainer.addItem(u.getId());
-            this.fillItemWithUserData(i, u);
+    private void onSearchTextChanged(TextChangeEvent event) {
+        final String text = event.getText().trim();
+        if (text.isEmpty()) {
+            this.usersContainer.setFilter(null);
+            this.usersTable.setSortAscending(true);
+            this.usersTable.setSortContainerPropertyId(GROUP_PROPERTY);
+        } else {
+            // Die Treffer erscheinen nach Relevanz, bis eine Spalte zur Sortierung gewählt wird
+            this.usersTable.setSortContainerPropertyId(null);
+            this.usersContainer.setFilter(text);
         }
-        this.usersTable.sort(new Object[]{GROUP_PROPERTY, CAPTION_PROPERTY}, new boolean[]{true, true});
         this.updateSumRow();
     }
 
     /**
-     * Befüllt ein Item, mit Daten eines Benutzers
+     * Erstellt das Symbol, das den Zustand eines Benutzers anzeigt.
      *
-     * @param i Das zu befüllende Item
-     * @param u Der User, dessen Daten verwendet werden sollen
+     * @param itemId Die Id des Benutzers
      */
-    @SuppressWarnings("unchecked")
-    private void fillItemWithUserData(Item i, User u) {
+    private Button createIcon(Object itemId) {
+        final User u = this.usersContainer.getEntity(itemId);
+        if (u == null) {
+            return null;
+        }
         final Button btn = new Button("");
         FontAwesome icon;
 
-        try {
-            u.update();
-        } catch (NoDataFoundException | SQLException e2) {
-            this.logger.error("Could not fill user table with data.", e2);
-            return;
-        }
-
-        boolean userHasExpiredExecutions = false;
-        try {
-            userHasExpiredExecutions = u.hasExpiredExecutions();
-        } catch (final SQLException e) {
-            this.logger.error("Error while looking up if user has expired executions.", e);
-        }
-
         if (u.isBlocked()) {
             icon = FontAwesome.MINUS_CIRCLE;
             btn.setDescription("Gesperrt");
             btn.setStyleName("icon-user-blocked");
             btn.setEnabled(false);
-        } else if (userHasExpiredExecutions) {
-            icon = FontAwesome.EXCLAMATION_TRIANGLE;
-            btn.setDescription("Es gibt nicht abgerechnete Programmausführungen");
-            btn.setStyleName("icon-user-expired-executions");
-            btn.addClickListener(e -> {
-                ExpiredExecutionsWindow window;
-                try {
-                    window = new ExpiredExecutionsWindow(u, () -> {
-                        this.onUserUpdated(u);
-                    });
-                } catch (final SQLException e1) {
-                    this.logger.error("Could not load the window to show expired executions.", e1);
-                    WashportalManager.instance.showDatabaseError(e1);
-                    return;
-                } catch (final Exception e1) {
-                    this.logger.error("Could not load the window to show expired executions.", e1);
-                    WashportalManager.instance.showError(e1);
-                    return;
-                }
-                this.getUI().addWindow(window);
-                window.center();
-            });
         } else {
             icon = FontAwesome.USER;
             btn.setStyleName("icon-user-normal");
@@ -281,29 +248,23 @@ public class UsersView extends VerticalLayout implements View, IUserUpdatedEvent
         }
         btn.setIcon(icon);
         btn.addStyleName("borderless small");
-
-        i.getItemProperty(ICON_PROPERTY).setValue(btn);
-        i.getItemProperty(INDEX_PROPERTY).setValue(u.getId());
-        i.getItemProperty(CAPTION_PROPERTY).setValue(u.getName());
-        i.getItemProperty(GROUP_PROPERTY).setValue(u.getGroup().getName());
-        i.getItemProperty(CARD_ID_PROPERTY).setValue(u.getCardIds().length > 0 ?
-                u.getCardIds().length == 1 ? u.getCardIds()[0] : u.getCardIds().length + " Karten" : "");
-        i.getItemProperty(CREDIT_PROPERTY).setValue(u.getCredit());
+        return btn;
     }
 
     /**
      * Aktualisiert die Summenzeile
      */
     private void updateSumRow() {
-        Collection<?> ids = this.usersContainer.getItemIds();
-        this.usersTable.setColumnFooter(CAPTION_PROPERTY, ids.size() + " Benutzer");
-        BigDecimal sum = BigDecimal.ZERO;
-        for (Object id : ids) {
-           Item i = this.usersContainer.getItem(id);
-           sum = sum.add((BigDecimal) i.getItemProperty(CREDIT_PROPERTY).getValue());
+        final String filter = this.usersContainer.getFilter();
+        try {
+            this.usersTable.setColumnFooter(CAPTION_PROPERTY,
+                    WashportalManager.instance.getDataManager().getUserCount(filter) + " Benutzer");
+            this.usersTable.setColumnFooter(CREDIT_PROPERTY,
+                    FormatUtilities.formatCurrency(WashportalManager.instance.getDataManager().getCreditSum(filter)));
+        } catch (final SQLException e) {
+            this.logger.error("Could not sum up the credit of the users.", e);
+            WashportalManager.instance.showDatabaseError(e);
         }
-        this.usersTable.setColumnFooter(CREDIT_PROPERTY,
-                FormatUtilities.formatCurrency(sum));
     }
 
 
@@ -324,7 +285,7 @@ public class UsersView extends VerticalLayout implements View, IUserUpdatedEvent
                 "Möchten Sie diesen Benutzer wirklich löschen?<br><b>" + u.getName() + "</b>", () -> {
             try {
                 u.setDeleted(true);
-                this.usersContainer.removeItem(u.getId());
+                this.usersContainer.refresh();
                 this.updateSumRow();
             } catch (final SQLException e) {
                 this.logger.error("Could not delete the user " + u.getId() + ".", e);
@@ -337,11 +298,9 @@ public class UsersView extends VerticalLayout implements View, IUserUpdatedEvent
         this.getUI().addWindow(confirmWindow);
     }
 
-    @SuppressWarnings("unchecked")
     private void addCredit(User u) {
         final UserCreditWindow creditWindow = new UserCreditWindow(u, () -> {
-            final Item i = this.usersContainer.getItem(u.getId());
-            i.getItemProperty(CREDIT_PROPERTY).setValue(u.getCredit());
+            this.usersContainer.update(u);
         });
         creditWindow.addCloseListener((args) -> {
             this.updateSumRow();
@@ -355,13 +314,10 @@ public class UsersView extends VerticalLayout implements View, IUserUpdatedEvent
      */
     @Override
     public void onUserUpdated(User u) {
-        Item i;
-        if (this.usersContainer.containsId(u.getId())) {
-            i = this.usersContainer.getItem(u.getId());
-        } else {
-            i = this.usersContainer.addItem(u.getId());
+        if (!this.usersContainer.update(u)) {
+            // Neue Benutzer werden erst durch ein erneutes Laden an ihrer Position einsortiert
+            this.usersContainer.refresh();
         }
-        this.fillItemWithUserData(i, u);
         this.updateSumRow();
     }
 }
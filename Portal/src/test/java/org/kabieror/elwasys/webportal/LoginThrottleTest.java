@@ -0,0 +1,129 @@
+package org.kabieror.elwasys.webportal;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+
+/**
+ * Prüft das Bremsen fehlgeschlagener Anmeldungen.
+ *
+ * @author Oliver Kabierschke
+ */
+public class LoginThrottleTest {
+
+    private static final String USER = "alice";
+    private static final String ADDRESS = "192.0.2.1";
+
+    private long now = 1700000000L;
+
+    private final LoginThrottle throttle = new LoginThrottle(42) {
+        @Override
+        long now() {
+            return LoginThrottleTest.this.now;
+        }
+    };
+
+    /**
+     * Sucht einen Benutzernamen, der sich den Eintrag mit dem gegebenen teilt.
+     */
+    private String collidingWith(String username) {
+        final int slot = LoginThrottle.slot(this.throttle.hash(username));
+        for (int i = 0; ; i++) {
+            final String candidate = "user" + i;
+            if (LoginThrottle.slot(this.throttle.hash(candidate)) == slot) {
+                return candidate;
+            }
+        }
+    }
+
+    private long fail(int times) {
+        for (int i = 0; i < times; i++) {
+            this.throttle.onFailure(USER, ADDRESS);
+        }
+        return this.throttle.getRemainingDelay(USER, ADDRESS).getSeconds();
+    }
+
+    @Test
+    public void doublesDelayAfterFreeAttempts() {
+        Assert.assertEquals(0, this.fail(4));
+        Assert.assertEquals(1, this.fail(1));
+        Assert.assertEquals(2, this.fail(1));
+        Assert.assertEquals(4, this.fail(1));
+    }
+
+    @Test
+    public void countsDownFromLastFailure() {
+        Assert.assertEquals(8, this.fail(8));
+        this.now += 5;
+        Assert.assertEquals(3, this.throttle.getRemainingDelay(USER, ADDRESS).getSeconds());
+        this.now += 3;
+        Assert.assertEquals(Duration.ZERO, this.throttle.getRemainingDelay(USER, ADDRESS));
+    }
+
+    @Test
+    public void capsDelay() {
+        final long max = Duration.ofMinutes(15).getSeconds();
+        Assert.assertEquals(512, this.fail(14));
+        Assert.assertEquals(max, this.fail(1));
+        Assert.assertEquals(max, this.fail(20));
+    }
+
+    @Test
+    public void keepsTimeWhenCountSaturates() {
+        // Der Zähler darf beim Überlaufen weder in den Zeitstempel noch in den Fingerabdruck übergreifen
+        Assert.assertEquals(Duration.ofMinutes(15).getSeconds(), this.fail(0x100 + 10));
+        this.now += Duration.ofMinutes(15).getSeconds();
+        Assert.assertEquals(Duration.ZERO, this.throttle.getRemainingDelay(USER, ADDRESS));
+    }
+
+    @Test
+    public void expiresAfterAnHour() {
+        this.fail(10);
+        this.now += Duration.ofHours(1).getSeconds();
+        Assert.assertEquals(Duration.ZERO, this.throttle.getRemainingDelay(USER, ADDRESS));
+        // Der nächste Fehlschlag beginnt wieder bei den freien Versuchen
+        Assert.assertEquals(0, this.fail(4));
+        Assert.assertEquals(1, this.fail(1));
+    }
+
+    @Test
+    public void separatesAccountsAndAddresses() {
+        this.fail(6);
+        Assert.assertEquals(2, this.throttle.getRemainingDelay("bob", ADDRESS).getSeconds());
+        Assert.assertEquals(2, this.throttle.getRemainingDelay(" Alice ", "198.51.100.1").getSeconds());
+        Assert.assertEquals(Duration.ZERO, this.throttle.getRemainingDelay("bob", "198.51.100.1"));
+
+        // Eine erfolgreiche Anmeldung gibt nur das Konto frei, nicht die Adresse
+        this.throttle.onSuccess(USER);
+        Assert.assertEquals(Duration.ZERO, this.throttle.getRemainingDelay(USER, "198.51.100.1"));
+        Assert.assertEquals(2, this.throttle.getRemainingDelay(USER, ADDRESS).getSeconds());
+    }
+
+    @Test
+    public void ignoresCollidingAccounts() {
+        final String other = this.collidingWith(USER);
+        this.fail(6);
+        Assert.assertEquals(Duration.ZERO, this.throttle.getRemainingDelay(other, "198.51.100.1"));
+
+        // Fehlschläge und Erfolge des anderen Kontos ändern den Zähler nicht
+        for (int i = 0; i < 10; i++) {
+            this.throttle.onFailure(other, "203.0.113.1");
+        }
+        this.throttle.onSuccess(other);
+        Assert.assertEquals(2, this.throttle.getRemainingDelay(USER, "198.51.100.1").getSeconds());
+        Assert.assertEquals(Duration.ZERO, this.throttle.getRemainingDelay(other, "198.51.100.1"));
+    }
+
+    @Test
+    public void takesOverExpiredEntries() {
+        final String other = this.collidingWith(USER);
+        this.fail(6);
+        this.now += Duration.ofHours(1).getSeconds();
+        for (int i = 0; i < 6; i++) {
+            this.throttle.onFailure(other, "203.0.113.1");
+        }
+        Assert.assertEquals(2, this.throttle.getRemainingDelay(other, "198.51.100.1").getSeconds());
+        Assert.assertEquals(Duration.ZERO, this.throttle.getRemainingDelay(USER, "198.51.100.1"));
+    }
+}